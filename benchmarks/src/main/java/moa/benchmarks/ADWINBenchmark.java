@@ -0,0 +1,86 @@
+/*
+ *    ADWINBenchmark.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.core.driftdetection.ADWIN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ADWIN.setInput on the errors of a classifier, whose error rate changes
+ * abruptly every DRIFT_PERIOD inputs.
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ADWINBenchmark {
+
+    public static final int NUM_INPUTS = 1 << 20;
+
+    public static final int DRIFT_PERIOD = 100000;
+
+    @Param({"0.002", "0.00001"})
+    public double delta;
+
+    protected double[] inputs;
+
+    protected ADWIN adwin;
+
+    protected int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.inputs = new double[NUM_INPUTS];
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_INPUTS; i++) {
+            double errorRate = (i / DRIFT_PERIOD) % 2 == 0 ? 0.2 : 0.4;
+            this.inputs[i] = random.nextDouble() < errorRate ? 1.0 : 0.0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        this.adwin = new ADWIN(this.delta);
+        this.next = 0;
+    }
+
+    @Benchmark
+    public boolean setInput() {
+        int i = this.next;
+        this.next = (i + 1) & (NUM_INPUTS - 1);
+        return this.adwin.setInput(this.inputs[i]);
+    }
+}
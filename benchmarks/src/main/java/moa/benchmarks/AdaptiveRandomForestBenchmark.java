@@ -0,0 +1,99 @@
+/*
+ *    AdaptiveRandomForestBenchmark.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.Classifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Training and prediction of AdaptiveRandomForest, one instance at a time,
+ * for different ensemble sizes (-s) and numbers of jobs (-j). Each iteration
+ * starts from a forest trained on the first instances of the data.
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdaptiveRandomForestBenchmark {
+
+    public static final int NUM_INSTANCES = 100000;
+
+    public static final int NUM_PRETRAINING_INSTANCES = 2000;
+
+    @Param({"10", "100"})
+    public int ensembleSize;
+
+    @Param({"1", "4"})
+    public int numberOfJobs;
+
+    @Param({"generators.RandomRBFGenerator"})
+    public String stream;
+
+    protected BenchmarkData data;
+
+    protected Classifier learner;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.data = new BenchmarkData(this.stream, NUM_INSTANCES);
+    }
+
+    @Setup(Level.Iteration)
+    public void pretrain() {
+        this.learner = this.data.newClassifier("meta.AdaptiveRandomForest -s "
+                + this.ensembleSize + " -j " + this.numberOfJobs);
+        this.data.setNext(0);
+        for (int i = 0; i < NUM_PRETRAINING_INSTANCES; i++) {
+            this.learner.trainOnInstance(this.data.next());
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void shutdown() {
+        // stops the threads of the forest
+        this.learner.resetLearning();
+    }
+
+    @Benchmark
+    public void trainOnInstance() {
+        this.learner.trainOnInstance(this.data.next());
+    }
+
+    @Benchmark
+    public double[] getVotesForInstance() {
+        return this.learner.getVotesForInstance(this.data.next());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *    ArffLoaderBenchmark.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.ArffLoader;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ArffLoader.readInstance on ARFF text held in memory, so that the benchmark
+ * measures the parsing and not the disk. The sparse rows store about half of
+ * the values.
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArffLoaderBenchmark {
+
+    public static final int NUM_INSTANCES = 50000;
+
+    @Param({"dense", "sparse"})
+    public String format;
+
+    @Param({"generators.RandomRBFGenerator", "generators.AgrawalGenerator"})
+    public String stream;
+
+    protected String arff;
+
+    protected ArffLoader loader;
+
+    @Setup
+    public void write() {
+        BenchmarkData data = new BenchmarkData(this.stream, NUM_INSTANCES);
+        InstancesHeader header = data.getHeader();
+        boolean sparse = this.format.equals("sparse");
+        StringBuilder text = new StringBuilder("@relation benchmark\n\n");
+        for (int i = 0; i < header.numAttributes(); i++) {
+            text.append(header.attribute(i)).append('\n');
+        }
+        text.append("\n@data\n");
+        for (Instance inst : data.getInstances()) {
+            text.append(sparse ? "{" : "");
+            boolean first = true;
+            for (int i = 0; i < inst.numAttributes(); i++) {
+                Attribute attribute = header.attribute(i);
+                double value = inst.value(i);
+                if (sparse && i != header.classIndex() && value < 0.5) {
+                    continue;
+                }
+                if (!first) {
+                    text.append(',');
+                }
+                first = false;
+                if (sparse) {
+                    text.append(i).append(' ');
+                }
+                if (attribute.isNominal()) {
+                    text.append(attribute.value((int) value));
+                } else {
+                    text.append(value);
+                }
+            }
+            text.append(sparse ? "}\n" : "\n");
+        }
+        this.arff = text.toString();
+        this.loader = newLoader();
+    }
+
+    protected ArffLoader newLoader() {
+        return new ArffLoader(new StringReader(this.arff), 0, -1);
+    }
+
+    @Benchmark
+    public Instance readInstance() {
+        Instance inst = this.loader.readInstance();
+        if (inst == null) {
+            this.loader = newLoader();
+            inst = this.loader.readInstance();
+        }
+        return inst;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *    BenchmarkData.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.InstanceStream;
+
+/**
+ * Instances generated before a benchmark, so that the benchmark does not
+ * measure the generator, and replayed in a loop.
+ *
+ * @version $Revision: 1 $
+ */
+public class BenchmarkData {
+
+    protected final InstancesHeader header;
+
+    protected final Instance[] instances;
+
+    protected int next;
+
+    /**
+     * Generates instances from a stream.
+     *
+     * @param streamCLIString the stream, e.g. generators.RandomRBFGenerator
+     * @param numInstances the number of instances to generate
+     */
+    public BenchmarkData(String streamCLIString, int numInstances) {
+        InstanceStream stream = newStream(streamCLIString);
+        this.header = stream.getHeader();
+        this.instances = new Instance[numInstances];
+        for (int i = 0; i < numInstances; i++) {
+            this.instances[i] = stream.nextInstance().getData();
+        }
+    }
+
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    public Instance[] getInstances() {
+        return this.instances;
+    }
+
+    /**
+     * Gets the next instance, starting again from the first one after the
+     * last one.
+     */
+    public Instance next() {
+        Instance inst = this.instances[this.next];
+        this.next = this.next + 1 < this.instances.length ? this.next + 1 : 0;
+        return inst;
+    }
+
+    public void setNext(int next) {
+        this.next = next % this.instances.length;
+    }
+
+    public static InstanceStream newStream(String cliString) {
+        return (InstanceStream) newObject(cliString, InstanceStream.class);
+    }
+
+    /**
+     * Creates a classifier ready to be trained on this data.
+     */
+    public Classifier newClassifier(String cliString) {
+        Classifier classifier = (Classifier) newObject(cliString, Classifier.class);
+        classifier.setModelContext(this.header);
+        classifier.prepareForUse();
+        return classifier;
+    }
+
+    protected static Object newObject(String cliString, Class<?> requiredType) {
+        Object object;
+        try {
+            object = ClassOption.cliStringToObject(cliString, requiredType, null);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot create " + cliString, e);
+        }
+        if (object instanceof OptionHandler && !(object instanceof Classifier)) {
+            ((OptionHandler) object).prepareForUse();
+        }
+        return object;
+    }
+}
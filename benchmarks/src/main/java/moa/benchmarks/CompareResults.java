@@ -0,0 +1,164 @@
+/*
+ *    CompareResults.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two CSV result files of the benchmarks, e.g. of two versions of
+ * MOA, and prints the relative change of every score.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar moa.benchmarks.CompareResults before.csv after.csv
+ * </pre>
+ *
+ * @version $Revision: 1 $
+ */
+public class CompareResults {
+
+    /**
+     * A score of a benchmark, with its unit.
+     */
+    protected static class Score {
+
+        protected final double value;
+
+        protected final double error;
+
+        protected final String unit;
+
+        protected Score(double value, double error, String unit) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.csv> <current.csv>");
+            System.exit(1);
+        }
+        Map<String, Score> baseline = read(args[0]);
+        Map<String, Score> current = read(args[1]);
+        System.out.println(String.format("%-80s %14s %14s %8s  %s", "Benchmark",
+                "Baseline", "Current", "Change", "Unit"));
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.println(String.format("%-80s %14s %14.3f %8s  %s",
+                        entry.getKey(), "-", after.value, "new", after.unit));
+            } else {
+                String change = before.value != 0.0
+                        ? String.format("%+7.1f%%", 100.0 * (after.value - before.value) / before.value)
+                        : "-";
+                // a change within the errors of the two scores is not significant
+                if (Math.abs(after.value - before.value) <= before.error + after.error) {
+                    change = "~" + change.trim();
+                }
+                System.out.println(String.format("%-80s %14.3f %14.3f %8s  %s",
+                        entry.getKey(), before.value, after.value, change, after.unit));
+            }
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.println(String.format("%-80s %14.3f %14s %8s  %s",
+                        key, baseline.get(key).value, "-", "removed", baseline.get(key).unit));
+            }
+        }
+    }
+
+    /**
+     * Reads a CSV result file of JMH.
+     *
+     * @param fileName the file
+     * @return the scores, by benchmark name and parameters
+     */
+    public static Map<String, Score> read(String fileName) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try {
+            List<String> columns = parseLine(reader.readLine());
+            int benchmark = columns.indexOf("Benchmark");
+            int score = columns.indexOf("Score");
+            int unit = columns.indexOf("Unit");
+            int error = score + 1;
+            if (benchmark < 0 || score < 0 || unit < 0) {
+                throw new IOException(fileName + " is not a CSV result file of JMH");
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0) {
+                    continue;
+                }
+                List<String> fields = parseLine(line);
+                StringBuilder key = new StringBuilder(fields.get(benchmark));
+                for (int i = 0; i < columns.size(); i++) {
+                    if (columns.get(i).startsWith("Param: ") && fields.get(i).length() > 0) {
+                        key.append(' ').append(columns.get(i).substring(7))
+                                .append('=').append(fields.get(i));
+                    }
+                }
+                scores.put(key.toString(), new Score(parseNumber(fields.get(score)),
+                        parseNumber(fields.get(error)), fields.get(unit)));
+            }
+        } finally {
+            reader.close();
+        }
+        return scores;
+    }
+
+    protected static double parseNumber(String field) {
+        if (field.length() == 0 || field.equals("NaN")) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(field.replace(',', '.'));
+    }
+
+    protected static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *    CopyBenchmark.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.trees.ARFHoeffdingTree;
+import moa.core.Measurement;
+import moa.core.SerializeUtils;
+import moa.core.StructuralCopier;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deep copy of a grown ARFHoeffdingTree with StructuralCopier, as done by
+ * AbstractMOAObject.copy, and with a serialization round trip, as done
+ * before. The tree is trained until it has at least numNodes nodes.
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyBenchmark {
+
+    public static final int MAX_INSTANCES = 2000000;
+
+    @Param({"10000"})
+    public int numNodes;
+
+    @Param({"generators.RandomRBFGenerator -a 20", "generators.RandomTreeGenerator"})
+    public String stream;
+
+    protected ARFHoeffdingTree tree;
+
+    @Setup(Level.Trial)
+    public void grow() {
+        // the instances come straight from the generator, so that the tree
+        // keeps finding new splits
+        InstanceStream instances = BenchmarkData.newStream(this.stream);
+        this.tree = new ARFHoeffdingTree();
+        // small grace period and loose split confidence, so that the tree
+        // grows quickly
+        this.tree.getOptions().setViaCLIString("-e 2000000000 -g 50 -c 0.2 -t 0.2");
+        this.tree.setModelContext(instances.getHeader());
+        this.tree.prepareForUse();
+        for (int i = 0; i < MAX_INSTANCES && countNodes() < this.numNodes; i += 1000) {
+            for (int j = 0; j < 1000; j++) {
+                this.tree.trainOnInstance(instances.nextInstance().getData());
+            }
+        }
+        if (countNodes() < this.numNodes) {
+            throw new IllegalStateException("The tree has only " + countNodes() + " nodes");
+        }
+    }
+
+    protected int countNodes() {
+        return (int) Measurement.getMeasurementNamed("tree size (nodes)",
+                this.tree.getModelMeasurements()).getValue();
+    }
+
+    @Benchmark
+    public Object structuralCopier() throws Exception {
+        return StructuralCopier.deepCopy(this.tree);
+    }
+
+    @Benchmark
+    public Object serializeUtils() throws Exception {
+        return SerializeUtils.copyObject(this.tree);
+    }
+}
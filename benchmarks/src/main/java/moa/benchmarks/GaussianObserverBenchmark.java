@@ -0,0 +1,106 @@
+/*
+ *    GaussianObserverBenchmark.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.SplitEvaluationBuffers;
+import moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Split evaluation of GaussianNumericAttributeClassObserver, as done by the
+ * Hoeffding trees every grace period, for different numbers of classes and
+ * of candidate split points (bins).
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GaussianObserverBenchmark {
+
+    public static final int NUM_OBSERVATIONS = 10000;
+
+    @Param({"2", "10"})
+    public int numClasses;
+
+    @Param({"10", "100"})
+    public int numBins;
+
+    protected GaussianNumericAttributeClassObserver observer;
+
+    protected SplitCriterion criterion;
+
+    // shared by the split attempts, as the buffers of a tree
+    protected SplitEvaluationBuffers buffers;
+
+    protected double[] preSplitDist;
+
+    protected double[] values;
+
+    protected int next;
+
+    @Setup
+    public void observe() {
+        this.observer = new GaussianNumericAttributeClassObserver();
+        this.observer.numBinsOption.setValue(this.numBins);
+        this.observer.prepareForUse();
+        this.criterion = new InfoGainSplitCriterion();
+        this.buffers = new SplitEvaluationBuffers();
+        this.preSplitDist = new double[this.numClasses];
+        this.values = new double[NUM_OBSERVATIONS];
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_OBSERVATIONS; i++) {
+            int classValue = random.nextInt(this.numClasses);
+            this.values[i] = classValue + random.nextGaussian();
+            this.observer.observeAttributeClass(this.values[i], classValue, 1.0);
+            this.preSplitDist[classValue]++;
+        }
+    }
+
+    @Benchmark
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion() {
+        return this.observer.getBestEvaluatedSplitSuggestion(this.criterion,
+                this.preSplitDist, 0, true, this.buffers);
+    }
+
+    @Benchmark
+    public void observeAttributeClass() {
+        int i = this.next;
+        this.next = i + 1 < NUM_OBSERVATIONS ? i + 1 : 0;
+        this.observer.observeAttributeClass(this.values[i], i % this.numClasses, 1.0);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *    RunBenchmarks.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the JMH command line, adding by default the GC
+ * profiler, which also measures the bytes allocated per operation
+ * (gc.alloc.rate.norm), and a CSV result file that can be compared with
+ * {@link CompareResults}.
+ *
+ * <p>For example, to run the parsing benchmarks and save the results:</p>
+ * <pre>
+ * java -jar target/benchmarks.jar ArffLoader -rff before.csv
+ * </pre>
+ *
+ * @version $Revision: 1 $
+ */
+public class RunBenchmarks {
+
+    public static final String DEFAULT_RESULT_FILE = "moa-benchmarks.csv";
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+        if (!arguments.contains("-prof")) {
+            arguments.add("-prof");
+            arguments.add("gc");
+        }
+        if (!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("csv");
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.add("-rff");
+            arguments.add(DEFAULT_RESULT_FILE);
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[arguments.size()]));
+    }
+}
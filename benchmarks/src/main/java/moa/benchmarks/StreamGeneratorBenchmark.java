@@ -0,0 +1,67 @@
+/*
+ *    StreamGeneratorBenchmark.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import java.util.concurrent.TimeUnit;
+import moa.core.Example;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the stream generators.
+ *
+ * @version $Revision: 1 $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamGeneratorBenchmark {
+
+    @Param({"generators.RandomRBFGenerator", "generators.RandomRBFGeneratorDrift",
+        "generators.RandomTreeGenerator", "generators.AgrawalGenerator",
+        "generators.HyperplaneGenerator", "generators.LEDGenerator",
+        "generators.SEAGenerator", "generators.WaveformGenerator"})
+    public String stream;
+
+    protected InstanceStream generator;
+
+    @Setup
+    public void prepare() {
+        this.generator = BenchmarkData.newStream(this.stream);
+    }
+
+    @Benchmark
+    public Example<Instance> nextInstance() {
+        return this.generator.nextInstance();
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses the data section of an Arff file, a chunk of whole lines at a time.
+ * It reads the same dense and sparse rows as {@link ArffLoader}, without
+ * a tokenizer and without creating strings for numeric values.
+ *
+ * <p>A parser can be used by several threads at the same time: it only reads
+ * the attributes of the dataset, whose nominal values are indexed when the
+ * parser is created.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class ArffChunkParser {
+
+    /**
+     * The powers of ten that are exactly represented by a double.
+     */
+    protected static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * The schema shared by the parsed instances.
+     */
+    protected final InstancesSchema schema;
+
+    protected final Attribute[] attributes;
+
+    protected final boolean[] isNumeric;
+
+    /**
+     * Instantiates a new parser.
+     *
+     * @param dataset the dataset read from the header of the file
+     */
+    public ArffChunkParser(Instances dataset) {
+        this.schema = dataset.schema();
+        int numAttributes = dataset.numAttributes();
+        this.attributes = new Attribute[numAttributes];
+        this.isNumeric = new boolean[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            this.attributes[i] = dataset.attribute(i);
+            this.isNumeric[i] = this.attributes[i].isNumeric();
+            // builds the index of the values before parsing threads use it
+            this.attributes[i].indexOfValue("");
+        }
+    }
+
+    /**
+     * Parses the lines in chars[start, end).
+     *
+     * @param chars the characters
+     * @param start the index of the first character of the first line
+     * @param end the index after the last character of the last line
+     * @return the instances, in the order of the lines
+     */
+    public List<Instance> parse(char[] chars, int start, int end) {
+        List<Instance> parsed = new ArrayList<Instance>();
+        int pos = start;
+        while (pos < end) {
+            pos = skipSeparators(chars, pos, end);
+            if (pos >= end) {
+                break;
+            }
+            char c = chars[pos];
+            if (c == '\n' || c == '%') {
+                pos = skipLine(chars, pos, end);
+            } else if (c == '{') {
+                pos = parseSparse(chars, pos + 1, end, parsed);
+            } else {
+                pos = parseDense(chars, pos, end, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    protected int parseDense(char[] chars, int pos, int end, List<Instance> parsed) {
+        double[] values = new double[this.attributes.length];
+        int numAttribute = 0;
+        int[] token = new int[2];
+        while (pos < end && chars[pos] != '\n' && chars[pos] != '%') {
+            pos = nextToken(chars, pos, end, token);
+            if (numAttribute < values.length) {
+                values[numAttribute] = value(chars, token[0], token[1], numAttribute);
+            }
+            numAttribute++;
+            pos = skipSeparators(chars, pos, end);
+        }
+        if (numAttribute > 0) {
+            Instance instance = new DenseInstance(1.0, values);
+            instance.setDataset(this.schema);
+            parsed.add(instance);
+        }
+        return skipLine(chars, pos, end);
+    }
+
+    protected int parseSparse(char[] chars, int pos, int end, List<Instance> parsed) {
+        int[] indexValues = new int[8];
+        double[] attributeValues = new double[8];
+        int numValues = 0;
+        int[] token = new int[2];
+        pos = skipSeparators(chars, pos, end);
+        while (pos < end && chars[pos] != '}' && chars[pos] != '\n' && chars[pos] != '%') {
+            pos = nextToken(chars, pos, end, token);
+            int numAttribute = (int) parseDouble(chars, token[0], token[1]);
+            pos = skipSeparators(chars, pos, end);
+            pos = nextToken(chars, pos, end, token);
+            if (numValues == indexValues.length) {
+                indexValues = Arrays.copyOf(indexValues, 2 * numValues);
+                attributeValues = Arrays.copyOf(attributeValues, 2 * numValues);
+            }
+            indexValues[numValues] = numAttribute;
+            attributeValues[numValues] = value(chars, token[0], token[1], numAttribute);
+            numValues++;
+            pos = skipSeparators(chars, pos, end);
+        }
+        Instance instance = new SparseInstance(1.0,
+                Arrays.copyOf(attributeValues, numValues),
+                Arrays.copyOf(indexValues, numValues),
+                this.attributes.length);
+        instance.setDataset(this.schema);
+        parsed.add(instance);
+        return skipLine(chars, pos, end);
+    }
+
+    /**
+     * Gets the value of a token for an attribute, as ArffLoader does.
+     */
+    protected double value(char[] chars, int start, int end, int numAttribute) {
+        if (end - start == 1 && chars[start] == '?') {
+            return Double.NaN;
+        }
+        if (this.isNumeric[numAttribute]) {
+            return parseDouble(chars, start, end);
+        }
+        return this.attributes[numAttribute].indexOfValue(new String(chars, start, end - start));
+    }
+
+    /**
+     * Reads the token at pos. Quoted tokens are returned without their quotes.
+     *
+     * @param token receives the start and the end of the token
+     * @return the position after the token
+     */
+    protected static int nextToken(char[] chars, int pos, int end, int[] token) {
+        char c = chars[pos];
+        if (c == '\'' || c == '"') {
+            int close = pos + 1;
+            while (close < end && chars[close] != c && chars[close] != '\n') {
+                close++;
+            }
+            token[0] = pos + 1;
+            token[1] = close;
+            return close < end && chars[close] == c ? close + 1 : close;
+        }
+        int after = pos;
+        while (after < end && isWordChar(chars[after])) {
+            after++;
+        }
+        if (after == pos) {
+            // a lone '{' or '}' is a token by itself
+            after++;
+        }
+        token[0] = pos;
+        token[1] = after;
+        return after;
+    }
+
+    protected static boolean isWordChar(char c) {
+        return c > ' ' && c != ',' && c != '%' && c != '\'' && c != '"'
+                && c != '{' && c != '}';
+    }
+
+    /**
+     * Skips spaces and commas, but not the end of the line.
+     */
+    protected static int skipSeparators(char[] chars, int pos, int end) {
+        while (pos < end && (chars[pos] <= ' ' || chars[pos] == ',') && chars[pos] != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    protected static int skipLine(char[] chars, int pos, int end) {
+        while (pos < end && chars[pos] != '\n') {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * Parses a decimal number. Numbers whose digits fit in the 53 bits of a
+     * double and whose exponent is small are computed exactly from their
+     * digits, the others are given to Double.parseDouble.
+     *
+     * @return the number
+     * @throws NumberFormatException if the token is not a number
+     */
+    public static double parseDouble(char[] chars, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (chars[pos] == '-' || chars[pos] == '+')) {
+            negative = chars[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        while (pos < end && chars[pos] >= '0' && chars[pos] <= '9') {
+            if (numDigits < 18) {
+                mantissa = 10 * mantissa + (chars[pos] - '0');
+                if (mantissa != 0) {
+                    numDigits++;
+                }
+            } else {
+                exponent++;
+            }
+            anyDigit = true;
+            pos++;
+        }
+        if (pos < end && chars[pos] == '.') {
+            pos++;
+            while (pos < end && chars[pos] >= '0' && chars[pos] <= '9') {
+                if (numDigits < 18) {
+                    mantissa = 10 * mantissa + (chars[pos] - '0');
+                    if (mantissa != 0) {
+                        numDigits++;
+                    }
+                    exponent--;
+                }
+                anyDigit = true;
+                pos++;
+            }
+        }
+        if (anyDigit && pos < end && (chars[pos] == 'e' || chars[pos] == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (chars[pos] == '-' || chars[pos] == '+')) {
+                negativeExponent = chars[pos] == '-';
+                pos++;
+            }
+            int explicitExponent = 0;
+            boolean anyExponentDigit = false;
+            while (pos < end && chars[pos] >= '0' && chars[pos] <= '9') {
+                if (explicitExponent < 10000) {
+                    explicitExponent = 10 * explicitExponent + (chars[pos] - '0');
+                }
+                anyExponentDigit = true;
+                pos++;
+            }
+            if (!anyExponentDigit) {
+                anyDigit = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (!anyDigit || pos != end || numDigits >= 18 || mantissa > (1L << 53)) {
+            return parseDoubleSlow(chars, start, end);
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseDoubleSlow(chars, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    protected static double parseDoubleSlow(char[] chars, int start, int end) {
+        return Double.parseDouble(new String(chars, start, end - start));
+    }
+}
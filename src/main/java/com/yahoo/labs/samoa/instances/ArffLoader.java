@@ -158,7 +158,7 @@ public class ArffLoader {
                         numAttribute++;
 
                     } else if (streamTokenizer.sval != null && (streamTokenizer.ttype == StreamTokenizer.TT_WORD
-                            || streamTokenizer.ttype == 34)) {
+                            || streamTokenizer.ttype == 34 || streamTokenizer.ttype == 39)) {
                         //System.out.println(streamTokenizer.sval + "Str");
                         boolean isNumeric = this.instanceInformation.attribute(numAttribute).isNumeric();
                         double value;
@@ -243,7 +243,7 @@ public class ArffLoader {
                         //numAttribute++;
 
                     } else if (streamTokenizer.sval != null && (streamTokenizer.ttype == StreamTokenizer.TT_WORD
-                            || streamTokenizer.ttype == 34)) {
+                            || streamTokenizer.ttype == 34 || streamTokenizer.ttype == 39)) {
                         //System.out.print(streamTokenizer.sval + "-");
                         if (this.auxAttributes.get(numAttribute).isNumeric()) {
                             this.setSparseValue(instance, indexValues, attributeValues, numAttribute, Double.valueOf(streamTokenizer.sval).doubleValue(), true);
@@ -320,7 +320,7 @@ public class ArffLoader {
                         //numAttribute++;
 
                     } else if (streamTokenizer.sval != null && (streamTokenizer.ttype == StreamTokenizer.TT_WORD
-                            || streamTokenizer.ttype == 34)) {
+                            || streamTokenizer.ttype == 34 || streamTokenizer.ttype == 39)) {
                         //System.out.print(streamTokenizer.sval + "/"+this.instanceInformation.attribute(numAttribute).indexOfValue(streamTokenizer.sval)+" ");
                         if (this.auxAttributes.get(numAttribute).isNumeric()) {
                             this.setValue(instance, numAttribute, Double.valueOf(streamTokenizer.sval).doubleValue(), true);
@@ -30,6 +30,16 @@ public class DenseInstance extends InstanceImpl {
         super(weight, res);
     }
 
+    /**
+     * Instantiates a new dense instance.
+     *
+     * @param weight the weight
+     * @param instanceData the instance data
+     */
+    public DenseInstance(double weight, InstanceData instanceData) {
+        super(weight, instanceData);
+    }
+
     /**
      * Instantiates a new dense instance.
      *
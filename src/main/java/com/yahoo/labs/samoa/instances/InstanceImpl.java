@@ -360,7 +360,7 @@ public class InstanceImpl implements MultiLabelInstance {
      */
     @Override
     public void setDataset(Instances dataset) {
-        this.instanceHeader = new InstancesHeader(dataset);
+        this.instanceHeader = dataset == null ? null : dataset.schema();
     }
 
     /**
@@ -61,6 +61,11 @@ public class Instances implements Serializable {
      */
     protected HashMap<Attribute, Integer> hsAttributesIndices;
 
+    /**
+     * The header shared by the instances of this dataset, created on demand.
+     */
+    protected transient InstancesSchema schema;
+
     /**
      * Instantiates a new instances.
      *
@@ -244,6 +249,7 @@ public class Instances implements Serializable {
      */
     public void deleteAttributeAt(Integer integer) {
         this.instanceInformation.deleteAttributeAt(integer);
+        this.schema = null;
     }
 
     /**
@@ -257,6 +263,7 @@ public class Instances implements Serializable {
             this.instanceInformation = new InstanceInformation();
         }
         this.instanceInformation.insertAttributeAt(attribute, i);
+        this.schema = null;
     }
 
     //List of Instances
@@ -444,7 +451,11 @@ public class Instances implements Serializable {
      * Delete.
      */
     public void delete() {
-        this.instances = new ArrayList<Instance>();
+        if (this.instances == null) {
+            this.instances = new ArrayList<Instance>();
+        } else {
+            this.instances.clear();
+        }
     }
 
     /**
@@ -475,6 +486,22 @@ public class Instances implements Serializable {
         return this.instanceInformation;
     }
 
+    /**
+     * Gets the header shared by the instances of this dataset. It is created
+     * on the first call and reused until the attributes are changed, so
+     * setting the dataset of an instance does not allocate.
+     *
+     * @return the schema of this dataset
+     */
+    public InstancesSchema schema() {
+        InstancesSchema s = this.schema;
+        if (s == null) {
+            s = new InstancesSchema(this);
+            this.schema = s;
+        }
+        return s;
+    }
+
     public Attribute attribute(String name) {
 
         for (int i = 0; i < numAttributes(); i++) {
@@ -507,6 +534,7 @@ public class Instances implements Serializable {
             this.instanceInformation = new InstanceInformation();
         }
         this.instanceInformation.setAttributes(v);
+        this.schema = null;
     }
 
     public void setAttributes(List<Attribute> v, List<Integer> indexValues) {
@@ -514,6 +542,7 @@ public class Instances implements Serializable {
             this.instanceInformation = new InstanceInformation();
         }
         this.instanceInformation.setAttributes(v, indexValues);
+        this.schema = null;
     }
 
     /**
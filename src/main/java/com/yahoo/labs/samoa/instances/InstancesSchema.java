@@ -0,0 +1,51 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.io.Reader;
+
+/**
+ * Header shared by all the instances of a dataset. It is created once per
+ * dataset by {@link Instances#schema()} and holds no instances: instances
+ * cannot be added to it. Changes to the attributes or the class index of the
+ * dataset are seen by the schema, as both share the same instance
+ * information.
+ *
+ * @version $Revision: 1 $
+ */
+public final class InstancesSchema extends InstancesHeader {
+
+    private static final long serialVersionUID = 1L;
+
+    InstancesSchema(Instances dataset) {
+        super(dataset);
+    }
+
+    @Override
+    public InstancesSchema schema() {
+        return this;
+    }
+
+    @Override
+    public void add(Instance inst) {
+        throw new UnsupportedOperationException("Instances cannot be added to a schema");
+    }
+
+    @Override
+    public boolean readInstance(Reader fileReader) {
+        throw new UnsupportedOperationException("Instances cannot be added to a schema");
+    }
+}
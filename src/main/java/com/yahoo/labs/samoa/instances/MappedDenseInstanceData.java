@@ -0,0 +1,138 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import moa.core.MappedBuffer;
+
+/**
+ * Dense instance data read in place from a file mapped in memory. The values
+ * are copied into a DenseInstanceData the first time they are changed, and
+ * when the instance is serialized.
+ *
+ * @version $Revision: 1 $
+ */
+public class MappedDenseInstanceData implements InstanceData {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final transient MappedBuffer buffer;
+
+    /** The offset of the first value in the buffer. */
+    protected final long offset;
+
+    protected final int numAttributes;
+
+    /** The values, once they have been changed. */
+    protected DenseInstanceData changed;
+
+    /**
+     * Instantiates a new mapped dense instance data.
+     *
+     * @param buffer the mapped file
+     * @param offset the offset of the first value
+     * @param numAttributes the number of values
+     */
+    public MappedDenseInstanceData(MappedBuffer buffer, long offset, int numAttributes) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.numAttributes = numAttributes;
+    }
+
+    @Override
+    public int numAttributes() {
+        return this.changed != null ? this.changed.numAttributes() : this.numAttributes;
+    }
+
+    @Override
+    public double value(int indexAttribute) {
+        if (this.changed != null) {
+            return this.changed.value(indexAttribute);
+        }
+        if (indexAttribute < 0 || indexAttribute >= this.numAttributes) {
+            throw new ArrayIndexOutOfBoundsException(indexAttribute);
+        }
+        return this.buffer.getDouble(this.offset + 8L * indexAttribute);
+    }
+
+    @Override
+    public boolean isMissing(int indexAttribute) {
+        return Double.isNaN(value(indexAttribute));
+    }
+
+    @Override
+    public int numValues() {
+        return numAttributes();
+    }
+
+    @Override
+    public int index(int indexAttribute) {
+        return indexAttribute;
+    }
+
+    @Override
+    public double valueSparse(int indexAttribute) {
+        return value(indexAttribute);
+    }
+
+    @Override
+    public boolean isMissingSparse(int indexAttribute) {
+        return isMissing(indexAttribute);
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        if (this.changed != null) {
+            return this.changed.toDoubleArray();
+        }
+        double[] array = new double[this.numAttributes];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = this.buffer.getDouble(this.offset + 8L * i);
+        }
+        return array;
+    }
+
+    @Override
+    public void setValue(int attributeIndex, double d) {
+        change().setValue(attributeIndex, d);
+    }
+
+    @Override
+    public void deleteAttributeAt(int index) {
+        change().deleteAttributeAt(index);
+    }
+
+    @Override
+    public InstanceData copy() {
+        if (this.changed != null) {
+            return this.changed.copy();
+        }
+        return new MappedDenseInstanceData(this.buffer, this.offset, this.numAttributes);
+    }
+
+    protected DenseInstanceData change() {
+        if (this.changed == null) {
+            this.changed = new DenseInstanceData(toDoubleArray());
+        }
+        return this.changed;
+    }
+
+    /**
+     * Serializes the values instead of the mapped file.
+     */
+    protected Object writeReplace() {
+        return this.changed != null ? this.changed : new DenseInstanceData(toDoubleArray());
+    }
+}
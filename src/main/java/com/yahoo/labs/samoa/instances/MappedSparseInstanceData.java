@@ -0,0 +1,176 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import moa.core.MappedBuffer;
+
+/**
+ * Sparse instance data read in place from a file mapped in memory, where the
+ * indices and the values of the instances are stored in two arrays. The data
+ * is copied into a SparseInstanceData the first time it is changed, and when
+ * the instance is serialized.
+ *
+ * @version $Revision: 1 $
+ */
+public class MappedSparseInstanceData implements InstanceData {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final transient MappedBuffer buffer;
+
+    /** The offset of the first index in the buffer. */
+    protected final long indexOffset;
+
+    /** The offset of the first value in the buffer. */
+    protected final long valueOffset;
+
+    protected final int numValues;
+
+    protected final int numAttributes;
+
+    /** The data, once it has been changed. */
+    protected SparseInstanceData changed;
+
+    /**
+     * Instantiates a new mapped sparse instance data.
+     *
+     * @param buffer the mapped file
+     * @param indexOffset the offset of the first index, stored as an int
+     * @param valueOffset the offset of the first value, stored as a double
+     * @param numValues the number of values
+     * @param numAttributes the number of attributes
+     */
+    public MappedSparseInstanceData(MappedBuffer buffer, long indexOffset,
+            long valueOffset, int numValues, int numAttributes) {
+        this.buffer = buffer;
+        this.indexOffset = indexOffset;
+        this.valueOffset = valueOffset;
+        this.numValues = numValues;
+        this.numAttributes = numAttributes;
+    }
+
+    @Override
+    public int numAttributes() {
+        return this.changed != null ? this.changed.numAttributes() : this.numAttributes;
+    }
+
+    @Override
+    public double value(int indexAttribute) {
+        if (this.changed != null) {
+            return this.changed.value(indexAttribute);
+        }
+        // binary search of the attribute in the sorted indices
+        int min = 0;
+        int max = this.numValues - 1;
+        while (min <= max) {
+            int current = (min + max) >>> 1;
+            int index = index(current);
+            if (index < indexAttribute) {
+                min = current + 1;
+            } else if (index > indexAttribute) {
+                max = current - 1;
+            } else {
+                return valueSparse(current);
+            }
+        }
+        return 0.0;
+    }
+
+    @Override
+    public boolean isMissing(int indexAttribute) {
+        return Double.isNaN(value(indexAttribute));
+    }
+
+    @Override
+    public int numValues() {
+        return this.changed != null ? this.changed.numValues() : this.numValues;
+    }
+
+    @Override
+    public int index(int i) {
+        if (this.changed != null) {
+            return this.changed.index(i);
+        }
+        if (i < 0 || i >= this.numValues) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+        return this.buffer.getInt(this.indexOffset + 4L * i);
+    }
+
+    @Override
+    public double valueSparse(int i) {
+        if (this.changed != null) {
+            return this.changed.valueSparse(i);
+        }
+        if (i < 0 || i >= this.numValues) {
+            throw new ArrayIndexOutOfBoundsException(i);
+        }
+        return this.buffer.getDouble(this.valueOffset + 8L * i);
+    }
+
+    @Override
+    public boolean isMissingSparse(int i) {
+        return Double.isNaN(valueSparse(i));
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        double[] array = new double[numAttributes()];
+        for (int i = 0; i < numValues(); i++) {
+            array[index(i)] = valueSparse(i);
+        }
+        return array;
+    }
+
+    @Override
+    public void setValue(int attributeIndex, double d) {
+        change().setValue(attributeIndex, d);
+    }
+
+    @Override
+    public void deleteAttributeAt(int index) {
+        change().deleteAttributeAt(index);
+    }
+
+    @Override
+    public InstanceData copy() {
+        if (this.changed != null) {
+            return this.changed.copy();
+        }
+        return new MappedSparseInstanceData(this.buffer, this.indexOffset,
+                this.valueOffset, this.numValues, this.numAttributes);
+    }
+
+    protected SparseInstanceData change() {
+        if (this.changed == null) {
+            double[] values = new double[this.numValues];
+            int[] indices = new int[this.numValues];
+            for (int i = 0; i < this.numValues; i++) {
+                values[i] = valueSparse(i);
+                indices[i] = index(i);
+            }
+            this.changed = new SparseInstanceData(values, indices, this.numAttributes);
+        }
+        return this.changed;
+    }
+
+    /**
+     * Serializes the data instead of the mapped file.
+     */
+    protected Object writeReplace() {
+        return change();
+    }
+}
@@ -31,6 +31,16 @@ public class SparseInstance extends InstanceImpl {
         super(d, res);
     }
 
+    /**
+     * Instantiates a new sparse instance.
+     *
+     * @param weight the weight
+     * @param instanceData the instance data
+     */
+    public SparseInstance(double weight, InstanceData instanceData) {
+        super(weight, instanceData);
+    }
+
     /**
      * Instantiates a new sparse instance.
      *
@@ -19,7 +19,8 @@
  */
 package moa;
 
-import moa.core.SerializeUtils;
+import moa.core.ByteSizeEstimable;
+import moa.core.StructuralCopier;
 import moa.core.SizeOf;
 
 /**
@@ -54,14 +55,15 @@ public abstract class AbstractMOAObject implements MOAObject {
     }
 
     /**
-     * This method produces a copy of an object.
+     * This method produces a deep copy of an object, equivalent to 
+     * serializing and deserializing it (see StructuralCopier).
      *
      * @param obj object to copy
      * @return a copy of the object
      */
     public static MOAObject copy(MOAObject obj) {
         try {
-            return (MOAObject) SerializeUtils.copyObject(obj);
+            return (MOAObject) StructuralCopier.deepCopy(obj);
         } catch (Exception e) {
             throw new RuntimeException("Object copy failed.", e);
         }
@@ -76,4 +78,19 @@ public abstract class AbstractMOAObject implements MOAObject {
     public static int measureByteSize(MOAObject obj) {
         return (int) SizeOf.fullSizeOf(obj);
     }
+
+    /**
+     * Gets an estimate of the memory size of an object, which is cheap for 
+     * objects that keep track of their size (see ByteSizeEstimable). The 
+     * size of any other object is measured with measureByteSize().
+     *
+     * @param obj object to estimate the memory size
+     * @return the estimated memory size of this object
+     */
+    public static int estimateByteSize(MOAObject obj) {
+        if (obj instanceof ByteSizeEstimable) {
+            return ((ByteSizeEstimable) obj).estimateByteSize();
+        }
+        return obj.measureByteSize();
+    }
 }
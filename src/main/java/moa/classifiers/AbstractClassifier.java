@@ -53,6 +53,10 @@ import moa.core.Utils;
 public abstract class AbstractClassifier extends AbstractOptionHandler
         implements Classifier { //Learner<Example<Instance>> {
 
+    /** Name of the model measurement of the size of the model, which is an
+     * estimate for models that keep one (see ByteSizeEstimable) */
+    public static final String MODEL_SIZE_MEASUREMENT = "model serialized size (bytes)";
+
     @Override
     public String getPurposeString() {
         return "MOA Classifier: " + getClass().getCanonicalName();
@@ -178,13 +182,87 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         }
     }
 
+    @Override
+    public void trainOnInstances(Instance[] instances) {
+        for (Instance inst : instances) {
+            trainOnInstance(inst);
+        }
+    }
+
+    @Override
+    public void trainOnInstances(Instances instances) {
+        Instance[] batch = new Instance[instances.numInstances()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = instances.instance(i);
+        }
+        trainOnInstances(batch);
+    }
+
+    @Override
+    public double[][] getVotesForInstances(Instance[] instances) {
+        double[][] votes = new double[instances.length][];
+        for (int i = 0; i < instances.length; i++) {
+            votes[i] = getVotesForInstance(instances[i]);
+        }
+        return votes;
+    }
+
+    @Override
+    public double[][] getVotesForInstances(Instances instances) {
+        double[][] votes = new double[instances.numInstances()][];
+        for (int i = 0; i < votes.length; i++) {
+            votes[i] = getVotesForInstance(instances.instance(i));
+        }
+        return votes;
+    }
+
+    /**
+     * Helper for classifiers that override trainOnInstances. Selects the 
+     * instances that trainOnInstance would use for training (positive weight
+     * and, unless this is a semi-supervised learner, a class value) and adds 
+     * their weights to trainingWeightSeenByModel.
+     *
+     * @param instances the batch of instances
+     * @return the instances to be used for training, in order
+     */
+    protected Instance[] prepareTrainingBatch(Instance[] instances) {
+        int numTraining = 0;
+        for (Instance inst : instances) {
+            if (isTrainingInstance(inst)) {
+                numTraining++;
+            }
+        }
+        Instance[] batch = instances;
+        if (numTraining < instances.length) {
+            batch = new Instance[numTraining];
+            int j = 0;
+            for (Instance inst : instances) {
+                if (isTrainingInstance(inst)) {
+                    batch[j++] = inst;
+                }
+            }
+        }
+        for (Instance inst : batch) {
+            this.trainingWeightSeenByModel += inst.weight();
+        }
+        return batch;
+    }
+
+    private boolean isTrainingInstance(Instance inst) {
+        if (this instanceof SemiSupervisedLearner == false &&
+                inst.classIsMissing() == true){
+            return false;
+        }
+        return inst.weight() > 0.0;
+    }
+
     @Override
     public Measurement[] getModelMeasurements() {
         List<Measurement> measurementList = new LinkedList<Measurement>();
         measurementList.add(new Measurement("model training instances",
                 trainingWeightSeenByModel()));
-        measurementList.add(new Measurement("model serialized size (bytes)",
-                measureByteSize()));
+        measurementList.add(new Measurement(MODEL_SIZE_MEASUREMENT,
+                estimateByteSize(this)));
         Measurement[] modelMeasurements = getModelMeasurementsImpl();
         if (modelMeasurements != null) {
             measurementList.addAll(Arrays.asList(modelMeasurements));
@@ -24,6 +24,7 @@ import moa.learners.Learner;
 
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.InstanceData;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.Prediction;
 
 /**
@@ -76,6 +77,41 @@ public interface Classifier extends Learner<Example<Instance>> {
      * test instance in each class
      */
     public double[] getVotesForInstance(Instance inst);
+
+    /**
+     * Trains this learner incrementally using the given instances, in order.
+     * The outcome must be the same as calling trainOnInstance for each
+     * instance, although learners may reorganize their work internally, e.g.,
+     * to synchronize threads only once per batch.
+     *
+     * @param instances the instances to be used for training
+     */
+    public void trainOnInstances(Instance[] instances);
+
+    /**
+     * Trains this learner incrementally using all the instances of a dataset.
+     *
+     * @param instances the instances to be used for training
+     */
+    public void trainOnInstances(Instances instances);
+
+    /**
+     * Predicts the class memberships for a batch of instances.
+     *
+     * @param instances the instances to be classified
+     * @return one array of votes per instance, as returned by 
+     * getVotesForInstance
+     */
+    public double[][] getVotesForInstances(Instance[] instances);
+
+    /**
+     * Predicts the class memberships for all the instances of a dataset.
+     *
+     * @param instances the instances to be classified
+     * @return one array of votes per instance, as returned by 
+     * getVotesForInstance
+     */
+    public double[][] getVotesForInstances(Instances instances);
     
     /**
      * Sets the reference to the header of the data stream. The header of the
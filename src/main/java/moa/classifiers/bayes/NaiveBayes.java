@@ -19,6 +19,8 @@
  */
 package moa.classifiers.bayes;
 
+import java.util.Arrays;
+
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
@@ -131,21 +133,69 @@ public class NaiveBayes extends AbstractClassifier {
             DoubleVector observedClassDistribution,
             AutoExpandVector<AttributeClassObserver> attributeObservers) {
         double[] votes = new double[observedClassDistribution.numValues()];
+        doNaiveBayesPrediction(inst, observedClassDistribution, attributeObservers, votes);
+        return votes;
+    }
+
+    /**
+     * Same as doNaiveBayesPrediction(inst, observedClassDistribution, 
+     * attributeObservers), but the votes are written into the given array. 
+     * Entries after the returned number of votes are set to 0.
+     *
+     * @return the number of votes, i.e., observedClassDistribution.numValues()
+     */
+    public static int doNaiveBayesPrediction(Instance inst,
+            DoubleVector observedClassDistribution,
+            AutoExpandVector<AttributeClassObserver> attributeObservers, 
+            double[] votes) {
+        int numVotes = observedClassDistribution.numValues();
         double observedClassSum = observedClassDistribution.sumOfValues();
-        for (int classIndex = 0; classIndex < votes.length; classIndex++) {
-            votes[classIndex] = observedClassDistribution.getValue(classIndex)
-                    / observedClassSum;
-            for (int attIndex = 0; attIndex < inst.numAttributes() - 1; attIndex++) {
-                int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex,
-                        inst);
-                AttributeClassObserver obs = attributeObservers.get(attIndex);
-                if ((obs != null) && !inst.isMissing(instAttIndex)) {
-                    votes[classIndex] *= obs.probabilityOfAttributeValueGivenClass(inst.value(instAttIndex), classIndex);
-                }
-            }
+        for (int classIndex = 0; classIndex < numVotes; classIndex++) {
+            votes[classIndex] = naiveBayesVote(inst, observedClassDistribution,
+                    observedClassSum, attributeObservers, classIndex);
         }
         // TODO: need logic to prevent underflow?
-        return votes;
+        Arrays.fill(votes, numVotes, votes.length, 0.0);
+        return numVotes;
+    }
+
+    /**
+     * Returns the class predicted by Naive Bayes, i.e., 
+     * Utils.maxIndex(doNaiveBayesPrediction(inst, observedClassDistribution, 
+     * attributeObservers)), without allocating the votes.
+     */
+    public static int doNaiveBayesClassification(Instance inst,
+            DoubleVector observedClassDistribution,
+            AutoExpandVector<AttributeClassObserver> attributeObservers) {
+        double observedClassSum = observedClassDistribution.sumOfValues();
+        double maximum = 0.0;
+        int maxIndex = 0;
+        for (int classIndex = 0; classIndex < observedClassDistribution.numValues(); classIndex++) {
+            double vote = naiveBayesVote(inst, observedClassDistribution,
+                    observedClassSum, attributeObservers, classIndex);
+            if ((classIndex == 0) || (vote > maximum)) {
+                maxIndex = classIndex;
+                maximum = vote;
+            }
+        }
+        return maxIndex;
+    }
+
+    private static double naiveBayesVote(Instance inst,
+            DoubleVector observedClassDistribution, double observedClassSum,
+            AutoExpandVector<AttributeClassObserver> attributeObservers, 
+            int classIndex) {
+        double vote = observedClassDistribution.getValue(classIndex)
+                / observedClassSum;
+        for (int attIndex = 0; attIndex < inst.numAttributes() - 1; attIndex++) {
+            int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex,
+                    inst);
+            AttributeClassObserver obs = attributeObservers.get(attIndex);
+            if ((obs != null) && !inst.isMissing(instAttIndex)) {
+                vote *= obs.probabilityOfAttributeValueGivenClass(inst.value(instAttIndex), classIndex);
+            }
+        }
+        return vote;
     }
 
     // Naive Bayes Prediction using log10 for VFDR rules 
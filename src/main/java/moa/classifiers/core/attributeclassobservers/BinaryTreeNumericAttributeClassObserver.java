@@ -24,8 +24,10 @@ import java.io.Serializable;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.ByteSizeEstimable;
 import moa.core.DoubleVector;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
 
@@ -38,10 +40,14 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class BinaryTreeNumericAttributeClassObserver extends AbstractOptionHandler
-        implements NumericAttributeClassObserver {
+        implements NumericAttributeClassObserver, BufferedAttributeClassObserver,
+        ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
 
+    // number of splits given at once to a BatchSplitCriterion
+    protected static final int BATCH_SIZE = 64;
+
     public class Node implements Serializable {
 
         private static final long serialVersionUID = 1L;
@@ -63,18 +69,20 @@ public class BinaryTreeNumericAttributeClassObserver extends AbstractOptionHandl
 
         public void insertValue(double val, int label, double weight) {
             if (val == this.cut_point) {
-                this.classCountsLeft.addToValue(label, weight);
+                addToCount(this.classCountsLeft, label, weight);
             } else if (val <= this.cut_point) {
-                this.classCountsLeft.addToValue(label, weight);
+                addToCount(this.classCountsLeft, label, weight);
                 if (this.left == null) {
                     this.left = new Node(val, label, weight);
+                    addNodeByteSize(this.left);
                 } else {
                     this.left.insertValue(val, label, weight);
                 }
             } else { // val > cut_point
-                this.classCountsRight.addToValue(label, weight);
+                addToCount(this.classCountsRight, label, weight);
                 if (this.right == null) {
                     this.right = new Node(val, label, weight);
+                    addNodeByteSize(this.right);
                 } else {
                     this.right.insertValue(val, label, weight);
                 }
@@ -84,18 +92,60 @@ public class BinaryTreeNumericAttributeClassObserver extends AbstractOptionHandl
 
     public Node root = null;
 
+    // Size of this observer, kept up to date as nodes are added once it was
+    // measured, 0 if it must be measured again (see estimateByteSize)
+    protected transient int byteSize;
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Double.isNaN(attVal)) { //Instance.isMissingValue(attVal)
         } else {
             if (this.root == null) {
                 this.root = new Node(attVal, classVal, weight);
+                addNodeByteSize(this.root);
             } else {
                 this.root.insertValue(attVal, classVal, weight);
             }
         }
     }
 
+    /**
+     * Adds weight to the count of label, and the growth of the counts (if 
+     * any) to the size of this observer.
+     */
+    protected void addToCount(DoubleVector counts, int label, double weight) {
+        if (this.byteSize > 0 && label >= counts.numValues()) {
+            long size = SizeOf.fullSizeOf(counts);
+            counts.addToValue(label, weight);
+            this.byteSize += SizeOf.fullSizeOf(counts) - size;
+        } else {
+            counts.addToValue(label, weight);
+        }
+    }
+
+    /**
+     * Adds the size of a new node, which has no children yet, to the size of
+     * this observer.
+     */
+    protected void addNodeByteSize(Node node) {
+        if (this.byteSize > 0) {
+            this.byteSize += SizeOf.sizeOf(node) + SizeOf.fullSizeOf(node.classCountsLeft)
+                    + SizeOf.fullSizeOf(node.classCountsRight);
+        }
+    }
+
+    /**
+     * Size of this observer, measured once and then updated as its nodes
+     * are created or observe a new class, so that it does not walk the tree.
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
@@ -107,8 +157,157 @@ public class BinaryTreeNumericAttributeClassObserver extends AbstractOptionHandl
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
             SplitCriterion criterion, double[] preSplitDist, int attIndex,
             boolean binaryOnly) {
-        return searchForBestSplitOption(this.root, null, null, null, null, false,
-                criterion, preSplitDist, attIndex);
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex,
+                binaryOnly, new SplitEvaluationBuffers());
+    }
+
+    /**
+     * Visits the nodes in the same order as searchForBestSplitOption, with
+     * the same arithmetic on the class counts, but fills the scratch buffers
+     * instead of creating vectors, and evaluates the splits in batches.
+     */
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers) {
+        if (this.root == null) {
+            return null;
+        }
+        SplitSearch search = new SplitSearch(criterion, preSplitDist,
+                numClasses(this.root), buffers);
+        search.visit(this.root, null, false, 0);
+        search.evaluatePendingSplits();
+        return new AttributeSplitSuggestion(new NumericAttributeBinaryTest(attIndex,
+                search.bestCutPoint, true), search.bestDists, search.bestMerit);
+    }
+
+    protected static int numClasses(Node node) {
+        int numClasses = 0;
+        while (node != null) {
+            numClasses = Math.max(numClasses, Math.max(node.classCountsLeft.numValues(),
+                    node.classCountsRight.numValues()));
+            numClasses = Math.max(numClasses, numClasses(node.left));
+            node = node.right;
+        }
+        return numClasses;
+    }
+
+    /**
+     * State of a split search in scratch buffers. The distributions of the
+     * nodes on the path to the current node are kept in the running
+     * distributions, those of the splits waiting for evaluation in the split
+     * distributions.
+     */
+    protected static class SplitSearch {
+
+        protected final SplitCriterion criterion;
+
+        protected final double[] preSplitDist;
+
+        protected final int numClasses;
+
+        protected final SplitEvaluationBuffers buffers;
+
+        protected final double[] pendingDists;
+
+        protected final double[] pendingCutPoints;
+
+        protected int numPending;
+
+        protected double[][] bestDists;
+
+        protected double bestCutPoint;
+
+        protected double bestMerit;
+
+        protected SplitSearch(SplitCriterion criterion, double[] preSplitDist,
+                int numClasses, SplitEvaluationBuffers buffers) {
+            this.criterion = criterion;
+            this.preSplitDist = preSplitDist;
+            this.numClasses = numClasses;
+            this.buffers = buffers;
+            this.pendingDists = buffers.splitDists(BATCH_SIZE * 2 * numClasses);
+            this.pendingCutPoints = buffers.splitValues(BATCH_SIZE);
+        }
+
+        protected void visit(Node node, Node parent, boolean leftChild, int depth) {
+            if (node == null) {
+                return;
+            }
+            int numClasses = this.numClasses;
+            int splitSize = 2 * numClasses;
+            double[] running = this.buffers.runningDists((depth + 1) * splitSize);
+            int left = depth * splitSize;
+            int right = left + numClasses;
+            double[] countsLeft = node.classCountsLeft.getArrayRef();
+            double[] countsRight = node.classCountsRight.getArrayRef();
+            if (parent == null) {
+                for (int c = 0; c < numClasses; c++) {
+                    running[left + c] = value(countsLeft, c);
+                    running[right + c] = value(countsRight, c);
+                }
+            } else if (leftChild) {
+                int parentLeft = left - splitSize;
+                int parentRight = parentLeft + numClasses;
+                double[] actualParentLeft = parent.classCountsLeft.getArrayRef();
+                for (int c = 0; c < numClasses; c++) {
+                    // the exact statistics of the parent value
+                    double exactParent = value(actualParentLeft, c)
+                            - value(countsLeft, c) - value(countsRight, c);
+                    running[left + c] = running[parentLeft + c]
+                            - value(countsRight, c) - exactParent;
+                    running[right + c] = running[parentRight + c]
+                            + value(countsRight, c) + exactParent;
+                }
+            } else {
+                int parentLeft = left - splitSize;
+                int parentRight = parentLeft + numClasses;
+                for (int c = 0; c < numClasses; c++) {
+                    running[left + c] = running[parentLeft + c] + value(countsLeft, c);
+                    running[right + c] = running[parentRight + c] - value(countsLeft, c);
+                }
+            }
+            System.arraycopy(running, left, this.pendingDists,
+                    this.numPending * splitSize, splitSize);
+            this.pendingCutPoints[this.numPending] = node.cut_point;
+            this.numPending++;
+            if (this.numPending == BATCH_SIZE) {
+                evaluatePendingSplits();
+            }
+            visit(node.left, node, true, depth + 1);
+            visit(node.right, node, false, depth + 1);
+        }
+
+        protected static double value(double[] counts, int index) {
+            return index < counts.length ? counts[index] : 0.0;
+        }
+
+        /**
+         * Evaluates the pending splits, keeping the first visited split and
+         * then only strictly better ones, like searchForBestSplitOption.
+         */
+        protected void evaluatePendingSplits() {
+            if (this.numPending == 0) {
+                return;
+            }
+            int numClasses = this.numClasses;
+            double[] merits = this.buffers.evaluateSplits(this.criterion,
+                    this.preSplitDist, this.numPending, 2, numClasses);
+            for (int s = 0; s < this.numPending; s++) {
+                if (this.bestDists == null || merits[s] > this.bestMerit) {
+                    if (this.bestDists == null) {
+                        this.bestDists = new double[2][numClasses];
+                    }
+                    System.arraycopy(this.pendingDists, 2 * s * numClasses,
+                            this.bestDists[0], 0, numClasses);
+                    System.arraycopy(this.pendingDists, (2 * s + 1) * numClasses,
+                            this.bestDists[1], 0, numClasses);
+                    this.bestCutPoint = this.pendingCutPoints[s];
+                    this.bestMerit = merits[s];
+                }
+            }
+            this.numPending = 0;
+        }
     }
 
     protected AttributeSplitSuggestion searchForBestSplitOption(
@@ -0,0 +1,47 @@
+/*
+ *    BufferedAttributeClassObserver.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+
+/**
+ * Observer that evaluates its candidate splits in scratch buffers supplied
+ * by the caller, so that the observers of the leaves of a tree share the
+ * buffers of the tree instead of keeping their own.
+ *
+ * @version $Revision: 1 $
+ */
+public interface BufferedAttributeClassObserver extends AttributeClassObserver {
+
+    /**
+     * Gets the best split suggestion given a criterion and a class
+     * distribution, like getBestEvaluatedSplitSuggestion without buffers.
+     *
+     * @param criterion the split criterion to use
+     * @param preSplitDist the class distribution before the split
+     * @param attIndex the attribute index
+     * @param binaryOnly true to use binary splits
+     * @param buffers the scratch buffers of the evaluation
+     * @return suggestion of best attribute split
+     */
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers);
+}
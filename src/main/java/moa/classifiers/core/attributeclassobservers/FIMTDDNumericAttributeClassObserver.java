@@ -129,6 +129,24 @@ public class FIMTDDNumericAttributeClassObserver extends BinaryTreeNumericAttrib
         return 0.0;
     }
 
+    /**
+     * Measures this observer, whose nodes are not those of the class
+     * observer it extends and do not update its size.
+     */
+    @Override
+    public int estimateByteSize() {
+        return measureByteSize();
+    }
+
+    /**
+     * Searches the regression statistics of this observer, which do not use
+     * the buffers of the class observer it extends.
+     */
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(SplitCriterion criterion, double[] preSplitDist, int attIndex, boolean binaryOnly, SplitEvaluationBuffers buffers) {
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex, binaryOnly);
+    }
+
     @Override
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(SplitCriterion criterion, double[] preSplitDist, int attIndex, boolean binaryOnly) {
 
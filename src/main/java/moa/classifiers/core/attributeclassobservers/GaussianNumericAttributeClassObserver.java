@@ -23,15 +23,16 @@ import moa.core.ObjectRepository;
 import moa.tasks.TaskMonitor;
 import moa.core.Utils;
 
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeEstimable;
 import moa.core.DoubleVector;
 import moa.core.GaussianEstimator;
+import moa.core.SizeOf;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.IntOption;
 
@@ -44,7 +45,8 @@ import com.github.javacliparser.IntOption;
  * @version $Revision: 7 $
  */
 public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
-        implements NumericAttributeClassObserver {
+        implements NumericAttributeClassObserver, BufferedAttributeClassObserver,
+        ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
 
@@ -57,16 +59,27 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public IntOption numBinsOption = new IntOption("numBins", 'n',
             "The number of bins.", 10, 1, Integer.MAX_VALUE);
 
+    // Size of this observer, kept up to date as it grows once it was
+    // measured, 0 if it must be measured (see estimateByteSize)
+    protected transient int byteSize;
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Utils.isMissingValue(attVal)) {
         } else {
             GaussianEstimator valDist = this.attValDistPerClass.get(classVal);
             if (valDist == null) {
+                int numClasses = this.attValDistPerClass.size();
                 valDist = new GaussianEstimator();
                 this.attValDistPerClass.set(classVal, valDist);
+                // as large as its size, like after add(), for perClassByteSizeIncrease
+                this.attValDistPerClass.trimToSize();
+                int numValues = this.minValueObservedPerClass.numValues();
                 this.minValueObservedPerClass.setValue(classVal, attVal);
                 this.maxValueObservedPerClass.setValue(classVal, attVal);
+                if (this.byteSize > 0) {
+                    this.byteSize += perClassByteSizeIncrease(valDist, numClasses, numValues);
+                }
             } else {
                 if (attVal < this.minValueObservedPerClass.getValue(classVal)) {
                     this.minValueObservedPerClass.setValue(classVal, attVal);
@@ -79,6 +92,37 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
         }
     }
 
+    /**
+     * Increase of the size of the statistics kept for each class when a new
+     * class is observed: the new estimator, and the arrays that grew from
+     * their previous lengths to the current ones.
+     *
+     * @param valDist the estimator of the new class
+     * @param numClasses the previous length of attValDistPerClass
+     * @param numValues the previous length of the min and max value vectors
+     */
+    protected long perClassByteSizeIncrease(GaussianEstimator valDist,
+            int numClasses, int numValues) {
+        int newNumValues = this.minValueObservedPerClass.numValues();
+        return SizeOf.sizeOf(valDist)
+                + SizeOf.sizeOfArray(Object.class, this.attValDistPerClass.size())
+                - SizeOf.sizeOfArray(Object.class, numClasses)
+                + 2 * (SizeOf.sizeOfArray(double.class, newNumValues)
+                - SizeOf.sizeOfArray(double.class, numValues));
+    }
+
+    /**
+     * Size of this observer, measured once and then updated as it observes
+     * new classes, so that its options are not walked again.
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
@@ -90,23 +134,61 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
             SplitCriterion criterion, double[] preSplitDist, int attIndex,
             boolean binaryOnly) {
-        AttributeSplitSuggestion bestSuggestion = null;
-        double[] suggestedSplitValues = getSplitPointSuggestions();
-        for (double splitValue : suggestedSplitValues) {
-            double[][] postSplitDists = getClassDistsResultingFromBinarySplit(splitValue);
-            double merit = criterion.getMeritOfSplit(preSplitDist,
-                    postSplitDists);
-            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
-                bestSuggestion = new AttributeSplitSuggestion(
-                        new NumericAttributeBinaryTest(attIndex, splitValue,
-                        true), postSplitDists, merit);
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex,
+                binaryOnly, new SplitEvaluationBuffers());
+    }
+
+    /**
+     * Evaluates the candidate splits in the scratch buffers, in one call if
+     * the criterion is a BatchSplitCriterion, and only creates the suggestion
+     * of the best one.
+     */
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers) {
+        int numBins = this.numBinsOption.getValue();
+        double[] splitValues = buffers.splitValues(numBins);
+        int numSplitValues = getSplitPointSuggestions(splitValues);
+        if (numSplitValues == 0) {
+            return null;
+        }
+        int numClasses = this.attValDistPerClass.size();
+        int splitSize = 2 * numClasses;
+        double[] splitDists = buffers.splitDists(numSplitValues * splitSize);
+        for (int i = 0; i < numSplitValues; i++) {
+            getClassDistsResultingFromBinarySplit(splitValues[i], splitDists,
+                    i * splitSize, buffers.weights());
+        }
+        double[] merits = buffers.evaluateSplits(criterion, preSplitDist,
+                numSplitValues, 2, numClasses);
+        int best = 0;
+        for (int i = 1; i < numSplitValues; i++) {
+            if (merits[i] > merits[best]) {
+                best = i;
             }
         }
-        return bestSuggestion;
+        double splitValue = splitValues[best];
+        return new AttributeSplitSuggestion(
+                new NumericAttributeBinaryTest(attIndex, splitValue, true),
+                getClassDistsResultingFromBinarySplit(splitValue), merits[best]);
     }
 
     public double[] getSplitPointSuggestions() {
-        Set<Double> suggestedSplitValues = new TreeSet<Double>();
+        double[] suggestions = new double[this.numBinsOption.getValue()];
+        return Arrays.copyOf(suggestions, getSplitPointSuggestions(suggestions));
+    }
+
+    /**
+     * Computes the split point suggestions, in increasing order, without
+     * allocating.
+     *
+     * @param suggestions the array receiving the suggestions, of at least
+     * numBins elements
+     * @return the number of suggestions
+     */
+    protected int getSplitPointSuggestions(double[] suggestions) {
+        int numSuggestions = 0;
         double minValue = Double.POSITIVE_INFINITY;
         double maxValue = Double.NEGATIVE_INFINITY;
         for (int i = 0; i < this.attValDistPerClass.size(); i++) {
@@ -125,17 +207,14 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
             for (int i = 0; i < this.numBinsOption.getValue(); i++) {
                 double splitValue = range / (this.numBinsOption.getValue() + 1.0) * (i + 1)
                         + minValue;
-                if ((splitValue > minValue) && (splitValue < maxValue)) {
-                    suggestedSplitValues.add(splitValue);
+                // the values increase with i, so duplicates are consecutive
+                if ((splitValue > minValue) && (splitValue < maxValue)
+                        && (numSuggestions == 0 || splitValue != suggestions[numSuggestions - 1])) {
+                    suggestions[numSuggestions++] = splitValue;
                 }
             }
         }
-        double[] suggestions = new double[suggestedSplitValues.size()];
-        int i = 0;
-        for (double suggestion : suggestedSplitValues) {
-            suggestions[i++] = suggestion;
-        }
-        return suggestions;
+        return numSuggestions;
     }
 
     // assume all values equal to splitValue go to lhs
@@ -159,6 +238,34 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
         return new double[][]{lhsDist.getArrayRef(), rhsDist.getArrayRef()};
     }
 
+    /**
+     * Computes the class distributions resulting from a binary split without
+     * allocating. The distribution of the left branch is stored from the
+     * offset, followed by the one of the right branch, with one element per
+     * class. weightDist is a scratch array of 3 elements.
+     */
+    protected void getClassDistsResultingFromBinarySplit(double splitValue,
+            double[] dists, int offset, double[] weightDist) {
+        int numClasses = this.attValDistPerClass.size();
+        int lhs = offset;
+        int rhs = offset + numClasses;
+        Arrays.fill(dists, offset, offset + 2 * numClasses, 0.0);
+        for (int i = 0; i < numClasses; i++) {
+            GaussianEstimator estimator = this.attValDistPerClass.get(i);
+            if (estimator != null) {
+                if (splitValue < this.minValueObservedPerClass.getValue(i)) {
+                    dists[rhs + i] += estimator.getTotalWeightObserved();
+                } else if (splitValue >= this.maxValueObservedPerClass.getValue(i)) {
+                    dists[lhs + i] += estimator.getTotalWeightObserved();
+                } else {
+                    estimator.estimatedWeight_LessThan_EqualTo_GreaterThan_Value(splitValue, weightDist);
+                    dists[lhs + i] += weightDist[0] + weightDist[1];
+                    dists[rhs + i] += weightDist[2];
+                }
+            }
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
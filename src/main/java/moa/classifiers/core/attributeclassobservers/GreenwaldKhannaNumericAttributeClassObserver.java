@@ -25,6 +25,7 @@ import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.Utils;
 
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeEstimable;
 import moa.core.DoubleVector;
 import moa.core.GreenwaldKhannaQuantileSummary;
 import moa.core.ObjectRepository;
@@ -40,7 +41,8 @@ import moa.tasks.TaskMonitor;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class GreenwaldKhannaNumericAttributeClassObserver extends AbstractOptionHandler implements NumericAttributeClassObserver {
+public class GreenwaldKhannaNumericAttributeClassObserver extends AbstractOptionHandler implements NumericAttributeClassObserver, BufferedAttributeClassObserver,
+        ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
 
@@ -49,6 +51,10 @@ public class GreenwaldKhannaNumericAttributeClassObserver extends AbstractOption
     public IntOption numTuplesOption = new IntOption("numTuples", 'n',
         "The number of tuples.", 10, 1, Integer.MAX_VALUE);
 
+    // Size of this observer when it last grew, 0 if it must be measured
+    // again (see estimateByteSize)
+    protected transient int byteSize;
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Utils.isMissingValue(attVal)) {
@@ -58,9 +64,26 @@ public class GreenwaldKhannaNumericAttributeClassObserver extends AbstractOption
                 valDist = new GreenwaldKhannaQuantileSummary(this.numTuplesOption.getValue());
                 this.attValDistPerClass.set(classVal, valDist);
             }
+            int numTuples = valDist.getNumTuples();
             // TODO: not taking weight into account
             valDist.insert(attVal);
+            if (valDist.getNumTuples() != numTuples) {
+                this.byteSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Size of this observer, measured again only after it changed size
+     * (i.e. when the number of tuples of a summary changed, which stops once
+     * the summaries are full).
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
         }
+        return this.byteSize;
     }
 
     @Override
@@ -74,24 +97,76 @@ public class GreenwaldKhannaNumericAttributeClassObserver extends AbstractOption
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
             SplitCriterion criterion, double[] preSplitDist, int attIndex,
             boolean binaryOnly) {
-        AttributeSplitSuggestion bestSuggestion = null;
-        for (GreenwaldKhannaQuantileSummary qs : this.attValDistPerClass) {
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex,
+                binaryOnly, new SplitEvaluationBuffers());
+    }
+
+    /**
+     * Evaluates the cut points suggested by the summaries of all the classes
+     * in the scratch buffers, in one call if the criterion is a
+     * BatchSplitCriterion, and only creates the suggestion of the best one.
+     */
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers) {
+        int numClasses = this.attValDistPerClass.size();
+        int numSplits = 0;
+        double[][] cutpointsPerClass = new double[numClasses][];
+        for (int i = 0; i < numClasses; i++) {
+            GreenwaldKhannaQuantileSummary qs = this.attValDistPerClass.get(i);
             if (qs != null) {
-                double[] cutpoints = qs.getSuggestedCutpoints();
-                for (double cutpoint : cutpoints) {
-                    double[][] postSplitDists = getClassDistsResultingFromBinarySplit(cutpoint);
-                    double merit = criterion.getMeritOfSplit(preSplitDist,
-                            postSplitDists);
-                    if ((bestSuggestion == null)
-                            || (merit > bestSuggestion.merit)) {
-                        bestSuggestion = new AttributeSplitSuggestion(
-                                new NumericAttributeBinaryTest(attIndex,
-                                cutpoint, true), postSplitDists, merit);
-                    }
+                cutpointsPerClass[i] = qs.getSuggestedCutpoints();
+                numSplits += cutpointsPerClass[i].length;
+            }
+        }
+        if (numSplits == 0) {
+            return null;
+        }
+        int splitSize = 2 * numClasses;
+        double[] cutpoints = buffers.splitValues(numSplits);
+        double[] dists = buffers.splitDists(numSplits * splitSize);
+        int s = 0;
+        for (double[] classCutpoints : cutpointsPerClass) {
+            if (classCutpoints != null) {
+                for (double cutpoint : classCutpoints) {
+                    cutpoints[s] = cutpoint;
+                    getClassDistsResultingFromBinarySplit(cutpoint, dists, s * splitSize);
+                    s++;
                 }
             }
         }
-        return bestSuggestion;
+        double[] merits = buffers.evaluateSplits(criterion, preSplitDist,
+                numSplits, 2, numClasses);
+        int best = 0;
+        for (s = 1; s < numSplits; s++) {
+            if (merits[s] > merits[best]) {
+                best = s;
+            }
+        }
+        return new AttributeSplitSuggestion(new NumericAttributeBinaryTest(attIndex,
+                cutpoints[best], true), getClassDistsResultingFromBinarySplit(cutpoints[best]),
+                merits[best]);
+    }
+
+    /**
+     * Computes the class distributions resulting from a binary split without
+     * allocating, the left branch from the offset followed by the right one.
+     */
+    protected void getClassDistsResultingFromBinarySplit(double splitValue,
+            double[] dists, int offset) {
+        int numClasses = this.attValDistPerClass.size();
+        for (int i = 0; i < numClasses; i++) {
+            GreenwaldKhannaQuantileSummary estimator = this.attValDistPerClass.get(i);
+            if (estimator != null) {
+                long countBelow = estimator.getCountBelow(splitValue);
+                dists[offset + i] = countBelow;
+                dists[offset + numClasses + i] = estimator.getTotalCount() - countBelow;
+            } else {
+                dists[offset + i] = 0.0;
+                dists[offset + numClasses + i] = 0.0;
+            }
+        }
     }
 
     // assume all values equal to splitValue go to lhs
@@ -19,6 +19,7 @@
  */
 package moa.classifiers.core.attributeclassobservers;
 
+import java.util.Arrays;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
 import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
@@ -28,7 +29,9 @@ import moa.tasks.TaskMonitor;
 import moa.core.Utils;
 
 import moa.core.AutoExpandVector;
+import moa.core.ByteSizeEstimable;
 import moa.core.DoubleVector;
+import moa.core.SizeOf;
 import moa.options.AbstractOptionHandler;
 
 /**
@@ -40,7 +43,8 @@ import moa.options.AbstractOptionHandler;
  * @version $Revision: 7 $
  */
 public class NominalAttributeClassObserver extends AbstractOptionHandler implements
-        DiscreteAttributeClassObserver {
+        DiscreteAttributeClassObserver, BufferedAttributeClassObserver,
+        ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
 
@@ -50,6 +54,10 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
 
     public AutoExpandVector<DoubleVector> attValDistPerClass = new AutoExpandVector<DoubleVector>();
 
+    // Size of this observer, kept up to date as it grows once it was
+    // measured, 0 if it must be measured (see estimateByteSize)
+    protected transient int byteSize;
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
         if (Utils.isMissingValue(attVal)) {
@@ -57,15 +65,34 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
         } else {
             int attValInt = (int) attVal;
             DoubleVector valDist = this.attValDistPerClass.get(classVal);
+            // the counts only grow for a new class or value
+            long countsSize = this.byteSize > 0 && (valDist == null
+                    || attValInt >= valDist.numValues())
+                    ? SizeOf.fullSizeOf(this.attValDistPerClass) : -1;
             if (valDist == null) {
                 valDist = new DoubleVector();
                 this.attValDistPerClass.set(classVal, valDist);
             }
             valDist.addToValue(attValInt, weight);
+            if (countsSize >= 0) {
+                this.byteSize += SizeOf.fullSizeOf(this.attValDistPerClass) - countsSize;
+            }
         }
         this.totalWeightObserved += weight;
     }
 
+    /**
+     * Size of this observer, measured once and then updated as it observes
+     * new classes and values.
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
@@ -86,27 +113,79 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
             SplitCriterion criterion, double[] preSplitDist, int attIndex,
             boolean binaryOnly) {
-        AttributeSplitSuggestion bestSuggestion = null;
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex,
+                binaryOnly, new SplitEvaluationBuffers());
+    }
+
+    /**
+     * Evaluates the multiway split and the binary splits in the scratch
+     * buffers, the binary splits in one call if the criterion is a
+     * BatchSplitCriterion, and only creates the suggestion of the best one.
+     */
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers) {
         int maxAttValsObserved = getMaxAttValsObserved();
+        int numClasses = this.attValDistPerClass.size();
+        boolean multiway = false;
+        double multiwayMerit = 0.0;
         if (!binaryOnly) {
-            double[][] postSplitDists = getClassDistsResultingFromMultiwaySplit(maxAttValsObserved);
-            double merit = criterion.getMeritOfSplit(preSplitDist,
-                    postSplitDists);
-            bestSuggestion = new AttributeSplitSuggestion(
-                    new NominalAttributeMultiwayTest(attIndex), postSplitDists,
-                    merit);
+            double[] dists = buffers.splitDists(maxAttValsObserved * numClasses);
+            Arrays.fill(dists, 0, maxAttValsObserved * numClasses, 0.0);
+            for (int i = 0; i < numClasses; i++) {
+                DoubleVector attValDist = this.attValDistPerClass.get(i);
+                if (attValDist != null) {
+                    for (int j = 0; j < attValDist.numValues(); j++) {
+                        dists[j * numClasses + i] += attValDist.getValue(j);
+                    }
+                }
+            }
+            multiway = true;
+            multiwayMerit = buffers.evaluateSplits(criterion, preSplitDist, 1,
+                    maxAttValsObserved, numClasses)[0];
+        }
+        int splitSize = 2 * numClasses;
+        double[] dists = buffers.splitDists(maxAttValsObserved * splitSize);
+        Arrays.fill(dists, 0, maxAttValsObserved * splitSize, 0.0);
+        for (int valIndex = 0; valIndex < maxAttValsObserved; valIndex++) {
+            int equals = valIndex * splitSize;
+            int notEqual = equals + numClasses;
+            for (int i = 0; i < numClasses; i++) {
+                DoubleVector attValDist = this.attValDistPerClass.get(i);
+                if (attValDist != null) {
+                    for (int j = 0; j < attValDist.numValues(); j++) {
+                        if (j == valIndex) {
+                            dists[equals + i] += attValDist.getValue(j);
+                        } else {
+                            dists[notEqual + i] += attValDist.getValue(j);
+                        }
+                    }
+                }
+            }
         }
+        double[] merits = buffers.evaluateSplits(criterion, preSplitDist,
+                maxAttValsObserved, 2, numClasses);
+        int best = -1;
+        double bestMerit = multiwayMerit;
         for (int valIndex = 0; valIndex < maxAttValsObserved; valIndex++) {
-            double[][] postSplitDists = getClassDistsResultingFromBinarySplit(valIndex);
-            double merit = criterion.getMeritOfSplit(preSplitDist,
-                    postSplitDists);
-            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
-                bestSuggestion = new AttributeSplitSuggestion(
-                        new NominalAttributeBinaryTest(attIndex, valIndex),
-                        postSplitDists, merit);
+            if ((!multiway && best < 0) || (merits[valIndex] > bestMerit)) {
+                best = valIndex;
+                bestMerit = merits[valIndex];
             }
         }
-        return bestSuggestion;
+        if (best >= 0) {
+            return new AttributeSplitSuggestion(
+                    new NominalAttributeBinaryTest(attIndex, best),
+                    getClassDistsResultingFromBinarySplit(best), bestMerit);
+        }
+        if (multiway) {
+            return new AttributeSplitSuggestion(
+                    new NominalAttributeMultiwayTest(attIndex),
+                    getClassDistsResultingFromMultiwaySplit(maxAttValsObserved),
+                    multiwayMerit);
+        }
+        return null;
     }
 
     public int getMaxAttValsObserved() {
@@ -21,6 +21,7 @@ package moa.classifiers.core.attributeclassobservers;
 
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.ByteSizeEstimable;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
@@ -34,14 +35,25 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class NullAttributeClassObserver extends AbstractOptionHandler implements
-        AttributeClassObserver {
+        AttributeClassObserver, ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
 
+    // Size of this observer, which never changes, 0 until measured
+    protected transient int byteSize;
+
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
     }
 
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
@@ -0,0 +1,436 @@
+/*
+ *    SortedArrayNumericAttributeClassObserver.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import com.github.javacliparser.IntOption;
+import java.util.Arrays;
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.AutoExpandVector;
+import moa.core.ByteSizeEstimable;
+import moa.core.GaussianEstimator;
+import moa.core.ObjectRepository;
+import moa.core.StringUtils;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Class for observing the class data distribution for a numeric attribute
+ * exhaustively, like {@link BinaryTreeNumericAttributeClassObserver}, but
+ * with the observed values and their class counts stored in sorted arrays.
+ *
+ * <p>Every observed value is a cut point, and the splits are evaluated in
+ * order of value with cumulative class counts, so the cost of inserting and
+ * searching does not depend on the order of the values: sorted or slowly
+ * drifting values are appended at the end of the arrays instead of making
+ * the binary tree degenerate into a list. With integer weights and no
+ * maxCutPoints, the split suggestions are the same as the ones of the binary
+ * tree, including between splits of equal merit: the binary tree keeps the
+ * first one it visits, and the order of its visit (root, left, right) is
+ * found again from the order in which the values were first observed.</p>
+ *
+ * <p>Like {@link GaussianNumericAttributeClassObserver}, the probability of a
+ * value given a class is estimated from a normal distribution per class.</p>
+ *
+ * <p>If maxCutPoints is set, the two closest cut points are merged whenever
+ * the number of cut points exceeds it. The counts of the smaller value are
+ * added to the larger one, so the remaining splits stay exact. The gaps
+ * between adjacent cut points are kept in a heap, so that finding the
+ * closest ones does not scan the cut points at each insertion.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class SortedArrayNumericAttributeClassObserver extends AbstractOptionHandler
+        implements NumericAttributeClassObserver, BufferedAttributeClassObserver,
+        ByteSizeEstimable {
+
+    private static final long serialVersionUID = 1L;
+
+    // number of splits given at once to a BatchSplitCriterion
+    protected static final int BATCH_SIZE = 64;
+
+    public IntOption maxCutPointsOption = new IntOption("maxCutPoints", 'm',
+            "Maximum number of cut points kept, 0 for no limit.", 0, 0,
+            Integer.MAX_VALUE);
+
+    /** The observed values, in increasing order. */
+    protected double[] cutPoints = new double[16];
+
+    /** The order in which the values were first observed. */
+    protected int[] observationOrder = new int[16];
+
+    /**
+     * The class counts of each value, classCountsStride elements per value.
+     */
+    protected double[] classCounts = new double[16];
+
+    protected int classCountsStride = 1;
+
+    protected int numCutPoints;
+
+    protected int numObservedValues;
+
+    /**
+     * Heap of the gaps between adjacent cut points, smallest gap first and
+     * then smallest cut point, used once maxCutPoints is reached. Each gap
+     * is stored with its smaller cut point. Gaps of cut points that are no
+     * longer adjacent are left in the heap and skipped when they come first.
+     */
+    protected double[] gapHeap;
+
+    protected double[] gapHeapLeft;
+
+    protected int gapHeapSize;
+
+    protected AutoExpandVector<GaussianEstimator> attValDistPerClass = new AutoExpandVector<GaussianEstimator>();
+
+    // Size of this observer when it last grew, 0 if it must be measured
+    // again (see estimateByteSize)
+    protected transient int byteSize;
+
+    @Override
+    public void observeAttributeClass(double attVal, int classVal, double weight) {
+        if (Double.isNaN(attVal)) { //Instance.isMissingValue(attVal)
+            return;
+        }
+        if (classVal >= this.classCountsStride) {
+            setClassCountsStride(classVal + 1);
+        }
+        int index = Arrays.binarySearch(this.cutPoints, 0, this.numCutPoints, attVal);
+        if (index < 0) {
+            index = -index - 1;
+            insertCutPoint(index, attVal);
+            if (this.gapHeap != null) {
+                // the gap around the new cut point is split in two
+                if (index > 0) {
+                    pushGap(index - 1);
+                }
+                if (index + 1 < this.numCutPoints) {
+                    pushGap(index);
+                }
+            }
+        }
+        this.classCounts[index * this.classCountsStride + classVal] += weight;
+        GaussianEstimator valDist = this.attValDistPerClass.get(classVal);
+        if (valDist == null) {
+            valDist = new GaussianEstimator();
+            this.attValDistPerClass.set(classVal, valDist);
+            this.byteSize = 0;
+        }
+        valDist.addObservation(attVal, weight);
+        int maxCutPoints = this.maxCutPointsOption.getValue();
+        if (maxCutPoints > 0 && this.numCutPoints > maxCutPoints) {
+            mergeClosestCutPoints();
+        }
+    }
+
+    protected void insertCutPoint(int index, double value) {
+        int stride = this.classCountsStride;
+        if (this.numCutPoints == this.cutPoints.length) {
+            int capacity = 2 * this.cutPoints.length;
+            this.cutPoints = Arrays.copyOf(this.cutPoints, capacity);
+            this.observationOrder = Arrays.copyOf(this.observationOrder, capacity);
+            this.classCounts = Arrays.copyOf(this.classCounts, capacity * stride);
+            this.byteSize = 0;
+        }
+        int numMoved = this.numCutPoints - index;
+        System.arraycopy(this.cutPoints, index, this.cutPoints, index + 1, numMoved);
+        System.arraycopy(this.observationOrder, index, this.observationOrder, index + 1, numMoved);
+        System.arraycopy(this.classCounts, index * stride, this.classCounts,
+                (index + 1) * stride, numMoved * stride);
+        this.cutPoints[index] = value;
+        this.observationOrder[index] = this.numObservedValues++;
+        Arrays.fill(this.classCounts, index * stride, (index + 1) * stride, 0.0);
+        this.numCutPoints++;
+    }
+
+    protected void setClassCountsStride(int stride) {
+        double[] counts = new double[this.cutPoints.length * stride];
+        for (int i = 0; i < this.numCutPoints; i++) {
+            System.arraycopy(this.classCounts, i * this.classCountsStride,
+                    counts, i * stride, this.classCountsStride);
+        }
+        this.classCounts = counts;
+        this.classCountsStride = stride;
+        this.byteSize = 0;
+    }
+
+    /**
+     * Merges the two adjacent cut points with the smallest difference, into
+     * the larger one. Of equal differences, the smallest cut points are
+     * merged.
+     */
+    protected void mergeClosestCutPoints() {
+        if (this.gapHeap == null || this.gapHeapSize > 4 * this.numCutPoints) {
+            // first merge, or too many gaps of cut points no longer adjacent
+            rebuildGapHeap();
+        }
+        int merged;
+        while (true) {
+            double gap = this.gapHeap[0];
+            double left = this.gapHeapLeft[0];
+            popGap();
+            merged = Arrays.binarySearch(this.cutPoints, 0, this.numCutPoints, left);
+            if (merged >= 0 && merged + 1 < this.numCutPoints
+                    && this.cutPoints[merged + 1] - left == gap) {
+                break;
+            }
+        }
+        int stride = this.classCountsStride;
+        for (int c = 0; c < stride; c++) {
+            this.classCounts[(merged + 1) * stride + c] += this.classCounts[merged * stride + c];
+        }
+        this.observationOrder[merged + 1] = Math.min(this.observationOrder[merged],
+                this.observationOrder[merged + 1]);
+        int numMoved = this.numCutPoints - merged - 1;
+        System.arraycopy(this.cutPoints, merged + 1, this.cutPoints, merged, numMoved);
+        System.arraycopy(this.observationOrder, merged + 1, this.observationOrder, merged, numMoved);
+        System.arraycopy(this.classCounts, (merged + 1) * stride, this.classCounts,
+                merged * stride, numMoved * stride);
+        this.numCutPoints--;
+        if (merged > 0) {
+            // the gaps on both sides of the smaller cut point are joined
+            pushGap(merged - 1);
+        }
+    }
+
+    protected void rebuildGapHeap() {
+        int capacity = Math.max(16, 4 * this.numCutPoints + 2);
+        if (this.gapHeap == null || this.gapHeap.length < capacity) {
+            this.gapHeap = new double[capacity];
+            this.gapHeapLeft = new double[capacity];
+            this.byteSize = 0;
+        }
+        this.gapHeapSize = 0;
+        for (int i = 0; i + 1 < this.numCutPoints; i++) {
+            pushGap(i);
+        }
+    }
+
+    /**
+     * Adds the gap between cut point i and the next one to the heap.
+     */
+    protected void pushGap(int i) {
+        if (this.gapHeapSize == this.gapHeap.length) {
+            this.gapHeap = Arrays.copyOf(this.gapHeap, 2 * this.gapHeapSize);
+            this.gapHeapLeft = Arrays.copyOf(this.gapHeapLeft, 2 * this.gapHeapSize);
+            this.byteSize = 0;
+        }
+        double gap = this.cutPoints[i + 1] - this.cutPoints[i];
+        double left = this.cutPoints[i];
+        int child = this.gapHeapSize++;
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (!gapBefore(gap, left, this.gapHeap[parent], this.gapHeapLeft[parent])) {
+                break;
+            }
+            this.gapHeap[child] = this.gapHeap[parent];
+            this.gapHeapLeft[child] = this.gapHeapLeft[parent];
+            child = parent;
+        }
+        this.gapHeap[child] = gap;
+        this.gapHeapLeft[child] = left;
+    }
+
+    /**
+     * Removes the first gap of the heap.
+     */
+    protected void popGap() {
+        int size = --this.gapHeapSize;
+        double gap = this.gapHeap[size];
+        double left = this.gapHeapLeft[size];
+        int parent = 0;
+        while (2 * parent + 1 < size) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && gapBefore(this.gapHeap[child + 1], this.gapHeapLeft[child + 1],
+                    this.gapHeap[child], this.gapHeapLeft[child])) {
+                child++;
+            }
+            if (!gapBefore(this.gapHeap[child], this.gapHeapLeft[child], gap, left)) {
+                break;
+            }
+            this.gapHeap[parent] = this.gapHeap[child];
+            this.gapHeapLeft[parent] = this.gapHeapLeft[child];
+            parent = child;
+        }
+        this.gapHeap[parent] = gap;
+        this.gapHeapLeft[parent] = left;
+    }
+
+    /**
+     * Whether a gap comes before another one in the heap.
+     */
+    protected static boolean gapBefore(double gap, double left, double otherGap,
+            double otherLeft) {
+        return gap < otherGap || (gap == otherGap && left < otherLeft);
+    }
+
+    /**
+     * Gets the number of cut points kept.
+     */
+    public int getNumCutPoints() {
+        return this.numCutPoints;
+    }
+
+    /**
+     * Size of this observer, measured again only after it grew (i.e. when its
+     * arrays were enlarged or it observed a new class).
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
+    @Override
+    public double probabilityOfAttributeValueGivenClass(double attVal,
+            int classVal) {
+        GaussianEstimator obs = this.attValDistPerClass.get(classVal);
+        return obs != null ? obs.probabilityDensity(attVal) : 0.0;
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly) {
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex,
+                binaryOnly, new SplitEvaluationBuffers());
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers) {
+        if (this.numCutPoints == 0) {
+            return null;
+        }
+        int numClasses = this.classCountsStride;
+        int splitSize = 2 * numClasses;
+        double[] dists = buffers.splitDists(BATCH_SIZE * splitSize);
+        // the distributions of the current split, left then right
+        double[] running = buffers.runningDists(splitSize);
+        Arrays.fill(running, 0, splitSize, 0.0);
+        for (int i = 0; i < this.numCutPoints; i++) {
+            for (int c = 0; c < numClasses; c++) {
+                running[numClasses + c] += this.classCounts[i * numClasses + c];
+            }
+        }
+        // The binary tree built from the values is the one with the first
+        // observed value at its root, and so on in each subtree. It visits
+        // its root first, and of two values, the one with the larger value
+        // first unless that one is observed before all the values in between
+        // (then it is their ancestor). It keeps the first split it visits,
+        // even with a NaN merit, and then only replaces it by a strictly
+        // better split.
+        int first = -1;
+        double firstMerit = 0.0;
+        int best = -1;
+        double bestMerit = 0.0;
+        // the first observation among the values from best to the current one
+        int minOrderSinceBest = 0;
+        for (int start = 0; start < this.numCutPoints; start += BATCH_SIZE) {
+            int numSplits = Math.min(BATCH_SIZE, this.numCutPoints - start);
+            for (int s = 0; s < numSplits; s++) {
+                int offset = (start + s) * numClasses;
+                for (int c = 0; c < numClasses; c++) {
+                    double count = this.classCounts[offset + c];
+                    running[c] += count;
+                    running[numClasses + c] -= count;
+                }
+                System.arraycopy(running, 0, dists, s * splitSize, splitSize);
+            }
+            double[] merits = buffers.evaluateSplits(criterion, preSplitDist,
+                    numSplits, 2, numClasses);
+            for (int s = 0; s < numSplits; s++) {
+                int i = start + s;
+                double merit = merits[s];
+                int order = this.observationOrder[i];
+                if (first < 0 || order < this.observationOrder[first]) {
+                    first = i;
+                    firstMerit = merit;
+                }
+                if (!Double.isNaN(merit) && (best < 0 || merit > bestMerit
+                        || (merit == bestMerit && order < minOrderSinceBest))) {
+                    best = i;
+                    bestMerit = merit;
+                    minOrderSinceBest = order;
+                } else if (best >= 0) {
+                    minOrderSinceBest = Math.min(minOrderSinceBest, order);
+                }
+            }
+        }
+        if (best < 0 || Double.isNaN(firstMerit)) {
+            best = first;
+            bestMerit = firstMerit;
+        }
+        double[][] postSplitDists = new double[2][numClasses];
+        for (int i = 0; i <= best; i++) {
+            for (int c = 0; c < numClasses; c++) {
+                postSplitDists[0][c] += this.classCounts[i * numClasses + c];
+            }
+        }
+        for (int i = best + 1; i < this.numCutPoints; i++) {
+            for (int c = 0; c < numClasses; c++) {
+                postSplitDists[1][c] += this.classCounts[i * numClasses + c];
+            }
+        }
+        return new AttributeSplitSuggestion(new NumericAttributeBinaryTest(attIndex,
+                this.cutPoints[best], true), postSplitDists, bestMerit);
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        StringUtils.appendIndented(sb, indent, "Sorted array of "
+                + this.numCutPoints + " cut points");
+        if (this.numCutPoints > 0) {
+            sb.append(" from ");
+            sb.append(StringUtils.doubleToString(this.cutPoints[0], 4));
+            sb.append(" to ");
+            sb.append(StringUtils.doubleToString(this.cutPoints[this.numCutPoints - 1], 4));
+        }
+        sb.append(", ");
+        sb.append(this.classCountsStride);
+        sb.append(this.classCountsStride == 1 ? " class" : " classes");
+        int maxCutPoints = this.maxCutPointsOption.getValue();
+        if (maxCutPoints > 0) {
+            sb.append(", at most ");
+            sb.append(maxCutPoints);
+            sb.append(" cut points");
+        }
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        // the arrays grow as values are observed, maxCutPoints is read at
+        // each observation
+    }
+
+    /**
+     * Not supported: the cut points keep class counts, use
+     * FIMTDDNumericAttributeClassObserver to observe regression targets.
+     */
+    @Override
+    public void observeAttributeTarget(double attVal, double target) {
+        throw new UnsupportedOperationException(
+                "SortedArrayNumericAttributeClassObserver observes classes, not regression targets.");
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *    SplitEvaluationBuffers.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+import moa.classifiers.core.splitcriteria.BatchSplitCriterion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+
+/**
+ * Scratch arrays for the evaluation of the candidate splits of an attribute,
+ * owned by whoever attempts the splits (for instance one per tree) and lent
+ * to the observer of each attribute in turn. The arrays only grow, so after
+ * the first split attempts the evaluation does not allocate.
+ *
+ * <p>Not thread safe: the owner must not let two threads use the same
+ * buffers at once.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class SplitEvaluationBuffers {
+
+    protected double[] splitValues = new double[0];
+
+    // the distributions of the splits, in the layout of BatchSplitCriterion
+    protected double[] splitDists = new double[0];
+
+    protected double[] merits = new double[0];
+
+    protected double[] runningDists = new double[0];
+
+    protected double[] weights = new double[3];
+
+    // one split for criteria that are not BatchSplitCriterion
+    protected double[][] postSplitDists = new double[0][];
+
+    /**
+     * Gets an array for the values of the candidate splits.
+     */
+    public double[] splitValues(int size) {
+        if (this.splitValues.length < size) {
+            this.splitValues = new double[grow(size)];
+        }
+        return this.splitValues;
+    }
+
+    /**
+     * Gets an array for the class distributions after the candidate splits,
+     * in the layout of {@link BatchSplitCriterion}.
+     */
+    public double[] splitDists(int size) {
+        if (this.splitDists.length < size) {
+            this.splitDists = new double[grow(size)];
+        }
+        return this.splitDists;
+    }
+
+    /**
+     * Gets the array receiving the merits of {@link #evaluateSplits}.
+     */
+    public double[] merits(int size) {
+        if (this.merits.length < size) {
+            this.merits = new double[grow(size)];
+        }
+        return this.merits;
+    }
+
+    /**
+     * Gets an array for distributions updated while the splits are filled,
+     * such as the class counts on each side of a moving cut point. Unlike
+     * the other arrays, it keeps its contents when it grows.
+     */
+    public double[] runningDists(int size) {
+        if (this.runningDists.length < size) {
+            this.runningDists = Arrays.copyOf(this.runningDists,
+                    Math.max(size, 2 * this.runningDists.length));
+        }
+        return this.runningDists;
+    }
+
+    /**
+     * Gets an array for the weights less than, equal to and greater than a
+     * value of an estimator.
+     */
+    public double[] weights() {
+        return this.weights;
+    }
+
+    protected static int grow(int size) {
+        return Math.max(size, 16);
+    }
+
+    /**
+     * Computes the merits of the splits stored in {@link #splitDists}, in one
+     * call if the criterion is a BatchSplitCriterion and otherwise one split
+     * at a time. The merits are stored in {@link #merits}.
+     *
+     * @param criterion the split criterion
+     * @param preSplitDist the class distribution before the splits
+     * @param numSplits the number of splits
+     * @param numBranches the number of branches of each split
+     * @param numClasses the number of classes of each distribution
+     * @return the merits
+     */
+    public double[] evaluateSplits(SplitCriterion criterion, double[] preSplitDist,
+            int numSplits, int numBranches, int numClasses) {
+        double[] meritsOfSplits = merits(numSplits);
+        if (criterion instanceof BatchSplitCriterion) {
+            ((BatchSplitCriterion) criterion).getMeritsOfSplits(preSplitDist,
+                    this.splitDists, numSplits, numBranches, numClasses, meritsOfSplits);
+            return meritsOfSplits;
+        }
+        if (this.postSplitDists.length != numBranches
+                || (numBranches > 0 && this.postSplitDists[0].length != numClasses)) {
+            this.postSplitDists = new double[numBranches][numClasses];
+        }
+        for (int s = 0; s < numSplits; s++) {
+            for (int b = 0; b < numBranches; b++) {
+                System.arraycopy(this.splitDists, (s * numBranches + b) * numClasses,
+                        this.postSplitDists[b], 0, numClasses);
+            }
+            meritsOfSplits[s] = criterion.getMeritOfSplit(preSplitDist, this.postSplitDists);
+        }
+        return meritsOfSplits;
+    }
+}
@@ -23,11 +23,13 @@ import moa.core.Utils;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 
+import moa.core.ByteSizeEstimable;
 import moa.core.DoubleVector;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
@@ -42,7 +44,8 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
-        implements NumericAttributeClassObserver {
+        implements NumericAttributeClassObserver, BufferedAttributeClassObserver,
+        ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
 
@@ -69,6 +72,10 @@ public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
     public IntOption numBinsOption = new IntOption("numBins", 'n',
         "The number of bins.", 10, 1, Integer.MAX_VALUE);
 
+    // Size of this observer when it last grew, 0 if it must be measured
+    // again (see estimateByteSize)
+    protected transient int byteSize;
+
 
     @Override
     public void observeAttributeClass(double attVal, int classVal, double weight) {
@@ -83,6 +90,7 @@ public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
                 newBin.upperBound = attVal;
                 newBin.lowerBound = attVal;
                 this.binList.add(newBin);
+                this.byteSize = 0;
             } else {
                 // find bin containing new example with binary search
                 int index = -1;
@@ -129,6 +137,9 @@ public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
                     // boundary or we aren't adding new bins any more then
                     // increment
                     // boundary counts
+                    if (classVal >= bin.classWeights.numValues()) {
+                        this.byteSize = 0;
+                    }
                     bin.classWeights.addToValue(classVal, weight);
                     if ((bin.boundaryClass == classVal)
                             && (bin.lowerBound == attVal)) {
@@ -138,6 +149,7 @@ public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
                 } else {
                     // create a new bin
                     Bin newBin = new Bin();
+                    this.byteSize = 0;
                     newBin.classWeights.addToValue(classVal, weight);
                     newBin.boundaryWeight = weight;
                     newBin.boundaryClass = classVal;
@@ -180,6 +192,18 @@ public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
         }
     }
 
+    /**
+     * Size of this observer, measured again only after it grew (i.e. when
+     * it created a bin or a bin observed a new class).
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
     @Override
     public double probabilityOfAttributeValueGivenClass(double attVal,
             int classVal) {
@@ -191,26 +215,59 @@ public class VFMLNumericAttributeClassObserver extends AbstractOptionHandler
     public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
             SplitCriterion criterion, double[] preSplitDist, int attIndex,
             boolean binaryOnly) {
-        AttributeSplitSuggestion bestSuggestion = null;
-        DoubleVector rightDist = new DoubleVector();
+        return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex,
+                binaryOnly, new SplitEvaluationBuffers());
+    }
+
+    /**
+     * Evaluates the split at the upper bound of every bin in the scratch
+     * buffers, in one call if the criterion is a BatchSplitCriterion, and
+     * only creates the suggestion of the best one.
+     */
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly, SplitEvaluationBuffers buffers) {
+        int numSplits = this.binList.size();
+        if (numSplits == 0) {
+            return null;
+        }
+        int numClasses = 0;
         for (Bin bin : this.binList) {
-            rightDist.addValues(bin.classWeights);
+            numClasses = Math.max(numClasses, bin.classWeights.numValues());
         }
-        DoubleVector leftDist = new DoubleVector();
+        int splitSize = 2 * numClasses;
+        double[] dists = buffers.splitDists(numSplits * splitSize);
+        // the distributions of the current split, left then right
+        double[] running = buffers.runningDists(splitSize);
+        Arrays.fill(running, 0, splitSize, 0.0);
         for (Bin bin : this.binList) {
-            leftDist.addValues(bin.classWeights);
-            rightDist.subtractValues(bin.classWeights);
-            double[][] postSplitDists = new double[][]{
-                leftDist.getArrayCopy(), rightDist.getArrayCopy()};
-            double merit = criterion.getMeritOfSplit(preSplitDist,
-                    postSplitDists);
-            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
-                bestSuggestion = new AttributeSplitSuggestion(
-                        new NumericAttributeBinaryTest(attIndex,
-                        bin.upperBound, false), postSplitDists, merit);
+            double[] weights = bin.classWeights.getArrayRef();
+            for (int c = 0; c < weights.length; c++) {
+                running[numClasses + c] += weights[c];
+            }
+        }
+        for (int s = 0; s < numSplits; s++) {
+            double[] weights = this.binList.get(s).classWeights.getArrayRef();
+            for (int c = 0; c < weights.length; c++) {
+                running[c] += weights[c];
+                running[numClasses + c] -= weights[c];
+            }
+            System.arraycopy(running, 0, dists, s * splitSize, splitSize);
+        }
+        double[] merits = buffers.evaluateSplits(criterion, preSplitDist,
+                numSplits, 2, numClasses);
+        int best = 0;
+        for (int s = 1; s < numSplits; s++) {
+            if (merits[s] > merits[best]) {
+                best = s;
             }
         }
-        return bestSuggestion;
+        double[][] postSplitDists = new double[2][numClasses];
+        System.arraycopy(dists, best * splitSize, postSplitDists[0], 0, numClasses);
+        System.arraycopy(dists, best * splitSize + numClasses, postSplitDists[1], 0, numClasses);
+        return new AttributeSplitSuggestion(new NumericAttributeBinaryTest(attIndex,
+                this.binList.get(best).upperBound, false), postSplitDists, merits[best]);
     }
 
     @Override
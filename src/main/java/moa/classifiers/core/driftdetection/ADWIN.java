@@ -19,7 +19,11 @@
  */
 package moa.classifiers.core.driftdetection;
 
+import java.util.Arrays;
 import moa.AbstractMOAObject;
+import moa.core.ByteSizeEstimable;
+import moa.core.SizeOf;
+import moa.core.StructuralCopier;
 
 /**
  * ADaptive sliding WINdow method. This method is a change detector and estimator.
@@ -32,254 +36,7 @@ import moa.AbstractMOAObject;
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
  */
-public class ADWIN extends AbstractMOAObject {
-
-    private class List extends AbstractMOAObject {
-
-        protected int count;
-
-        protected ListItem head;
-
-        protected ListItem tail;
-
-        public List() {
-//			post: initializes the list to be empty.
-            clear();
-            addToHead();
-        }
-
-        /* Interface Store Methods */
-        public int size() {
-            //	post: returns the number of elements in the list.
-            return this.count;
-        }
-
-        public ListItem head() {
-            //	post: returns the number of elements in the list.
-            return this.head;
-        }
-
-        public ListItem tail() {
-            //	post: returns the number of elements in the list.
-            return this.tail;
-        }
-
-        public boolean isEmpty() {
-            //	 post: returns the true iff store is empty.
-            return (this.size() == 0);
-        }
-
-        public void clear() {
-            //	 post: clears the list so that it contains no elements.
-            this.head = null;
-            this.tail = null;
-            this.count = 0;
-        }
-
-        /* Interface List Methods */
-        public void addToHead() {
-            //	 pre: anObject is non-null
-            //	 post: the object is added to the beginning of the list
-            this.head = new ListItem(this.head, null);
-            if (this.tail == null) {
-                this.tail = this.head;
-            }
-            this.count++;
-        }
-
-        public void removeFromHead() {
-            //		 pre: list is not empty
-            //		 post: removes and returns first object from the list
-//			ListItem temp;
-//			temp = this.head;
-            this.head = this.head.next();
-            if (this.head != null) {
-                this.head.setPrevious(null);
-            } else {
-                this.tail = null;
-            }
-            this.count--;
-            //temp=null;
-            return;
-        }
-
-        public void addToTail() {
-//			pre: anObject is non-null
-//			post: the object is added at the end of the list
-            this.tail = new ListItem(null, this.tail);
-            if (this.head == null) {
-                this.head = this.tail;
-            }
-            this.count++;
-        }
-
-        public void removeFromTail() {
-//			pre: list is not empty
-//			post: the last object in the list is removed and returned
-//			ListItem temp;
-//			temp = this.tail;
-            this.tail = this.tail.previous();
-            if (this.tail == null) {
-                this.head = null;
-            } else {
-                this.tail.setNext(null);
-            }
-            this.count--;
-            //temp=null;
-            return;
-        }
-
-        @Override
-        public void getDescription(StringBuilder sb, int indent) {
-        }
-    }
-
-    private class ListItem extends AbstractMOAObject {
-//		protected Object data;
-
-        protected ListItem next;
-
-        protected ListItem previous;
-
-        protected int bucketSizeRow = 0;
-
-        protected int MAXBUCKETS = ADWIN.MAXBUCKETS;
-
-        protected double bucketTotal[] = new double[MAXBUCKETS + 1];
-
-        protected double bucketVariance[] = new double[MAXBUCKETS + 1];
-
-        public ListItem() {
-//			post: initializes the node to be a tail node
-//			containing the given value.
-            this(null, null);
-        }
-
-        public void clear() {
-            bucketSizeRow = 0;
-            for (int k = 0; k <= MAXBUCKETS; k++) {
-                clearBucket(k);
-            }
-        }
-
-        private void clearBucket(int k) {
-            setTotal(0, k);
-            setVariance(0, k);
-        }
-
-        public ListItem(ListItem nextNode, ListItem previousNode) {
-//			post: initializes the node to contain the given
-//			object and link to the given next node.
-            //this.data = element;
-            this.next = nextNode;
-            this.previous = previousNode;
-            if (nextNode != null) {
-                nextNode.previous = this;
-            }
-            if (previousNode != null) {
-                previousNode.next = this;
-            }
-            clear();
-        }
-
-        public void insertBucket(double Value, double Variance) {
-//			insert a Bucket at the end
-            int k = bucketSizeRow;
-            bucketSizeRow++;
-            //Insert new bucket
-            setTotal(Value, k);
-            setVariance(Variance, k);
-        }
-
-        public void RemoveBucket() {
-//			Removes the first Buvket
-            compressBucketsRow(1);
-        }
-
-        public void compressBucketsRow(int NumberItemsDeleted) {
-            //Delete first elements
-            for (int k = NumberItemsDeleted; k <= MAXBUCKETS; k++) {
-                bucketTotal[k - NumberItemsDeleted] = bucketTotal[k];
-                bucketVariance[k - NumberItemsDeleted] = bucketVariance[k];
-            }
-            for (int k = 1; k <= NumberItemsDeleted; k++) {
-                clearBucket(MAXBUCKETS - k + 1);
-            }
-            bucketSizeRow -= NumberItemsDeleted;
-            //BucketNumber-=NumberItemsDeleted;
-        }
-
-        public ListItem previous() {
-//			post: returns the previous node.
-            return this.previous;
-        }
-
-        public void setPrevious(ListItem previous) {
-//			post: sets the previous node to be the given node
-            this.previous = previous;
-        }
-
-        public ListItem next() {
-//			post: returns the next node.
-            return this.next;
-        }
-
-        public void setNext(ListItem next) {
-//			post: sets the next node to be the given node
-            this.next = next;
-        }
-
-        public double Total(int k) {
-//			post: returns the element in this node
-            return bucketTotal[k];
-        }
-
-        public double Variance(int k) {
-//			post: returns the element in this node
-            return bucketVariance[k];
-        }
-
-        public void setTotal(double value, int k) {
-//			post: sets the element in this node to the given
-//			object.
-            bucketTotal[k] = value;
-        }
-
-        public void setVariance(double value, int k) {
-//			post: sets the element in this node to the given
-//			object.
-            bucketVariance[k] = value;
-        }
-        /*
-        public ListItem(Object element,
-        ListItem nextNode){
-        //		post: initializes the node to contain the given
-        //		 object and link to the given next node.
-        this.data = element;
-        this.next = nextNode;
-        }
-        public ListItem(Object element) {
-        //		post: initializes the node to be a tail node
-        //		 containing the given value.
-        this(element, null);
-        }
-
-
-        public Object value() {
-        //			 post: returns the element in this node
-        return this.data;
-        }
-        public void setValue(Object anObject) {
-        //			 post: sets the element in this node to the given
-        //			 object.
-        this.data = anObject;
-        }
-         */
-
-        @Override
-        public void getDescription(StringBuilder sb, int indent) {
-        }
-    }
+public class ADWIN extends AbstractMOAObject implements StructuralCopier.Copyable, ByteSizeEstimable {
 
     public static final double DELTA = .002; //.1;
 
@@ -296,6 +53,10 @@ public class ADWIN extends AbstractMOAObject {
 
     public static final int MAXBUCKETS = 5;
 
+    // Number of slots of a row of buckets, which holds up to MAXBUCKETS
+    // buckets plus the one that makes it merge its two oldest buckets
+    private static final int ROW_SLOTS = MAXBUCKETS + 1;
+
     private int lastBucketRow = 0;
 
     private double TOTAL = 0;
@@ -318,7 +79,23 @@ public class ADWIN extends AbstractMOAObject {
 
     private int mintMinWinLength = 5;
 
-    private List listRowBuckets;
+    // The exponential histogram: row i holds bucketsInRow[i] buckets of 
+    // 2^i elements, oldest first, whose totals and variances are stored
+    // from index i * ROW_SLOTS of bucketTotal and bucketVariance. Rows 0 
+    // to lastBucketRow are in use, the others are spare capacity. 
+    private int[] bucketsInRow;
+
+    private double[] bucketTotal;
+
+    private double[] bucketVariance;
+
+    // log(2 * log(width) / delta) of the cut expression, cached for the 
+    // width and delta it was computed with (width 0 when not computed)
+    private transient int cutWidth;
+
+    private transient double cutDelta;
+
+    private transient double cutLogTerm;
 
     public boolean getChange() {
         return blnBucketDeleted;
@@ -336,6 +113,24 @@ public class ADWIN extends AbstractMOAObject {
         return WIDTH;
     }
 
+    /**
+     * Same as measureByteSize(), computed from the sizes of the arrays of 
+     * buckets. 
+     */
+    @Override
+    public int estimateByteSize() {
+        long[] sizes = {SizeOf.sizeOf(this), SizeOf.sizeOf(bucketsInRow), 
+            SizeOf.sizeOf(bucketTotal), SizeOf.sizeOf(bucketVariance)};
+        long size = 0;
+        for (long s : sizes) {
+            if (s < 0) {
+                return -1;
+            }
+            size += s;
+        }
+        return (int) size;
+    }
+
     public void setClock(int intClock) {
         mintClock = intClock;
     }
@@ -374,7 +169,9 @@ public class ADWIN extends AbstractMOAObject {
 
     private void initBuckets() {
         //Init buckets
-        listRowBuckets = new List();
+        bucketsInRow = new int[8];
+        bucketTotal = new double[bucketsInRow.length * ROW_SLOTS];
+        bucketVariance = new double[bucketsInRow.length * ROW_SLOTS];
         lastBucketRow = 0;
         TOTAL = 0;
         VARIANCE = 0;
@@ -384,7 +181,7 @@ public class ADWIN extends AbstractMOAObject {
 
     private void insertElement(double Value) {
         WIDTH++;
-        insertElementBucket(0, Value, listRowBuckets.head());
+        insertElementBucket(0, Value, 0);
         double incVariance = 0;
         if (WIDTH > 1) {
             incVariance = (WIDTH - 1) * (Value - TOTAL / (WIDTH - 1)) * (Value - TOTAL / (WIDTH - 1)) / WIDTH;
@@ -394,88 +191,143 @@ public class ADWIN extends AbstractMOAObject {
         compressBuckets();
     }
 
-    private void insertElementBucket(double Variance, double Value, ListItem Node) {
+    private void insertElementBucket(double Variance, double Value, int Row) {
         //Insert new bucket
-        Node.insertBucket(Value, Variance);
+        insertBucket(Row, Value, Variance);
         BucketNumber++;
         if (BucketNumber > BucketNumberMAX) {
             BucketNumberMAX = BucketNumber;
         }
     }
 
+    private void insertBucket(int Row, double Value, double Variance) {
+        //Insert a bucket at the end of the row
+        int k = Row * ROW_SLOTS + bucketsInRow[Row];
+        bucketsInRow[Row]++;
+        bucketTotal[k] = Value;
+        bucketVariance[k] = Variance;
+    }
+
+    private void compressBucketsRow(int Row, int NumberItemsDeleted) {
+        //Delete the first buckets of the row
+        int start = Row * ROW_SLOTS;
+        int remaining = bucketsInRow[Row] - NumberItemsDeleted;
+        System.arraycopy(bucketTotal, start + NumberItemsDeleted, bucketTotal, start, remaining);
+        System.arraycopy(bucketVariance, start + NumberItemsDeleted, bucketVariance, start, remaining);
+        bucketsInRow[Row] = remaining;
+    }
+
+    private void addRow() {
+        lastBucketRow++;
+        if (lastBucketRow == bucketsInRow.length) {
+            int rows = 2 * bucketsInRow.length;
+            bucketsInRow = Arrays.copyOf(bucketsInRow, rows);
+            bucketTotal = Arrays.copyOf(bucketTotal, rows * ROW_SLOTS);
+            bucketVariance = Arrays.copyOf(bucketVariance, rows * ROW_SLOTS);
+        }
+        bucketsInRow[lastBucketRow] = 0;
+    }
+
     private int bucketSize(int Row) {
-        return (int) Math.pow(2, Row);
+        return 1 << Row;
     }
 
     public int deleteElement() {
-        //LIST
         //Update statistics
-        ListItem Node;
-        Node = listRowBuckets.tail();
-        int n1 = bucketSize(lastBucketRow);
+        int Row = lastBucketRow;
+        int n1 = bucketSize(Row);
         WIDTH -= n1;
-        TOTAL -= Node.Total(0);
-        double u1 = Node.Total(0) / n1;
-        double incVariance = Node.Variance(0) + n1 * WIDTH * (u1 - TOTAL / WIDTH) * (u1 - TOTAL / WIDTH) / (n1 + WIDTH);
+        TOTAL -= bucketTotal[Row * ROW_SLOTS];
+        double u1 = bucketTotal[Row * ROW_SLOTS] / n1;
+        double incVariance = bucketVariance[Row * ROW_SLOTS] + n1 * WIDTH * (u1 - TOTAL / WIDTH) * (u1 - TOTAL / WIDTH) / (n1 + WIDTH);
         VARIANCE -= incVariance;
 
         //Delete Bucket
-        Node.RemoveBucket();
+        compressBucketsRow(Row, 1);
         BucketNumber--;
-        if (Node.bucketSizeRow == 0) {
-            listRowBuckets.removeFromTail();
+        if (bucketsInRow[Row] == 0) {
             lastBucketRow--;
         }
         return n1;
     }
 
     public void compressBuckets() {
-        //Traverse the list of buckets in increasing order
+        //Traverse the rows of buckets in increasing order
         int n1, n2;
         double u2, u1, incVariance;
-        ListItem cursor;
-        ListItem nextNode;
-        cursor = listRowBuckets.head();
         int i = 0;
         do {
             //Find the number of buckets in a row
-            int k = cursor.bucketSizeRow;
+            int k = bucketsInRow[i];
             //If the row is full, merge buckets
             if (k == MAXBUCKETS + 1) {
-                nextNode = cursor.next();
-                if (nextNode == null) {
-                    listRowBuckets.addToTail();
-                    nextNode = cursor.next();
-                    lastBucketRow++;
+                if (i == lastBucketRow) {
+                    addRow();
                 }
+                int first = i * ROW_SLOTS;
                 n1 = bucketSize(i);
                 n2 = bucketSize(i);
-                u1 = cursor.Total(0) / n1;
-                u2 = cursor.Total(1) / n2;
+                u1 = bucketTotal[first] / n1;
+                u2 = bucketTotal[first + 1] / n2;
                 incVariance = n1 * n2 * (u1 - u2) * (u1 - u2) / (n1 + n2);
 
-                nextNode.insertBucket(cursor.Total(0) + cursor.Total(1), cursor.Variance(0) + cursor.Variance(1) + incVariance);
+                insertBucket(i + 1, bucketTotal[first] + bucketTotal[first + 1], bucketVariance[first] + bucketVariance[first + 1] + incVariance);
                 BucketNumber++;
-                cursor.compressBucketsRow(2);
-                if (nextNode.bucketSizeRow <= MAXBUCKETS) {
+                compressBucketsRow(i, 2);
+                if (bucketsInRow[i + 1] <= MAXBUCKETS) {
                     break;
                 }
             } else {
                 break;
             }
-            cursor = cursor.next();
             i++;
-        } while (cursor != null);
+        } while (i <= lastBucketRow);
     }
 
     public boolean setInput(double intEntrada) {
         return setInput(intEntrada, mdbldelta);
     }
 
+    /**
+     * Adds values 0 or 1 to the window, in order from the lowest bit, as
+     * setInput would one at a time, up to the first value with which
+     * setInput would check the window for a change. The window is only
+     * checked every mintClock values, so the values before it go straight
+     * into the buckets. They are still inserted one at a time, as the
+     * variance of the window is updated with each of them.
+     *
+     * @param bits the values, from the lowest bit
+     * @param count the number of values, from 0 to 64
+     * @return the number of values added, less than count if the next value
+     * must be given to setInput
+     */
+    public int setInputsBeforeCheck(long bits, int count) {
+        int added = 0;
+        while (added < count) {
+            // Values until the next one with which mintTime is a multiple of
+            // mintClock, which is checked if the window is then wide enough
+            int toCheck = mintClock - mintTime % mintClock;
+            if (WIDTH + toCheck > mintMinimLongitudWindow) {
+                toCheck--;
+            }
+            if (toCheck == 0) {
+                break;
+            }
+            int n = Math.min(toCheck, count - added);
+            for (int i = 0; i < n; i++) {
+                insertElement((bits >>> (added + i)) & 1);
+                mdblWidth += WIDTH;
+            }
+            mintTime += n;
+            added += n;
+            blnBucketDeleted = false;
+        }
+        return added;
+    }
+
     public boolean setInput(double intEntrada, double delta) {
         boolean blnChange = false;
         boolean blnExit = false;
-        ListItem cursor;
         mintTime++;
 
         //1,2)Increment window in one element
@@ -493,37 +345,28 @@ public class ADWIN extends AbstractMOAObject {
                 int n1 = WIDTH;
                 double u0 = 0;
                 double u1 = getTotal();
-                double v0 = 0;
-                double v1 = VARIANCE;
-                double n2 = 0;
-                double u2 = 0;
 
-                cursor = listRowBuckets.tail();
+                // The variances of the two sub-windows are not needed by
+                // the cut expression, which uses the one of the window
                 int i = lastBucketRow;
                 do {
-                    for (int k = 0; k <= (cursor.bucketSizeRow - 1); k++) {
-                        n2 = bucketSize(i);
-                        u2 = cursor.Total(k);
-                        if (n0 > 0) {
-                            v0 += cursor.Variance(k) + (double) n0 * n2 * (u0 / n0 - u2 / n2) * (u0 / n0 - u2 / n2) / (n0 + n2);
-                        }
-                        if (n1 > 0) {
-                            v1 -= cursor.Variance(k) + (double) n1 * n2 * (u1 / n1 - u2 / n2) * (u1 / n1 - u2 / n2) / (n1 + n2);
-                        }
-
-                        n0 += bucketSize(i);
-                        n1 -= bucketSize(i);
-                        u0 += cursor.Total(k);
-                        u1 -= cursor.Total(k);
-
-                        if (i == 0 && k == cursor.bucketSizeRow - 1) {
+                    int first = i * ROW_SLOTS;
+                    int buckets = bucketsInRow[i];
+                    int size = bucketSize(i);
+                    for (int k = 0; k <= (buckets - 1); k++) {
+                        n0 += size;
+                        n1 -= size;
+                        u0 += bucketTotal[first + k];
+                        u1 -= bucketTotal[first + k];
+
+                        if (i == 0 && k == buckets - 1) {
                             blnExit = true;
                             break;
                         }
                         double absvalue = (double) (u0 / n0) - (u1 / n1);       //n1<WIDTH-mintMinWinLength-1
                         if ((n1 > mintMinWinLength + 1 && n0 > mintMinWinLength + 1) && // Diference NEGATIVE
                                 //if(
-                                blnCutexpression(n0, n1, u0, u1, v0, v1, absvalue, delta)) {
+                                blnCutexpression(n0, n1, absvalue, delta)) {
                             blnBucketDeleted = true;
                             Detect = mintTime;
 
@@ -545,9 +388,8 @@ public class ADWIN extends AbstractMOAObject {
                             }
                         } //End if
                     }//Next k
-                    cursor = cursor.previous();
                     i--;
-                } while (((!blnExit && cursor != null)));
+                } while (!blnExit && i >= 0);
             }//End While // Diference
         }//End if
 
@@ -558,9 +400,14 @@ public class ADWIN extends AbstractMOAObject {
         return blnChange;
     }
 
-    private boolean blnCutexpression(int n0, int n1, double u0, double u1, double v0, double v1, double absvalue, double delta) {
+    private boolean blnCutexpression(int n0, int n1, double absvalue, double delta) {
         int n = getWidth();
-        double dd = Math.log(2 * Math.log(n) / delta);     // -- ull perque el ln n va al numerador.
+        if (n != cutWidth || delta != cutDelta) {
+            cutLogTerm = Math.log(2 * Math.log(n) / delta);     // -- ull perque el ln n va al numerador.
+            cutWidth = n;
+            cutDelta = delta;
+        }
+        double dd = cutLogTerm;
         // Formula Gener 2008
         double v = getVariance();
         double m = ((double) 1 / ((n0 - mintMinWinLength + 1))) + ((double) 1 / ((n1 - mintMinWinLength + 1)));
@@ -595,6 +442,29 @@ public class ADWIN extends AbstractMOAObject {
         mintClock = cl;
     }
 
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        ADWIN copy = new ADWIN(mdbldelta);
+        copy.mintTime = mintTime;
+        copy.mintClock = mintClock;
+        copy.mdblWidth = mdblWidth;
+        copy.lastBucketRow = lastBucketRow;
+        copy.TOTAL = TOTAL;
+        copy.VARIANCE = VARIANCE;
+        copy.WIDTH = WIDTH;
+        copy.BucketNumber = BucketNumber;
+        copy.Detect = Detect;
+        copy.numberDetections = numberDetections;
+        copy.DetectTwice = DetectTwice;
+        copy.blnBucketDeleted = blnBucketDeleted;
+        copy.BucketNumberMAX = BucketNumberMAX;
+        copy.mintMinWinLength = mintMinWinLength;
+        copy.bucketsInRow = bucketsInRow.clone();
+        copy.bucketTotal = bucketTotal.clone();
+        copy.bucketVariance = bucketVariance.clone();
+        return copy;
+    }
+
     public String getEstimatorInfo() {
         return "ADWIN;;";
     }
@@ -0,0 +1,119 @@
+/*
+ *    ADWINBank.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+
+/**
+ * Bank of {@link ADWIN} windows. As in ADWINChangeDetector and the ensembles
+ * that monitor their members with ADWIN, a window detects a change when it
+ * shrinks and its mean increases. ADWIN has no warning zone.
+ *
+ * @version $Revision: 1 $
+ */
+public class ADWINBank extends ChangeDetectorBank {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final double delta;
+
+    protected final ADWIN[] windows;
+
+    /**
+     * Creates a bank of ADWIN windows.
+     *
+     * @param size the number of windows
+     * @param delta the confidence of the windows
+     */
+    public ADWINBank(int size, double delta) {
+        super(size);
+        this.delta = delta;
+        this.windows = new ADWIN[size];
+        resetLearning();
+    }
+
+    @Override
+    public boolean input(double[] inputs, BitSet active, BitSet changes, BitSet warnings) {
+        clear(changes, warnings);
+        final ADWIN[] windows = this.windows;
+        boolean change = false;
+        for (int i = nextActive(active, 0); i >= 0; i = nextActive(active, i + 1)) {
+            ADWIN window = windows[i];
+            double estimation = window.getEstimation();
+            if (window.setInput(inputs[i]) && window.getEstimation() > estimation) {
+                changes.set(i);
+                change = true;
+            }
+        }
+        return change;
+    }
+
+    @Override
+    public int input(int index, double input) {
+        ADWIN window = this.windows[index];
+        double estimation = window.getEstimation();
+        if (window.setInput(input) && window.getEstimation() > estimation) {
+            return DETECTED_CHANGE;
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the mean of a window.
+     */
+    @Override
+    public double getEstimation(int index) {
+        return this.windows[index].getEstimation();
+    }
+
+    /**
+     * Gets a window of the bank.
+     *
+     * @param index the window
+     * @return the window
+     */
+    public ADWIN getWindow(int index) {
+        return this.windows[index];
+    }
+
+    @Override
+    public void resetLearning(int index) {
+        this.windows[index] = new ADWIN(this.delta);
+    }
+
+    /**
+     * Sum of the size estimates of the windows, plus the size of the rest
+     * of the bank, which is measured only once.
+     */
+    @Override
+    public int estimateByteSize() {
+        long windowsSize = 0;
+        for (ADWIN window : this.windows) {
+            int size = window.estimateByteSize();
+            if (size < 0) {
+                return -1;
+            }
+            windowsSize += size;
+        }
+        if (this.byteSize == 0) {
+            this.byteSize = (int) (measureByteSize() - windowsSize);
+        }
+        return (int) (this.byteSize + windowsSize);
+    }
+}
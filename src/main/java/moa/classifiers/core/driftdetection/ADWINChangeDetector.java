@@ -19,6 +19,7 @@
 package moa.classifiers.core.driftdetection;
 
 import com.github.javacliparser.FloatOption;
+import moa.core.ByteSizeEstimable;
 import moa.core.ObjectRepository;
 import moa.tasks.TaskMonitor;
 
@@ -33,10 +34,13 @@ import moa.tasks.TaskMonitor;
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
  */
-public class ADWINChangeDetector extends AbstractChangeDetector {
+public class ADWINChangeDetector extends AbstractChangeDetector implements ByteSizeEstimable {
 
     protected ADWIN adwin;
 
+    // Size of everything but the window, measured on the first estimate
+    protected transient int fixedByteSize;
+
     public FloatOption deltaAdwinOption = new FloatOption("deltaAdwin", 'a',
             "Delta of Adwin change detection", 0.002, 0.0, 1.0);
 
@@ -56,11 +60,60 @@ public class ADWINChangeDetector extends AbstractChangeDetector {
         this.estimation = adwin.getEstimation();
     }
 
+    /**
+     * Adds the values between the checks of the window straight into it
+     * (see ADWIN.setInputsBeforeCheck), and gives the values with which the
+     * window is checked to input.
+     */
+    @Override
+    public int inputBatch(long bits, int count) {
+        if (this.adwin == null) {
+            resetLearning();
+        }
+        if (this.isChangeDetected) {
+            // input never clears the flag, so every value stops the batch
+            return super.inputBatch(bits, count);
+        }
+        int added = 0;
+        while (added < count) {
+            added += this.adwin.setInputsBeforeCheck(bits >>> added, count - added);
+            if (added == count) {
+                break;
+            }
+            input((bits >>> added) & 1);
+            if (this.isChangeDetected) {
+                return added;
+            }
+            added++;
+        }
+        if (count > 0) {
+            this.isWarningZone = false;
+            this.delay = 0.0;
+            this.estimation = adwin.getEstimation();
+        }
+        return -1;
+    }
+
     @Override
     public void resetLearning() {
         adwin = new ADWIN((double) this.deltaAdwinOption.getValue());
     }
 
+    @Override
+    public int estimateByteSize() {
+        if (this.adwin == null) {
+            return measureByteSize();
+        }
+        int windowSize = this.adwin.estimateByteSize();
+        if (windowSize < 0) {
+            return -1;
+        }
+        if (this.fixedByteSize == 0) {
+            this.fixedByteSize = measureByteSize() - windowSize;
+        }
+        return this.fixedByteSize + windowSize;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
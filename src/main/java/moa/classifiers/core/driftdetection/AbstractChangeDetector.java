@@ -79,6 +79,21 @@ public abstract class AbstractChangeDetector extends AbstractOptionHandler
      */
     public abstract void input(double inputValue);
 
+    /**
+     * Adds the values one at a time with input. Detectors that can add
+     * several 0/1 values at once override it.
+     */
+    @Override
+    public int inputBatch(long bits, int count) {
+        for (int i = 0; i < count; i++) {
+            input((bits >>> i) & 1);
+            if (getChange() || getWarningZone()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Gets whether there is change detected.
      *
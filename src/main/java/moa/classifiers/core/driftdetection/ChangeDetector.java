@@ -45,6 +45,19 @@ public interface ChangeDetector extends OptionHandler {
      */
     public void input(double inputValue);
 
+    /**
+     * Adds up to 64 values, 0 or 1, to the change detector, in order: the
+     * value of bit i of bits is the i-th value. Same as calling input for
+     * each value, but stops after the first value after which getChange()
+     * or getWarningZone() is true. The values after it are not added.
+     *
+     * @param bits the values, from the lowest bit
+     * @param count the number of values, from 0 to 64
+     * @return the index of the value that stopped the batch, or -1 if all
+     * the values were added
+     */
+    public int inputBatch(long bits, int count);
+
     /**
      * Gets whether there is change detected.
      *
@@ -0,0 +1,235 @@
+/*
+ *    ChangeDetectorBank.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+import moa.AbstractMOAObject;
+import moa.core.ByteSizeEstimable;
+import moa.core.StringUtils;
+
+/**
+ * A fixed number of change detectors of the same kind, updated together.
+ *
+ * <p>Ensembles monitor one stream per member, and give every detector its
+ * input at each step. A bank takes the inputs of all its detectors at once
+ * and reports the detectors that signalled a change or a warning in a
+ * {@link BitSet}. The banks of the detectors with a small state (DDM,
+ * PageHinkleyDM, HDDM_A_Test) keep the state of all their detectors in
+ * arrays, one array per field, so that the update is a single loop over
+ * primitive arrays instead of a call on each detector object. Members
+ * trained by different threads can also give their inputs one at a time
+ * with {@link #input(int, double)}, as long as no two threads use the same
+ * detector at once.</p>
+ *
+ * <p>Detector i of a bank gives the same results as a detector given the
+ * same inputs. Use {@link #newBank(ChangeDetector, int)} to get the bank of
+ * a configured detector.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public abstract class ChangeDetectorBank extends AbstractMOAObject implements ByteSizeEstimable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Bit of the result of {@link #input(int, double)} set when the detector
+     * detected a change.
+     */
+    public static final int DETECTED_CHANGE = 1;
+
+    /**
+     * Bit of the result of {@link #input(int, double)} set when the detector
+     * is in the warning zone.
+     */
+    public static final int WARNING_ZONE = 2;
+
+    protected final int size;
+
+    // Size of a bank whose size does not change, measured on the first estimate
+    protected transient int byteSize;
+
+    protected ChangeDetectorBank(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Creates a bank of detectors configured as the given one. DDM,
+     * PageHinkleyDM, HDDM_A_Test and ADWINChangeDetector have their own
+     * banks; other detectors are copied into a {@link GenericChangeDetectorBank}.
+     *
+     * @param detector the detector, whose options are used
+     * @param size the number of detectors
+     * @return the bank, with all its detectors reset
+     */
+    public static ChangeDetectorBank newBank(ChangeDetector detector, int size) {
+        Class<?> c = detector.getClass();
+        if (c == DDM.class) {
+            return new DDMBank(size, ((DDM) detector).minNumInstancesOption.getValue());
+        }
+        if (c == PageHinkleyDM.class) {
+            PageHinkleyDM ph = (PageHinkleyDM) detector;
+            return new PageHinkleyDMBank(size, ph.minNumInstancesOption.getValue(),
+                    ph.deltaOption.getValue(), ph.lambdaOption.getValue(),
+                    ph.alphaOption.getValue());
+        }
+        if (c == HDDM_A_Test.class) {
+            HDDM_A_Test hddm = (HDDM_A_Test) detector;
+            return new HDDM_A_TestBank(size, hddm.driftConfidenceOption.getValue(),
+                    hddm.warningConfidenceOption.getValue(),
+                    hddm.oneSidedTestOption.getChosenIndex() == 1);
+        }
+        if (c == ADWINChangeDetector.class) {
+            return new ADWINBank(size, ((ADWINChangeDetector) detector).deltaAdwinOption.getValue());
+        }
+        return new GenericChangeDetectorBank(detector, size);
+    }
+
+    /**
+     * Gets the number of detectors of the bank.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gives its next input to every detector of the bank. The bits of the
+     * detectors that detect a change, or are in the warning zone, after
+     * their input are set, and the other bits are cleared.
+     *
+     * @param inputs the input of each detector
+     * @param changes the detectors that detected a change
+     * @param warnings the detectors in the warning zone, or null
+     * @return whether a detector detected a change
+     */
+    public boolean input(double[] inputs, BitSet changes, BitSet warnings) {
+        return input(inputs, null, changes, warnings);
+    }
+
+    /**
+     * Gives their next input to the detectors of the bank whose bit is set
+     * in active. The other detectors are left as they are, and their bits
+     * are cleared. Banks override this method with a loop over their own
+     * state; this implementation calls {@link #input(int, double)} for each
+     * active detector.
+     *
+     * @param inputs the input of each detector
+     * @param active the detectors given an input, or null for all of them
+     * @param changes the detectors that detected a change
+     * @param warnings the detectors in the warning zone, or null
+     * @return whether a detector detected a change
+     */
+    public boolean input(double[] inputs, BitSet active, BitSet changes, BitSet warnings) {
+        clear(changes, warnings);
+        boolean change = false;
+        for (int i = nextActive(active, 0); i >= 0; i = nextActive(active, i + 1)) {
+            int state = input(i, inputs[i]);
+            if ((state & DETECTED_CHANGE) != 0) {
+                changes.set(i);
+                change = true;
+            }
+            if ((state & WARNING_ZONE) != 0 && warnings != null) {
+                warnings.set(i);
+            }
+        }
+        return change;
+    }
+
+    /**
+     * Gives its next input to a single detector of the bank, as
+     * ChangeDetector.input() would.
+     *
+     * @param index the detector
+     * @param input the input of the detector
+     * @return DETECTED_CHANGE if the detector detected a change, ored with
+     * WARNING_ZONE if it is in the warning zone
+     */
+    public abstract int input(int index, double input);
+
+    /**
+     * Gets the first detector from index on whose bit is set in active, or
+     * -1 if there is none.
+     */
+    protected int nextActive(BitSet active, int index) {
+        if (active == null) {
+            return index < this.size ? index : -1;
+        }
+        index = active.nextSetBit(index);
+        return index < this.size ? index : -1;
+    }
+
+    /**
+     * Gets the current estimation of a detector, as in
+     * ChangeDetector.getEstimation().
+     *
+     * @param index the detector
+     * @return the estimation
+     */
+    public abstract double getEstimation(int index);
+
+    /**
+     * Resets a detector, as ChangeDetector.resetLearning() would.
+     *
+     * @param index the detector
+     */
+    public abstract void resetLearning(int index);
+
+    /**
+     * Resets every detector of the bank.
+     */
+    public void resetLearning() {
+        for (int i = 0; i < this.size; i++) {
+            resetLearning(i);
+        }
+    }
+
+    /**
+     * Clears the bits of the detectors of the bank.
+     */
+    protected void clear(BitSet changes, BitSet warnings) {
+        changes.clear(0, this.size);
+        if (warnings != null) {
+            warnings.clear(0, this.size);
+        }
+    }
+
+    /**
+     * Measures the bank once, for the banks that keep the same size as
+     * their detectors learn.
+     */
+    @Override
+    public int estimateByteSize() {
+        if (this.byteSize == 0) {
+            this.byteSize = measureByteSize();
+        }
+        return this.byteSize;
+    }
+
+    /**
+     * Describes the bank with the estimation of each of its detectors.
+     */
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        StringUtils.appendIndented(sb, indent, getClass().getSimpleName()
+                + " of " + this.size + " detectors");
+        for (int i = 0; i < this.size; i++) {
+            StringUtils.appendNewlineIndented(sb, indent + 1, "detector " + i
+                    + " estimation: " + StringUtils.doubleToString(getEstimation(i), 4));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *    DDMBank.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Bank of {@link DDM} detectors, with the state of each detector stored in
+ * arrays.
+ *
+ * @version $Revision: 1 $
+ */
+public class DDMBank extends ChangeDetectorBank {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int minNumInstances;
+
+    protected final int[] n;
+
+    protected final double[] p;
+
+    protected final double[] s;
+
+    protected final double[] psmin;
+
+    protected final double[] pmin;
+
+    protected final double[] smin;
+
+    protected final double[] estimation;
+
+    protected final boolean[] isChangeDetected;
+
+    protected final boolean[] isInitialized;
+
+    /**
+     * Creates a bank of DDM detectors.
+     *
+     * @param size the number of detectors
+     * @param minNumInstances the minimum number of instances before
+     * permitting detecting change
+     */
+    public DDMBank(int size, int minNumInstances) {
+        super(size);
+        this.minNumInstances = minNumInstances;
+        this.n = new int[size];
+        this.p = new double[size];
+        this.s = new double[size];
+        this.psmin = new double[size];
+        this.pmin = new double[size];
+        this.smin = new double[size];
+        this.estimation = new double[size];
+        this.isChangeDetected = new boolean[size];
+        this.isInitialized = new boolean[size];
+        resetLearning();
+    }
+
+    /**
+     * Same as {@link #input(int, double)} for each active detector, in a
+     * single loop over the arrays of the bank.
+     */
+    @Override
+    public boolean input(double[] inputs, BitSet active, BitSet changes, BitSet warnings) {
+        clear(changes, warnings);
+        final int[] n = this.n;
+        final double[] p = this.p;
+        final double[] s = this.s;
+        final double[] psmin = this.psmin;
+        final double[] pmin = this.pmin;
+        final double[] smin = this.smin;
+        final double[] estimation = this.estimation;
+        final boolean[] isChangeDetected = this.isChangeDetected;
+        final int minNumInstances = this.minNumInstances;
+        boolean change = false;
+        for (int i = nextActive(active, 0); i >= 0; i = nextActive(active, i + 1)) {
+            if (isChangeDetected[i] || !this.isInitialized[i]) {
+                resetLearning(i);
+                this.isInitialized[i] = true;
+            }
+            double m_p = p[i] + (inputs[i] - p[i]) / (double) n[i];
+            double m_s = Math.sqrt(m_p * (1 - m_p) / (double) n[i]);
+            int m_n = ++n[i];
+            p[i] = m_p;
+            s[i] = m_s;
+            estimation[i] = m_p;
+            isChangeDetected[i] = false;
+            if (m_n < minNumInstances) {
+                continue;
+            }
+            if (m_p + m_s <= psmin[i]) {
+                pmin[i] = m_p;
+                smin[i] = m_s;
+                psmin[i] = m_p + m_s;
+            }
+            if (m_n > minNumInstances && m_p + m_s > pmin[i] + 3 * smin[i]) {
+                isChangeDetected[i] = true;
+                changes.set(i);
+                change = true;
+            } else if (m_p + m_s > pmin[i] + 2 * smin[i] && warnings != null) {
+                warnings.set(i);
+            }
+        }
+        return change;
+    }
+
+    @Override
+    public int input(int i, double prediction) {
+        // same as DDM.input
+        if (this.isChangeDetected[i] || !this.isInitialized[i]) {
+            resetLearning(i);
+            this.isInitialized[i] = true;
+        }
+        double m_p = this.p[i] + (prediction - this.p[i]) / (double) this.n[i];
+        double m_s = Math.sqrt(m_p * (1 - m_p) / (double) this.n[i]);
+        int m_n = ++this.n[i];
+        this.p[i] = m_p;
+        this.s[i] = m_s;
+        this.estimation[i] = m_p;
+        this.isChangeDetected[i] = false;
+
+        if (m_n < this.minNumInstances) {
+            return 0;
+        }
+
+        if (m_p + m_s <= this.psmin[i]) {
+            this.pmin[i] = m_p;
+            this.smin[i] = m_s;
+            this.psmin[i] = m_p + m_s;
+        }
+
+        if (m_n > this.minNumInstances && m_p + m_s > this.pmin[i] + 3 * this.smin[i]) {
+            this.isChangeDetected[i] = true;
+            return DETECTED_CHANGE;
+        } else if (m_p + m_s > this.pmin[i] + 2 * this.smin[i]) {
+            return WARNING_ZONE;
+        }
+        return 0;
+    }
+
+    @Override
+    public double getEstimation(int index) {
+        return this.estimation[index];
+    }
+
+    /**
+     * Same as DDM.resetLearning(), which resets the statistics but not the
+     * flags and the estimation.
+     */
+    @Override
+    public void resetLearning(int index) {
+        this.n[index] = 1;
+        this.p[index] = 1;
+        this.s[index] = 0;
+        this.psmin[index] = Double.MAX_VALUE;
+        this.pmin[index] = Double.MAX_VALUE;
+        this.smin[index] = Double.MAX_VALUE;
+    }
+
+    @Override
+    public void resetLearning() {
+        Arrays.fill(this.n, 1);
+        Arrays.fill(this.p, 1);
+        Arrays.fill(this.s, 0);
+        Arrays.fill(this.psmin, Double.MAX_VALUE);
+        Arrays.fill(this.pmin, Double.MAX_VALUE);
+        Arrays.fill(this.smin, Double.MAX_VALUE);
+    }
+}
@@ -146,6 +146,31 @@ public class EDDM extends AbstractChangeDetector {
         }
     }
 
+    /**
+     * Outside the warning zone, a correct prediction (0) only counts the
+     * instance, so the runs of 0s between errors are skipped.
+     */
+    @Override
+    public int inputBatch(long bits, int count) {
+        int i = 0;
+        while (i < count) {
+            long rest = bits >>> i;
+            if ((rest & 1) == 0 && this.isInitialized && !this.isChangeDetected
+                    && !this.isWarningZone) {
+                int zeros = Math.min(Long.numberOfTrailingZeros(rest), count - i);
+                m_n += zeros;
+                i += zeros;
+                continue;
+            }
+            input(rest & 1);
+            if (this.isChangeDetected || this.isWarningZone) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
@@ -0,0 +1,117 @@
+/*
+ *    GenericChangeDetectorBank.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+import moa.AbstractMOAObject;
+
+/**
+ * Bank of copies of any change detector, for the detectors that have no
+ * bank of their own.
+ *
+ * @version $Revision: 1 $
+ */
+public class GenericChangeDetectorBank extends ChangeDetectorBank {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final ChangeDetector[] detectors;
+
+    /**
+     * Creates a bank of copies of a detector.
+     *
+     * @param detector the detector copied
+     * @param size the number of detectors
+     */
+    public GenericChangeDetectorBank(ChangeDetector detector, int size) {
+        super(size);
+        this.detectors = new ChangeDetector[size];
+        for (int i = 0; i < size; i++) {
+            this.detectors[i] = detector.copy();
+            this.detectors[i].resetLearning();
+        }
+    }
+
+    @Override
+    public boolean input(double[] inputs, BitSet active, BitSet changes, BitSet warnings) {
+        clear(changes, warnings);
+        final ChangeDetector[] detectors = this.detectors;
+        boolean change = false;
+        for (int i = nextActive(active, 0); i >= 0; i = nextActive(active, i + 1)) {
+            ChangeDetector detector = detectors[i];
+            detector.input(inputs[i]);
+            if (detector.getChange()) {
+                changes.set(i);
+                change = true;
+            }
+            if (warnings != null && detector.getWarningZone()) {
+                warnings.set(i);
+            }
+        }
+        return change;
+    }
+
+    @Override
+    public int input(int index, double input) {
+        ChangeDetector detector = this.detectors[index];
+        detector.input(input);
+        return (detector.getChange() ? DETECTED_CHANGE : 0)
+                | (detector.getWarningZone() ? WARNING_ZONE : 0);
+    }
+
+    @Override
+    public double getEstimation(int index) {
+        return this.detectors[index].getEstimation();
+    }
+
+    /**
+     * Gets a detector of the bank.
+     *
+     * @param index the detector
+     * @return the detector
+     */
+    public ChangeDetector getDetector(int index) {
+        return this.detectors[index];
+    }
+
+    @Override
+    public void resetLearning(int index) {
+        this.detectors[index].resetLearning();
+    }
+
+    /**
+     * Sum of the size estimates of the detectors, plus the size of the
+     * rest of the bank, which is measured only once.
+     */
+    @Override
+    public int estimateByteSize() {
+        long detectorsSize = 0;
+        for (ChangeDetector detector : this.detectors) {
+            int size = AbstractMOAObject.estimateByteSize(detector);
+            if (size < 0) {
+                return -1;
+            }
+            detectorsSize += size;
+        }
+        if (this.byteSize == 0) {
+            this.byteSize = (int) (measureByteSize() - detectorsSize);
+        }
+        return (int) (this.byteSize + detectorsSize);
+    }
+}
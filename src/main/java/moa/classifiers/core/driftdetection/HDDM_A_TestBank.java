@@ -0,0 +1,275 @@
+/*
+ *    HDDM_A_TestBank.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+
+/**
+ * Bank of {@link HDDM_A_Test} detectors, with the state of each detector
+ * stored in arrays. The logarithms of the confidences are computed once for
+ * the bank.
+ *
+ * @version $Revision: 1 $
+ */
+public class HDDM_A_TestBank extends ChangeDetectorBank {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final boolean twoSided;
+
+    // Math.log(1.0 / driftConfidence)
+    protected final double logDrift;
+
+    // Math.log(2.0 / driftConfidence)
+    protected final double logDriftIncr;
+
+    // Math.log(2.0 / warningConfidence)
+    protected final double logWarningIncr;
+
+    protected final int[] nMin;
+
+    protected final double[] cMin;
+
+    protected final int[] totalN;
+
+    protected final double[] totalC;
+
+    protected final int[] nMax;
+
+    protected final double[] cMax;
+
+    protected final double[] cEstimacion;
+
+    protected final int[] nEstimacion;
+
+    protected final double[] estimation;
+
+    /**
+     * Creates a bank of HDDM_A detectors.
+     *
+     * @param size the number of detectors
+     * @param driftConfidence the confidence to the drift
+     * @param warningConfidence the confidence to the warning
+     * @param twoSided whether decrements of the mean are monitored too
+     */
+    public HDDM_A_TestBank(int size, double driftConfidence,
+            double warningConfidence, boolean twoSided) {
+        super(size);
+        this.twoSided = twoSided;
+        this.logDrift = Math.log(1.0 / driftConfidence);
+        this.logDriftIncr = Math.log(2.0 / driftConfidence);
+        this.logWarningIncr = Math.log(2.0 / warningConfidence);
+        this.nMin = new int[size];
+        this.cMin = new double[size];
+        this.totalN = new int[size];
+        this.totalC = new double[size];
+        this.nMax = new int[size];
+        this.cMax = new double[size];
+        this.cEstimacion = new double[size];
+        this.nEstimacion = new int[size];
+        this.estimation = new double[size];
+    }
+
+    /**
+     * Same as {@link #input(int, double)} for each active detector, in a
+     * single loop over the arrays of the bank.
+     */
+    @Override
+    public boolean input(double[] inputs, BitSet active, BitSet changes, BitSet warnings) {
+        clear(changes, warnings);
+        final int[] nMin = this.nMin;
+        final double[] cMin = this.cMin;
+        final int[] totalN = this.totalN;
+        final double[] totalC = this.totalC;
+        final int[] nMax = this.nMax;
+        final double[] cMax = this.cMax;
+        final double[] cEstimacion = this.cEstimacion;
+        final int[] nEstimacion = this.nEstimacion;
+        final double[] estimation = this.estimation;
+        final double logDrift = this.logDrift;
+        boolean change = false;
+        for (int i = nextActive(active, 0); i >= 0; i = nextActive(active, i + 1)) {
+            int total_n = ++totalN[i];
+            double total_c = totalC[i] += inputs[i];
+            int n_min = nMin[i];
+            double c_min = cMin[i];
+            int n_max = nMax[i];
+            double c_max = cMax[i];
+            if (n_min == 0) {
+                n_min = total_n;
+                c_min = total_c;
+            }
+            if (n_max == 0) {
+                n_max = total_n;
+                c_max = total_c;
+            }
+
+            double cota = Math.sqrt(1.0 / (2 * n_min) * logDrift),
+                    cota1 = Math.sqrt(1.0 / (2 * total_n) * logDrift);
+            if (c_min / n_min + cota >= total_c / total_n + cota1) {
+                c_min = total_c;
+                n_min = total_n;
+            }
+
+            cota = Math.sqrt(1.0 / (2 * n_max) * logDrift);
+            if (c_max / n_max - cota <= total_c / total_n - cota1) {
+                c_max = total_c;
+                n_max = total_n;
+            }
+            if (meanIncr(c_min, n_min, total_c, total_n, this.logDriftIncr)) {
+                nEstimacion[i] = total_n - n_min;
+                cEstimacion[i] = total_c - c_min;
+                n_min = n_max = total_n = 0;
+                c_min = c_max = total_c = 0;
+                changes.set(i);
+                change = true;
+            } else if (meanIncr(c_min, n_min, total_c, total_n, this.logWarningIncr)
+                    && warnings != null) {
+                warnings.set(i);
+            }
+            if (this.twoSided && meanDecr(c_max, n_max, total_c, total_n, this.logDriftIncr)) {
+                nEstimacion[i] = total_n - n_max;
+                cEstimacion[i] = total_c - c_max;
+                n_min = n_max = total_n = 0;
+                c_min = c_max = total_c = 0;
+            }
+            nMin[i] = n_min;
+            cMin[i] = c_min;
+            nMax[i] = n_max;
+            cMax[i] = c_max;
+            totalN[i] = total_n;
+            totalC[i] = total_c;
+
+            if (total_n >= nEstimacion[i]) {
+                cEstimacion[i] = nEstimacion[i] = 0;
+                estimation[i] = total_c / total_n;
+            } else {
+                estimation[i] = cEstimacion[i] / nEstimacion[i];
+            }
+        }
+        return change;
+    }
+
+    @Override
+    public int input(int i, double input) {
+        // same as HDDM_A_Test.input
+        int state = 0;
+        int total_n = ++this.totalN[i];
+        double total_c = this.totalC[i] += input;
+        int n_min = this.nMin[i];
+        double c_min = this.cMin[i];
+        int n_max = this.nMax[i];
+        double c_max = this.cMax[i];
+        if (n_min == 0) {
+            n_min = total_n;
+            c_min = total_c;
+        }
+        if (n_max == 0) {
+            n_max = total_n;
+            c_max = total_c;
+        }
+
+        double cota = Math.sqrt(1.0 / (2 * n_min) * this.logDrift),
+                cota1 = Math.sqrt(1.0 / (2 * total_n) * this.logDrift);
+        if (c_min / n_min + cota >= total_c / total_n + cota1) {
+            c_min = total_c;
+            n_min = total_n;
+        }
+
+        cota = Math.sqrt(1.0 / (2 * n_max) * this.logDrift);
+        if (c_max / n_max - cota <= total_c / total_n - cota1) {
+            c_max = total_c;
+            n_max = total_n;
+        }
+        if (meanIncr(c_min, n_min, total_c, total_n, this.logDriftIncr)) {
+            this.nEstimacion[i] = total_n - n_min;
+            this.cEstimacion[i] = total_c - c_min;
+            n_min = n_max = total_n = 0;
+            c_min = c_max = total_c = 0;
+            state = DETECTED_CHANGE;
+        } else if (meanIncr(c_min, n_min, total_c, total_n, this.logWarningIncr)) {
+            state = WARNING_ZONE;
+        }
+        if (this.twoSided && meanDecr(c_max, n_max, total_c, total_n, this.logDriftIncr)) {
+            this.nEstimacion[i] = total_n - n_max;
+            this.cEstimacion[i] = total_c - c_max;
+            n_min = n_max = total_n = 0;
+            c_min = c_max = total_c = 0;
+        }
+        this.nMin[i] = n_min;
+        this.cMin[i] = c_min;
+        this.nMax[i] = n_max;
+        this.cMax[i] = c_max;
+        this.totalN[i] = total_n;
+        this.totalC[i] = total_c;
+
+        // same as HDDM_A_Test.updateEstimations
+        if (total_n >= this.nEstimacion[i]) {
+            this.cEstimacion[i] = this.nEstimacion[i] = 0;
+            this.estimation[i] = total_c / total_n;
+        } else {
+            this.estimation[i] = this.cEstimacion[i] / this.nEstimacion[i];
+        }
+        return state;
+    }
+
+    /**
+     * Same as HDDM_A_Test.meanIncr, with the logarithm of the confidence.
+     */
+    protected static boolean meanIncr(double c_min, int n_min, double total_c,
+            int total_n, double logConfidence) {
+        if (n_min == total_n) {
+            return false;
+        }
+        double m = (double) (total_n - n_min) / n_min * (1.0 / total_n);
+        double cota = Math.sqrt(m / 2 * logConfidence);
+        return total_c / total_n - c_min / n_min >= cota;
+    }
+
+    /**
+     * Same as HDDM_A_Test.meanDecr, with the logarithm of the confidence.
+     */
+    protected static boolean meanDecr(double c_max, int n_max, double total_c,
+            int total_n, double logConfidence) {
+        if (n_max == total_n) {
+            return false;
+        }
+        double m = (double) (total_n - n_max) / n_max * (1.0 / total_n);
+        double cota = Math.sqrt(m / 2 * logConfidence);
+        return c_max / n_max - total_c / total_n >= cota;
+    }
+
+    @Override
+    public double getEstimation(int index) {
+        return this.estimation[index];
+    }
+
+    @Override
+    public void resetLearning(int index) {
+        this.nMin[index] = 0;
+        this.cMin[index] = 0;
+        this.totalN[index] = 0;
+        this.totalC[index] = 0;
+        this.nMax[index] = 0;
+        this.cMax[index] = 0;
+        this.cEstimacion[index] = 0;
+        this.nEstimacion[index] = 0;
+        this.estimation[index] = 0.0;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *    PageHinkleyDMBank.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.driftdetection;
+
+import java.util.BitSet;
+
+/**
+ * Bank of {@link PageHinkleyDM} detectors, with the state of each detector
+ * stored in arrays. Page-Hinkley detectors have no warning zone.
+ *
+ * @version $Revision: 1 $
+ */
+public class PageHinkleyDMBank extends ChangeDetectorBank {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int minNumInstances;
+
+    protected final double delta;
+
+    protected final double lambda;
+
+    protected final double alpha;
+
+    protected final int[] n;
+
+    protected final double[] sum;
+
+    protected final double[] xMean;
+
+    protected final double[] estimation;
+
+    protected final boolean[] isChangeDetected;
+
+    protected final boolean[] isInitialized;
+
+    /**
+     * Creates a bank of Page-Hinkley detectors.
+     *
+     * @param size the number of detectors
+     * @param minNumInstances the minimum number of instances before
+     * permitting detecting change
+     * @param delta the delta parameter of the test
+     * @param lambda the lambda parameter of the test
+     * @param alpha the alpha parameter of the test
+     */
+    public PageHinkleyDMBank(int size, int minNumInstances, double delta,
+            double lambda, double alpha) {
+        super(size);
+        this.minNumInstances = minNumInstances;
+        this.delta = delta;
+        this.lambda = lambda;
+        this.alpha = alpha;
+        this.n = new int[size];
+        this.sum = new double[size];
+        this.xMean = new double[size];
+        this.estimation = new double[size];
+        this.isChangeDetected = new boolean[size];
+        this.isInitialized = new boolean[size];
+        resetLearning();
+    }
+
+    /**
+     * Same as {@link #input(int, double)} for each active detector, in a
+     * single loop over the arrays of the bank.
+     */
+    @Override
+    public boolean input(double[] inputs, BitSet active, BitSet changes, BitSet warnings) {
+        clear(changes, warnings);
+        final int[] n = this.n;
+        final double[] sum = this.sum;
+        final double[] xMean = this.xMean;
+        final double[] estimation = this.estimation;
+        final boolean[] isChangeDetected = this.isChangeDetected;
+        final double alpha = this.alpha;
+        final double delta = this.delta;
+        boolean change = false;
+        for (int i = nextActive(active, 0); i >= 0; i = nextActive(active, i + 1)) {
+            if (isChangeDetected[i] || !this.isInitialized[i]) {
+                resetLearning(i);
+                this.isInitialized[i] = true;
+            }
+            double x = inputs[i];
+            double x_mean = xMean[i] + (x - xMean[i]) / (double) n[i];
+            double s = alpha * sum[i] + (x - x_mean - delta);
+            xMean[i] = x_mean;
+            sum[i] = s;
+            int m_n = ++n[i];
+            estimation[i] = x_mean;
+            isChangeDetected[i] = false;
+            if (m_n >= this.minNumInstances && s > this.lambda) {
+                isChangeDetected[i] = true;
+                changes.set(i);
+                change = true;
+            }
+        }
+        return change;
+    }
+
+    @Override
+    public int input(int i, double x) {
+        // same as PageHinkleyDM.input
+        if (this.isChangeDetected[i] || !this.isInitialized[i]) {
+            resetLearning(i);
+            this.isInitialized[i] = true;
+        }
+        double x_mean = this.xMean[i] + (x - this.xMean[i]) / (double) this.n[i];
+        double s = this.alpha * this.sum[i] + (x - x_mean - this.delta);
+        this.xMean[i] = x_mean;
+        this.sum[i] = s;
+        int m_n = ++this.n[i];
+        this.estimation[i] = x_mean;
+        this.isChangeDetected[i] = false;
+
+        if (m_n < this.minNumInstances) {
+            return 0;
+        }
+
+        if (s > this.lambda) {
+            this.isChangeDetected[i] = true;
+            return DETECTED_CHANGE;
+        }
+        return 0;
+    }
+
+    @Override
+    public double getEstimation(int index) {
+        return this.estimation[index];
+    }
+
+    /**
+     * Same as PageHinkleyDM.resetLearning(), which resets the statistics but
+     * not the flags and the estimation.
+     */
+    @Override
+    public void resetLearning(int index) {
+        this.n[index] = 1;
+        this.xMean[index] = 0.0;
+        this.sum[index] = 0.0;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *    BatchSplitCriterion.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.splitcriteria;
+
+/**
+ * Split criterion that can evaluate all the candidate splits of an attribute
+ * at once, computing the terms that only depend on the distribution before
+ * the split a single time.
+ *
+ * <p>The distributions after the splits are given as one flat matrix: the
+ * distribution of branch b of split s starts at index
+ * (s * numBranches + b) * numClasses. The merits are the same as the ones
+ * computed by getMeritOfSplit for each split.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public interface BatchSplitCriterion extends SplitCriterion {
+
+    /**
+     * Computes the merits of several splits.
+     *
+     * @param preSplitDist the class distribution before the splits
+     * @param postSplitDists the class distributions after each split
+     * @param numSplits the number of splits
+     * @param numBranches the number of branches of each split
+     * @param numClasses the number of classes of each distribution
+     * @param merits the array receiving the merit of each split
+     */
+    public void getMeritsOfSplits(double[] preSplitDist, double[] postSplitDists,
+            int numSplits, int numBranches, int numClasses, double[] merits);
+}
@@ -34,42 +34,87 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class GiniSplitCriterion extends AbstractOptionHandler implements
-        SplitCriterion {
+        BatchSplitCriterion {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Gini gain of a split. An empty branch adds nothing to the Gini index
+     * of the split, whether its distribution is empty or all zeros: before,
+     * a branch of zeros (as in the zero padded distributions of the split
+     * buffers) gave a NaN merit, which ranks above every other merit.
+     */
     @Override
     public double getMeritOfSplit(double[] preSplitDist,
             double[][] postSplitDists) {
         double totalWeight = 0.0;
-        double[] distWeights = new double[postSplitDists.length];
-        for (int i = 0; i < postSplitDists.length; i++) {
-            distWeights[i] = Utils.sum(postSplitDists[i]);
-            totalWeight += distWeights[i];
+        for (double[] dist : postSplitDists) {
+            totalWeight += Utils.sum(dist);
         }
         double gini = 0.0;
-        for (int i = 0; i < postSplitDists.length; i++) {
-            gini += (distWeights[i] / totalWeight)
-                    * computeGini(postSplitDists[i], distWeights[i]);
+        for (double[] dist : postSplitDists) {
+            double distWeight = Utils.sum(dist);
+            // an empty branch adds nothing, whether its counts are zeros or
+            // absent
+            if (distWeight > 0.0) {
+                gini += (distWeight / totalWeight)
+                        * computeGini(dist, distWeight);
+            }
         }
-        System.out.println("Gini = " + gini);
         return 1.0 - gini;
     }
 
+    @Override
+    public void getMeritsOfSplits(double[] preSplitDist, double[] postSplitDists,
+            int numSplits, int numBranches, int numClasses, double[] merits) {
+        for (int split = 0; split < numSplits; split++) {
+            int start = split * numBranches * numClasses;
+            double totalWeight = 0.0;
+            for (int offset = start, b = 0; b < numBranches; b++, offset += numClasses) {
+                totalWeight += sum(postSplitDists, offset, numClasses);
+            }
+            double gini = 0.0;
+            for (int offset = start, b = 0; b < numBranches; b++, offset += numClasses) {
+                double distWeight = sum(postSplitDists, offset, numClasses);
+                if (distWeight > 0.0) {
+                    gini += (distWeight / totalWeight)
+                            * computeGini(postSplitDists, offset, numClasses, distWeight);
+                }
+            }
+            merits[split] = 1.0 - gini;
+        }
+    }
+
     @Override
     public double getRangeOfMerit(double[] preSplitDist) {
         return 1.0;
     }
 
     public static double computeGini(double[] dist, double distSumOfWeights) {
+        return computeGini(dist, 0, dist.length, distSumOfWeights);
+    }
+
+    /**
+     * Computes the Gini index of a distribution stored in part of an array.
+     */
+    public static double computeGini(double[] dists, int offset, int length,
+            double distSumOfWeights) {
         double gini = 1.0;
-        for (int i = 0; i < dist.length; i++) {
-            double relFreq = dist[i] / distSumOfWeights;
+        for (int i = offset; i < offset + length; i++) {
+            double relFreq = dists[i] / distSumOfWeights;
             gini -= relFreq * relFreq;
         }
         return gini;
     }
 
+    protected static double sum(double[] dists, int offset, int length) {
+        double sum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += dists[i];
+        }
+        return sum;
+    }
+
     public static double computeGini(double[] dist) {
         return computeGini(dist, Utils.sum(dist));
     }
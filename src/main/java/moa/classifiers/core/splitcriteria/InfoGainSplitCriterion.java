@@ -35,7 +35,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class InfoGainSplitCriterion extends AbstractOptionHandler implements
-        SplitCriterion {
+        BatchSplitCriterion {
 
     private static final long serialVersionUID = 1L;
 
@@ -53,6 +53,31 @@ public class InfoGainSplitCriterion extends AbstractOptionHandler implements
         return computeEntropy(preSplitDist) - computeEntropy(postSplitDists);
     }
 
+    @Override
+    public void getMeritsOfSplits(double[] preSplitDist, double[] postSplitDists,
+            int numSplits, int numBranches, int numClasses, double[] merits) {
+        double preSplitEntropy = computeEntropy(preSplitDist);
+        double minBranchFrac = this.minBranchFracOption.getValue();
+        for (int split = 0; split < numSplits; split++) {
+            int start = split * numBranches * numClasses;
+            double totalWeight = 0.0;
+            for (int offset = start, b = 0; b < numBranches; b++, offset += numClasses) {
+                totalWeight += sum(postSplitDists, offset, numClasses);
+            }
+            int numGreater = 0;
+            double entropy = 0.0;
+            for (int offset = start, b = 0; b < numBranches; b++, offset += numClasses) {
+                double distWeight = sum(postSplitDists, offset, numClasses);
+                if (distWeight / totalWeight > minBranchFrac) {
+                    numGreater++;
+                }
+                entropy += distWeight * computeEntropy(postSplitDists, offset, numClasses);
+            }
+            merits[split] = numGreater < 2 ? Double.NEGATIVE_INFINITY
+                    : preSplitEntropy - entropy / totalWeight;
+        }
+    }
+
     @Override
     public double getRangeOfMerit(double[] preSplitDist) {
         int numClasses = preSplitDist.length > 2 ? preSplitDist.length : 2;
@@ -60,9 +85,17 @@ public class InfoGainSplitCriterion extends AbstractOptionHandler implements
     }
 
     public static double computeEntropy(double[] dist) {
+        return computeEntropy(dist, 0, dist.length);
+    }
+
+    /**
+     * Computes the entropy of a distribution stored in part of an array.
+     */
+    public static double computeEntropy(double[] dists, int offset, int length) {
         double entropy = 0.0;
         double sum = 0.0;
-        for (double d : dist) {
+        for (int i = offset; i < offset + length; i++) {
+            double d = dists[i];
             if (d > 0.0) { // TODO: how small can d be before log2 overflows?
                 entropy -= d * Utils.log2(d);
                 sum += d;
@@ -71,33 +104,36 @@ public class InfoGainSplitCriterion extends AbstractOptionHandler implements
         return sum > 0.0 ? (entropy + sum * Utils.log2(sum)) / sum : 0.0;
     }
 
+    protected static double sum(double[] dists, int offset, int length) {
+        double sum = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            sum += dists[i];
+        }
+        return sum;
+    }
+
     public static double computeEntropy(double[][] dists) {
         double totalWeight = 0.0;
-        double[] distWeights = new double[dists.length];
-        for (int i = 0; i < dists.length; i++) {
-            distWeights[i] = Utils.sum(dists[i]);
-            totalWeight += distWeights[i];
-        }
         double entropy = 0.0;
-        for (int i = 0; i < dists.length; i++) {
-            entropy += distWeights[i] * computeEntropy(dists[i]);
+        for (double[] dist : dists) {
+            double distWeight = Utils.sum(dist);
+            totalWeight += distWeight;
+            entropy += distWeight * computeEntropy(dist);
         }
         return entropy / totalWeight;
     }
 
     public static int numSubsetsGreaterThanFrac(double[][] distributions,
             double minFrac) {
+        // the sums are computed twice rather than stored, so that split
+        // evaluation does not allocate
         double totalWeight = 0.0;
-        double[] distSums = new double[distributions.length];
-        for (int i = 0; i < distSums.length; i++) {
-            for (int j = 0; j < distributions[i].length; j++) {
-                distSums[i] += distributions[i][j];
-            }
-            totalWeight += distSums[i];
+        for (double[] dist : distributions) {
+            totalWeight += Utils.sum(dist);
         }
         int numGreater = 0;
-        for (double d : distSums) {
-            double frac = d / totalWeight;
+        for (double[] dist : distributions) {
+            double frac = Utils.sum(dist) / totalWeight;
             if (frac > minFrac) {
                 numGreater++;
             }
@@ -25,7 +25,6 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.classifiers.meta.WEKAClassifier;
 import moa.core.Measurement;
-import moa.core.Utils;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 import moa.options.ClassOption;
 
@@ -100,15 +99,66 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier {
     @Override
     public void trainOnInstanceImpl(Instance inst) {
         //this.numberInstances++;
-        int trueClass = (int) inst.classValue();
-        boolean prediction;
-        if (Utils.maxIndex(this.classifier.getVotesForInstance(inst)) == trueClass) {
-            prediction = true;
-        } else {
-            prediction = false;
-        }
         //this.ddmLevel = this.driftDetectionMethod.computeNextVal(prediction);
-        this.driftDetectionMethod.input(prediction ? 0.0 : 1.0);
+        this.driftDetectionMethod.input(this.classifier.correctlyClassifies(inst) ? 0.0 : 1.0);
+        updateClassifiers(inst);
+        this.classifier.trainOnInstance(inst);
+    }
+
+    /**
+     * Trains on a batch of instances, as trainOnInstance on each of them in
+     * order, but gives the errors of the classifier to the drift detection
+     * method up to 64 at a time (see ChangeDetector.inputBatch). Only a
+     * change replaces the classifier, so its errors are computed, and it is
+     * trained, ahead of the detection. After a change, the errors computed
+     * with the replaced classifier are dropped and computed again with the
+     * new one.
+     */
+    @Override
+    public void trainOnInstances(Instance[] instances) {
+        Instance[] batch = prepareTrainingBatch(instances);
+        int next = 0;
+        while (next < batch.length) {
+            int first = next;
+            int count = Math.min(batch.length - first, Long.SIZE);
+            long errors = 0;
+            for (int i = 0; i < count; i++) {
+                Instance inst = batch[first + i];
+                if (!this.classifier.correctlyClassifies(inst)) {
+                    errors |= 1L << i;
+                }
+                this.classifier.trainOnInstance(inst);
+            }
+            next = first + count;
+            int added = 0;
+            while (added < count) {
+                int stop = this.driftDetectionMethod.inputBatch(errors >>> added, count - added);
+                if (stop < 0) {
+                    this.ddmLevel = DDM_INCONTROL_LEVEL;
+                    newClassifierReset = true;
+                    break;
+                }
+                if (stop > 0) {
+                    newClassifierReset = true;
+                }
+                Instance inst = batch[first + added + stop];
+                updateClassifiers(inst);
+                added += stop + 1;
+                if (this.ddmLevel == DDM_OUTCONTROL_LEVEL) {
+                    this.classifier.trainOnInstance(inst);
+                    next = first + added;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reacts to the level of the drift detection method once it has been
+     * given the error on inst: trains the new classifier on inst in the
+     * warning zone, and replaces the classifier with it after a change.
+     */
+    protected void updateClassifiers(Instance inst) {
         this.ddmLevel = DDM_INCONTROL_LEVEL;
         if (this.driftDetectionMethod.getChange()) {
          this.ddmLevel =  DDM_OUTCONTROL_LEVEL;
@@ -150,8 +200,6 @@ public class DriftDetectionMethodClassifier extends AbstractClassifier {
             //System.out.println("ERROR!");
 
         }
-
-        this.classifier.trainOnInstance(inst);
     }
 
     public double[] getVotesForInstance(Instance inst) {
@@ -17,11 +17,8 @@
  */
 package moa.classifiers.lazy;
 
-import java.io.StringReader;
 import moa.classifiers.AbstractClassifier;
-import moa.classifiers.lazy.neighboursearch.KDTree;
-import moa.classifiers.lazy.neighboursearch.LinearNNSearch;
-import moa.classifiers.lazy.neighboursearch.NearestNeighbourSearch;
+import moa.classifiers.lazy.neighboursearch.NearestNeighbourWindow;
 import moa.core.Measurement;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
@@ -62,13 +59,12 @@ public class kNN extends AbstractClassifier {
         return "kNN: special.";
     }
 
-    protected Instances window; 
+    protected NearestNeighbourWindow window; 
 
 	@Override
 	public void setModelContext(InstancesHeader context) {
 		try {
-			this.window = new Instances(context,0); //new StringReader(context.toString())
-			this.window.setClassIndex(context.classIndex());
+			this.window = newWindow(context);
 		} catch(Exception e) {
 			System.err.println("Error: no Model Context available.");
 			e.printStackTrace();
@@ -86,30 +82,30 @@ public class kNN extends AbstractClassifier {
 		if (inst.classValue() > C)
 			C = (int)inst.classValue();
 		if (this.window == null) {
-			this.window = new Instances(inst.dataset());
+			this.window = newWindow(inst.dataset());
 		}
-		if (this.limitOption.getValue() <= this.window.numInstances()) {
+		if (this.limitOption.getValue() <= this.window.size()) {
 			this.window.delete(0);
 		}
 		this.window.add(inst);
     }
 
+	/**
+	 * Creates an empty window, searched with the chosen nearest neighbour
+	 * search. The window is updated as instances are added and removed,
+	 * instead of building a search on every prediction.
+	 */
+	protected NearestNeighbourWindow newWindow(Instances header) {
+		return new NearestNeighbourWindow(header,
+				this.nearestNeighbourSearchOption.getChosenIndex() == 1);
+	}
+
 	@Override
     public double[] getVotesForInstance(Instance inst) {
 		double v[] = new double[C+1];
 		try {
-			NearestNeighbourSearch search;
-			if (this.nearestNeighbourSearchOption.getChosenIndex()== 0) {
-				search = new LinearNNSearch(this.window);  
-			} else {
-				search = new KDTree();
-				search.setInstances(this.window);
-			}	
-			if (this.window.numInstances()>0) {	
-				Instances neighbours = search.kNearestNeighbours(inst,Math.min(kOption.getValue(),this.window.numInstances()));
-				for(int i = 0; i < neighbours.numInstances(); i++) {
-					v[(int)neighbours.instance(i).classValue()]++;
-				}
+			if (this.window.size()>0) {	
+				this.window.addNearestNeighbourVotes(inst,Math.min(kOption.getValue(),this.window.size()),v);
 			}
 		} catch(Exception e) {
 			//System.err.println("Error: kNN search failed.");
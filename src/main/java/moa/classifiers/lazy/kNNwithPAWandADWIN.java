@@ -17,10 +17,8 @@
  */
 package moa.classifiers.lazy;
 
-import java.util.ArrayList;
 import moa.classifiers.core.driftdetection.ADWIN;
 import com.yahoo.labs.samoa.instances.Instance;
-import com.yahoo.labs.samoa.instances.Instances;
 
 /**
  * k Nearest Neighbor ADAPTIVE with ADWIN+PAW.<p>
@@ -41,8 +39,6 @@ public class kNNwithPAWandADWIN extends kNN {
 
     protected int marker = 0;
 
-    protected ArrayList<Integer> timeStamp;
-
     @Override
     public String getPurposeString() {
         return "kNNwithPAWandADWIN: kNN with Probabilistic Approximate Window and ADWIN";
@@ -67,29 +63,22 @@ public class kNNwithPAWandADWIN extends kNN {
         }
         // ADWIN
         if (this.window == null) {
-            this.window = new Instances(inst.dataset());
-        }
-
-        if (this.timeStamp == null) {
-            this.timeStamp = new ArrayList<Integer>(10);
+            this.window = newWindow(inst.dataset());
         }
         for (int i = 0; i < this.window.size(); i++) {
             if (this.classifierRandom.nextDouble() > this.prob) {
                 this.window.delete(i);
-                this.timeStamp.remove(i);
             }
         }
         this.window.add(inst);
-        this.timeStamp.add(this.time);
         this.time++;
         boolean correctlyClassifies = this.correctlyClassifies(inst);
         if (this.adwin.setInput(correctlyClassifies ? 0 : 1)) {
             //Change
             int size = (int) this.adwin.getWidth();
             for (int i = 0; i < this.window.size(); i++) {
-                if (this.timeStamp.get(i) < this.time - size) {
+                if (this.window.getTimeStamp(i) < this.time - size) {
                     this.window.delete(i);
-                    this.timeStamp.remove(i);
                 }
             }
         }
@@ -0,0 +1,799 @@
+/*
+ *    NearestNeighbourWindow.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.lazy.neighboursearch;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A window of instances for k nearest neighbour search, updated one instance
+ * at a time.
+ *
+ * <p>The attribute values are kept in a flat array of slots, and the order of
+ * the instances in a ring buffer of slots, so removing the oldest instance
+ * takes constant time. The neighbours are the same as the ones of
+ * {@link LinearNNSearch} on the window: the k nearest, and every other
+ * instance as near as the k-th, with the {@link EuclideanDistance} normalized
+ * by the ranges of the attributes in the window.</p>
+ *
+ * <p>With the KD-tree, the search uses a tree on the numeric attributes. A new
+ * instance goes to the leaf it falls in, which has room for more instances
+ * than it is built with, or takes the place of a removed one there; the
+ * instances that do not fit, or have missing values, are searched linearly.
+ * The tree holds raw values and is searched with the current ranges, so it
+ * stays valid when they change. It is rebuilt once as many instances have
+ * been added or removed as it was built with, or when too many do not
+ * fit.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class NearestNeighbourWindow implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int LEAF_SIZE = 8;
+
+    // Leaves have room for the instances added after the tree is built
+    protected static final int LEAF_CAPACITY = 2 * LEAF_SIZE;
+
+    protected static final int MIN_REBUILD_UPDATES = 64;
+
+    protected final boolean useTree;
+
+    protected final int numAttributes;
+
+    protected final int classIndex;
+
+    protected final boolean[] isNominal;
+
+    // The numeric attributes other than the class, the axes of the tree
+    protected final int[] axes;
+
+    // Slots: values, class values, and time stamps of the instances
+    protected double[] values;
+
+    protected double[] classValues;
+
+    protected long[] timeStamps;
+
+    protected boolean[] inTree;
+
+    protected boolean[] isAlive;
+
+    protected int[] freeSlots;
+
+    protected int numFreeSlots;
+
+    protected int numSlots;
+
+    // Ring buffer of the slots, from the oldest instance to the newest
+    protected int[] order;
+
+    protected int first;
+
+    protected int size;
+
+    protected long numAdded;
+
+    // Ranges of the numeric attributes
+    protected double[] rangeMin;
+
+    protected double[] rangeMax;
+
+    protected double[] rangeWidth;
+
+    protected boolean rangesOutdated;
+
+    // Instances searched linearly: not in the tree yet, or with missing values
+    protected int[] linear;
+
+    protected int[] linearIndex;
+
+    protected int numLinear;
+
+    protected int numIncomplete;
+
+    // Tree: the slots of a leaf are treeSlots[nodeStart, nodeEnd)
+    protected int[] treeSlots;
+
+    protected int[] buildSlots;
+
+    protected int treeSize;
+
+    protected int numAddedToTree;
+
+    protected int numRemovedFromTree;
+
+    protected int numLeaves;
+
+    protected int numNodes;
+
+    protected int[] nodeStart;
+
+    protected int[] nodeEnd;
+
+    protected int[] nodeLeft;
+
+    protected int[] nodeRight;
+
+    protected int[] nodeSplitAxis;
+
+    protected double[] nodeSplitValue;
+
+    // Node boxes, nodeMin[node * axes.length + a]
+    protected double[] nodeMin;
+
+    protected double[] nodeMax;
+
+    // Search state
+    protected double[] target;
+
+    protected double[] normTarget;
+
+    protected double[] heap;
+
+    protected int heapSize;
+
+    protected double[] candidateDistances;
+
+    protected int[] candidateSlots;
+
+    protected int numCandidates;
+
+    /**
+     * Creates an empty window.
+     *
+     * @param header the header of the instances
+     * @param useTree whether to search with a KD-tree, or linearly
+     */
+    public NearestNeighbourWindow(Instances header, boolean useTree) {
+        this.useTree = useTree;
+        this.numAttributes = header.numAttributes();
+        this.classIndex = header.classIndex();
+        this.isNominal = new boolean[this.numAttributes];
+        int numAxes = 0;
+        for (int j = 0; j < this.numAttributes; j++) {
+            this.isNominal[j] = header.attribute(j).isNominal();
+            if (j != this.classIndex && !this.isNominal[j]) {
+                numAxes++;
+            }
+        }
+        this.axes = new int[numAxes];
+        numAxes = 0;
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j != this.classIndex && !this.isNominal[j]) {
+                this.axes[numAxes++] = j;
+            }
+        }
+        this.rangeMin = new double[this.numAttributes];
+        this.rangeMax = new double[this.numAttributes];
+        this.rangeWidth = new double[this.numAttributes];
+        this.target = new double[this.numAttributes];
+        this.normTarget = new double[this.numAttributes];
+        this.values = new double[0];
+        this.classValues = new double[0];
+        this.timeStamps = new long[0];
+        this.inTree = new boolean[0];
+        this.isAlive = new boolean[0];
+        this.linearIndex = new int[0];
+        this.freeSlots = new int[0];
+        allocateSlots(16);
+        this.order = new int[16];
+        this.linear = new int[16];
+        this.treeSlots = new int[0];
+        this.buildSlots = new int[0];
+        this.numNodes = 0;
+        this.nodeStart = new int[0];
+        this.nodeEnd = new int[0];
+        this.nodeLeft = new int[0];
+        this.nodeRight = new int[0];
+        this.nodeSplitAxis = new int[0];
+        this.nodeSplitValue = new double[0];
+        this.nodeMin = new double[0];
+        this.nodeMax = new double[0];
+        this.heap = new double[1];
+        this.candidateDistances = new double[16];
+        this.candidateSlots = new int[16];
+        this.rangesOutdated = true;
+    }
+
+    /**
+     * Gets the number of instances in the window.
+     *
+     * @return the number of instances
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the number of instances added to the window before the instance
+     * at a position.
+     *
+     * @param position the position, 0 for the oldest instance
+     * @return the time stamp of the instance
+     */
+    public long getTimeStamp(int position) {
+        return this.timeStamps[slotAt(position)];
+    }
+
+    /**
+     * Adds an instance after the newest one.
+     *
+     * @param inst the instance, with the header of the window
+     */
+    public void add(Instance inst) {
+        if (this.numFreeSlots == 0) {
+            allocateSlots(2 * this.numSlots);
+        }
+        int slot = this.freeSlots[--this.numFreeSlots];
+        int offset = slot * this.numAttributes;
+        boolean complete = true;
+        for (int j = 0; j < this.numAttributes; j++) {
+            double value = inst.value(j);
+            this.values[offset + j] = value;
+            if (j != this.classIndex && !this.isNominal[j]) {
+                if (Double.isNaN(value)) {
+                    complete = false;
+                } else if (!this.rangesOutdated) {
+                    if (value < this.rangeMin[j]) {
+                        this.rangeMin[j] = value;
+                    }
+                    if (value > this.rangeMax[j]) {
+                        this.rangeMax[j] = value;
+                    }
+                    this.rangeWidth[j] = this.rangeMax[j] - this.rangeMin[j];
+                }
+            }
+        }
+        this.classValues[slot] = inst.classValue();
+        this.timeStamps[slot] = this.numAdded++;
+        this.isAlive[slot] = true;
+        this.inTree[slot] = false;
+        if (!complete) {
+            this.numIncomplete++;
+            addLinear(slot);
+        } else if (this.numNodes == 0 || !addToTree(slot)) {
+            addLinear(slot);
+        }
+
+        if (this.size == this.order.length) {
+            int[] newOrder = new int[2 * this.order.length];
+            for (int i = 0; i < this.size; i++) {
+                newOrder[i] = slotAt(i);
+            }
+            this.order = newOrder;
+            this.first = 0;
+        }
+        this.order[(this.first + this.size) % this.order.length] = slot;
+        this.size++;
+    }
+
+    /**
+     * Removes the instance at a position. Removing the oldest or the newest
+     * instance takes constant time.
+     *
+     * @param position the position, 0 for the oldest instance
+     */
+    public void delete(int position) {
+        int slot = slotAt(position);
+        if (position < this.size / 2) {
+            for (int i = position; i > 0; i--) {
+                this.order[(this.first + i) % this.order.length] = slotAt(i - 1);
+            }
+            this.first = (this.first + 1) % this.order.length;
+        } else {
+            for (int i = position; i < this.size - 1; i++) {
+                this.order[(this.first + i) % this.order.length] = slotAt(i + 1);
+            }
+        }
+        this.size--;
+        release(slot);
+    }
+
+    /**
+     * Adds one vote for the class of each nearest neighbour of an instance:
+     * the k nearest instances, and every other instance as near as the k-th.
+     *
+     * @param inst the instance
+     * @param k the number of neighbours, at most the size of the window
+     * @param votes the votes, with a position for every class value
+     */
+    public void addNearestNeighbourVotes(Instance inst, int k, double[] votes) {
+        if (k <= 0) {
+            return;
+        }
+        if (this.rangesOutdated) {
+            updateRanges();
+        }
+        for (int j = 0; j < this.numAttributes; j++) {
+            this.target[j] = inst.value(j);
+            if (!this.isNominal[j] && !Double.isNaN(this.target[j])) {
+                this.normTarget[j] = norm(this.target[j], j);
+            }
+        }
+        if (this.heap.length < k) {
+            this.heap = new double[k];
+        }
+        this.heapSize = 0;
+        this.numCandidates = 0;
+
+        if (this.useTree && this.axes.length > 0
+                && (this.numLinear - this.numIncomplete > Math.max(MIN_REBUILD_UPDATES, 4 * Math.sqrt(this.treeSize))
+                || this.numAddedToTree + this.numRemovedFromTree > this.treeSize)) {
+            buildTree();
+        }
+        for (int i = 0; i < this.numLinear; i++) {
+            offer(this.linear[i], k);
+        }
+        if (this.numNodes > 0) {
+            search(0, k);
+        }
+
+        double kthDistance = this.heapSize < k ? Double.POSITIVE_INFINITY : this.heap[0];
+        for (int i = 0; i < this.numCandidates; i++) {
+            // a distance is NaN when an attribute has no values in the window;
+            // as in LinearNNSearch, such an instance is kept if it was found
+            // before the heap was full
+            if (!(this.candidateDistances[i] > kthDistance)) {
+                votes[(int) this.classValues[this.candidateSlots[i]]]++;
+            }
+        }
+    }
+
+    protected int slotAt(int position) {
+        return this.order[(this.first + position) % this.order.length];
+    }
+
+    protected void allocateSlots(int numSlots) {
+        this.values = Arrays.copyOf(this.values, numSlots * this.numAttributes);
+        this.classValues = Arrays.copyOf(this.classValues, numSlots);
+        this.timeStamps = Arrays.copyOf(this.timeStamps, numSlots);
+        this.inTree = Arrays.copyOf(this.inTree, numSlots);
+        this.isAlive = Arrays.copyOf(this.isAlive, numSlots);
+        this.linearIndex = Arrays.copyOf(this.linearIndex, numSlots);
+        this.freeSlots = Arrays.copyOf(this.freeSlots, numSlots);
+        // the lowest slots are used first
+        for (int slot = numSlots - 1; slot >= this.numSlots; slot--) {
+            this.freeSlots[this.numFreeSlots++] = slot;
+        }
+        this.numSlots = numSlots;
+    }
+
+    protected void addLinear(int slot) {
+        if (this.numLinear == this.linear.length) {
+            this.linear = Arrays.copyOf(this.linear, 2 * this.linear.length);
+        }
+        this.linearIndex[slot] = this.numLinear;
+        this.linear[this.numLinear++] = slot;
+    }
+
+    /**
+     * Frees a slot, or marks it as removed while it is in the tree.
+     */
+    protected void release(int slot) {
+        int offset = slot * this.numAttributes;
+        boolean complete = true;
+        for (int a = 0; a < this.axes.length; a++) {
+            int j = this.axes[a];
+            double value = this.values[offset + j];
+            if (Double.isNaN(value)) {
+                complete = false;
+            } else if (value == this.rangeMin[j] || value == this.rangeMax[j]) {
+                this.rangesOutdated = true;
+            }
+        }
+        this.isAlive[slot] = false;
+        if (this.inTree[slot]) {
+            this.numRemovedFromTree++;
+            return;
+        }
+        if (!complete) {
+            this.numIncomplete--;
+        }
+        int index = this.linearIndex[slot];
+        int last = this.linear[--this.numLinear];
+        this.linear[index] = last;
+        this.linearIndex[last] = index;
+        this.freeSlots[this.numFreeSlots++] = slot;
+    }
+
+    protected void updateRanges() {
+        for (int a = 0; a < this.axes.length; a++) {
+            int j = this.axes[a];
+            this.rangeMin[j] = Double.POSITIVE_INFINITY;
+            this.rangeMax[j] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = 0; i < this.size; i++) {
+            int offset = slotAt(i) * this.numAttributes;
+            for (int a = 0; a < this.axes.length; a++) {
+                int j = this.axes[a];
+                double value = this.values[offset + j];
+                if (value < this.rangeMin[j]) {
+                    this.rangeMin[j] = value;
+                }
+                if (value > this.rangeMax[j]) {
+                    this.rangeMax[j] = value;
+                }
+            }
+        }
+        for (int a = 0; a < this.axes.length; a++) {
+            int j = this.axes[a];
+            // as NormalizableDistance, the width is infinite without values
+            this.rangeWidth[j] = this.rangeMin[j] <= this.rangeMax[j]
+                    ? this.rangeMax[j] - this.rangeMin[j] : Double.POSITIVE_INFINITY;
+        }
+        this.rangesOutdated = false;
+    }
+
+    /**
+     * Normalizes a value as NormalizableDistance.norm.
+     */
+    protected double norm(double x, int j) {
+        if (Double.isNaN(this.rangeMin[j]) || this.rangeMax[j] == this.rangeMin[j]) {
+            return 0;
+        }
+        return (x - this.rangeMin[j]) / this.rangeWidth[j];
+    }
+
+    /**
+     * Computes the squared distance from the target to an instance with the
+     * same arithmetic as EuclideanDistance.distance, or infinity when it
+     * is greater than the cut-off.
+     */
+    protected double distance(int slot, double cutOffValue) {
+        int offset = slot * this.numAttributes;
+        double distance = 0;
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j == this.classIndex) {
+                continue;
+            }
+            double val1 = this.target[j];
+            double val2 = this.values[offset + j];
+            double diff;
+            if (this.isNominal[j]) {
+                diff = Double.isNaN(val1) || Double.isNaN(val2) || (int) val1 != (int) val2 ? 1 : 0;
+            } else if (Double.isNaN(val1) || Double.isNaN(val2)) {
+                if (Double.isNaN(val1) && Double.isNaN(val2)) {
+                    diff = 1;
+                } else {
+                    diff = Double.isNaN(val2) ? this.normTarget[j] : norm(val2, j);
+                    if (diff < 0.5) {
+                        diff = 1.0 - diff;
+                    }
+                }
+            } else {
+                diff = this.normTarget[j] - norm(val2, j);
+            }
+            distance += diff * diff;
+            if (distance > cutOffValue) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Keeps the k smallest distances in a max-heap, and the instances that
+     * may be as near as the k-th as candidates.
+     */
+    protected void offer(int slot, int k) {
+        double cutOffValue = this.heapSize < k ? Double.POSITIVE_INFINITY : this.heap[0];
+        double distance = distance(slot, cutOffValue);
+        if (this.heapSize < k) {
+            int i = this.heapSize++;
+            while (i > 0 && this.heap[(i - 1) / 2] < distance) {
+                this.heap[i] = this.heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            this.heap[i] = distance;
+        } else if (distance <= this.heap[0]) {
+            if (distance < this.heap[0]) {
+                int i = 0;
+                while (2 * i + 1 < k) {
+                    int child = 2 * i + 1;
+                    if (child + 1 < k && this.heap[child + 1] > this.heap[child]) {
+                        child++;
+                    }
+                    if (this.heap[child] <= distance) {
+                        break;
+                    }
+                    this.heap[i] = this.heap[child];
+                    i = child;
+                }
+                this.heap[i] = distance;
+            }
+        } else {
+            return;
+        }
+        if (this.numCandidates == this.candidateSlots.length) {
+            this.candidateSlots = Arrays.copyOf(this.candidateSlots, 2 * this.numCandidates);
+            this.candidateDistances = Arrays.copyOf(this.candidateDistances, 2 * this.numCandidates);
+        }
+        this.candidateSlots[this.numCandidates] = slot;
+        this.candidateDistances[this.numCandidates++] = distance;
+    }
+
+    /**
+     * Gets a lower bound of the squared distance from the target to the
+     * instances in the box of a node. Each term is at most the matching term
+     * of the distance, since norm is nondecreasing.
+     */
+    protected double lowerBound(int node) {
+        int offset = node * this.axes.length;
+        double bound = 0;
+        for (int a = 0; a < this.axes.length; a++) {
+            int j = this.axes[a];
+            double value = this.target[j];
+            double gap;
+            if (value < this.nodeMin[offset + a]) {
+                gap = norm(this.nodeMin[offset + a], j) - this.normTarget[j];
+            } else if (value > this.nodeMax[offset + a]) {
+                gap = this.normTarget[j] - norm(this.nodeMax[offset + a], j);
+            } else {
+                // inside the box, or missing
+                continue;
+            }
+            bound += gap * gap;
+        }
+        return bound;
+    }
+
+    protected void search(int node, int k) {
+        if (this.nodeLeft[node] < 0) {
+            for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+                int slot = this.treeSlots[i];
+                if (this.isAlive[slot]) {
+                    offer(slot, k);
+                }
+            }
+            return;
+        }
+        int near = this.nodeLeft[node];
+        int far = this.nodeRight[node];
+        double nearBound = lowerBound(near);
+        double farBound = lowerBound(far);
+        if (farBound < nearBound) {
+            int swap = near;
+            near = far;
+            far = swap;
+            double swapBound = nearBound;
+            nearBound = farBound;
+            farBound = swapBound;
+        }
+        if (this.heapSize < k || nearBound <= this.heap[0]) {
+            search(near, k);
+        }
+        if (this.heapSize < k || farBound <= this.heap[0]) {
+            search(far, k);
+        }
+    }
+
+    /**
+     * Adds an instance without missing values to the leaf of the tree that
+     * it falls in, if the leaf has room or a removed instance to replace.
+     *
+     * @return whether the instance was added
+     */
+    protected boolean addToTree(int slot) {
+        int offset = slot * this.numAttributes;
+        int node = 0;
+        while (this.nodeLeft[node] >= 0) {
+            node = this.values[offset + this.axes[this.nodeSplitAxis[node]]] <= this.nodeSplitValue[node]
+                    ? this.nodeLeft[node] : this.nodeRight[node];
+        }
+        int position = -1;
+        if (this.nodeEnd[node] < this.nodeStart[node] + LEAF_CAPACITY) {
+            position = this.nodeEnd[node]++;
+        } else {
+            for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+                int removed = this.treeSlots[i];
+                if (!this.isAlive[removed]) {
+                    this.inTree[removed] = false;
+                    this.freeSlots[this.numFreeSlots++] = removed;
+                    this.numRemovedFromTree--;
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                return false;
+            }
+        }
+        this.treeSlots[position] = slot;
+        this.inTree[slot] = true;
+        this.numAddedToTree++;
+        // the boxes of the nodes on the way grow to hold the instance
+        node = 0;
+        while (true) {
+            int boxOffset = node * this.axes.length;
+            for (int a = 0; a < this.axes.length; a++) {
+                double value = this.values[offset + this.axes[a]];
+                if (value < this.nodeMin[boxOffset + a]) {
+                    this.nodeMin[boxOffset + a] = value;
+                }
+                if (value > this.nodeMax[boxOffset + a]) {
+                    this.nodeMax[boxOffset + a] = value;
+                }
+            }
+            if (this.nodeLeft[node] < 0) {
+                return true;
+            }
+            node = this.values[offset + this.axes[this.nodeSplitAxis[node]]] <= this.nodeSplitValue[node]
+                    ? this.nodeLeft[node] : this.nodeRight[node];
+        }
+    }
+
+    /**
+     * Builds the tree on the instances of the window without missing values,
+     * and frees the slots of the instances removed from the previous tree.
+     */
+    protected void buildTree() {
+        for (int node = 0; node < this.numNodes; node++) {
+            if (this.nodeLeft[node] < 0) {
+                for (int i = this.nodeStart[node]; i < this.nodeEnd[node]; i++) {
+                    int slot = this.treeSlots[i];
+                    this.inTree[slot] = false;
+                    if (!this.isAlive[slot]) {
+                        this.freeSlots[this.numFreeSlots++] = slot;
+                    }
+                }
+            }
+        }
+        this.numLinear = 0;
+        this.treeSize = 0;
+        if (this.buildSlots.length < this.size) {
+            this.buildSlots = new int[this.numSlots];
+        }
+        for (int i = 0; i < this.size; i++) {
+            int slot = slotAt(i);
+            if (isComplete(slot)) {
+                this.inTree[slot] = true;
+                this.buildSlots[this.treeSize++] = slot;
+            } else {
+                addLinear(slot);
+            }
+        }
+        this.numAddedToTree = 0;
+        this.numRemovedFromTree = 0;
+        this.numNodes = 0;
+        this.numLeaves = 0;
+        // the leaves have at least LEAF_SIZE / 2 instances
+        int maxLeaves = 2 * this.treeSize / LEAF_SIZE + 1;
+        int maxNodes = 2 * maxLeaves;
+        if (this.nodeStart.length < maxNodes) {
+            this.nodeStart = new int[maxNodes];
+            this.nodeEnd = new int[maxNodes];
+            this.nodeLeft = new int[maxNodes];
+            this.nodeRight = new int[maxNodes];
+            this.nodeSplitAxis = new int[maxNodes];
+            this.nodeSplitValue = new double[maxNodes];
+            this.nodeMin = new double[maxNodes * this.axes.length];
+            this.nodeMax = new double[maxNodes * this.axes.length];
+            this.treeSlots = new int[maxLeaves * LEAF_CAPACITY];
+        }
+        if (this.treeSize > 0) {
+            buildNode(0, this.treeSize);
+        }
+    }
+
+    protected boolean isComplete(int slot) {
+        int offset = slot * this.numAttributes;
+        for (int a = 0; a < this.axes.length; a++) {
+            if (Double.isNaN(this.values[offset + this.axes[a]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the node of buildSlots[start, end), split at the median of the
+     * attribute that is the widest relative to its range.
+     */
+    protected int buildNode(int start, int end) {
+        int node = this.numNodes++;
+        this.nodeLeft[node] = -1;
+        this.nodeRight[node] = -1;
+        int offset = node * this.axes.length;
+        for (int a = 0; a < this.axes.length; a++) {
+            this.nodeMin[offset + a] = Double.POSITIVE_INFINITY;
+            this.nodeMax[offset + a] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = start; i < end; i++) {
+            int valuesOffset = this.buildSlots[i] * this.numAttributes;
+            for (int a = 0; a < this.axes.length; a++) {
+                double value = this.values[valuesOffset + this.axes[a]];
+                if (value < this.nodeMin[offset + a]) {
+                    this.nodeMin[offset + a] = value;
+                }
+                if (value > this.nodeMax[offset + a]) {
+                    this.nodeMax[offset + a] = value;
+                }
+            }
+        }
+        if (end - start <= LEAF_SIZE) {
+            int leafStart = this.numLeaves++ * LEAF_CAPACITY;
+            System.arraycopy(this.buildSlots, start, this.treeSlots, leafStart, end - start);
+            this.nodeStart[node] = leafStart;
+            this.nodeEnd[node] = leafStart + end - start;
+            return node;
+        }
+        // without a wide attribute, the instances are only split in halves
+        int splitAxis = 0;
+        double widest = 0;
+        for (int a = 0; a < this.axes.length; a++) {
+            double width = this.rangeWidth[this.axes[a]];
+            if (width > 0 && !Double.isInfinite(width)) {
+                double relativeWidth = (this.nodeMax[offset + a] - this.nodeMin[offset + a]) / width;
+                if (relativeWidth > widest) {
+                    widest = relativeWidth;
+                    splitAxis = a;
+                }
+            }
+        }
+        int middle = (start + end) / 2;
+        int j = this.axes[splitAxis];
+        select(start, end, middle, j);
+        this.nodeSplitAxis[node] = splitAxis;
+        this.nodeSplitValue[node] = this.values[this.buildSlots[middle] * this.numAttributes + j];
+        this.nodeLeft[node] = buildNode(start, middle);
+        this.nodeRight[node] = buildNode(middle, end);
+        return node;
+    }
+
+    /**
+     * Reorders buildSlots[start, end) so that the slot at n has the n-th
+     * value of attribute j, with no greater values before it and no smaller
+     * values after it.
+     */
+    protected void select(int start, int end, int n, int j) {
+        int low = start;
+        int high = end - 1;
+        while (low < high) {
+            double pivot = this.values[this.buildSlots[(low + high) >>> 1] * this.numAttributes + j];
+            int i = low;
+            int h = high;
+            while (i <= h) {
+                while (this.values[this.buildSlots[i] * this.numAttributes + j] < pivot) {
+                    i++;
+                }
+                while (this.values[this.buildSlots[h] * this.numAttributes + j] > pivot) {
+                    h--;
+                }
+                if (i <= h) {
+                    int swap = this.buildSlots[i];
+                    this.buildSlots[i] = this.buildSlots[h];
+                    this.buildSlots[h] = swap;
+                    i++;
+                    h--;
+                }
+            }
+            if (n <= h) {
+                high = h;
+            } else if (n >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
@@ -20,27 +20,39 @@ package moa.classifiers.meta;
 
 import com.yahoo.labs.samoa.instances.Instance;
 
+import moa.AbstractMOAObject;
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
+import moa.core.ByteSizeEstimable;
 import moa.core.DoubleVector;
-import moa.core.InstanceExample;
 import moa.core.Measurement;
+import moa.core.MetricsSink;
 import moa.core.MiscUtils;
+import moa.core.ThreadCPUTimer;
+import moa.core.WorkerPool;
 import moa.options.ClassOption;
+import moa.options.OptionHandlerFactory;
 
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import moa.classifiers.trees.ARFHoeffdingTree;
+import moa.classifiers.trees.CompiledTree;
 import moa.evaluation.BasicClassificationPerformanceEvaluator;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.classifiers.core.driftdetection.ChangeDetectorBank;
 
 
 /**
@@ -68,17 +80,27 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * values corresponds to M - m</li>
  * <li>-a : The lambda value for bagging (lambda=6 corresponds to levBag)</li>
  * <li>-j : Number of threads to be used for training</li>
+ * <li>-e : How training is distributed among the threads: invokeAll() per 
+ * instance or long-lived workers, each owning a fixed shard of trees. The 
+ * workers train on the instances after trainOnInstance returns, so the 
+ * instances given to the forest must not be modified afterwards</li>
+ * <li>-y : Should predictions also be distributed among the workers? (ShardedWorkers engine only)</li>
  * <li>-x : Change detector for drifts and its parameters</li>
  * <li>-p : Change detector for warnings (start training bkg learner)</li>
  * <li>-w : Should use weighted voting?</li>
  * <li>-u : Should use drift detection? If disabled then bkg learner is also disabled</li>
  * <li>-q : Should use bkg learner? If disabled then reset tree immediately</li>
+ * <li>-i : Phase timings are measured on one out of every i instances (0 disables them)</li>
+ * <li>-t : Metrics are published to the metrics sink every t instances</li>
+ * <li>-v : A read-only snapshot of the forest is published every v instances, 
+ * for predictions from other threads (see getSnapshot). Each snapshot 
+ * compiles the trees trained since the previous one</li>
  * </ul>
  *
  * @author Heitor Murilo Gomes (heitor_murilo_gomes at yahoo dot com dot br)
  * @version $Revision: 1 $
  */
-public class AdaptiveRandomForest extends AbstractClassifier {
+public class AdaptiveRandomForest extends AbstractClassifier implements ByteSizeEstimable {
 
     @Override
     public String getPurposeString() {
@@ -109,6 +131,18 @@ public class AdaptiveRandomForest extends AbstractClassifier {
     public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
         "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
     
+    public MultiChoiceOption trainingEngineOption = new MultiChoiceOption("trainingEngine", 'e', 
+        "Defines how training is distributed among the numberOfJobs threads.",
+        new String[]{"InvokeAll", "ShardedWorkers"},
+        new String[]{"ExecutorService.invokeAll() for every instance", 
+            "Long-lived workers, each owning a fixed shard of trees"}, 0);
+    
+    public IntOption workerQueueSizeOption = new IntOption("workerQueueSize", 'b',
+        "Number of instances that can be queued for each worker (ShardedWorkers engine only).", 1024, 1, Integer.MAX_VALUE);
+    
+    public FlagOption parallelPredictionOption = new FlagOption("parallelPrediction", 'y',
+        "Should predictions also be distributed among the workers? Only used by the ShardedWorkers engine.");
+    
     public ClassOption driftDetectionMethodOption = new ClassOption("driftDetectionMethod", 'x',
         "Change detector for drifts and its parameters", ChangeDetector.class, "ADWINChangeDetector -a 1.0E-5");
 
@@ -124,29 +158,131 @@ public class AdaptiveRandomForest extends AbstractClassifier {
     public FlagOption disableBackgroundLearnerOption = new FlagOption("disableBackgroundLearner", 'q', 
         "Should use bkg learner? If disabled then reset tree immediately.");
     
+    public IntOption metricsSampleIntervalOption = new IntOption("metricsSampleInterval", 'i',
+        "Phase timings are measured on one out of every i instances (0 disables them).", 100, 0, Integer.MAX_VALUE);
+
+    public IntOption metricsReportIntervalOption = new IntOption("metricsReportInterval", 't',
+        "Metrics are published to the metrics sink (if any) every t instances (0 disables it).", 100000, 0, Integer.MAX_VALUE);
+
+    public IntOption snapshotIntervalOption = new IntOption("snapshotInterval", 'v',
+        "A read-only snapshot of the forest is published for predictions from other threads every v instances (0 disables it). "
+        + "Each snapshot compiles the trees trained since the previous one into flat arrays, and copies the naive Bayes "
+        + "leaves that learned since then.", 0, 0, Integer.MAX_VALUE);
+
     protected static final int FEATURES_M = 0;
     protected static final int FEATURES_SQRT = 1;
     protected static final int FEATURES_SQRT_INV = 2;
     protected static final int FEATURES_PERCENT = 3;
     
     protected static final int SINGLE_THREAD = 0;
+    
+    protected static final int ENGINE_INVOKE_ALL = 0;
+    protected static final int ENGINE_SHARDED_WORKERS = 1;
 	
     protected ARFBaseLearner[] ensemble;
     protected long instancesSeen;
     protected int subspaceSize;
     protected BasicClassificationPerformanceEvaluator evaluator;
+    
+    // Create the trees, evaluators and detectors of new learners (initial or
+    // background) without copying the ones already in use. Set by initEnsemble.
+    protected OptionHandlerFactory<ARFHoeffdingTree> treeFactory;
+    protected OptionHandlerFactory<BasicClassificationPerformanceEvaluator> evaluatorFactory;
+    
+    // Drift and warning detectors of the learners, detector i monitoring 
+    // ensemble[i] (and its bkg learner once it replaces it). Null if drift 
+    // detection (or the bkg learners) are disabled. Set by initEnsemble.
+    protected ChangeDetectorBank driftDetectors;
+    protected ChangeDetectorBank warningDetectors;
+    
+    // Inputs of the detectors for the current instance (see detectChanges), 
+    // the detectors given an input, and those that detected a change
+    private transient double[] detectorInputs;
+    private transient BitSet activeDetectors;
+    private transient BitSet warningsDetected;
+    private transient BitSet driftsDetected;
+    
+    // Time spent by detectChanges on the sampled instances
+    protected long detectionNanos;
 
-    private ExecutorService executor;
+    // Training engine, started on the first training instance, so that a
+    // copy of the forest starts its own (see startWorkers)
+    protected transient ExecutorService executor;
+    
+    protected transient WorkerPool workerPool;
+    
+    // Training tasks of the ShardedWorkers engine, used in turn: there are 
+    // more of them than a worker queue holds, so the one reused has been 
+    // executed by every worker (see WorkerPool.submit)
+    protected transient ShardTrainingTask[] trainingTasks;
+    protected transient int nextTrainingTask;
+    
+    protected transient boolean workersStarted;
+    
+    // Combined votes, reused by every call to getVotesForInstance
+    private transient double[] combinedVotes;
+    
+    // One partial vote per worker and its number of votes, reused by every 
+    // parallel prediction
+    private transient double[][] partialVotes;
+    private transient int[] partialNumVotes;
+    private transient ShardPredictionTask predictionTask;
+    
+    // Instrumentation (see getModelMeasurementsImpl)
+    protected int metricsSampleInterval;
+    protected long driftsAtLastMeasurement;
+    protected long warningsAtLastMeasurement;
+    protected transient MetricsSink metricsSink;
+    
+    // Last snapshot published by the training thread (see getSnapshot)
+    protected transient volatile Snapshot snapshot;
+    
+    // The trees copied into the last snapshot, when they were created or 
+    // reset and the training weight they had seen then, so that the next 
+    // snapshot can reuse the copies of the trees that did not learn since
+    protected transient ARFHoeffdingTree[] snapshotSources;
+    protected transient long[] snapshotCreatedOn;
+    protected transient double[] snapshotWeightsSeen;
+    
+    // Size of the forest not included in the estimates of its learners (see
+    // estimateByteSize), measured on the first estimate after initEnsemble
+    protected long byteSizeOffset;
+    protected boolean byteSizeOffsetMeasured;
     
     @Override
     public void resetLearningImpl() {
+        // Stop the workers of a previous model, if any
+        shutdownWorkers();
+        
         // Reset attributes
         this.ensemble = null;
         this.subspaceSize = 0;
         this.instancesSeen = 0;
         this.evaluator = new BasicClassificationPerformanceEvaluator();
-        
-        // Multi-threading
+        this.treeFactory = null;
+        this.evaluatorFactory = null;
+        this.driftDetectors = null;
+        this.warningDetectors = null;
+        this.detectorInputs = null;
+        this.detectionNanos = 0;
+        this.combinedVotes = null;
+        this.partialVotes = null;
+        this.metricsSampleInterval = this.metricsSampleIntervalOption.getValue();
+        this.driftsAtLastMeasurement = 0;
+        this.warningsAtLastMeasurement = 0;
+        this.snapshot = null;
+        this.snapshotSources = null;
+        this.snapshotCreatedOn = null;
+        this.snapshotWeightsSeen = null;
+    }
+
+    /**
+     * Starts the threads of the training engine chosen by numberOfJobs and
+     * trainingEngine. The threads are not copied with the forest, so each
+     * copy starts its own when it is first trained.
+     */
+    protected void startWorkers() {
+        this.workersStarted = true;
         int numberOfJobs;
         if(this.numberOfJobsOption.getValue() == -1) 
             numberOfJobs = Runtime.getRuntime().availableProcessors();
@@ -154,63 +290,263 @@ public class AdaptiveRandomForest extends AbstractClassifier {
             numberOfJobs = this.numberOfJobsOption.getValue();
         // SINGLE_THREAD and requesting for only 1 thread are equivalent. 
         // this.executor will be null and not used...
-        if(numberOfJobs != AdaptiveRandomForest.SINGLE_THREAD && numberOfJobs != 1)
-            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+        if(numberOfJobs != AdaptiveRandomForest.SINGLE_THREAD && numberOfJobs != 1) {
+            if(this.trainingEngineOption.getChosenIndex() == AdaptiveRandomForest.ENGINE_SHARDED_WORKERS) {
+                this.workerPool = new WorkerPool(Math.min(numberOfJobs, this.ensembleSizeOption.getValue()), 
+                    this.workerQueueSizeOption.getValue(), "ARF-worker");
+                this.trainingTasks = new ShardTrainingTask[2 * this.workerPool.queueCapacity()];
+                this.nextTrainingTask = 0;
+            }
+            else
+                this.executor = Executors.newFixedThreadPool(numberOfJobs, 
+                    ThreadCPUTimer.threadFactory("ARF-executor", true));
+        }
     }
 
     @Override
     public void trainOnInstanceImpl(Instance instance) {
+        if(! this.workersStarted)
+            startWorkers();
         ++this.instancesSeen;
         if(this.ensemble == null) 
             initEnsemble(instance);
+        if(this.detectorInputs == null) {
+            this.detectorInputs = new double[this.ensemble.length];
+            this.activeDetectors = new BitSet(this.ensemble.length);
+            this.warningsDetected = new BitSet(this.ensemble.length);
+            this.driftsDetected = new BitSet(this.ensemble.length);
+        }
         
-        Collection<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>();
-        for (int i = 0 ; i < this.ensemble.length ; i++) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(instance));
-            InstanceExample example = new InstanceExample(instance);
-            this.ensemble[i].evaluator.addResult(example, vote.getArrayRef());
-            int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
-            if (k > 0) {
-                if(this.executor != null) {
-                    TrainingRunnable trainer = new TrainingRunnable(this.ensemble[i], 
-                        instance, k, this.instancesSeen);
-                    trainers.add(trainer);
-                }
-                else { // SINGLE_THREAD is in-place... 
-                    this.ensemble[i].trainOnInstance(instance, k, this.instancesSeen);
-                }
+        if(this.workerPool != null) {
+            // The Poisson weights are drawn here, in the same order as the 
+            // other engines, so that the same seed produces the same forest.
+            // The instance is not copied: the trees only read it.
+            ShardTrainingTask task = this.trainingTasks[this.nextTrainingTask];
+            if(task == null) {
+                task = new ShardTrainingTask(this.ensemble.length);
+                this.trainingTasks[this.nextTrainingTask] = task;
             }
+            this.nextTrainingTask = (this.nextTrainingTask + 1) % this.trainingTasks.length;
+            for (int i = 0 ; i < this.ensemble.length ; i++)
+                task.weights[i] = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+            task.set(instance, this.instancesSeen);
+            this.workerPool.submit(task);
         }
-        if(this.executor != null) {
+        else if(this.executor == null) {
+            // SINGLE_THREAD is in-place and does not allocate anything... 
+            for (int i = 0 ; i < this.ensemble.length ; i++) {
+                int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+                this.detectorInputs[i] = this.ensemble[i].testAndTrain(instance, k, this.instancesSeen);
+            }
+            detectChanges(instance, this.instancesSeen);
+        }
+        else {
+            Collection<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>();
+            for (int i = 0 ; i < this.ensemble.length ; i++) {
+                int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+                trainers.add(new TrainingRunnable(this.ensemble[i], 
+                    instance, k, this.instancesSeen));
+            }
             try {
                 this.executor.invokeAll(trainers);
             } catch (InterruptedException ex) {
                 throw new RuntimeException("Could not call invokeAll() on training threads.");
             }
+            detectChanges(instance, this.instancesSeen);
         }
+        publishMetricsIfDue(this.instancesSeen - 1);
+        publishSnapshotIfDue(this.instancesSeen - 1);
+    }
+    
+    /**
+     * Gives the errors of the learners trained on instance (stored in 
+     * detectorInputs by ARFBaseLearner.testAndTrain) to their warning and 
+     * drift detectors, in one call to each bank, then lets the learners 
+     * whose detectors detected a change start a bkg learner or reset, in 
+     * the order of the ensemble. The learners are independent, so the 
+     * forest is the same as if each learner updated its own detectors. 
+     */
+    protected void detectChanges(Instance instance, long instancesSeen) {
+        if(this.driftDetectors == null)
+            return;
+        boolean sampled = isSampled(instancesSeen);
+        long start = sampled ? System.nanoTime() : 0L;
+        BitSet active = this.activeDetectors;
+        active.clear();
+        for (int i = 0 ; i < this.ensemble.length ; i++)
+            if(this.detectorInputs[i] >= 0)
+                active.set(i);
+        boolean warning = this.warningDetectors != null 
+            && this.warningDetectors.input(this.detectorInputs, active, this.warningsDetected, null);
+        boolean drift = this.driftDetectors.input(this.detectorInputs, active, this.driftsDetected, null);
+        if(warning || drift) {
+            for (int i = active.nextSetBit(0) ; i >= 0 ; i = active.nextSetBit(i + 1)) {
+                if(warning && this.warningsDetected.get(i))
+                    this.ensemble[i].startBkgLearner(instance, instancesSeen);
+                if(drift && this.driftsDetected.get(i))
+                    this.ensemble[i].resetOnDrift(instancesSeen);
+            }
+        }
+        if(sampled)
+            this.detectionNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Trains the forest on a batch of instances. The resulting forest is the
+     * same as if each instance were given to trainOnInstance, but threads are
+     * synchronized only once per batch: each thread (or worker) trains its 
+     * trees on the whole batch. 
+     */
+    @Override
+    public void trainOnInstances(Instance[] instances) {
+        Instance[] batch = prepareTrainingBatch(instances);
+        if(batch.length == 0)
+            return;
+        if(! this.workersStarted)
+            startWorkers();
+        if(this.executor == null && this.workerPool == null) {
+            // SINGLE_THREAD: nothing to be gained from batching
+            for(Instance instance : batch)
+                trainOnInstanceImpl(instance);
+            return;
+        }
+        if(this.ensemble == null) 
+            initEnsemble(batch[0]);
+        
+        long firstInstanceSeen = this.instancesSeen + 1;
+        this.instancesSeen += batch.length;
+        // Same order of Poisson draws as trainOnInstanceImpl
+        int[][] weights = new int[batch.length][this.ensemble.length];
+        for (int j = 0 ; j < batch.length ; j++)
+            for (int i = 0 ; i < this.ensemble.length ; i++)
+                weights[j][i] = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+        
+        if(this.workerPool != null) {
+            // The caller may reuse its array, but not the instances
+            Instance[] queued = batch == instances ? batch.clone() : batch;
+            this.workerPool.submit(new ShardBatchTrainingTask(queued, weights, firstInstanceSeen));
+        }
+        else {
+            Collection<BatchTrainingRunnable> trainers = new ArrayList<BatchTrainingRunnable>();
+            for (int i = 0 ; i < this.ensemble.length ; i++)
+                trainers.add(new BatchTrainingRunnable(i, batch, weights, firstInstanceSeen));
+            try {
+                this.executor.invokeAll(trainers);
+            } catch (InterruptedException ex) {
+                throw new RuntimeException("Could not call invokeAll() on training threads.");
+            }
+        }
+        publishMetricsIfDue(firstInstanceSeen - 1);
+        publishSnapshotIfDue(firstInstanceSeen - 1);
+    }
+    
+    @Override
+    public double[][] getVotesForInstances(Instance[] instances) {
+        awaitTraining();
+        if(this.workerPool == null || ! this.parallelPredictionOption.isSet() || instances.length == 0)
+            return super.getVotesForInstances(instances);
+        
+        if(this.ensemble == null) 
+            initEnsemble(instances[0]);
+        int numClasses = instances[0].dataset().numClasses();
+        int numWorkers = this.workerPool.numWorkers();
+        double[][][] batchPartialVotes = new double[numWorkers][instances.length][numClasses];
+        int[][] batchNumVotes = new int[numWorkers][instances.length];
+        this.workerPool.submit(new ShardBatchPredictionTask(instances, batchPartialVotes, batchNumVotes));
+        this.workerPool.barrier();
+        
+        double[][] votes = new double[instances.length][];
+        for (int j = 0 ; j < instances.length ; j++) {
+            int numVotes = 0;
+            for(int w = 0 ; w < numWorkers ; ++w)
+                numVotes = Math.max(numVotes, batchNumVotes[w][j]);
+            votes[j] = new double[numVotes];
+            for(int w = 0 ; w < numWorkers ; ++w)
+                for(int v = 0 ; v < numVotes ; ++v)
+                    votes[j][v] += batchPartialVotes[w][j][v];
+        }
+        return votes;
     }
 
     @Override
     public double[] getVotesForInstance(Instance instance) {
-        Instance testInstance = instance.copy();
+        int numClasses = instance.dataset().numClasses();
+        if(this.combinedVotes == null || this.combinedVotes.length < numClasses)
+            this.combinedVotes = new double[numClasses];
+        int numVotes = getVotesForInstance(instance, this.combinedVotes);
+        return Arrays.copyOf(this.combinedVotes, numVotes);
+    }
+    
+    /**
+     * Same as getVotesForInstance(instance), but the combined votes are 
+     * written into the given array, which must have an entry for each class. 
+     * Entries after the returned number of votes are set to 0. Nothing is 
+     * allocated per call, except by the trees that do not support it (see 
+     * HoeffdingTree.Node.getClassVotes(Instance, HoeffdingTree, double[])).
+     *
+     * @param instance the instance to be predicted
+     * @param votes the array where the combined votes are written
+     * @return the number of votes, i.e., the length of the array returned 
+     * by getVotesForInstance(instance)
+     */
+    public int getVotesForInstance(Instance instance, double[] votes) {
+        awaitTraining();
         if(this.ensemble == null) 
-            initEnsemble(testInstance);
-        DoubleVector combinedVote = new DoubleVector();
-
-        for(int i = 0 ; i < this.ensemble.length ; ++i) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(testInstance));
-            if (vote.sumOfValues() > 0.0) {
-                vote.normalize();
-                double acc = this.ensemble[i].evaluator.getPerformanceMeasurements()[1].getValue();
-                if(! this.disableWeightedVote.isSet() && acc > 0.0) {                        
-                    for(int v = 0 ; v < vote.numValues() ; ++v) {
-                        vote.setValue(v, vote.getValue(v) * acc);
-                    }
-                }
-                combinedVote.addValues(vote);
+            initEnsemble(instance);
+        Arrays.fill(votes, 0.0);
+        int numVotes = 0;
+        
+        if(this.workerPool != null && this.parallelPredictionOption.isSet()) {
+            int numClasses = instance.dataset().numClasses();
+            if(this.partialVotes == null || this.partialVotes[0].length < numClasses) {
+                this.partialVotes = new double[this.workerPool.numWorkers()][numClasses];
+                this.partialNumVotes = new int[this.workerPool.numWorkers()];
+                this.predictionTask = new ShardPredictionTask();
             }
+            // The caller waits in barrier(), so the instance is not copied
+            this.predictionTask.instance = instance;
+            this.workerPool.submit(this.predictionTask);
+            this.workerPool.barrier();
+            this.predictionTask.instance = null;
+            for(int w = 0 ; w < this.partialVotes.length ; ++w) {
+                for(int v = 0 ; v < this.partialNumVotes[w] ; ++v)
+                    votes[v] += this.partialVotes[w][v];
+                numVotes = Math.max(numVotes, this.partialNumVotes[w]);
+            }
+            return numVotes;
         }
-        return combinedVote.getArrayRef();
+
+        for(int i = 0 ; i < this.ensemble.length ; ++i)
+            numVotes = Math.max(numVotes, addWeightedVote(this.ensemble[i], instance, votes));
+        return numVotes;
+    }
+    
+    /**
+     * Adds the normalized vote of a single tree, weighted by its accuracy 
+     * (unless weighted voting is disabled), to combinedVote. 
+     *
+     * @return the number of votes of the tree, or 0 if it does not vote
+     */
+    protected int addWeightedVote(ARFBaseLearner learner, Instance testInstance, double[] combinedVote) {
+        double[] vote = learner.getVoteBuffer(testInstance);
+        int numVotes = learner.classifier.getVotesForInstance(testInstance, vote);
+        // Votes are never negative, so this is also the sum of absolute values
+        double sum = 0.0;
+        for(int v = 0 ; v < numVotes ; ++v)
+            sum += vote[v];
+        if (sum > 0.0) {
+            double scale = 1.0 / sum;
+            double acc = learner.getVoteWeight();
+            boolean weighted = ! this.disableWeightedVote.isSet() && acc > 0.0;
+            for(int v = 0 ; v < numVotes ; ++v) {
+                double value = vote[v] * scale;
+                if(weighted)
+                    value = value * acc;
+                combinedVote[v] += value;
+            }
+            return numVotes;
+        }
+        return 0;
     }
 
     @Override
@@ -222,15 +558,264 @@ public class AdaptiveRandomForest extends AbstractClassifier {
     public void getModelDescription(StringBuilder arg0, int arg1) {
     }
 
+    /**
+     * Returns the size of each tree, the number of background learners, the 
+     * drifts and warnings detected (in total and since the previous call), 
+     * and the average time per instance and tree spent on each phase of 
+     * training, measured on one out of every metricsSampleInterval instances.
+     */
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
-        return null;
+        awaitTraining();
+        return collectMetrics();
+    }
+    
+    /**
+     * Sets the sink that receives the metrics of this forest (the same as 
+     * getModelMeasurementsImpl) every metricsReportInterval instances.
+     *
+     * @param sink the metrics sink, or null to disable it
+     */
+    public void setMetricsSink(MetricsSink sink) {
+        this.metricsSink = sink;
+    }
+    
+    /**
+     * Publishes the metrics if the number of instances seen went past a 
+     * multiple of metricsReportInterval since previousInstancesSeen. 
+     */
+    protected void publishMetricsIfDue(long previousInstancesSeen) {
+        int interval = this.metricsReportIntervalOption.getValue();
+        if(this.metricsSink != null && interval > 0 
+                && this.instancesSeen / interval != previousInstancesSeen / interval) {
+            awaitTraining();
+            this.metricsSink.publish(this, this.instancesSeen, collectMetrics());
+        }
+    }
+    
+    /**
+     * Publishes a snapshot if the number of instances seen went past a 
+     * multiple of snapshotInterval since previousInstancesSeen. 
+     */
+    protected void publishSnapshotIfDue(long previousInstancesSeen) {
+        int interval = this.snapshotIntervalOption.getValue();
+        if(interval > 0 && this.instancesSeen / interval != previousInstancesSeen / interval)
+            publishSnapshot();
+    }
+    
+    /**
+     * Publishes a snapshot of the current forest, which is returned by 
+     * getSnapshot until the next one is published. Must be called by the 
+     * thread that trains the forest. The trees that were trained since the
+     * previous snapshot (or replaced by their background learner) are 
+     * compiled again (see CompiledTree.snapshot), which copies their class 
+     * distributions and the leaves that need more to vote and learned since
+     * the previous snapshot. Trees that did not learn share their compiled 
+     * snapshot with the previous one. 
+     *
+     * @return the snapshot
+     */
+    public Snapshot publishSnapshot() {
+        awaitTraining();
+        int ensembleSize = this.ensemble == null ? 0 : this.ensemble.length;
+        CompiledTree[] trees = new CompiledTree[ensembleSize];
+        double[] voteWeights = new double[ensembleSize];
+        ARFHoeffdingTree[] sources = new ARFHoeffdingTree[ensembleSize];
+        long[] createdOn = new long[ensembleSize];
+        double[] weightsSeen = new double[ensembleSize];
+        Snapshot previous = this.snapshot;
+        for(int i = 0 ; i < ensembleSize ; ++i) {
+            ARFHoeffdingTree tree = this.ensemble[i].classifier;
+            sources[i] = tree;
+            createdOn[i] = this.ensemble[i].createdOn;
+            weightsSeen[i] = tree.trainingWeightSeenByModel();
+            CompiledTree previousTree = null;
+            if(previous != null && this.snapshotSources != null && i < this.snapshotSources.length
+                    && this.snapshotSources[i] == tree && this.snapshotCreatedOn[i] == createdOn[i])
+                previousTree = previous.trees[i];
+            // a tree only changes when it is reset or trained on an instance
+            // with a positive weight, which increases the weight it has seen
+            if(previousTree != null && this.snapshotWeightsSeen[i] == weightsSeen[i])
+                trees[i] = previousTree;
+            else if(tree.getNodeCount() > 0)
+                trees[i] = CompiledTree.snapshot(tree, previousTree);
+            voteWeights[i] = this.ensemble[i].getVoteWeight();
+        }
+        Snapshot published = new Snapshot(trees, voteWeights, 
+            ! this.disableWeightedVote.isSet(), this.instancesSeen);
+        this.snapshotSources = sources;
+        this.snapshotCreatedOn = createdOn;
+        this.snapshotWeightsSeen = weightsSeen;
+        this.snapshot = published;
+        return published;
+    }
+    
+    /**
+     * Gets the last published snapshot of the forest. Can be called from 
+     * any thread, also while the forest is trained: a snapshot is published
+     * every snapshotInterval instances (or by publishSnapshot), and it never
+     * changes afterwards. 
+     *
+     * @return the snapshot, or null if none was published since the forest
+     * was reset
+     */
+    public Snapshot getSnapshot() {
+        return this.snapshot;
+    }
+    
+    protected Measurement[] collectMetrics() {
+        List<Measurement> metrics = new ArrayList<Measurement>();
+        int ensembleSize = this.ensemble != null ? this.ensemble.length : this.ensembleSizeOption.getValue();
+        int[] nodes = new int[ensembleSize];
+        int[] leaves = new int[ensembleSize];
+        long backgroundLearners = 0, drifts = 0, warnings = 0, splitAttempts = 0;
+        long sampled = 0, leafUpdateNanos = 0, splitNanos = 0, bkgTrainingNanos = 0, detectionNanos = 0;
+        long queueWaits = 0, queueWaitNanos = 0;
+        // Time spent in the banks of detectors, counted once for the forest
+        detectionNanos += this.detectionNanos;
+        for(int i = 0 ; this.ensemble != null && i < ensembleSize ; ++i) {
+            ARFBaseLearner learner = this.ensemble[i];
+            nodes[i] = learner.classifier.getNodeCount();
+            leaves[i] = learner.classifier.getLeafCount();
+            splitAttempts += learner.classifier.getSplitAttempts();
+            if(learner.bkgLearner != null) {
+                backgroundLearners++;
+                splitAttempts += learner.bkgLearner.classifier.getSplitAttempts();
+            }
+            drifts += learner.numberOfDriftsDetected;
+            warnings += learner.numberOfWarningsDetected;
+            sampled += learner.sampledInstances;
+            leafUpdateNanos += learner.leafUpdateNanos;
+            splitNanos += learner.splitAttemptNanos;
+            bkgTrainingNanos += learner.bkgTrainingNanos;
+            detectionNanos += learner.detectionNanos;
+            queueWaits += learner.queueWaits;
+            queueWaitNanos += learner.queueWaitNanos;
+        }
+        metrics.add(new Measurement("background learners", backgroundLearners));
+        metrics.add(new Measurement("drifts detected", drifts));
+        metrics.add(new Measurement("warnings detected", warnings));
+        metrics.add(new Measurement("drifts detected since last measurement", drifts - this.driftsAtLastMeasurement));
+        metrics.add(new Measurement("warnings detected since last measurement", warnings - this.warningsAtLastMeasurement));
+        metrics.add(new Measurement("split attempts", splitAttempts));
+        metrics.add(new Measurement("leaf update time per instance (microseconds)", microsPer(leafUpdateNanos, sampled)));
+        metrics.add(new Measurement("split attempt time per instance (microseconds)", microsPer(splitNanos, sampled)));
+        metrics.add(new Measurement("background training time per instance (microseconds)", microsPer(bkgTrainingNanos, sampled)));
+        metrics.add(new Measurement("drift detection time per instance (microseconds)", microsPer(detectionNanos, sampled)));
+        metrics.add(new Measurement("queue wait time (microseconds)", microsPer(queueWaitNanos, queueWaits)));
+        int totalNodes = 0, totalLeaves = 0;
+        for(int i = 0 ; i < ensembleSize ; ++i) {
+            totalNodes += nodes[i];
+            totalLeaves += leaves[i];
+        }
+        metrics.add(new Measurement("forest size (nodes)", totalNodes));
+        metrics.add(new Measurement("forest size (leaves)", totalLeaves));
+        for(int i = 0 ; i < ensembleSize ; ++i) {
+            metrics.add(new Measurement("tree " + i + " size (nodes)", nodes[i]));
+            metrics.add(new Measurement("tree " + i + " size (leaves)", leaves[i]));
+        }
+        this.driftsAtLastMeasurement = drifts;
+        this.warningsAtLastMeasurement = warnings;
+        return metrics.toArray(new Measurement[metrics.size()]);
+    }
+    
+    protected static double microsPer(long nanos, long count) {
+        return count > 0 ? nanos / 1000.0 / count : 0.0;
+    }
+    
+    /**
+     * Is the training of instance number instancesSeen timed?
+     */
+    protected boolean isSampled(long instancesSeen) {
+        return this.metricsSampleInterval > 0 && instancesSeen % this.metricsSampleInterval == 0;
+    }
+    
+    @Override
+    public int measureByteSize() {
+        awaitTraining();
+        return super.measureByteSize();
+    }
+    
+    /**
+     * Sum of the size estimates of the trees and evaluators of every learner 
+     * (including background learners) and of the banks of detectors, plus 
+     * the size of the rest of the forest, which is measured only once. 
+     */
+    @Override
+    public int estimateByteSize() {
+        awaitTraining();
+        if(this.ensemble == null)
+            return measureByteSize();
+        long learnersSize = 0;
+        for(ARFBaseLearner learner : this.ensemble) {
+            long size = learner.estimateByteSize();
+            if(size < 0)
+                return -1;
+            learnersSize += size;
+        }
+        ChangeDetectorBank[] banks = {this.driftDetectors, this.warningDetectors};
+        for(ChangeDetectorBank bank : banks) {
+            if(bank == null)
+                continue;
+            int size = bank.estimateByteSize();
+            if(size < 0)
+                return -1;
+            learnersSize += size;
+        }
+        if(! this.byteSizeOffsetMeasured) {
+            this.byteSizeOffset = measureByteSize() - learnersSize;
+            this.byteSizeOffsetMeasured = true;
+        }
+        return (int) (this.byteSizeOffset + learnersSize);
+    }
+    
+    @Override
+    public Classifier copy() {
+        awaitTraining();
+        return super.copy();
+    }
+    
+    /**
+     * Waits until the workers have processed every queued instance. 
+     * Does nothing if the ShardedWorkers engine is not in use.
+     */
+    protected void awaitTraining() {
+        if(this.workerPool != null)
+            this.workerPool.barrier();
+    }
+    
+    protected void shutdownWorkers() {
+        this.workersStarted = false;
+        if(this.workerPool != null) {
+            this.workerPool.shutdown();
+            this.workerPool = null;
+            this.trainingTasks = null;
+        }
+        if(this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+    
+    /**
+     * Stops the threads of the training engine of a forest that is no 
+     * longer used. The threads are daemon threads, and do not refer to the 
+     * forest while they wait for work.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            shutdownWorkers();
+        } finally {
+            super.finalize();
+        }
     }
 
     protected void initEnsemble(Instance instance) {
         // Init the ensemble.
         int ensembleSize = this.ensembleSizeOption.getValue();
         this.ensemble = new ARFBaseLearner[ensembleSize];
+        this.byteSizeOffsetMeasured = false;
         
         // TODO: this should be an option with default = BasicClassificationPerformanceEvaluator
 //        BasicClassificationPerformanceEvaluator classificationEvaluator = (BasicClassificationPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
@@ -275,13 +860,23 @@ public class AdaptiveRandomForest extends AbstractClassifier {
         
         ARFHoeffdingTree treeLearner = (ARFHoeffdingTree) getPreparedClassOption(this.treeLearnerOption);
         treeLearner.resetLearning();
+        treeLearner.subspaceSizeOption.setValue(this.subspaceSize);
+        
+        this.treeFactory = new OptionHandlerFactory<ARFHoeffdingTree>(treeLearner);
+        this.evaluatorFactory = new OptionHandlerFactory<BasicClassificationPerformanceEvaluator>(classificationEvaluator);
+        if(! this.disableDriftDetectionOption.isSet()) {
+            this.driftDetectors = ChangeDetectorBank.newBank(
+                (ChangeDetector) getPreparedClassOption(this.driftDetectionMethodOption), ensembleSize);
+            if(! this.disableBackgroundLearnerOption.isSet())
+                this.warningDetectors = ChangeDetectorBank.newBank(
+                    (ChangeDetector) getPreparedClassOption(this.warningDetectionMethodOption), ensembleSize);
+        }
         
         for(int i = 0 ; i < ensembleSize ; ++i) {
-            treeLearner.subspaceSizeOption.setValue(this.subspaceSize);
             this.ensemble[i] = new ARFBaseLearner(
                 i, 
-                (ARFHoeffdingTree) treeLearner.copy(), 
-                (BasicClassificationPerformanceEvaluator) classificationEvaluator.copy(), 
+                treeFactory.newInstance(), 
+                evaluatorFactory.newInstance(), 
                 this.instancesSeen, 
                 ! this.disableBackgroundLearnerOption.isSet(),
                 ! this.disableDriftDetectionOption.isSet(), 
@@ -291,11 +886,91 @@ public class AdaptiveRandomForest extends AbstractClassifier {
         }
     }
     
+    /**
+     * Read-only snapshot of the trees of a forest (see CompiledTree.snapshot)
+     * and of the weights of their votes, which gives the same votes as the 
+     * forest had when the snapshot was made. Several threads can predict 
+     * with it at the same time, without any lock, while the forest goes on 
+     * learning. 
+     */
+    public static class Snapshot implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        // null for the trees that did not learn yet
+        protected final CompiledTree[] trees;
+        protected final double[] voteWeights;
+        protected final boolean weightedVote;
+        protected final long instancesSeen;
+        
+        protected Snapshot(CompiledTree[] trees, double[] voteWeights, 
+                boolean weightedVote, long instancesSeen) {
+            this.trees = trees;
+            this.voteWeights = voteWeights;
+            this.weightedVote = weightedVote;
+            this.instancesSeen = instancesSeen;
+        }
+        
+        /**
+         * Number of instances the forest had been trained on when this 
+         * snapshot was published. 
+         */
+        public long getInstancesSeen() {
+            return this.instancesSeen;
+        }
+        
+        /**
+         * Same as AdaptiveRandomForest.getVotesForInstance(instance) at the
+         * time the snapshot was published.
+         */
+        public double[] getVotesForInstance(Instance instance) {
+            int numClasses = instance.dataset().numClasses();
+            double[] votes = new double[numClasses];
+            int numVotes = getVotesForInstance(instance, votes, new double[numClasses]);
+            return Arrays.copyOf(votes, numVotes);
+        }
+        
+        /**
+         * Same as getVotesForInstance(instance), but the combined votes are
+         * written into votes, and treeVotes is used for the votes of each 
+         * tree. Both arrays must have an entry for each class and belong to
+         * the calling thread. 
+         *
+         * @return the number of votes
+         */
+        public int getVotesForInstance(Instance instance, double[] votes, double[] treeVotes) {
+            Arrays.fill(votes, 0.0);
+            int numVotes = 0;
+            for(int i = 0 ; i < this.trees.length ; ++i) {
+                if(this.trees[i] == null)
+                    continue;
+                int numTreeVotes = this.trees[i].getVotesForInstance(instance, treeVotes);
+                // same as addWeightedVote
+                double sum = 0.0;
+                for(int v = 0 ; v < numTreeVotes ; ++v)
+                    sum += treeVotes[v];
+                if (sum > 0.0) {
+                    double scale = 1.0 / sum;
+                    double acc = this.voteWeights[i];
+                    boolean weighted = this.weightedVote && acc > 0.0;
+                    for(int v = 0 ; v < numTreeVotes ; ++v) {
+                        double value = treeVotes[v] * scale;
+                        if(weighted)
+                            value = value * acc;
+                        votes[v] += value;
+                    }
+                    numVotes = Math.max(numVotes, numTreeVotes);
+                }
+            }
+            return numVotes;
+        }
+    }
+    
     /**
      * Inner class that represents a single tree member of the forest. 
      * It contains some analysis information, such as the numberOfDriftsDetected, 
      */
-    protected final class ARFBaseLearner {
+    protected final class ARFBaseLearner implements Serializable {
         public int indexOriginal;
         public long createdOn;
         public long lastDriftOn;
@@ -307,10 +982,6 @@ public class AdaptiveRandomForest extends AbstractClassifier {
         protected ClassOption driftOption;
         protected ClassOption warningOption;
         
-        // Drift and warning detection
-        protected ChangeDetector driftDetectionMethod;
-        protected ChangeDetector warningDetectionMethod;
-        
         public boolean useBkgLearner;
         public boolean useDriftDetector;
         
@@ -318,8 +989,24 @@ public class AdaptiveRandomForest extends AbstractClassifier {
         protected ARFBaseLearner bkgLearner;
         // Statistics
         public BasicClassificationPerformanceEvaluator evaluator;
+        // Accuracy (percent) of this learner according to evaluator, cached 
+        // every time evaluator changes, used for weighting its votes. 
+        protected double voteWeight;
         protected int numberOfDriftsDetected;
         protected int numberOfWarningsDetected;
+        // Votes of this.classifier, reused by every prediction
+        protected transient double[] voteBuffer;
+        // Phase timings (in nanoseconds) over the sampled instances (see 
+        // isSampled), and time the training tasks of this learner waited in 
+        // the queues of the parallel engines. A learner is trained by a 
+        // single thread at a time, so these need no synchronization. 
+        protected long sampledInstances;
+        protected long leafUpdateNanos;
+        protected long splitAttemptNanos;
+        protected long bkgTrainingNanos;
+        protected long detectionNanos;
+        protected long queueWaits;
+        protected long queueWaitNanos;
 
         private void init(int indexOriginal, ARFHoeffdingTree instantiatedClassifier, BasicClassificationPerformanceEvaluator evaluatorInstantiated, 
             long instancesSeen, boolean useBkgLearner, boolean useDriftDetector, ClassOption driftOption, ClassOption warningOption, boolean isBackgroundLearner) {
@@ -337,16 +1024,12 @@ public class AdaptiveRandomForest extends AbstractClassifier {
             this.numberOfWarningsDetected = 0;
             this.isBackgroundLearner = isBackgroundLearner;
 
-            if(this.useDriftDetector) {
+            // The detectors of the learner are detector indexOriginal of the 
+            // banks of the forest (see driftDetectors)
+            if(this.useDriftDetector)
                 this.driftOption = driftOption;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
-            }
-
-            // Init Drift Detector for Warning detection. 
-            if(this.useBkgLearner) {
+            if(this.useBkgLearner)
                 this.warningOption = warningOption;
-                this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
-            }
         }
 
         public ARFBaseLearner(int indexOriginal, ARFHoeffdingTree instantiatedClassifier, BasicClassificationPerformanceEvaluator evaluatorInstantiated, 
@@ -354,12 +1037,13 @@ public class AdaptiveRandomForest extends AbstractClassifier {
             init(indexOriginal, instantiatedClassifier, evaluatorInstantiated, instancesSeen, useBkgLearner, useDriftDetector, driftOption, warningOption, isBackgroundLearner);
         }
 
-        public void reset() {
+        public void reset(long instancesSeen) {
             if(this.useBkgLearner && this.bkgLearner != null) {
                 this.classifier = this.bkgLearner.classifier;
                 
-                this.driftDetectionMethod = this.bkgLearner.driftDetectionMethod;
-                this.warningDetectionMethod = this.bkgLearner.warningDetectionMethod;
+                // The bkg learner has not used detectors: start with new ones
+                driftDetectors.resetLearning(this.indexOriginal);
+                warningDetectors.resetLearning(this.indexOriginal);
                 
                 this.evaluator = this.bkgLearner.evaluator;
                 this.createdOn = this.bkgLearner.createdOn;
@@ -368,59 +1052,188 @@ public class AdaptiveRandomForest extends AbstractClassifier {
             else {
                 this.classifier.resetLearning();
                 this.createdOn = instancesSeen;
-                this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftOption)).copy();
+                driftDetectors.resetLearning(this.indexOriginal);
             }
             this.evaluator.reset();
+            this.voteWeight = this.evaluator.getFractionCorrectlyClassified() * 100.0;
+        }
+        
+        public void addResult(Instance instance, double[] votes) {
+            this.evaluator.addResult(instance, votes);
+            this.voteWeight = this.evaluator.getFractionCorrectlyClassified() * 100.0;
+        }
+        
+        public double getVoteWeight() {
+            return this.voteWeight;
+        }
+        
+        /**
+         * Estimated size of the tree and evaluator of this learner and of its
+         * bkg learner, or -1 if sizes can not be measured. The detectors are
+         * in the banks of the forest. 
+         */
+        public long estimateByteSize() {
+            long size = this.classifier.estimateByteSize();
+            if(size < 0)
+                return -1;
+            size += AbstractMOAObject.estimateByteSize(this.evaluator);
+            if(this.bkgLearner != null)
+                size += this.bkgLearner.estimateByteSize();
+            return size;
+        }
+        
+        protected double[] getVoteBuffer(Instance instance) {
+            int numClasses = instance.dataset().numClasses();
+            if(this.voteBuffer == null || this.voteBuffer.length < numClasses)
+                this.voteBuffer = new double[numClasses];
+            return this.voteBuffer;
+        }
+        
+        /**
+         * Updates the evaluator with the prediction for instance, trains on 
+         * it with the given weight, and if weight > 0 trains the bkg learner 
+         * and updates the detectors of this learner. The tree is traversed
+         * only once for both, and nothing is allocated. 
+         */
+        public void testThenTrain(Instance instance, int weight, long instancesSeen) {
+            double error = testAndTrain(instance, weight, instancesSeen);
+            if (error >= 0)
+                updateDetectors(error, instance, instancesSeen);
+        }
+        
+        /**
+         * Same as testThenTrain, but leaves the update of the detectors to 
+         * the forest (see detectChanges). 
+         * 
+         * @return the error of the tree on instance after training (0 or 1), 
+         * the next input of the detectors of this learner, or -1 if they get
+         * no input
+         */
+        public double testAndTrain(Instance instance, int weight, long instancesSeen) {
+            double[] votes = getVoteBuffer(instance);
+            if (isSampled(instancesSeen)) {
+                ARFHoeffdingTree tree = this.classifier;
+                long splitNanos = tree.getSplitAttemptNanos();
+                long start = System.nanoTime();
+                tree.testThenTrain(instance, instance.weight() * weight, votes);
+                long elapsed = System.nanoTime() - start;
+                splitNanos = tree.getSplitAttemptNanos() - splitNanos;
+                this.sampledInstances++;
+                this.splitAttemptNanos += splitNanos;
+                this.leafUpdateNanos += elapsed - splitNanos;
+            } else {
+                this.classifier.testThenTrain(instance, instance.weight() * weight, votes);
+            }
+            addResult(instance, votes);
+            return weight > 0 ? trainBkgLearner(instance, instancesSeen) : -1;
+        }
+        
+        public void addQueueWait(long nanos) {
+            this.queueWaits++;
+            this.queueWaitNanos += nanos;
+        }
+        
+        /**
+         * Calls testThenTrain for each instance of a batch, in order. 
+         * weights[j][index] is the weight of instances[j] for this learner. 
+         */
+        public void testThenTrain(Instance[] instances, int[][] weights, int index, long firstInstanceSeen) {
+            for (int j = 0 ; j < instances.length ; j++)
+                testThenTrain(instances[j], weights[j][index], firstInstanceSeen + j);
         }
 
         public void trainOnInstance(Instance instance, double weight, long instancesSeen) {
-            Instance weightedInstance = (Instance) instance.copy();
-            weightedInstance.setWeight(instance.weight() * weight);
-            this.classifier.trainOnInstance(weightedInstance);
-            
+            this.classifier.trainOnInstance(instance, instance.weight() * weight);
+            updateAfterTraining(instance, instancesSeen);
+        }
+        
+        /**
+         * Trains the bkg learner and updates the warning and drift detectors 
+         * once this.classifier has been trained on instance. 
+         */
+        protected void updateAfterTraining(Instance instance, long instancesSeen) {
+            double error = trainBkgLearner(instance, instancesSeen);
+            if (error >= 0)
+                updateDetectors(error, instance, instancesSeen);
+        }
+        
+        /**
+         * Trains the bkg learner on instance once this.classifier has been 
+         * trained on it. 
+         * 
+         * @return the error of this.classifier on instance (0 or 1), the next 
+         * input of the detectors of this learner, or -1 if they get no input
+         */
+        protected double trainBkgLearner(Instance instance, long instancesSeen) {
+            boolean sampled = isSampled(instancesSeen);
+            long start = sampled ? System.nanoTime() : 0L;
             if(this.bkgLearner != null)
                 this.bkgLearner.classifier.trainOnInstance(instance);
+            long detectionStart = sampled ? System.nanoTime() : 0L;
             
             // Should it use a drift detector? Also, is it a backgroundLearner? If so, then do not "incept" another one. 
-            if(this.useDriftDetector && !this.isBackgroundLearner) {
-                boolean correctlyClassifies = this.classifier.correctlyClassifies(instance);
-                // Check for warning only if useBkgLearner is active
-                if(this.useBkgLearner) {
-                    // Update the warning detection method
-                    this.warningDetectionMethod.input(correctlyClassifies ? 0 : 1);
-                    // Check if there was a change
-                    if(this.warningDetectionMethod.getChange()) {
-                        this.lastWarningOn = instancesSeen;
-                        this.numberOfWarningsDetected++;
-                        // Create a new bkgTree classifier
-                        ARFHoeffdingTree bkgClassifier = (ARFHoeffdingTree) this.classifier.copy();
-                        bkgClassifier.resetLearning();
-                        
-                        // Resets the evaluator
-                        BasicClassificationPerformanceEvaluator bkgEvaluator = (BasicClassificationPerformanceEvaluator) this.evaluator.copy();
-                        bkgEvaluator.reset();
-                        
-                        // Create a new bkgLearner object
-                        this.bkgLearner = new ARFBaseLearner(indexOriginal, bkgClassifier, bkgEvaluator, instancesSeen, 
-                            this.useBkgLearner, this.useDriftDetector, this.driftOption, this.warningOption, true);
-                        
-                        // Update the warning detection object for the current object 
-                        // (this effectively resets changes made to the object while it was still a bkg learner). 
-                        this.warningDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.warningOption)).copy();
-                    }
-                }
-                
-                /*********** drift detection ***********/
-                
-                // Update the DRIFT detection method
-                this.driftDetectionMethod.input(correctlyClassifies ? 0 : 1);
-                // Check if there was a change
-                if(this.driftDetectionMethod.getChange()) {
-                    this.lastDriftOn = instancesSeen;
-                    this.numberOfDriftsDetected++;
-                    this.reset();
-                }
+            double error = -1;
+            if(this.useDriftDetector && !this.isBackgroundLearner)
+                error = this.classifier.correctlyClassifiesAfterTraining(instance, getVoteBuffer(instance)) ? 0 : 1;
+            if(sampled) {
+                this.bkgTrainingNanos += detectionStart - start;
+                this.detectionNanos += System.nanoTime() - detectionStart;
             }
+            return error;
+        }
+        
+        /**
+         * Gives error to the warning and drift detectors of this learner 
+         * only, for the engines that train the learners of the forest 
+         * separately (see detectChanges). 
+         */
+        protected void updateDetectors(double error, Instance instance, long instancesSeen) {
+            boolean sampled = isSampled(instancesSeen);
+            long start = sampled ? System.nanoTime() : 0L;
+            // Check for warning only if useBkgLearner is active
+            if(this.useBkgLearner 
+                    && (warningDetectors.input(this.indexOriginal, error) & ChangeDetectorBank.DETECTED_CHANGE) != 0)
+                startBkgLearner(instance, instancesSeen);
+            if((driftDetectors.input(this.indexOriginal, error) & ChangeDetectorBank.DETECTED_CHANGE) != 0)
+                resetOnDrift(instancesSeen);
+            if(sampled)
+                this.detectionNanos += System.nanoTime() - start;
+        }
+        
+        /**
+         * Starts a new bkg learner after the warning detector of this learner
+         * detected a change on instance. 
+         */
+        protected void startBkgLearner(Instance instance, long instancesSeen) {
+            this.lastWarningOn = instancesSeen;
+            this.numberOfWarningsDetected++;
+            // Create a new bkgTree classifier, configured as this.classifier 
+            // (which is not copied, as only its options are needed)
+            ARFHoeffdingTree bkgClassifier = treeFactory.newInstance();
+            // If sizes are estimated, start tracking the size of the tree while it is empty
+            if(byteSizeOffsetMeasured)
+                bkgClassifier.estimateByteSize();
+            
+            // Create a new evaluator
+            BasicClassificationPerformanceEvaluator bkgEvaluator = evaluatorFactory.newInstance();
+            bkgEvaluator.reset(instance.dataset().numClasses());
+            
+            // Create a new bkgLearner object
+            this.bkgLearner = new ARFBaseLearner(indexOriginal, bkgClassifier, bkgEvaluator, instancesSeen, 
+                this.useBkgLearner, this.useDriftDetector, this.driftOption, this.warningOption, true);
+            
+            // Reset the warning detector of the current object 
+            warningDetectors.resetLearning(this.indexOriginal);
+        }
+        
+        /**
+         * Replaces this learner by its bkg learner, or resets it, after its 
+         * drift detector detected a change. 
+         */
+        protected void resetOnDrift(long instancesSeen) {
+            this.lastDriftOn = instancesSeen;
+            this.numberOfDriftsDetected++;
+            this.reset(instancesSeen);
         }
 
         public double[] getVotesForInstance(Instance instance) {
@@ -429,26 +1242,172 @@ public class AdaptiveRandomForest extends AbstractClassifier {
         }
     }
     
+    /***
+     * Task executed by the ShardedWorkers engine. Worker w is responsible for 
+     * the trees w, w + numWorkers, w + 2 * numWorkers, ... The task is reused
+     * for another instance once every worker has executed it (see 
+     * trainingTasks).
+     */
+    protected class ShardTrainingTask implements WorkerPool.ShardTask {
+        private Instance instance;
+        final private int[] weights;
+        private long instancesSeen;
+        private long submittedOn;
+
+        public ShardTrainingTask(int ensembleSize) {
+            this.weights = new int[ensembleSize];
+        }
+
+        /**
+         * Sets the instance of the task, whose weights must have been set.
+         */
+        public void set(Instance instance, long instancesSeen) {
+            this.instance = instance;
+            this.instancesSeen = instancesSeen;
+            this.submittedOn = isSampled(instancesSeen) ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void runShard(int worker, int numWorkers) {
+            long wait = this.submittedOn != 0L ? System.nanoTime() - this.submittedOn : -1L;
+            for (int i = worker ; i < ensemble.length ; i += numWorkers) {
+                if (wait >= 0L)
+                    ensemble[i].addQueueWait(wait);
+                ensemble[i].testThenTrain(this.instance, this.weights[i], this.instancesSeen);
+            }
+        }
+    }
+    
+    /***
+     * Batch version of ShardTrainingTask: each worker processes the whole 
+     * batch, in order, for each of its trees. 
+     */
+    protected class ShardBatchTrainingTask implements WorkerPool.ShardTask {
+        final private Instance[] instances;
+        final private int[][] weights;
+        final private long firstInstanceSeen;
+        final private long submittedOn;
+
+        public ShardBatchTrainingTask(Instance[] instances, int[][] weights, long firstInstanceSeen) {
+            this.instances = instances;
+            this.weights = weights;
+            this.firstInstanceSeen = firstInstanceSeen;
+            this.submittedOn = metricsSampleInterval > 0 ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void runShard(int worker, int numWorkers) {
+            long wait = this.submittedOn != 0L ? System.nanoTime() - this.submittedOn : -1L;
+            for (int i = worker ; i < ensemble.length ; i += numWorkers) {
+                if (wait >= 0L)
+                    ensemble[i].addQueueWait(wait);
+                ensemble[i].testThenTrain(this.instances, this.weights, i, this.firstInstanceSeen);
+            }
+        }
+    }
+    
+    /***
+     * Batch version of ShardPredictionTask. 
+     */
+    protected class ShardBatchPredictionTask implements WorkerPool.ShardTask {
+        final private Instance[] instances;
+        final private double[][][] partialVotes;
+        final private int[][] numVotes;
+
+        public ShardBatchPredictionTask(Instance[] instances, double[][][] partialVotes, int[][] numVotes) {
+            this.instances = instances;
+            this.partialVotes = partialVotes;
+            this.numVotes = numVotes;
+        }
+
+        @Override
+        public void runShard(int worker, int numWorkers) {
+            for (int j = 0 ; j < this.instances.length ; j++) {
+                int n = 0;
+                for (int i = worker ; i < ensemble.length ; i += numWorkers)
+                    n = Math.max(n, addWeightedVote(ensemble[i], this.instances[j], this.partialVotes[worker][j]));
+                this.numVotes[worker][j] = n;
+            }
+        }
+    }
+    
+    /***
+     * Prediction task executed by the ShardedWorkers engine. Each worker 
+     * accumulates the weighted votes of its trees into its own partial vote. 
+     * A single task is reused for every prediction.
+     */
+    protected class ShardPredictionTask implements WorkerPool.ShardTask {
+        private Instance instance;
+
+        @Override
+        public void runShard(int worker, int numWorkers) {
+            double[] partialVote = partialVotes[worker];
+            Arrays.fill(partialVote, 0.0);
+            int n = 0;
+            for (int i = worker ; i < ensemble.length ; i += numWorkers)
+                n = Math.max(n, addWeightedVote(ensemble[i], this.instance, partialVote));
+            partialNumVotes[worker] = n;
+        }
+    }
+    
+    /***
+     * Batch version of TrainingRunnable: trains a single tree on a whole batch. 
+     */
+    protected class BatchTrainingRunnable implements Runnable, Callable<Integer> {
+        final private int index;
+        final private Instance[] instances;
+        final private int[][] weights;
+        final private long firstInstanceSeen;
+        final private long submittedOn;
+
+        public BatchTrainingRunnable(int index, Instance[] instances, 
+                int[][] weights, long firstInstanceSeen) {
+            this.index = index;
+            this.instances = instances;
+            this.weights = weights;
+            this.firstInstanceSeen = firstInstanceSeen;
+            this.submittedOn = metricsSampleInterval > 0 ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void run() {
+            if (this.submittedOn != 0L)
+                ensemble[this.index].addQueueWait(System.nanoTime() - this.submittedOn);
+            ensemble[this.index].testThenTrain(this.instances, this.weights, 
+                this.index, this.firstInstanceSeen);
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            run();
+            return 0;
+        }
+    }
+    
     /***
      * Inner class to assist with the multi-thread execution. 
      */
     protected class TrainingRunnable implements Runnable, Callable<Integer> {
         final private ARFBaseLearner learner;
         final private Instance instance;
-        final private double weight;
+        final private int weight;
         final private long instancesSeen;
+        final private long submittedOn;
 
         public TrainingRunnable(ARFBaseLearner learner, Instance instance, 
-                double weight, long instancesSeen) {
+                int weight, long instancesSeen) {
             this.learner = learner;
             this.instance = instance;
             this.weight = weight;
             this.instancesSeen = instancesSeen;
+            this.submittedOn = isSampled(instancesSeen) ? System.nanoTime() : 0L;
         }
 
         @Override
         public void run() {
-            learner.trainOnInstance(this.instance, this.weight, this.instancesSeen);
+            if (this.submittedOn != 0L)
+                learner.addQueueWait(System.nanoTime() - this.submittedOn);
+            detectorInputs[learner.indexOriginal] = learner.testAndTrain(this.instance, this.weight, this.instancesSeen);
         }
 
         @Override
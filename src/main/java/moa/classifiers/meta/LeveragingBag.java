@@ -24,7 +24,8 @@ import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
 import moa.options.ClassOption;
 import com.github.javacliparser.MultiChoiceOption;
-import moa.classifiers.core.driftdetection.ADWIN;
+import java.util.BitSet;
+import moa.classifiers.core.driftdetection.ADWINBank;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -86,7 +87,12 @@ public class LeveragingBag extends AbstractClassifier {
     
     protected Classifier[] ensemble;
 
-    protected ADWIN[] ADError;
+    protected ADWINBank ADError;
+
+    // Error of each member on the current instance
+    protected double[] errors;
+
+    protected BitSet changes;
 
     protected int numberOfChangesDetected;
 
@@ -106,10 +112,9 @@ public class LeveragingBag extends AbstractClassifier {
         for (int i = 0; i < this.ensemble.length; i++) {
             this.ensemble[i] = baseLearner.copy();
         }
-        this.ADError = new ADWIN[this.ensemble.length];
-        for (int i = 0; i < this.ensemble.length; i++) {
-            this.ADError[i] = new ADWIN((double) this.deltaAdwinOption.getValue());
-        }
+        this.ADError = new ADWINBank(this.ensemble.length, this.deltaAdwinOption.getValue());
+        this.errors = new double[this.ensemble.length];
+        this.changes = new BitSet(this.ensemble.length);
         this.numberOfChangesDetected = 0;
         if (this.outputCodesOption.isSet()) {
             this.initMatrixCodes = true;
@@ -155,7 +160,6 @@ public class LeveragingBag extends AbstractClassifier {
         }
 
 
-        boolean Change = false;
         Instance weightedInst = (Instance) inst.copy();
         double w = this.weightShrinkOption.getValue();
 
@@ -176,7 +180,7 @@ public class LeveragingBag extends AbstractClassifier {
                     k = MiscUtils.poisson(w, this.classifierRandom);
                     break;
                 case 1: //LeveragingBagME
-                    double error = this.ADError[i].getEstimation();
+                    double error = this.ADError.getEstimation(i);
                     k = !this.ensemble[i].correctlyClassifies(weightedInst) ? 1.0 : (this.classifierRandom.nextDouble() < (error / (1.0 - error)) ? 1.0 : 0.0);
                     break;
                 case 2: //LeveragingBagHalf
@@ -201,20 +205,16 @@ public class LeveragingBag extends AbstractClassifier {
                 this.ensemble[i].trainOnInstance(weightedInst);
             }
             boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(weightedInst);
-            double ErrEstim = this.ADError[i].getEstimation();
-            if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
-                if (this.ADError[i].getEstimation() > ErrEstim) {
-                    Change = true;
-                }
-            }
+            this.errors[i] = correctlyClassifies ? 0 : 1;
         }
+        boolean Change = this.ADError.input(this.errors, this.changes, null);
         if (Change) {
             numberOfChangesDetected++;
             double max = 0.0;
             int imax = -1;
             for (int i = 0; i < this.ensemble.length; i++) {
-                if (max < this.ADError[i].getEstimation()) {
-                    max = this.ADError[i].getEstimation();
+                if (max < this.ADError.getEstimation(i)) {
+                    max = this.ADError.getEstimation(i);
                     imax = i;
                 }
             }
@@ -222,7 +222,7 @@ public class LeveragingBag extends AbstractClassifier {
                 this.birthdays[imax] = this.processedInstances;
                 this.ensemble[imax].resetLearning();
                 //this.ensemble[imax].trainOnInstance(inst);
-                this.ADError[imax] = new ADWIN((double) this.deltaAdwinOption.getValue());
+                this.ADError.resetLearning(imax);
             }
         }
     }
@@ -19,7 +19,9 @@
  */
 package moa.classifiers.meta;
 
+import java.util.BitSet;
 import moa.classifiers.core.driftdetection.ADWIN;
+import moa.classifiers.core.driftdetection.ADWINBank;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import com.yahoo.labs.samoa.instances.Instance;
@@ -96,7 +98,12 @@ public class OzaBagAdwin extends AbstractClassifier {
 
     protected Classifier[] ensemble;
 
-    protected ADWIN[] ADError;
+    protected ADWINBank ADError;
+
+    // Error of each member on the current instance
+    protected double[] errors;
+
+    protected BitSet changes;
 
     @Override
     public void resetLearningImpl() {
@@ -106,15 +113,13 @@ public class OzaBagAdwin extends AbstractClassifier {
         for (int i = 0; i < this.ensemble.length; i++) {
             this.ensemble[i] = baseLearner.copy();
         }
-        this.ADError = new ADWIN[this.ensemble.length];
-        for (int i = 0; i < this.ensemble.length; i++) {
-            this.ADError[i] = new ADWIN();
-        }
+        this.ADError = new ADWINBank(this.ensemble.length, ADWIN.DELTA);
+        this.errors = new double[this.ensemble.length];
+        this.changes = new BitSet(this.ensemble.length);
     }
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        boolean Change = false;
         for (int i = 0; i < this.ensemble.length; i++) {
             int k = MiscUtils.poisson(1.0, this.classifierRandom);
             if (k > 0) {
@@ -123,26 +128,22 @@ public class OzaBagAdwin extends AbstractClassifier {
                 this.ensemble[i].trainOnInstance(weightedInst);
             }
             boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(inst);
-            double ErrEstim = this.ADError[i].getEstimation();
-            if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
-                if (this.ADError[i].getEstimation() > ErrEstim) {
-                    Change = true;
-                }
-            }
+            this.errors[i] = correctlyClassifies ? 0 : 1;
         }
+        boolean Change = this.ADError.input(this.errors, this.changes, null);
         if (Change) {
             double max = 0.0;
             int imax = -1;
             for (int i = 0; i < this.ensemble.length; i++) {
-                if (max < this.ADError[i].getEstimation()) {
-                    max = this.ADError[i].getEstimation();
+                if (max < this.ADError.getEstimation(i)) {
+                    max = this.ADError.getEstimation(i);
                     imax = i;
                 }
             }
             if (imax != -1) {
                 this.ensemble[imax].resetLearning();
                 //this.ensemble[imax].trainOnInstance(inst);
-                this.ADError[imax] = new ADWIN();
+                this.ADError.resetLearning(imax);
             }
         }
     }
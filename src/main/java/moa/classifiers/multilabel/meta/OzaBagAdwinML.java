@@ -71,13 +71,14 @@ public class OzaBagAdwinML extends OzaBagAdwin implements MultiLabelLearner, Mul
 			//System.err.println("loss["+i+"] = "+loss);
 
 			// adwin stuff
-			double ErrEstim = this.ADError[i].getEstimation();
-			if (this.ADError[i].setInput(loss)) {
-				if (this.ADError[i].getEstimation() > ErrEstim) {
+			ADWIN window = this.ADError.getWindow(i);
+			double ErrEstim = window.getEstimation();
+			if (window.setInput(loss)) {
+				if (window.getEstimation() > ErrEstim) {
 					System.err.println("Change model "+i+"!");
 					this.ensemble[i].resetLearning();
 					this.ensemble[i].trainOnInstance(inst);
-					this.ADError[i] = new ADWIN();
+					this.ADError.resetLearning(i);
 				}
 			}
 		}
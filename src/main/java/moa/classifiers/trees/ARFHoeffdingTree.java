@@ -19,9 +19,17 @@
 
 package moa.classifiers.trees;
 
+import java.util.Arrays;
+
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import moa.AbstractMOAObject;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.core.ByteSizeEstimable;
+import moa.core.DoubleVector;
+import moa.core.SizeOf;
+import moa.core.StructuralCopier;
 import moa.core.Utils;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -42,13 +50,16 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @author Heitor Murilo Gomes (heitor_murilo_gomes at yahoo dot com dot br)
  * @version $Revision: 1 $
  */
-public class ARFHoeffdingTree extends HoeffdingTree {
+public class ARFHoeffdingTree extends HoeffdingTree implements ByteSizeEstimable {
 
     private static final long serialVersionUID = 1L;
     
     public IntOption subspaceSizeOption = new IntOption("subspaceSizeSize", 'k',
             "Number of features per subset for each node split. Negative values = #features - k", 
             2, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    public FlagOption compiledInferenceOption = new FlagOption("compiledInference", 'i',
+            "Filter instances to their leaf through a flat layout of the tree (see CompiledTree).");
     
     @Override
     public String getPurposeString() {
@@ -63,16 +74,53 @@ public class ARFHoeffdingTree extends HoeffdingTree {
         protected int[] listAttributes;
 
         protected int numAttributes;
+
+        // Size of this node when it was last estimated, which is included in
+        // ARFHoeffdingTree.nodesByteSize (0 if it was never estimated)
+        protected int byteSizeEstimate;
+
+        // Size of this node without its attribute observers, measured again
+        // after an observer was created (see estimateByteSize)
+        protected transient int fixedByteSize;
+        protected transient boolean fixedByteSizeMeasured;
         
         public RandomLearningNode(double[] initialClassObservations, int subspaceSize) {
             super(initialClassObservations);
             this.numAttributes = subspaceSize;
         }
 
+        protected RandomLearningNode(RandomLearningNode toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+            this.listAttributes = copier.copy(toCopy.listAttributes);
+            this.numAttributes = toCopy.numAttributes;
+            this.byteSizeEstimate = toCopy.byteSizeEstimate;
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new RandomLearningNode(this, copier);
+        }
+
         @Override
-        public void learnFromInstance(Instance inst, HoeffdingTree ht) {            
-            this.observedClassDistribution.addToValue((int) inst.classValue(),
-                    inst.weight());
+        public void learnFromInstance(Instance inst, HoeffdingTree ht) {
+            learnFromInstance(inst, inst.weight(), ht);
+        }
+
+        /**
+         * Same as learnFromInstance(inst, ht), but uses the given weight 
+         * instead of inst.weight(). 
+         */
+        public void learnFromInstance(Instance inst, double weight, HoeffdingTree ht) {
+            int classValue = (int) inst.classValue();
+            if (this.fixedByteSizeMeasured && classValue >= this.observedClassDistribution.numValues()) {
+                // a new class, the array of the distribution grows
+                int length = this.observedClassDistribution.numValues();
+                this.observedClassDistribution.addToValue(classValue, weight);
+                this.fixedByteSize += SizeOf.sizeOfArray(double.class, classValue + 1)
+                        - SizeOf.sizeOfArray(double.class, length);
+            } else {
+                this.observedClassDistribution.addToValue(classValue, weight);
+            }
             if (this.listAttributes == null) {
                 this.listAttributes = new int[this.numAttributes];
                 for (int j = 0; j < this.numAttributes; j++) {
@@ -97,10 +145,56 @@ public class ARFHoeffdingTree extends HoeffdingTree {
                 if (obs == null) {
                     obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
                     this.attributeObservers.set(i, obs);
+                    this.fixedByteSizeMeasured = false;
                 }
-                obs.observeAttributeClass(inst.value(instAttIndex), (int) inst.classValue(), inst.weight());
+                obs.observeAttributeClass(inst.value(instAttIndex), (int) inst.classValue(), weight);
             }
         }
+
+        @Override
+        public int getClassVotes(Instance inst, HoeffdingTree ht, double[] votes) {
+            return copyClassDistribution(this.observedClassDistribution, votes);
+        }
+
+        @Override
+        public void disableAttribute(int attIndex) {
+            super.disableAttribute(attIndex);
+            this.fixedByteSizeMeasured = false;
+        }
+
+        /**
+         * Estimate of calcByteSize() that does not walk the observers: they
+         * give their own estimate (see ByteSizeEstimable, other observers 
+         * are measured), and the rest of the node is measured again only 
+         * after an observer was created, which is mostly on the first 
+         * instance of the node. 
+         *
+         * @return the estimated size of this node, or -1 if sizes can not be
+         * measured
+         */
+        public int estimateByteSize() {
+            long observersSize = 0;
+            if (this.listAttributes != null) {
+                for (int j = 0; j < this.listAttributes.length; j++) {
+                    AttributeClassObserver obs = this.attributeObservers.get(this.listAttributes[j]);
+                    if (obs != null) {
+                        int size = AbstractMOAObject.estimateByteSize(obs);
+                        if (size < 0) {
+                            return -1;
+                        }
+                        observersSize += size;
+                    }
+                }
+            }
+            if (!this.fixedByteSizeMeasured) {
+                if (SizeOf.sizeOf(this) < 0) {
+                    return -1;
+                }
+                this.fixedByteSize = (int) (calcByteSize() - observersSize);
+                this.fixedByteSizeMeasured = true;
+            }
+            return (int) (this.fixedByteSize + observersSize);
+        }
     }
 
     public static class LearningNodeNB extends RandomLearningNode {
@@ -111,6 +205,15 @@ public class ARFHoeffdingTree extends HoeffdingTree {
             super(initialClassObservations, subspaceSize);
         }
 
+        protected LearningNodeNB(LearningNodeNB toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new LearningNodeNB(this, copier);
+        }
+
         @Override
         public double[] getClassVotes(Instance inst, HoeffdingTree ht) {
             if (getWeightSeen() >= ht.nbThresholdOption.getValue()) {
@@ -121,6 +224,16 @@ public class ARFHoeffdingTree extends HoeffdingTree {
             return super.getClassVotes(inst, ht);
         }
 
+        @Override
+        public int getClassVotes(Instance inst, HoeffdingTree ht, double[] votes) {
+            if (getWeightSeen() >= ht.nbThresholdOption.getValue()) {
+                return NaiveBayes.doNaiveBayesPrediction(inst,
+                        this.observedClassDistribution,
+                        this.attributeObservers, votes);
+            }
+            return super.getClassVotes(inst, ht, votes);
+        }
+
         @Override
         public void disableAttribute(int attIndex) {
             // should not disable poor atts - they are used in NB calc
@@ -139,17 +252,28 @@ public class ARFHoeffdingTree extends HoeffdingTree {
             super(initialClassObservations, subspaceSize);
         }
 
+        protected LearningNodeNBAdaptive(LearningNodeNBAdaptive toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+            this.mcCorrectWeight = toCopy.mcCorrectWeight;
+            this.nbCorrectWeight = toCopy.nbCorrectWeight;
+        }
+
         @Override
-        public void learnFromInstance(Instance inst, HoeffdingTree ht) {
+        public Object copyStructure(StructuralCopier copier) {
+            return new LearningNodeNBAdaptive(this, copier);
+        }
+
+        @Override
+        public void learnFromInstance(Instance inst, double weight, HoeffdingTree ht) {
             int trueClass = (int) inst.classValue();
             if (this.observedClassDistribution.maxIndex() == trueClass) {
-                this.mcCorrectWeight += inst.weight();
+                this.mcCorrectWeight += weight;
             }
-            if (Utils.maxIndex(NaiveBayes.doNaiveBayesPrediction(inst,
-                    this.observedClassDistribution, this.attributeObservers)) == trueClass) {
-                this.nbCorrectWeight += inst.weight();
+            if (NaiveBayes.doNaiveBayesClassification(inst,
+                    this.observedClassDistribution, this.attributeObservers) == trueClass) {
+                this.nbCorrectWeight += weight;
             }
-            super.learnFromInstance(inst, ht);
+            super.learnFromInstance(inst, weight, ht);
         }
 
         @Override
@@ -160,11 +284,399 @@ public class ARFHoeffdingTree extends HoeffdingTree {
             return NaiveBayes.doNaiveBayesPrediction(inst,
                     this.observedClassDistribution, this.attributeObservers);
         }
+
+        @Override
+        public int getClassVotes(Instance inst, HoeffdingTree ht, double[] votes) {
+            if (this.mcCorrectWeight > this.nbCorrectWeight) {
+                return copyClassDistribution(this.observedClassDistribution, votes);
+            }
+            return NaiveBayes.doNaiveBayesPrediction(inst,
+                    this.observedClassDistribution, this.attributeObservers, votes);
+        }
     }
 
+    /**
+     * Copies a class distribution into votes and sets the remaining entries 
+     * to 0. 
+     *
+     * @return the number of values in the distribution
+     */
+    protected static int copyClassDistribution(DoubleVector distribution, double[] votes) {
+        int numVotes = distribution.numValues();
+        System.arraycopy(distribution.getArrayRef(), 0, votes, 0, numVotes);
+        Arrays.fill(votes, numVotes, votes.length, 0.0);
+        return numVotes;
+    }
+
+    // Leaf reached by the last instance filtered, either for prediction or 
+    // training, same meaning as the fields of FoundNode. It allows to train 
+    // on an instance, or to predict it after training, without filtering it
+    // again. It never refers to a node that is no longer in the tree.
+    protected transient Node lastLeaf;
+    protected transient SplitNode lastLeafParent;
+    protected transient int lastLeafParentBranch;
+
+    // Flat layout of the tree, if compiledInferenceOption is set. It is 
+    // compiled again at the end of the training on an instance that changed
+    // the structure of the tree, and after a copy once the copy is trained.
+    protected transient CompiledTree compiledTree;
+
+    // Where compiledTree writes the leaf reached by an instance
+    protected transient FoundNode compiledFound;
+
+    // Number of split attempts and time spent on them (in nanoseconds) since
+    // the last reset. Split attempts are rare enough to be timed every time.
+    // The time is transient, so that copies of a tree are always the same.
+    protected long splitAttempts;
+    protected transient long splitAttemptNanos;
+
+    // Sum of the last estimated sizes of the nodes, only maintained after 
+    // the first call to estimateByteSize
+    protected long nodesByteSize;
+    protected boolean trackByteSize;
+
     public ARFHoeffdingTree() {
         this.removePoorAttsOption = null;
     }
+
+    /**
+     * Same as treeRoot.filterInstanceToLeaf(inst, null, -1), but the result 
+     * is stored in lastLeaf, lastLeafParent and lastLeafParentBranch instead
+     * of a new FoundNode. The tree must not be empty. 
+     *
+     * @param inst the instance to be filtered
+     */
+    protected void filterInstanceToLeaf(Instance inst) {
+        if (this.compiledTree != null) {
+            FoundNode found = this.compiledFound;
+            this.compiledTree.filterInstanceToLeaf(inst, found);
+            this.lastLeaf = found.node;
+            this.lastLeafParent = found.parent;
+            this.lastLeafParentBranch = found.parentBranch;
+            return;
+        }
+        Node node = this.treeRoot;
+        SplitNode parent = null;
+        int parentBranch = -1;
+        while (node instanceof SplitNode) {
+            if (node.getClass() != SplitNode.class) {
+                // A split node with its own filtering logic
+                FoundNode found = node.filterInstanceToLeaf(inst, parent, parentBranch);
+                node = found.node;
+                parent = found.parent;
+                parentBranch = found.parentBranch;
+                break;
+            }
+            SplitNode splitNode = (SplitNode) node;
+            int childIndex = splitNode.instanceChildIndex(inst);
+            if (childIndex < 0) {
+                break;
+            }
+            node = splitNode.getChild(childIndex);
+            parent = splitNode;
+            parentBranch = childIndex;
+        }
+        this.lastLeaf = node;
+        this.lastLeafParent = parent;
+        this.lastLeafParentBranch = parentBranch;
+    }
+
+    /**
+     * Trains on inst using the given weight instead of inst.weight(), so 
+     * that the caller does not need to copy the instance to change its 
+     * weight. Same semantics as trainOnInstance(inst) for a copy of inst 
+     * with that weight. 
+     *
+     * @param inst the instance to be used for training
+     * @param weight the weight of inst
+     */
+    public void trainOnInstance(Instance inst, double weight) {
+        if (weight > 0.0 && !inst.classIsMissing()) {
+            this.trainingWeightSeenByModel += weight;
+            trainOnInstanceImpl(inst, weight, false);
+        } else {
+            this.lastLeaf = null;
+        }
+    }
+
+    /**
+     * Same as getVotesForInstance(inst), but the votes are written into the
+     * given array, which must have an entry for each class. Entries after 
+     * the returned number of votes are set to 0. 
+     *
+     * @param inst the instance to be predicted
+     * @param votes the array where the votes are written
+     * @return the number of votes, i.e., the length of the array returned 
+     * by getVotesForInstance(inst)
+     */
+    public int getVotesForInstance(Instance inst, double[] votes) {
+        if (this.treeRoot != null) {
+            filterInstanceToLeaf(inst);
+            Node leafNode = this.lastLeaf;
+            if (leafNode == null) {
+                leafNode = this.lastLeafParent;
+            }
+            return leafNode.getClassVotes(inst, this, votes);
+        }
+        Arrays.fill(votes, 0.0);
+        return inst.dataset().numClasses();
+    }
+
+    /**
+     * Fused test-then-train: filters inst to its leaf once, takes the 
+     * prediction of that leaf and then trains the leaf on inst with the 
+     * given weight (if weight > 0). Equivalent to getVotesForInstance(inst,
+     * votes) followed by trainOnInstance(inst, weight). 
+     *
+     * @param inst the instance to be predicted and used for training
+     * @param weight the weight of inst for training
+     * @param votes the array where the votes for inst, before training on 
+     * it, are written
+     * @return the number of votes
+     */
+    public int testThenTrain(Instance inst, double weight, double[] votes) {
+        int numVotes = getVotesForInstance(inst, votes);
+        if (weight > 0.0 && !inst.classIsMissing()) {
+            this.trainingWeightSeenByModel += weight;
+            trainOnInstanceImpl(inst, weight, this.treeRoot != null);
+        }
+        return numVotes;
+    }
+
+    /**
+     * Checks whether the current model correctly classifies the instance 
+     * used in the last call to trainOnInstance or testThenTrain, which must
+     * be the last instance given to this tree. The leaf reached during 
+     * training is reused, unless the tree changed around it (e.g. the leaf 
+     * was split), in which case the tree is traversed again. 
+     *
+     * @param inst the last instance used for training
+     * @param votes array used to compute the votes for inst, with an entry 
+     * for each class
+     * @return true if the instance is correctly classified
+     */
+    public boolean correctlyClassifiesAfterTraining(Instance inst, double[] votes) {
+        if (this.lastLeaf != null) {
+            this.lastLeaf.getClassVotes(inst, this, votes);
+        } else {
+            getVotesForInstance(inst, votes);
+        }
+        return Utils.maxIndex(votes) == (int) inst.classValue();
+    }
+
+    @Override
+    public void resetLearningImpl() {
+        super.resetLearningImpl();
+        this.lastLeaf = null;
+        this.lastLeafParent = null;
+        this.compiledTree = null;
+        this.splitAttempts = 0;
+        this.splitAttemptNanos = 0;
+        this.nodesByteSize = 0;
+    }
+
+    /**
+     * Estimate of calcByteSize() maintained as the tree grows, once this 
+     * method has been called (the first call measures the whole tree): 
+     * split nodes and inactive leaves are measured when they are created,
+     * and the estimate of a leaf (see RandomLearningNode.estimateByteSize),
+     * which is obtained from its observers without walking them, is taken 
+     * again each time the leaf learns or a split is attempted on it. 
+     */
+    @Override
+    public int estimateByteSize() {
+        long size = SizeOf.sizeOf(this);
+        if (size < 0) {
+            return -1;
+        }
+        if (!this.trackByteSize) {
+            this.nodesByteSize = this.treeRoot == null ? 0 : measureSubtree(this.treeRoot);
+            this.trackByteSize = true;
+        }
+        return (int) (size + this.nodesByteSize);
+    }
+
+    protected static long measureSubtree(Node node) {
+        if (node instanceof RandomLearningNode) {
+            RandomLearningNode leaf = (RandomLearningNode) node;
+            leaf.byteSizeEstimate = leaf.estimateByteSize();
+            return leaf.byteSizeEstimate;
+        }
+        long size = node.calcByteSize();
+        if (node instanceof SplitNode) {
+            SplitNode splitNode = (SplitNode) node;
+            for (int i = 0; i < splitNode.numChildren(); i++) {
+                if (splitNode.getChild(i) != null) {
+                    size += measureSubtree(splitNode.getChild(i));
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the size of a leaf again and adds the change to the total.
+     */
+    protected void updateByteSize(RandomLearningNode leaf) {
+        int size = leaf.estimateByteSize();
+        this.nodesByteSize += size - leaf.byteSizeEstimate;
+        leaf.byteSizeEstimate = size;
+    }
+
+    protected static int byteSizeEstimate(Node node) {
+        return node instanceof RandomLearningNode ? ((RandomLearningNode) node).byteSizeEstimate : node.calcByteSize();
+    }
+
+    @Override
+    protected void deactivateLearningNode(ActiveLearningNode toDeactivate,
+            SplitNode parent, int parentBranch) {
+        super.deactivateLearningNode(toDeactivate, parent, parentBranch);
+        this.compiledTree = null;
+        if (this.trackByteSize) {
+            Node newLeaf = parent == null ? this.treeRoot : parent.getChild(parentBranch);
+            this.nodesByteSize += newLeaf.calcByteSize() - byteSizeEstimate(toDeactivate);
+        }
+    }
+
+    @Override
+    protected void activateLearningNode(InactiveLearningNode toActivate,
+            SplitNode parent, int parentBranch) {
+        super.activateLearningNode(toActivate, parent, parentBranch);
+        this.compiledTree = null;
+        if (this.trackByteSize) {
+            this.nodesByteSize -= toActivate.calcByteSize();
+            Node newLeaf = parent == null ? this.treeRoot : parent.getChild(parentBranch);
+            if (newLeaf instanceof RandomLearningNode) {
+                updateByteSize((RandomLearningNode) newLeaf);
+            }
+        }
+    }
+
+    public long getSplitAttempts() {
+        return this.splitAttempts;
+    }
+
+    public long getSplitAttemptNanos() {
+        return this.splitAttemptNanos;
+    }
+
+    public int getNodeCount() {
+        return this.decisionNodeCount + this.activeLeafNodeCount + this.inactiveLeafNodeCount;
+    }
+
+    public int getLeafCount() {
+        return this.activeLeafNodeCount + this.inactiveLeafNodeCount;
+    }
+
+    @Override
+    public void trainOnInstanceImpl(Instance inst) {
+        trainOnInstanceImpl(inst, inst.weight(), false);
+    }
+
+    /**
+     * Same as HoeffdingTree.trainOnInstanceImpl, but with an explicit weight.
+     * If filtered is true, inst was the last instance filtered (see 
+     * filterInstanceToLeaf(inst)) and the tree has not changed since then. 
+     */
+    protected void trainOnInstanceImpl(Instance inst, double weight, boolean filtered) {
+        if (this.treeRoot == null) {
+            this.treeRoot = newLearningNode();
+            this.activeLeafNodeCount = 1;
+            filtered = false;
+        }
+        if (!filtered) {
+            filterInstanceToLeaf(inst);
+        }
+        Node leafNode = this.lastLeaf;
+        SplitNode parent = this.lastLeafParent;
+        int parentBranch = this.lastLeafParentBranch;
+        // The leaf may be replaced below
+        this.lastLeaf = null;
+        this.lastLeafParent = null;
+        if (leafNode == null) {
+            leafNode = newLearningNode();
+            parent.setChild(parentBranch, leafNode);
+            this.activeLeafNodeCount++;
+            this.compiledTree = null;
+        }
+        if (leafNode instanceof LearningNode) {
+            LearningNode learningNode = (LearningNode) leafNode;
+            learnFromInstance(learningNode, inst, weight);
+            if (this.trackByteSize && learningNode instanceof RandomLearningNode) {
+                updateByteSize((RandomLearningNode) learningNode);
+            }
+            if (this.growthAllowed
+                    && (learningNode instanceof ActiveLearningNode)) {
+                ActiveLearningNode activeLearningNode = (ActiveLearningNode) learningNode;
+                double weightSeen = activeLearningNode.getWeightSeen();
+                if (weightSeen
+                        - activeLearningNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriodOption.getValue()) {
+                    long start = System.nanoTime();
+                    attemptToSplit(activeLearningNode, parent, parentBranch);
+                    this.splitAttemptNanos += System.nanoTime() - start;
+                    this.splitAttempts++;
+                    activeLearningNode.setWeightSeenAtLastSplitEvaluation(weightSeen);
+                    if (this.trackByteSize) {
+                        updateByteSizeAfterSplitAttempt(activeLearningNode, parent, parentBranch);
+                    }
+                }
+            }
+        }
+        if (this.trainingWeightSeenByModel
+                % this.memoryEstimatePeriodOption.getValue() == 0) {
+            estimateModelByteSizes();
+        }
+        Node attached = parent == null ? this.treeRoot : parent.getChild(parentBranch);
+        if (attached == leafNode) {
+            this.lastLeaf = leafNode;
+            this.lastLeafParent = parent;
+            this.lastLeafParentBranch = parentBranch;
+        } else {
+            // the leaf was split or deactivated
+            this.compiledTree = null;
+        }
+        if (this.compiledTree == null && this.compiledInferenceOption.isSet()) {
+            this.compiledTree = new CompiledTree(this);
+            if (this.compiledFound == null) {
+                this.compiledFound = new FoundNode(null, null, -1);
+            }
+        }
+    }
+
+    /**
+     * Updates nodesByteSize once a split was attempted on leaf: either the 
+     * leaf is still in the tree, or it was replaced by a split node, or it 
+     * was deactivated (see deactivateLearningNode). 
+     */
+    protected void updateByteSizeAfterSplitAttempt(ActiveLearningNode leaf, SplitNode parent, int parentBranch) {
+        Node node = parent == null ? this.treeRoot : parent.getChild(parentBranch);
+        if (node == leaf) {
+            if (leaf instanceof RandomLearningNode) {
+                updateByteSize((RandomLearningNode) leaf);
+            }
+        } else if (node instanceof SplitNode) {
+            SplitNode splitNode = (SplitNode) node;
+            this.nodesByteSize += splitNode.calcByteSize() - byteSizeEstimate(leaf);
+            for (int i = 0; i < splitNode.numChildren(); i++) {
+                Node child = splitNode.getChild(i);
+                if (child instanceof RandomLearningNode && ((RandomLearningNode) child).byteSizeEstimate == 0) {
+                    updateByteSize((RandomLearningNode) child);
+                }
+            }
+        }
+    }
+
+    protected void learnFromInstance(LearningNode node, Instance inst, double weight) {
+        if (node instanceof RandomLearningNode) {
+            ((RandomLearningNode) node).learnFromInstance(inst, weight, this);
+        } else if (node instanceof InactiveLearningNode) {
+            node.observedClassDistribution.addToValue((int) inst.classValue(), weight);
+        } else {
+            Instance weightedInstance = inst.copy();
+            weightedInstance.setWeight(weight);
+            node.learnFromInstance(weightedInstance, this);
+        }
+    }
     
     @Override
     protected LearningNode newLearningNode(double[] initialClassObservations) {
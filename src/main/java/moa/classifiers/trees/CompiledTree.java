@@ -0,0 +1,465 @@
+/*
+ *    CompiledTree.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.trees;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.trees.HoeffdingTree.ActiveLearningNode;
+import moa.classifiers.trees.HoeffdingTree.FoundNode;
+import moa.classifiers.trees.HoeffdingTree.InactiveLearningNode;
+import moa.classifiers.trees.HoeffdingTree.Node;
+import moa.classifiers.trees.HoeffdingTree.SplitNode;
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Flat layout of the nodes of a {@link HoeffdingTree}, used to filter
+ * instances to their leaf without following the node objects.
+ *
+ * <p>The nodes are stored in parallel arrays, in breadth-first order, and
+ * the children of a split node are consecutive. Numeric binary tests are
+ * evaluated from the arrays, other tests through the array of tests, and
+ * split nodes of other classes (e.g. HoeffdingAdaptiveTree.AdaSplitNode)
+ * filter the instance themselves. The layout never changes once compiled:
+ * when the structure of the tree changes (a leaf is split, added,
+ * activated or deactivated), the tree must be compiled again.</p>
+ *
+ * <p>A layout compiled with the constructor refers to the nodes of the
+ * tree, and its votes are the ones of its leaves as they learn, so it must
+ * be used by the thread that trains the tree. A snapshot (see
+ * {@link #snapshot}) keeps the votes of the tree when it was compiled and
+ * can be read by several threads while the tree is trained: the class
+ * distributions of the nodes are copied into a single array, and only the
+ * leaves whose votes need more than their distribution (e.g. naive Bayes
+ * leaves) are copied, unless they did not learn since the previous
+ * snapshot.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class CompiledTree implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final byte LEAF = 0;
+
+    // Numeric binary test, equal values go to the first branch
+    protected static final byte NUMERIC_LE = 1;
+
+    // Numeric binary test, equal values go to the second branch
+    protected static final byte NUMERIC_LT = 2;
+
+    // Other test of a SplitNode
+    protected static final byte SPLIT = 3;
+
+    // Split node of another class
+    protected static final byte OPAQUE = 4;
+
+    protected final HoeffdingTree tree;
+
+    protected final int numSlots;
+
+    protected final byte[] kind;
+
+    protected final int[] attIndex;
+
+    protected final double[] threshold;
+
+    protected final InstanceConditionalTest[] test;
+
+    protected final int[] firstChild;
+
+    protected final int[] numChildren;
+
+    protected final int[] parent;
+
+    protected final int[] parentBranch;
+
+    // The node of the tree in each slot when it was compiled, null for a
+    // missing child
+    protected final Node[] nodes;
+
+    // Snapshots only: the class distribution of the node in slot i is
+    // distributions[distributionStart[i]] to
+    // distributions[distributionStart[i + 1] - 1]
+    protected final int[] distributionStart;
+
+    protected final double[] distributions;
+
+    // Snapshots only: copy of the node in each slot whose votes are not its
+    // class distribution (or the whole subtree of an OPAQUE slot)
+    protected final Node[] frozen;
+
+    /**
+     * Compiles a tree, which must not be empty.
+     *
+     * @param tree the tree
+     */
+    public CompiledTree(HoeffdingTree tree) {
+        this(tree, null, false);
+    }
+
+    /**
+     * Compiles a snapshot of a tree, which must not be empty. The leaves
+     * that are still in the tree and did not learn since the previous
+     * snapshot of the same tree share their copy with it.
+     *
+     * @param tree the tree
+     * @param previous the previous snapshot of the tree, or null
+     * @return the snapshot
+     */
+    public static CompiledTree snapshot(HoeffdingTree tree, CompiledTree previous) {
+        return new CompiledTree(tree, previous, true);
+    }
+
+    protected CompiledTree(HoeffdingTree tree, CompiledTree previous, boolean snapshot) {
+        this.tree = tree;
+        this.numSlots = countSlots(tree.treeRoot);
+        this.kind = new byte[this.numSlots];
+        this.attIndex = new int[this.numSlots];
+        this.threshold = new double[this.numSlots];
+        this.test = new InstanceConditionalTest[this.numSlots];
+        this.firstChild = new int[this.numSlots];
+        this.numChildren = new int[this.numSlots];
+        this.parent = new int[this.numSlots];
+        this.parentBranch = new int[this.numSlots];
+        this.nodes = new Node[this.numSlots];
+        this.nodes[0] = tree.treeRoot;
+        this.parent[0] = -1;
+        this.parentBranch[0] = -1;
+        int next = 1;
+        for (int slot = 0; slot < this.numSlots; slot++) {
+            next = compileSlot(slot, next);
+        }
+        if (snapshot) {
+            this.distributionStart = new int[this.numSlots + 1];
+            for (int slot = 0; slot < this.numSlots; slot++) {
+                Node node = this.nodes[slot];
+                this.distributionStart[slot + 1] = this.distributionStart[slot]
+                        + (node == null ? 0 : node.observedClassDistribution.numValues());
+            }
+            this.distributions = new double[this.distributionStart[this.numSlots]];
+            for (int slot = 0; slot < this.numSlots; slot++) {
+                Node node = this.nodes[slot];
+                if (node != null) {
+                    System.arraycopy(node.observedClassDistribution.getArrayRef(), 0, this.distributions,
+                            this.distributionStart[slot], node.observedClassDistribution.numValues());
+                }
+            }
+            this.frozen = new Node[this.numSlots];
+            freezeNodes(previous);
+        } else {
+            this.distributionStart = null;
+            this.distributions = null;
+            this.frozen = null;
+        }
+    }
+
+    /**
+     * Same as tree.treeRoot.filterInstanceToLeaf(inst, null, -1) when the
+     * tree was compiled, but the result is written into the given object.
+     *
+     * @param inst the instance to be filtered
+     * @param found where the leaf reached is written, as in
+     * HoeffdingTree.Node.filterInstanceToLeaf
+     */
+    public void filterInstanceToLeaf(Instance inst, FoundNode found) {
+        int slot = findSlot(inst);
+        if (slot < 0) {
+            // a child beyond the last one
+            slot = -1 - slot;
+            found.node = null;
+            found.parent = (SplitNode) this.nodes[slot];
+            found.parentBranch = branch(slot, inst);
+        } else if (this.kind[slot] == OPAQUE) {
+            FoundNode opaqueFound = this.nodes[slot].filterInstanceToLeaf(inst, parentNode(slot),
+                    this.parentBranch[slot]);
+            found.node = opaqueFound.node;
+            found.parent = opaqueFound.parent;
+            found.parentBranch = opaqueFound.parentBranch;
+        } else {
+            found.node = this.nodes[slot];
+            found.parent = parentNode(slot);
+            found.parentBranch = this.parentBranch[slot];
+        }
+    }
+
+    /**
+     * Same as tree.treeRoot.filterInstanceToLeaf(inst, null, -1) when the
+     * tree was compiled.
+     */
+    public FoundNode filterInstanceToLeaf(Instance inst) {
+        FoundNode found = new FoundNode(null, null, -1);
+        filterInstanceToLeaf(inst, found);
+        return found;
+    }
+
+    /**
+     * Same as HoeffdingTree.getVotesForInstance(inst) (at the time the tree
+     * was compiled, for a snapshot), but the votes are written into the given
+     * array, which must have an entry for each class. Entries after the
+     * returned number of votes are set to 0.
+     *
+     * @param inst the instance to be predicted
+     * @param votes the array where the votes are written
+     * @return the number of votes
+     */
+    public int getVotesForInstance(Instance inst, double[] votes) {
+        int slot = findSlot(inst);
+        if (slot < 0) {
+            slot = -1 - slot;
+        } else if (this.nodes[slot] == null) {
+            // a missing child, the parent votes
+            slot = this.parent[slot];
+        }
+        Node node = this.frozen == null ? this.nodes[slot] : this.frozen[slot];
+        if (node == null) {
+            int start = this.distributionStart[slot];
+            int numVotes = this.distributionStart[slot + 1] - start;
+            System.arraycopy(this.distributions, start, votes, 0, numVotes);
+            Arrays.fill(votes, numVotes, votes.length, 0.0);
+            return numVotes;
+        }
+        if (this.kind[slot] == OPAQUE) {
+            FoundNode found = node.filterInstanceToLeaf(inst, parentNode(slot), this.parentBranch[slot]);
+            node = found.node != null ? found.node : found.parent;
+        }
+        return node.getClassVotes(inst, this.tree, votes);
+    }
+
+    /**
+     * Same as HoeffdingTree.getVotesForInstance(inst) (at the time the tree
+     * was compiled, for a snapshot).
+     */
+    public double[] getVotesForInstance(Instance inst) {
+        double[] votes = new double[inst.dataset().numClasses()];
+        int numVotes = getVotesForInstance(inst, votes);
+        return numVotes == votes.length ? votes : Arrays.copyOf(votes, numVotes);
+    }
+
+    /**
+     * Checks whether the tree still has the structure it had when it was
+     * compiled, i.e., whether this layout can still be used to filter
+     * instances. Takes time proportional to the size of the tree.
+     */
+    public boolean matchesTree() {
+        if (this.nodes[0] != this.tree.treeRoot) {
+            return false;
+        }
+        for (int slot = 0; slot < this.numSlots; slot++) {
+            Node node = this.nodes[slot];
+            if (node != null && node.getClass() == SplitNode.class) {
+                SplitNode splitNode = (SplitNode) node;
+                if (splitNode.numChildren() != this.numChildren[slot]) {
+                    return false;
+                }
+                for (int b = 0; b < this.numChildren[slot]; b++) {
+                    if (splitNode.getChild(b) != this.nodes[this.firstChild[slot] + b]) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of slots of the layout, one for each node and missing
+     * child of the tree.
+     */
+    public int getNumSlots() {
+        return this.numSlots;
+    }
+
+    /**
+     * Follows the tree down to the slot reached by an instance.
+     *
+     * @return the slot of the leaf, missing child, split node of another
+     * class or split node that does not test the instance, or -1 - slot if
+     * the instance goes to a branch of the split node in slot beyond its
+     * last child
+     */
+    protected int findSlot(Instance inst) {
+        int slot = 0;
+        while (true) {
+            int branch;
+            switch (this.kind[slot]) {
+                case NUMERIC_LE:
+                case NUMERIC_LT:
+                    // same as NumericAttributeBinaryTest.branchForInstance
+                    int att = this.attIndex[slot];
+                    if (inst.isMissing(att)) {
+                        return slot;
+                    }
+                    double v = inst.valueInputAttribute(att);
+                    if (v == this.threshold[slot]) {
+                        branch = this.kind[slot] == NUMERIC_LE ? 0 : 1;
+                    } else {
+                        branch = v < this.threshold[slot] ? 0 : 1;
+                    }
+                    break;
+                case SPLIT:
+                    branch = this.test[slot].branchForInstance(inst);
+                    if (branch < 0) {
+                        return slot;
+                    }
+                    break;
+                default:
+                    return slot;
+            }
+            if (branch >= this.numChildren[slot]) {
+                return -1 - slot;
+            }
+            slot = this.firstChild[slot] + branch;
+        }
+    }
+
+    protected int branch(int slot, Instance inst) {
+        return ((SplitNode) this.nodes[slot]).instanceChildIndex(inst);
+    }
+
+    protected SplitNode parentNode(int slot) {
+        int p = this.parent[slot];
+        return p < 0 ? null : (SplitNode) this.nodes[p];
+    }
+
+    /**
+     * Counts the slots of the subtree of a node.
+     */
+    protected static int countSlots(Node node) {
+        int count = 1;
+        if (node != null && node.getClass() == SplitNode.class) {
+            SplitNode splitNode = (SplitNode) node;
+            for (int b = 0; b < splitNode.numChildren(); b++) {
+                count += countSlots(splitNode.getChild(b));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fills a slot from its node, and the slots of its children from next.
+     *
+     * @return the next free slot
+     */
+    protected int compileSlot(int slot, int next) {
+        Node node = this.nodes[slot];
+        if (node == null || node.isLeaf()) {
+            this.kind[slot] = LEAF;
+            return next;
+        }
+        if (node.getClass() != SplitNode.class) {
+            this.kind[slot] = OPAQUE;
+            return next;
+        }
+        SplitNode splitNode = (SplitNode) node;
+        if (splitNode.splitTest instanceof NumericAttributeBinaryTest) {
+            NumericAttributeBinaryTest numericTest = (NumericAttributeBinaryTest) splitNode.splitTest;
+            this.kind[slot] = numericTest.isEqualsPassesTest() ? NUMERIC_LE : NUMERIC_LT;
+            this.attIndex[slot] = numericTest.getAttIndex();
+            this.threshold[slot] = numericTest.getSplitValue();
+        } else {
+            this.kind[slot] = SPLIT;
+            this.test[slot] = splitNode.splitTest;
+        }
+        int count = splitNode.numChildren();
+        this.firstChild[slot] = next;
+        this.numChildren[slot] = count;
+        for (int b = 0; b < count; b++) {
+            this.nodes[next + b] = splitNode.getChild(b);
+            this.parent[next + b] = slot;
+            this.parentBranch[next + b] = b;
+        }
+        return next + count;
+    }
+
+    /**
+     * Copies the nodes whose votes are not their class distribution, or
+     * takes their copy from the previous snapshot if they did not learn
+     * since then.
+     */
+    protected void freezeNodes(CompiledTree previous) {
+        IdentityHashMap<Node, Integer> previousSlots = null;
+        if (previous != null && previous.frozen != null) {
+            previousSlots = new IdentityHashMap<Node, Integer>(2 * previous.numSlots);
+            for (int slot = 0; slot < previous.numSlots; slot++) {
+                if (previous.frozen[slot] != null && previous.kind[slot] != OPAQUE) {
+                    previousSlots.put(previous.nodes[slot], slot);
+                }
+            }
+        }
+        for (int slot = 0; slot < this.numSlots; slot++) {
+            Node node = this.nodes[slot];
+            if (node == null || (this.kind[slot] != OPAQUE && votesClassDistribution(node))) {
+                continue;
+            }
+            Integer previousSlot = previousSlots == null ? null : previousSlots.get(node);
+            if (previousSlot != null && sameDistribution(previous, previousSlot, slot)) {
+                // a leaf learns from every instance it is trained on, which
+                // changes its class distribution
+                this.frozen[slot] = previous.frozen[previousSlot];
+            } else {
+                // the subtree of a split node of another class is always
+                // copied
+                this.frozen[slot] = (Node) node.copy();
+            }
+        }
+    }
+
+    protected boolean sameDistribution(CompiledTree other, int otherSlot, int slot) {
+        int start = this.distributionStart[slot];
+        int length = this.distributionStart[slot + 1] - start;
+        int otherStart = other.distributionStart[otherSlot];
+        if (other.distributionStart[otherSlot + 1] - otherStart != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.distributions[start + i] != other.distributions[otherStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the votes of a node are its class distribution, for
+     * any instance, as long as it does not learn. Only known node classes
+     * are checked, the others are assumed to compute their votes.
+     */
+    protected boolean votesClassDistribution(Node node) {
+        Class<?> c = node.getClass();
+        if (c == SplitNode.class || c == InactiveLearningNode.class || c == ActiveLearningNode.class
+                || c == ARFHoeffdingTree.RandomLearningNode.class) {
+            return true;
+        }
+        if (c == HoeffdingTree.LearningNodeNB.class || c == ARFHoeffdingTree.LearningNodeNB.class) {
+            return ((ActiveLearningNode) node).getWeightSeen() < this.tree.nbThresholdOption.getValue();
+        }
+        if (c == HoeffdingTree.LearningNodeNBAdaptive.class) {
+            HoeffdingTree.LearningNodeNBAdaptive nbAdaptive = (HoeffdingTree.LearningNodeNBAdaptive) node;
+            return nbAdaptive.mcCorrectWeight > nbAdaptive.nbCorrectWeight;
+        }
+        if (c == ARFHoeffdingTree.LearningNodeNBAdaptive.class) {
+            ARFHoeffdingTree.LearningNodeNBAdaptive nbAdaptive = (ARFHoeffdingTree.LearningNodeNBAdaptive) node;
+            return nbAdaptive.mcCorrectWeight > nbAdaptive.nbCorrectWeight;
+        }
+        return false;
+    }
+}
@@ -38,9 +38,11 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.BufferedAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.SplitEvaluationBuffers;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
@@ -580,8 +582,15 @@ public class HoeffdingOptionTree extends AbstractClassifier {
             for (int i = 0; i < this.attributeObservers.size(); i++) {
                 AttributeClassObserver obs = this.attributeObservers.get(i);
                 if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-                            preSplitDist, i, ht.binarySplitsOption.isSet());
+                    AttributeSplitSuggestion bestSuggestion;
+                    if (obs instanceof BufferedAttributeClassObserver) {
+                        bestSuggestion = ((BufferedAttributeClassObserver) obs).getBestEvaluatedSplitSuggestion(
+                                criterion, preSplitDist, i, ht.binarySplitsOption.isSet(),
+                                ht.getSplitEvaluationBuffers());
+                    } else {
+                        bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
+                                preSplitDist, i, ht.binarySplitsOption.isSet());
+                    }
                     if (bestSuggestion != null) {
                         bestSuggestions.add(bestSuggestion);
                     }
@@ -612,6 +621,17 @@ public class HoeffdingOptionTree extends AbstractClassifier {
 
     protected int maxPredictionPaths;
 
+    // Scratch buffers lent to the attribute observers of all the leaves
+    // during split attempts, created again in a copy of the tree
+    protected transient SplitEvaluationBuffers splitEvaluationBuffers;
+
+    protected SplitEvaluationBuffers getSplitEvaluationBuffers() {
+        if (this.splitEvaluationBuffers == null) {
+            this.splitEvaluationBuffers = new SplitEvaluationBuffers();
+        }
+        return this.splitEvaluationBuffers;
+    }
+
     public int calcByteSize() {
         int size = (int) SizeOf.sizeOf(this);
         if (this.treeRoot != null) {
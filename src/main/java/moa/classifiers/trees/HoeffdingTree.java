@@ -34,15 +34,18 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.BufferedAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NumericAttributeClassObserver;
+import moa.classifiers.core.attributeclassobservers.SplitEvaluationBuffers;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.core.SizeOf;
+import moa.core.StructuralCopier;
 import moa.core.StringUtils;
 import moa.core.Utils;
 import moa.options.ClassOption;
@@ -177,7 +180,7 @@ public class HoeffdingTree extends AbstractClassifier {
         }
     }
 
-    public static class Node extends AbstractMOAObject {
+    public static class Node extends AbstractMOAObject implements StructuralCopier.Copyable {
 
         private static final long serialVersionUID = 1L;
 
@@ -187,6 +190,20 @@ public class HoeffdingTree extends AbstractClassifier {
             this.observedClassDistribution = new DoubleVector(classObservations);
         }
 
+        /**
+         * Deep copy of toCopy, used by copyStructure. Each node class that 
+         * adds fields should provide a similar constructor.
+         */
+        protected Node(Node toCopy, StructuralCopier copier) {
+            copier.register(toCopy, this);
+            this.observedClassDistribution = copier.copy(toCopy.observedClassDistribution);
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new Node(this, copier);
+        }
+
         public int calcByteSize() {
             return (int) (SizeOf.sizeOf(this) + SizeOf.fullSizeOf(this.observedClassDistribution));
         }
@@ -212,6 +229,25 @@ public class HoeffdingTree extends AbstractClassifier {
             return this.observedClassDistribution.getArrayCopy();
         }
 
+        /**
+         * Same as getClassVotes(inst, ht), but the votes are written into
+         * the given array, which must have an entry for each class. Entries 
+         * after the returned number of votes are set to 0. Subclasses that 
+         * override it can avoid allocating an array for every prediction.
+         *
+         * @param inst the instance
+         * @param ht the tree
+         * @param votes the array where the votes are written
+         * @return the number of votes, i.e., the length of the array 
+         * returned by getClassVotes(inst, ht)
+         */
+        public int getClassVotes(Instance inst, HoeffdingTree ht, double[] votes) {
+            double[] classVotes = getClassVotes(inst, ht);
+            System.arraycopy(classVotes, 0, votes, 0, classVotes.length);
+            Arrays.fill(votes, classVotes.length, votes.length, 0.0);
+            return classVotes.length;
+        }
+
         public boolean observedClassDistributionIsPure() {
             return this.observedClassDistribution.numNonZeroEntries() < 2;
         }
@@ -283,6 +319,17 @@ public class HoeffdingTree extends AbstractClassifier {
             this.children = new AutoExpandVector<Node>();
         }
 
+        protected SplitNode(SplitNode toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+            this.splitTest = copier.copy(toCopy.splitTest);
+            this.children = copier.copy(toCopy.children);
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new SplitNode(this, copier);
+        }
+
 
         public int numChildren() {
             return this.children.size();
@@ -362,6 +409,10 @@ public class HoeffdingTree extends AbstractClassifier {
             super(initialClassObservations);
         }
 
+        protected LearningNode(LearningNode toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+        }
+
         public abstract void learnFromInstance(Instance inst, HoeffdingTree ht);
     }
 
@@ -373,6 +424,15 @@ public class HoeffdingTree extends AbstractClassifier {
             super(initialClassObservations);
         }
 
+        protected InactiveLearningNode(InactiveLearningNode toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new InactiveLearningNode(this, copier);
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             this.observedClassDistribution.addToValue((int) inst.classValue(),
@@ -396,6 +456,18 @@ public class HoeffdingTree extends AbstractClassifier {
             this.isInitialized = false;
         }
 
+        protected ActiveLearningNode(ActiveLearningNode toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+            this.weightSeenAtLastSplitEvaluation = toCopy.weightSeenAtLastSplitEvaluation;
+            this.attributeObservers = copier.copy(toCopy.attributeObservers);
+            this.isInitialized = toCopy.isInitialized;
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new ActiveLearningNode(this, copier);
+        }
+
         @Override
         public int calcByteSize() {
             return super.calcByteSize()
@@ -447,8 +519,15 @@ public class HoeffdingTree extends AbstractClassifier {
             for (int i = 0; i < this.attributeObservers.size(); i++) {
                 AttributeClassObserver obs = this.attributeObservers.get(i);
                 if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-                            preSplitDist, i, ht.binarySplitsOption.isSet());
+                    AttributeSplitSuggestion bestSuggestion;
+                    if (obs instanceof BufferedAttributeClassObserver) {
+                        bestSuggestion = ((BufferedAttributeClassObserver) obs).getBestEvaluatedSplitSuggestion(
+                                criterion, preSplitDist, i, ht.binarySplitsOption.isSet(),
+                                ht.getSplitEvaluationBuffers());
+                    } else {
+                        bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
+                                preSplitDist, i, ht.binarySplitsOption.isSet());
+                    }
                     if (bestSuggestion != null) {
                         bestSuggestions.add(bestSuggestion);
                     }
@@ -479,6 +558,17 @@ public class HoeffdingTree extends AbstractClassifier {
 
     protected boolean growthAllowed;
 
+    // Scratch buffers lent to the attribute observers of all the leaves
+    // during split attempts, created again in a copy of the tree
+    protected transient SplitEvaluationBuffers splitEvaluationBuffers;
+
+    protected SplitEvaluationBuffers getSplitEvaluationBuffers() {
+        if (this.splitEvaluationBuffers == null) {
+            this.splitEvaluationBuffers = new SplitEvaluationBuffers();
+        }
+        return this.splitEvaluationBuffers;
+    }
+
     public int calcByteSize() {
         int size = (int) SizeOf.sizeOf(this);
         if (this.treeRoot != null) {
@@ -853,6 +943,15 @@ public class HoeffdingTree extends AbstractClassifier {
             super(initialClassObservations);
         }
 
+        protected LearningNodeNB(LearningNodeNB toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new LearningNodeNB(this, copier);
+        }
+
         @Override
         public double[] getClassVotes(Instance inst, HoeffdingTree ht) {
             if (getWeightSeen() >= ht.nbThresholdOption.getValue()) {
@@ -881,6 +980,17 @@ public class HoeffdingTree extends AbstractClassifier {
             super(initialClassObservations);
         }
 
+        protected LearningNodeNBAdaptive(LearningNodeNBAdaptive toCopy, StructuralCopier copier) {
+            super(toCopy, copier);
+            this.mcCorrectWeight = toCopy.mcCorrectWeight;
+            this.nbCorrectWeight = toCopy.nbCorrectWeight;
+        }
+
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            return new LearningNodeNBAdaptive(this, copier);
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             int trueClass = (int) inst.classValue();
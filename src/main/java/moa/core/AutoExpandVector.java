@@ -31,7 +31,7 @@ import moa.MOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject {
+public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject, StructuralCopier.Copyable {
 
     private static final long serialVersionUID = 1L;
 
@@ -120,6 +120,21 @@ public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject {
         return AbstractMOAObject.copy(this);
     }
 
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        // Same capacity as a deserialized copy, i.e., size()
+        AutoExpandVector<T> copy = new AutoExpandVector<T>(size());
+        copier.register(this, copy);
+        for (T element : this) {
+            copy.append(copier.copy(element));
+        }
+        return copy;
+    }
+
+    private void append(T obj) {
+        super.add(obj);
+    }
+
     @Override
     public int measureByteSize() {
         return AbstractMOAObject.measureByteSize(this);
@@ -0,0 +1,38 @@
+/*
+ *    ByteSizeEstimable.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+/**
+ * Object that keeps an estimate of its memory size up to date as it
+ * changes, so that the estimate is obtained in constant time instead of
+ * walking the whole object graph as MOAObject.measureByteSize() does.
+ *
+ * @version $Revision: 1 $
+ */
+public interface ByteSizeEstimable {
+
+    /**
+     * Gets an estimate of the memory size of this object, i.e., of
+     * measureByteSize(), without traversing the object.
+     *
+     * @return the estimated memory size of this object, or -1 if sizes
+     * can not be measured
+     */
+    public int estimateByteSize();
+}
@@ -0,0 +1,270 @@
+/*
+ *    CompressedInputStream.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * Stream that decompresses its input in a background thread, in large
+ * blocks, so that decompression overlaps with the work of the reader.
+ *
+ * <p>{@link #open(InputStream)} detects gzip, zip and xz inputs from their
+ * first bytes. A zip archive is read from its first file.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class CompressedInputStream extends InputStream {
+
+    public static final int BLOCK_SIZE = 1 << 20;
+
+    protected static final int NUM_BLOCKS = 4;
+
+    protected static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+
+    protected static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+
+    protected static final byte[] XZ_MAGIC = {(byte) 0xfd, '7', 'z', 'X', 'Z', 0};
+
+    /**
+     * A block of decompressed bytes.
+     */
+    protected static class Block {
+
+        protected final byte[] bytes;
+
+        protected int length;
+
+        protected Block(int size) {
+            this.bytes = new byte[size];
+        }
+    }
+
+    // Marks the end of the input in the queue
+    protected static final Block END = new Block(0);
+
+    protected final InputStream decoder;
+
+    protected final BlockingQueue<Block> full = new ArrayBlockingQueue<Block>(NUM_BLOCKS + 1);
+
+    protected final BlockingQueue<Block> free = new ArrayBlockingQueue<Block>(NUM_BLOCKS);
+
+    protected final Thread thread;
+
+    protected volatile IOException failure;
+
+    // Set by close, so that the thread stops reading from the decoder
+    protected volatile boolean closed;
+
+    protected Block current;
+
+    protected int position;
+
+    protected boolean ended;
+
+    /**
+     * Opens an input, decompressing it if it is compressed.
+     *
+     * @param in the input, possibly compressed
+     * @return the decompressed input
+     * @throws IOException if the input cannot be read
+     */
+    public static InputStream open(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        byte[] magic = new byte[XZ_MAGIC.length];
+        buffered.mark(magic.length);
+        int length = 0;
+        int read;
+        while (length < magic.length
+                && (read = buffered.read(magic, length, magic.length - length)) > 0) {
+            length += read;
+        }
+        buffered.reset();
+        if (startsWith(magic, length, GZIP_MAGIC)) {
+            return new CompressedInputStream(new GZIPInputStream(buffered, BLOCK_SIZE));
+        }
+        if (startsWith(magic, length, XZ_MAGIC)) {
+            return new CompressedInputStream(new XZInputStream(buffered));
+        }
+        if (startsWith(magic, length, ZIP_MAGIC)) {
+            ZipInputStream zip = new ZipInputStream(buffered);
+            ZipEntry entry = zip.getNextEntry();
+            while (entry != null && entry.isDirectory()) {
+                entry = zip.getNextEntry();
+            }
+            if (entry == null) {
+                zip.close();
+                throw new IOException("Empty zip archive");
+            }
+            return new CompressedInputStream(zip);
+        }
+        return buffered;
+    }
+
+    protected static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts decompressing an input.
+     *
+     * @param decoder the decompressing stream
+     */
+    public CompressedInputStream(InputStream decoder) {
+        this.decoder = decoder;
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            this.free.add(new Block(BLOCK_SIZE));
+        }
+        this.thread = ThreadCPUTimer.threadFactory("decompressor", true).newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                decode();
+            }
+        });
+        this.thread.start();
+    }
+
+    protected void decode() {
+        try {
+            try {
+                while (!this.closed) {
+                    Block block = this.free.take();
+                    block.length = 0;
+                    int read = 0;
+                    while (!this.closed && block.length < block.bytes.length
+                            && (read = this.decoder.read(block.bytes, block.length,
+                            block.bytes.length - block.length)) >= 0) {
+                        block.length += read;
+                    }
+                    if (block.length > 0) {
+                        this.full.put(block);
+                    }
+                    if (read < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            }
+            this.full.put(END);
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return this.current.bytes[this.position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, this.current.length - this.position);
+        System.arraycopy(this.current.bytes, this.position, b, off, n);
+        this.position += n;
+        return n;
+    }
+
+    /**
+     * Makes sure that the current block has bytes left to read.
+     *
+     * @return false at the end of the input
+     */
+    protected boolean nextBlock() throws IOException {
+        if (this.current != null && this.position < this.current.length) {
+            return true;
+        }
+        if (this.ended) {
+            return false;
+        }
+        if (this.current != null) {
+            this.free.add(this.current);
+            this.current = null;
+        }
+        Block block;
+        try {
+            block = this.full.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decompressing", e);
+        }
+        if (block == END) {
+            this.ended = true;
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            return false;
+        }
+        this.current = block;
+        this.position = 0;
+        return true;
+    }
+
+    @Override
+    public int available() {
+        return this.current != null ? this.current.length - this.position : 0;
+    }
+
+    /**
+     * Stops the thread, waiting for it to finish its current read, before
+     * closing the decoder, which the thread may be reading from.
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.thread.interrupt();
+        boolean interrupted = false;
+        while (this.thread.isAlive()) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        this.decoder.close();
+    }
+}
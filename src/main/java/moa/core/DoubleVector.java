@@ -27,7 +27,7 @@ import moa.AbstractMOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class DoubleVector extends AbstractMOAObject {
+public class DoubleVector extends AbstractMOAObject implements StructuralCopier.Copyable {
 
     private static final long serialVersionUID = 1L;
 
@@ -46,6 +46,11 @@ public class DoubleVector extends AbstractMOAObject {
         this(toCopy.getArrayRef());
     }
 
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        return new DoubleVector(this);
+    }
+
     public int numValues() {
         return this.array.length;
     }
@@ -28,7 +28,7 @@ import moa.AbstractMOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class GaussianEstimator extends AbstractMOAObject {
+public class GaussianEstimator extends AbstractMOAObject implements StructuralCopier.Copyable {
 
     private static final long serialVersionUID = 1L;
 
@@ -40,6 +40,15 @@ public class GaussianEstimator extends AbstractMOAObject {
 
     public static final double NORMAL_CONSTANT = Math.sqrt(2 * Math.PI);
 
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        GaussianEstimator copy = new GaussianEstimator();
+        copy.weightSum = this.weightSum;
+        copy.mean = this.mean;
+        copy.varianceSum = this.varianceSum;
+        return copy;
+    }
+
     public void addObservation(double value, double weight) {
         if (Double.isInfinite(value) || Double.isNaN(value)) {
             return;
@@ -102,6 +111,17 @@ public class GaussianEstimator extends AbstractMOAObject {
 
     public double[] estimatedWeight_LessThan_EqualTo_GreaterThan_Value(
             double value) {
+        double[] weights = new double[3];
+        estimatedWeight_LessThan_EqualTo_GreaterThan_Value(value, weights);
+        return weights;
+    }
+
+    /**
+     * Estimates the weights less than, equal to and greater than a value
+     * without allocating, into the first three elements of an array.
+     */
+    public void estimatedWeight_LessThan_EqualTo_GreaterThan_Value(
+            double value, double[] weights) {
         double equalToWeight = probabilityDensity(value) * this.weightSum;
         double stdDev = getStdDev();
         double lessThanWeight = stdDev > 0.0 ? moa.core.Statistics.normalProbability((value - getMean()) / stdDev)
@@ -112,7 +132,9 @@ public class GaussianEstimator extends AbstractMOAObject {
         if (greaterThanWeight < 0.0) {
             greaterThanWeight = 0.0;
         }
-        return new double[]{lessThanWeight, equalToWeight, greaterThanWeight};
+        weights[0] = lessThanWeight;
+        weights[1] = equalToWeight;
+        weights[2] = greaterThanWeight;
     }
 
     @Override
@@ -142,6 +142,10 @@ public class GreenwaldKhannaQuantileSummary extends AbstractMOAObject {
         }
     }
 
+    public int getNumTuples() {
+        return this.numTuples;
+    }
+
     public long getWorstError() {
         long mostFullness = 0;
         for (int i = 1; i < this.numTuples - 1; i++) {
@@ -32,10 +32,10 @@ import java.io.InputStream;
 public class InputStreamProgressMonitor extends FilterInputStream {
 
 	/** The number of bytes to read in total */
-	protected int inputByteSize;
+	protected long inputByteSize;
 
-	/** The number of bytes read so far */
-	protected int inputBytesRead;
+	/** The number of bytes read so far, may be read by another thread */
+	protected volatile long inputBytesRead;
 
 	public InputStreamProgressMonitor(InputStream in) {
 		super(in);
@@ -47,11 +47,39 @@ public class InputStreamProgressMonitor extends FilterInputStream {
 		this.inputBytesRead = 0;
 	}
 
+	/**
+	 * Monitors a stream whose size is known, e.g. a file larger than 2GB for
+	 * which available() is not exact.
+	 */
+	public InputStreamProgressMonitor(InputStream in, long inputByteSize) {
+		super(in);
+		this.inputByteSize = inputByteSize;
+		this.inputBytesRead = 0;
+	}
+
+	/**
+	 * @deprecated saturates at Integer.MAX_VALUE for streams larger than 2GB,
+	 * use {@link #getBytesReadLong()}
+	 */
+	@Deprecated
 	public int getBytesRead() {
-		return this.inputBytesRead;
+		return (int) Math.min(getBytesReadLong(), Integer.MAX_VALUE);
 	}
 
+	/**
+	 * @deprecated saturates at Integer.MAX_VALUE for streams larger than 2GB,
+	 * use {@link #getBytesRemainingLong()}
+	 */
+	@Deprecated
 	public int getBytesRemaining() {
+		return (int) Math.min(getBytesRemainingLong(), Integer.MAX_VALUE);
+	}
+
+	public long getBytesReadLong() {
+		return this.inputBytesRead;
+	}
+
+	public long getBytesRemainingLong() {
 		return this.inputByteSize - this.inputBytesRead;
 	}
 
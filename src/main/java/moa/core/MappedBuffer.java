@@ -0,0 +1,81 @@
+/*
+ *    MappedBuffer.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only, little-endian view of a region of a file mapped in memory.
+ * The region may be larger than 2GB: it is mapped in segments, and values are
+ * read at a long offset from the start of the region.
+ *
+ * <p>Values must be aligned on their size, so that none crosses the boundary
+ * between two segments.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class MappedBuffer {
+
+    protected static final int SEGMENT_BITS = 30;
+
+    protected static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    protected final ByteBuffer[] segments;
+
+    protected final long size;
+
+    /**
+     * Maps a region of a file.
+     *
+     * @param channel the file
+     * @param position the start of the region in the file
+     * @param size the size of the region in bytes
+     * @throws IOException if the region cannot be mapped
+     */
+    public MappedBuffer(FileChannel channel, long position, long size) throws IOException {
+        this.size = size;
+        int numSegments = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+        this.segments = new ByteBuffer[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            long length = Math.min(size - start, 1L << SEGMENT_BITS);
+            this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position + start, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public double getDouble(long offset) {
+        return this.segments[(int) (offset >>> SEGMENT_BITS)].getDouble((int) (offset & SEGMENT_MASK));
+    }
+
+    public long getLong(long offset) {
+        return this.segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & SEGMENT_MASK));
+    }
+
+    public int getInt(long offset) {
+        return this.segments[(int) (offset >>> SEGMENT_BITS)].getInt((int) (offset & SEGMENT_MASK));
+    }
+}
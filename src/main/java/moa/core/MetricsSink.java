@@ -0,0 +1,41 @@
+/*
+ *    MetricsSink.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+/**
+ * Receiver of the metrics published by a learner while it is trained, e.g.
+ * to expose them to an external monitoring system.
+ *
+ * <p>Metrics are published from the thread that trains the learner, so an
+ * implementation should return quickly and must not call the learner
+ * back.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public interface MetricsSink {
+
+    /**
+     * Receives the current metrics of a learner.
+     *
+     * @param source the learner that publishes the metrics
+     * @param instancesSeen the number of instances seen by the learner
+     * @param measurements the metrics
+     */
+    public void publish(Object source, long instancesSeen, Measurement[] measurements);
+}
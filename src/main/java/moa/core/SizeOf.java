@@ -20,6 +20,10 @@
  */
 package moa.core;
 
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+
 import sizeof.agent.SizeOfAgent;
 
 /**
@@ -78,4 +82,43 @@ public class SizeOf {
             return -1;
         }
     }
+
+    /** the number of array lengths measured for each component type. */
+    protected static final int ARRAY_PERIOD = 16;
+
+    /**
+     * the sizes of the arrays of length 0 to ARRAY_PERIOD of each component
+     * type, measured once.
+     */
+    protected static Map<Class<?>, long[]> m_ArraySizes = new HashMap<Class<?>, long[]>();
+
+    /**
+     * Returns the size of an array, computed from its length without
+     * measuring it. The sizes of the arrays of length 0 to 16 of the
+     * component type are measured once: beyond that, 16 more elements add
+     * 16 times the size of an element, as the alignment of objects divides
+     * it.
+     *
+     * @param componentType	the component type of the array, e.g. double.class
+     * @param length	the length of the array
+     * @return the size of the array, or if the agent isn't present -1
+     */
+    public static long sizeOfArray(Class<?> componentType, int length) {
+        if (!isPresent()) {
+            return -1;
+        }
+        long[] sizes;
+        synchronized (m_ArraySizes) {
+            sizes = m_ArraySizes.get(componentType);
+            if (sizes == null) {
+                sizes = new long[ARRAY_PERIOD + 1];
+                for (int i = 0; i <= ARRAY_PERIOD; i++) {
+                    sizes[i] = SizeOfAgent.sizeOf(Array.newInstance(componentType, i));
+                }
+                m_ArraySizes.put(componentType, sizes);
+            }
+        }
+        int rest = length % ARRAY_PERIOD;
+        return sizes[rest] + (length - rest) / ARRAY_PERIOD * (sizes[ARRAY_PERIOD] - sizes[0]);
+    }
 }
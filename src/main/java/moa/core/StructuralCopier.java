@@ -0,0 +1,504 @@
+/*
+ *    StructuralCopier.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Externalizable;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deep copy of object graphs with the same result as a Java serialization
+ * round trip (see SerializeUtils.copyObject), but without encoding the
+ * objects into bytes.
+ *
+ * <p>Objects are copied field by field: non-transient fields are copied
+ * (recursively), transient fields are left with their default value and
+ * shared references (including cycles) are preserved. The fields and the
+ * constructor used for each class are found by reflection only once and
+ * cached. Classes that implement {@link Copyable} (and declare
+ * copyStructure themselves, so that subclasses are not copied as their
+ * parent class) copy themselves instead, which is faster for the types that
+ * are copied most often.</p>
+ *
+ * <p>Besides arrays, immutable values and a few collections of java.util,
+ * classes of the JDK are not copied by reflection. If the graph contains one
+ * of them, or an object with custom serialization methods, the whole graph
+ * is copied by serialization instead.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class StructuralCopier {
+
+    /**
+     * An object that produces its own structural copy.
+     */
+    public interface Copyable {
+
+        /**
+         * Returns a deep copy of this object. References to other objects
+         * must be copied with copier.copy(...), and the copy should be
+         * registered with copier.register(this, copy) before copying
+         * references that may lead back to this object.
+         *
+         * @param copier the copier of the graph being copied
+         * @return the copy
+         */
+        public Object copyStructure(StructuralCopier copier);
+    }
+
+    protected static final int SHARED = 0;
+    protected static final int PRIMITIVE_ARRAY = 1;
+    protected static final int OBJECT_ARRAY = 2;
+    protected static final int COPYABLE = 3;
+    protected static final int FIELDS = 4;
+    protected static final int LIST = 5;
+    protected static final int MAP = 6;
+    protected static final int SET = 7;
+    protected static final int SERIALIZED = 8;
+    protected static final int UNSUPPORTED = 9;
+
+    /**
+     * How the objects of a class are copied.
+     */
+    protected static class ClassPlan {
+
+        protected int kind = UNSUPPORTED;
+
+        protected Constructor<?> constructor;
+
+        protected Field[] fields;
+
+        // Field types: 'Z', 'B', 'C', 'S', 'I', 'J', 'F', 'D' for primitives,
+        // 'L' for references
+        protected char[] fieldTypes;
+    }
+
+    /**
+     * Thrown when the graph contains an object that cannot be copied
+     * structurally.
+     */
+    protected static class NotCopyableException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public NotCopyableException(Class<?> c) {
+            super("Cannot copy objects of class " + c.getName());
+        }
+    }
+
+    protected static final ConcurrentHashMap<Class<?>, ClassPlan> PLANS =
+            new ConcurrentHashMap<Class<?>, ClassPlan>();
+
+    // Classes of the objects that could not be copied structurally, which
+    // are copied by serialization from then on
+    protected static final ConcurrentHashMap<Class<?>, Boolean> SERIALIZED_ROOTS =
+            new ConcurrentHashMap<Class<?>, Boolean>();
+
+    // Number of objects in the last graph copied for each class of root
+    // object, used to size the map of copies
+    protected static final ConcurrentHashMap<Class<?>, Integer> GRAPH_SIZES =
+            new ConcurrentHashMap<Class<?>, Integer>();
+
+    protected final IdentityHashMap<Object, Object> copies;
+
+    public StructuralCopier() {
+        this(32);
+    }
+
+    /**
+     * @param expectedSize the expected number of objects to copy
+     */
+    public StructuralCopier(int expectedSize) {
+        this.copies = new IdentityHashMap<Object, Object>(expectedSize);
+    }
+
+    /**
+     * Returns a deep copy of obj, equivalent to
+     * SerializeUtils.copyObject(obj).
+     *
+     * @param obj the object to copy
+     * @return the copy
+     * @throws Exception if the object cannot be serialized
+     */
+    public static Object deepCopy(Serializable obj) throws Exception {
+        if (obj == null) {
+            return null;
+        }
+        if (!SERIALIZED_ROOTS.containsKey(obj.getClass())) {
+            Integer graphSize = GRAPH_SIZES.get(obj.getClass());
+            StructuralCopier copier = new StructuralCopier(graphSize == null ? 32 : graphSize);
+            try {
+                Object copy = copier.copy(obj);
+                GRAPH_SIZES.put(obj.getClass(), copier.copies.size());
+                return copy;
+            } catch (NotCopyableException e) {
+                SERIALIZED_ROOTS.put(obj.getClass(), Boolean.TRUE);
+            }
+        }
+        return SerializeUtils.copyObject(obj);
+    }
+
+    /**
+     * Records that copy is the copy of original, so that later references
+     * to original in this graph are replaced by copy.
+     */
+    public void register(Object original, Object copy) {
+        this.copies.put(original, copy);
+    }
+
+    /**
+     * Returns the copy of original in this graph, copying it if this is the
+     * first reference to it.
+     *
+     * @param original the object to copy, may be null
+     * @return the copy of original
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T original) {
+        if (original == null) {
+            return null;
+        }
+        Object copy = this.copies.get(original);
+        if (copy != null) {
+            return (T) copy;
+        }
+        ClassPlan plan = planFor(original.getClass());
+        switch (plan.kind) {
+            case SHARED:
+                return original;
+            case PRIMITIVE_ARRAY:
+                copy = copyPrimitiveArray(original);
+                register(original, copy);
+                return (T) copy;
+            case OBJECT_ARRAY:
+                return (T) copyObjectArray((Object[]) original);
+            case COPYABLE:
+                copy = ((Copyable) original).copyStructure(this);
+                register(original, copy);
+                return (T) copy;
+            case FIELDS:
+                return (T) copyFields(original, plan);
+            case LIST:
+                return (T) copyList((List<?>) original, plan);
+            case SET:
+                return (T) copyCollection((Collection<?>) original, new HashSet<Object>());
+            case MAP:
+                return (T) copyMap((Map<?, ?>) original);
+            case SERIALIZED:
+                // Only used for classes that do not refer to other objects
+                try {
+                    copy = SerializeUtils.copyObject((Serializable) original);
+                } catch (Exception e) {
+                    throw new RuntimeException("Object copy failed.", e);
+                }
+                register(original, copy);
+                return (T) copy;
+            default:
+                throw new NotCopyableException(original.getClass());
+        }
+    }
+
+    protected Object copyFields(Object original, ClassPlan plan) {
+        Object copy;
+        try {
+            copy = plan.constructor.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Object copy failed.", e);
+        }
+        register(original, copy);
+        Field[] fields = plan.fields;
+        char[] types = plan.fieldTypes;
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Field f = fields[i];
+                switch (types[i]) {
+                    case 'Z':
+                        f.setBoolean(copy, f.getBoolean(original));
+                        break;
+                    case 'B':
+                        f.setByte(copy, f.getByte(original));
+                        break;
+                    case 'C':
+                        f.setChar(copy, f.getChar(original));
+                        break;
+                    case 'S':
+                        f.setShort(copy, f.getShort(original));
+                        break;
+                    case 'I':
+                        f.setInt(copy, f.getInt(original));
+                        break;
+                    case 'J':
+                        f.setLong(copy, f.getLong(original));
+                        break;
+                    case 'F':
+                        f.setFloat(copy, f.getFloat(original));
+                        break;
+                    case 'D':
+                        f.setDouble(copy, f.getDouble(original));
+                        break;
+                    default:
+                        f.set(copy, copy(f.get(original)));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Object copy failed.", e);
+        }
+        return copy;
+    }
+
+    protected Object[] copyObjectArray(Object[] original) {
+        Object[] copy = (Object[]) Array.newInstance(
+                original.getClass().getComponentType(), original.length);
+        register(original, copy);
+        for (int i = 0; i < original.length; i++) {
+            copy[i] = copy(original[i]);
+        }
+        return copy;
+    }
+
+    protected static Object copyPrimitiveArray(Object original) {
+        if (original instanceof double[]) {
+            return ((double[]) original).clone();
+        } else if (original instanceof int[]) {
+            return ((int[]) original).clone();
+        } else if (original instanceof long[]) {
+            return ((long[]) original).clone();
+        } else if (original instanceof boolean[]) {
+            return ((boolean[]) original).clone();
+        } else if (original instanceof byte[]) {
+            return ((byte[]) original).clone();
+        } else if (original instanceof float[]) {
+            return ((float[]) original).clone();
+        } else if (original instanceof char[]) {
+            return ((char[]) original).clone();
+        }
+        return ((short[]) original).clone();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<Object> copyList(List<?> original, ClassPlan plan) {
+        List<Object> copy;
+        try {
+            copy = (List<Object>) plan.constructor.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Object copy failed.", e);
+        }
+        copyCollection(original, copy);
+        if (copy instanceof ArrayList) {
+            // Same capacity as a deserialized list
+            ((ArrayList<Object>) copy).trimToSize();
+        }
+        return copy;
+    }
+
+    protected Collection<Object> copyCollection(Collection<?> original, Collection<Object> copy) {
+        register(original, copy);
+        for (Object element : original) {
+            copy.add(copy(element));
+        }
+        return copy;
+    }
+
+    protected Map<Object, Object> copyMap(Map<?, ?> original) {
+        Map<Object, Object> copy = new HashMap<Object, Object>();
+        register(original, copy);
+        for (Map.Entry<?, ?> entry : original.entrySet()) {
+            copy.put(copy(entry.getKey()), copy(entry.getValue()));
+        }
+        return copy;
+    }
+
+    protected static ClassPlan planFor(Class<?> c) {
+        ClassPlan plan = PLANS.get(c);
+        if (plan == null) {
+            plan = newPlan(c);
+            PLANS.put(c, plan);
+        }
+        return plan;
+    }
+
+    protected static ClassPlan newPlan(Class<?> c) {
+        ClassPlan plan = new ClassPlan();
+        if (c.isArray()) {
+            plan.kind = c.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+        } else if (c == String.class || c == Boolean.class || c == Character.class
+                || c == Byte.class || c == Short.class || c == Integer.class
+                || c == Long.class || c == Float.class || c == Double.class
+                || c == BigInteger.class || c == BigDecimal.class || c == File.class
+                || c == Class.class || Enum.class.isAssignableFrom(c)) {
+            plan.kind = SHARED;
+        } else if (c == ArrayList.class || c == LinkedList.class) {
+            initListPlan(c, plan);
+        } else if (c == HashMap.class) {
+            plan.kind = MAP;
+        } else if (c == HashSet.class) {
+            plan.kind = SET;
+        } else if (c == Random.class) {
+            plan.kind = SERIALIZED;
+        } else if (Serializable.class.isAssignableFrom(c)
+                && !Externalizable.class.isAssignableFrom(c)
+                && !hasSerializationMethods(c)) {
+            if (Copyable.class.isAssignableFrom(c) && declaresCopyStructure(c)) {
+                plan.kind = COPYABLE;
+            } else if ((ArrayList.class.isAssignableFrom(c) || LinkedList.class.isAssignableFrom(c))
+                    && !isJDKClass(c)) {
+                // e.g. FastVector
+                initListPlan(c, plan);
+            } else if (!isJDKClass(c)) {
+                initFieldsPlan(c, plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Lists are copied element by element into a list created with the 
+     * no-arg constructor, which is only possible if the subclasses of 
+     * ArrayList or LinkedList do not add fields.
+     */
+    protected static void initListPlan(Class<?> c, ClassPlan plan) {
+        for (Class<?> base = c; !isJDKClass(base); base = base.getSuperclass()) {
+            for (Field f : base.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    return;
+                }
+            }
+        }
+        try {
+            plan.constructor = c.getDeclaredConstructor();
+            plan.constructor.setAccessible(true);
+        } catch (Exception e) {
+            return;
+        }
+        plan.kind = LIST;
+    }
+
+    protected static void initFieldsPlan(Class<?> c, ClassPlan plan) {
+        List<Field> fields = new ArrayList<Field>();
+        Class<?> base = c;
+        while (Serializable.class.isAssignableFrom(base)) {
+            if (isJDKClass(base)) {
+                // e.g. a subclass of ArrayList
+                return;
+            }
+            for (Field f : base.getDeclaredFields()) {
+                int modifiers = f.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                    fields.add(f);
+                }
+            }
+            base = base.getSuperclass();
+        }
+        try {
+            plan.constructor = serializationConstructor(c, base);
+            for (Field f : fields) {
+                f.setAccessible(true);
+            }
+        } catch (Exception e) {
+            // e.g. no access to the constructor: use serialization
+            return;
+        }
+        plan.fields = fields.toArray(new Field[fields.size()]);
+        plan.fieldTypes = new char[plan.fields.length];
+        for (int i = 0; i < plan.fields.length; i++) {
+            Class<?> type = plan.fields[i].getType();
+            plan.fieldTypes[i] = type == boolean.class ? 'Z' : type == byte.class ? 'B'
+                    : type == char.class ? 'C' : type == short.class ? 'S'
+                    : type == int.class ? 'I' : type == long.class ? 'J'
+                    : type == float.class ? 'F' : type == double.class ? 'D' : 'L';
+        }
+        plan.kind = FIELDS;
+    }
+
+    /**
+     * Returns the constructor used by serialization to create objects of
+     * class c: it only runs the no-arg constructor of base, the first
+     * superclass of c that is not serializable.
+     */
+    protected static Constructor<?> serializationConstructor(Class<?> c,
+            Class<?> base) throws Exception {
+        Constructor<?> baseConstructor = base.getDeclaredConstructor();
+        Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+        Object factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+        Method newConstructor = factoryClass.getMethod("newConstructorForSerialization",
+                Class.class, Constructor.class);
+        Constructor<?> constructor = (Constructor<?>) newConstructor.invoke(factory, c, baseConstructor);
+        constructor.setAccessible(true);
+        return constructor;
+    }
+
+    protected static boolean hasSerializationMethods(Class<?> c) {
+        for (Class<?> base = c; base != null; base = base.getSuperclass()) {
+            if (isJDKClass(base)) {
+                continue;
+            }
+            for (Method m : base.getDeclaredMethods()) {
+                String name = m.getName();
+                Class<?>[] params = m.getParameterTypes();
+                if ((name.equals("writeObject") && params.length == 1 && params[0] == ObjectOutputStream.class)
+                        || (name.equals("readObject") && params.length == 1 && params[0] == ObjectInputStream.class)
+                        || ((name.equals("readObjectNoData") || name.equals("writeReplace")
+                        || name.equals("readResolve")) && params.length == 0)) {
+                    return true;
+                }
+            }
+            try {
+                base.getDeclaredField("serialPersistentFields");
+                return true;
+            } catch (NoSuchFieldException e) {
+                // default serialized fields
+            }
+        }
+        return false;
+    }
+
+    protected static boolean declaresCopyStructure(Class<?> c) {
+        try {
+            c.getDeclaredMethod("copyStructure", StructuralCopier.class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    protected static boolean isJDKClass(Class<?> c) {
+        String name = c.getName();
+        return name.startsWith("java.") || name.startsWith("javax.")
+                || name.startsWith("sun.") || name.startsWith("jdk.");
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *    ThreadCPUTimer.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the time spent by a thread together with the helper threads it
+ * starts, e.g. the worker threads of a multi-threaded learner.
+ *
+ * <p>Every thread that creates a timer becomes the owner of a group of
+ * threads. Threads created through {@link #threadFactory(String)} or
+ * registered with {@link #registerThread(Thread)} join the group of the
+ * thread that creates them (or the group that thread belongs to), and the
+ * CPU time they used is kept when they terminate. A timer reports, since its
+ * creation, the wall-clock time, the CPU time of the owner and the CPU time
+ * of the whole group.</p>
+ *
+ * <p>CPU times are only available if
+ * {@link TimingUtils#enablePreciseTiming()} succeeded. Otherwise, the CPU
+ * time of the owner falls back to the wall-clock time (as in TimingUtils)
+ * and helper threads are not counted.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class ThreadCPUTimer {
+
+    /**
+     * The owner thread and the helper threads that are timed together.
+     */
+    protected static class Group {
+
+        protected final Thread owner;
+
+        protected final List<Thread> helpers = new ArrayList<Thread>();
+
+        // CPU time of the helper threads that have terminated
+        protected long terminatedHelpersNanos;
+
+        protected Group(Thread owner) {
+            this.owner = owner;
+        }
+
+        protected synchronized void add(Thread thread) {
+            this.helpers.add(thread);
+        }
+
+        /**
+         * Called by a helper thread when it is about to terminate.
+         */
+        protected synchronized void terminated(Thread thread) {
+            if (this.helpers.remove(thread)) {
+                this.terminatedHelpersNanos += threadCPUNanos(thread);
+            }
+        }
+
+        protected synchronized long helpersCPUNanos() {
+            long nanos = this.terminatedHelpersNanos;
+            for (Thread thread : this.helpers) {
+                nanos += threadCPUNanos(thread);
+            }
+            return nanos;
+        }
+
+        protected long ownerCPUNanos() {
+            return TimingUtils.getNanoCPUTimeOfThread(this.owner.getId());
+        }
+    }
+
+    // Group of the current thread, inherited by the threads it creates
+    protected static final InheritableThreadLocal<Group> currentGroup = new InheritableThreadLocal<Group>();
+
+    protected final Group group;
+
+    protected final long startWallNanos;
+
+    protected final long startOwnerNanos;
+
+    protected final long startHelpersNanos;
+
+    /**
+     * Starts a timer for the current thread and the helper threads it
+     * starts.
+     */
+    public ThreadCPUTimer() {
+        Group current = currentGroup.get();
+        if (current == null || current.owner != Thread.currentThread()) {
+            current = new Group(Thread.currentThread());
+            currentGroup.set(current);
+        }
+        this.group = current;
+        this.startWallNanos = System.nanoTime();
+        this.startOwnerNanos = current.ownerCPUNanos();
+        this.startHelpersNanos = current.helpersCPUNanos();
+    }
+
+    /**
+     * Gets the wall-clock time since this timer was started.
+     */
+    public long getWallNanos() {
+        return System.nanoTime() - this.startWallNanos;
+    }
+
+    /**
+     * Gets the CPU time used by the owner thread since this timer was
+     * started. Can be called from any thread.
+     */
+    public long getThreadCPUNanos() {
+        return this.group.ownerCPUNanos() - this.startOwnerNanos;
+    }
+
+    /**
+     * Gets the CPU time used by the helper threads since this timer was
+     * started.
+     */
+    public long getHelpersCPUNanos() {
+        return this.group.helpersCPUNanos() - this.startHelpersNanos;
+    }
+
+    /**
+     * Gets the CPU time used by the owner thread and its helper threads since
+     * this timer was started.
+     */
+    public long getCPUNanos() {
+        return getThreadCPUNanos() + getHelpersCPUNanos();
+    }
+
+    /**
+     * Adds a thread to the group of the current thread. If the current
+     * thread has no group yet, it becomes the owner of a new one, so a timer
+     * started later by this thread still includes the thread. The thread
+     * must call {@link #threadTerminated()} before it terminates, otherwise
+     * the CPU time it used is lost.
+     *
+     * @param thread the helper thread, not started yet
+     */
+    public static void registerThread(Thread thread) {
+        Group group = currentGroup.get();
+        if (group == null) {
+            group = new Group(Thread.currentThread());
+            currentGroup.set(group);
+        }
+        group.add(thread);
+    }
+
+    /**
+     * Keeps the CPU time used by the current thread in its group. Called by
+     * a registered thread when it is about to terminate.
+     */
+    public static void threadTerminated() {
+        Group group = currentGroup.get();
+        if (group != null) {
+            group.terminated(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Creates a thread factory whose threads join the group of the thread
+     * that creates them.
+     *
+     * @param name the prefix used to name the threads
+     * @return the thread factory
+     */
+    public static ThreadFactory threadFactory(final String name) {
+        return threadFactory(name, false);
+    }
+
+    /**
+     * Creates a thread factory whose threads join the group of the thread
+     * that creates them.
+     *
+     * @param name the prefix used to name the threads
+     * @param daemon whether the threads are daemon threads
+     * @return the thread factory
+     */
+    public static ThreadFactory threadFactory(final String name, final boolean daemon) {
+        return new ThreadFactory() {
+
+            protected final AtomicInteger created = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            runnable.run();
+                        } finally {
+                            threadTerminated();
+                        }
+                    }
+                }, name + "-" + this.created.getAndIncrement());
+                thread.setDaemon(daemon);
+                registerThread(thread);
+                return thread;
+            }
+        };
+    }
+
+    protected static long threadCPUNanos(Thread thread) {
+        ThreadMXBean tmxb = ManagementFactory.getThreadMXBean();
+        if (!tmxb.isThreadCpuTimeSupported() || !tmxb.isThreadCpuTimeEnabled()) {
+            return 0;
+        }
+        long time = tmxb.getThreadCpuTime(thread.getId());
+        return time > 0 ? time : 0;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *    WorkerPool.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool of long-lived worker threads, each one fed through its own bounded
+ * single-producer/single-consumer ring buffer.
+ *
+ * <p>A task submitted with {@link #submit(ShardTask)} is enqueued on every
+ * worker and each worker executes it for its own shard, i.e.,
+ * task.runShard(worker, numWorkers). Tasks are executed in submission order
+ * within a worker, and there is no synchronization between workers until
+ * {@link #barrier()} is called. Only one thread (the owner of the pool) may
+ * submit tasks and call barrier().</p>
+ *
+ * <p>The workers join the {@link ThreadCPUTimer} group of the thread that
+ * creates the pool, so their CPU time is included in its measurements.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class WorkerPool {
+
+    /**
+     * A unit of work that is split among the workers of the pool.
+     */
+    public interface ShardTask {
+
+        /**
+         * Executes the part of this task that belongs to a worker.
+         *
+         * @param worker the index of the worker executing the task
+         * @param numWorkers the total number of workers in the pool
+         */
+        public void runShard(int worker, int numWorkers);
+    }
+
+    /** Number of busy spins before yielding or parking. */
+    protected static final int SPIN_LIMIT = 128;
+
+    /** Number of yields before parking. */
+    protected static final int YIELD_LIMIT = 256;
+
+    /** Time (in nanoseconds) the owner parks while waiting for workers. */
+    protected static final long PARK_NANOS = 20000L;
+
+    protected final Worker[] workers;
+
+    protected volatile Throwable failure;
+
+    /**
+     * Creates and starts the worker threads.
+     *
+     * @param numWorkers the number of worker threads
+     * @param queueCapacity the capacity of each worker queue (rounded up to
+     * a power of 2)
+     * @param name the prefix used to name the worker threads
+     */
+    public WorkerPool(int numWorkers, int queueCapacity, String name) {
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("A worker pool needs at least one worker.");
+        }
+        int capacity = 1;
+        while (capacity < queueCapacity) {
+            capacity <<= 1;
+        }
+        this.workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            this.workers[i] = new Worker(i, capacity);
+            this.workers[i].setName(name + "-" + i);
+            this.workers[i].setDaemon(true);
+            ThreadCPUTimer.registerThread(this.workers[i]);
+        }
+        for (Worker worker : this.workers) {
+            worker.start();
+        }
+    }
+
+    public int numWorkers() {
+        return this.workers.length;
+    }
+
+    /**
+     * Gets the capacity of each worker queue.
+     */
+    public int queueCapacity() {
+        return this.workers[0].ring.length;
+    }
+
+    /**
+     * Enqueues a task on every worker. Blocks only if a worker queue is full.
+     *
+     * <p>Once this method returns, every worker has executed the tasks 
+     * submitted more than queueCapacity() submissions earlier. A caller can 
+     * thus reuse its tasks in turn from a pool of more than queueCapacity() 
+     * tasks without waiting for them.</p>
+     *
+     * @param task the task to be executed by every worker
+     */
+    public void submit(ShardTask task) {
+        for (Worker worker : this.workers) {
+            worker.enqueue(task);
+        }
+    }
+
+    /**
+     * Enqueues a task on a single worker.
+     *
+     * @param worker the index of the worker
+     * @param task the task to be executed
+     */
+    public void submit(int worker, ShardTask task) {
+        this.workers[worker].enqueue(task);
+    }
+
+    /**
+     * Waits until every submitted task has been executed. Any effect of
+     * those tasks is visible to the caller once this method returns.
+     */
+    public void barrier() {
+        for (Worker worker : this.workers) {
+            int idle = 0;
+            while (worker.head != worker.tail) {
+                checkFailure();
+                idle = backoff(idle);
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stops the worker threads. Tasks still in the queues are discarded.
+     */
+    public void shutdown() {
+        for (Worker worker : this.workers) {
+            worker.running = false;
+            LockSupport.unpark(worker);
+        }
+    }
+
+    protected void checkFailure() {
+        if (this.failure != null) {
+            Throwable cause = this.failure;
+            this.failure = null;
+            throw new RuntimeException("A worker thread failed while executing a task.", cause);
+        }
+    }
+
+    protected static int backoff(int idle) {
+        if (idle > SPIN_LIMIT + YIELD_LIMIT) {
+            LockSupport.parkNanos(PARK_NANOS);
+        } else if (idle > SPIN_LIMIT) {
+            Thread.yield();
+        }
+        return idle + 1;
+    }
+
+    /**
+     * Worker thread and its ring buffer. Only the owner of the pool writes
+     * tail and only the worker writes head.
+     */
+    protected class Worker extends Thread {
+
+        protected final int index;
+
+        protected final ShardTask[] ring;
+
+        protected final int mask;
+
+        protected volatile long head;
+
+        protected volatile long tail;
+
+        protected volatile boolean sleeping;
+
+        protected volatile boolean running = true;
+
+        public Worker(int index, int capacity) {
+            this.index = index;
+            this.ring = new ShardTask[capacity];
+            this.mask = capacity - 1;
+        }
+
+        protected void enqueue(ShardTask task) {
+            long t = this.tail;
+            int idle = 0;
+            while (t - this.head >= this.ring.length) {
+                checkFailure();
+                idle = backoff(idle);
+            }
+            this.ring[(int) (t & this.mask)] = task;
+            this.tail = t + 1;
+            if (this.sleeping) {
+                LockSupport.unpark(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int numWorkers = workers.length;
+            int idle = 0;
+            while (this.running) {
+                long h = this.head;
+                if (h == this.tail) {
+                    if (++idle > SPIN_LIMIT) {
+                        this.sleeping = true;
+                        if (this.head == this.tail && this.running) {
+                            LockSupport.park(this);
+                        }
+                        this.sleeping = false;
+                    }
+                    continue;
+                }
+                idle = 0;
+                int slot = (int) (h & this.mask);
+                ShardTask task = this.ring[slot];
+                this.ring[slot] = null;
+                try {
+                    task.runShard(this.index, numWorkers);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                this.head = h + 1;
+            }
+            ThreadCPUTimer.threadTerminated();
+        }
+    }
+}
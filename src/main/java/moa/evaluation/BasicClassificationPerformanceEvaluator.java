@@ -24,6 +24,7 @@ import moa.AbstractMOAObject;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.StructuralCopier;
 import moa.core.Utils;
 
 import com.yahoo.labs.samoa.instances.Instance;
@@ -42,7 +43,7 @@ import java.io.Serializable;
  * @version $Revision: 7 $
  */
 public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandler
-        implements LearningPerformanceEvaluator<Example<Instance>> {
+        implements LearningPerformanceEvaluator<Example<Instance>>, StructuralCopier.Copyable {
 
     private static final long serialVersionUID = 1L;
 
@@ -67,6 +68,22 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
         reset(this.numClasses);
     }
 
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        BasicClassificationPerformanceEvaluator copy = new BasicClassificationPerformanceEvaluator();
+        copier.register(this, copy);
+        copy.config = copier.copy(this.config);
+        copy.weightCorrect = copier.copy(this.weightCorrect);
+        copy.columnKappa = copier.copy(this.columnKappa);
+        copy.rowKappa = copier.copy(this.rowKappa);
+        copy.numClasses = this.numClasses;
+        copy.weightCorrectNoChangeClassifier = copier.copy(this.weightCorrectNoChangeClassifier);
+        copy.weightMajorityClassifier = copier.copy(this.weightMajorityClassifier);
+        copy.lastSeenClass = this.lastSeenClass;
+        copy.totalWeightObserved = this.totalWeightObserved;
+        return copy;
+    }
+
     public void reset(int numClasses) {
         this.numClasses = numClasses;
         this.rowKappa = new  Estimator[numClasses];
@@ -84,7 +101,17 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
 
     @Override
     public void addResult(Example<Instance> example, double[] classVotes) {
-        Instance inst = example.getData();
+        addResult(example.getData(), classVotes);
+    }
+
+    /**
+     * Same as addResult(example, classVotes), for callers that do not 
+     * need to wrap the instance in an Example.
+     *
+     * @param inst the instance
+     * @param classVotes the votes for inst
+     */
+    public void addResult(Instance inst, double[] classVotes) {
         double weight = inst.weight();
         if (inst.classIsMissing() == false){
             int trueClass = (int) inst.classValue();
@@ -209,12 +236,20 @@ public class BasicClassificationPerformanceEvaluator extends AbstractOptionHandl
         double estimation();
     }
 
-    public class BasicEstimator implements Estimator {
+    public class BasicEstimator implements Estimator, StructuralCopier.Copyable {
 
         protected double len;
 
         protected double sum;
 
+        @Override
+        public Object copyStructure(StructuralCopier copier) {
+            BasicEstimator copy = copier.copy(BasicClassificationPerformanceEvaluator.this).new BasicEstimator();
+            copy.len = this.len;
+            copy.sum = this.sum;
+            return copy;
+        }
+
         @Override
         public void add(double value) {
             sum += value;
@@ -24,6 +24,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import moa.AbstractMOAObject;
+import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import moa.clusterers.Clusterer;
 import moa.learners.Learner;
@@ -56,6 +57,23 @@ public class LearningEvaluation extends AbstractMOAObject {
         this.measurements = measurementList.toArray(new Measurement[measurementList.size()]);
     }
 
+    /**
+     * Same as LearningEvaluation(evaluationMeasurements, cpe, model), but 
+     * the model size is the given one, e.g. measured exactly, instead of the
+     * one in the measurements of the model, which may be an estimate.
+     */
+    public LearningEvaluation(Measurement[] evaluationMeasurements,
+            LearningPerformanceEvaluator cpe, Learner model, int modelByteSize) {
+        this(evaluationMeasurements, cpe, model);
+        for (int i = 0; i < this.measurements.length; i++) {
+            if (this.measurements[i].getName().equals(AbstractClassifier.MODEL_SIZE_MEASUREMENT)) {
+                this.measurements[i] = new Measurement(AbstractClassifier.MODEL_SIZE_MEASUREMENT,
+                        modelByteSize);
+                break;
+            }
+        }
+    }
+
     public LearningEvaluation(
             LearningPerformanceEvaluator cpe, Learner model) {
         this(null,cpe,model);
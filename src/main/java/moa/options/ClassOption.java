@@ -20,6 +20,7 @@
 package moa.options;
 
 import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
 import com.github.javacliparser.Option;
 import com.github.javacliparser.Options;
 import moa.options.OptionHandler;
@@ -35,6 +36,10 @@ public class ClassOption extends AbstractClassOption {
 
     private static final long serialVersionUID = 1L;
 
+    // Class names already resolved by resolveClass, see below
+    private static final ConcurrentHashMap<String, Class<?>> RESOLVED_CLASSES = 
+            new ConcurrentHashMap<String, Class<?>>();
+
     public ClassOption(String name, char cliChar, String purpose,
             Class<?> requiredType, String defaultCLIString) {
         super(name, cliChar, purpose, requiredType, defaultCLIString);
@@ -88,6 +93,40 @@ public class ClassOption extends AbstractClassOption {
         return className;
     }
 
+    /**
+     * Finds the class named className, which may omit the package of 
+     * requiredType or of the tasks. Resolved names are cached, since options 
+     * are created often (e.g. by every constructor of an OptionHandler) and 
+     * looking up a class without its package is slow.
+     */
+    protected static Class<?> resolveClass(String className,
+            Class<?> requiredType) throws Exception {
+        String key = requiredType.getName() + " " + className;
+        Class<?> classObject = RESOLVED_CLASSES.get(key);
+        if (classObject != null) {
+            return classObject;
+        }
+        try {
+            classObject = Class.forName(className);
+        } catch (Throwable t1) {
+            try {
+                // try prepending default package
+                classObject = Class.forName(requiredType.getPackage().getName()
+                        + "." + className);
+            } catch (Throwable t2) {
+                try {
+                    // try prepending task package
+                    classObject = Class.forName(Task.class.getPackage().getName()
+                            + "." + className);
+                } catch (Throwable t3) {
+                    throw new Exception("Class not found: " + className);
+                }
+            }
+        }
+        RESOLVED_CLASSES.put(key, classObject);
+        return classObject;
+    }
+
     public static Object cliStringToObject(String cliString,
             Class<?> requiredType, Option[] externalOptions) throws Exception {
         if (cliString.startsWith(FILE_PREFIX_STRING)) {
@@ -108,24 +147,7 @@ public class ClassOption extends AbstractClassOption {
             className = cliString;
             classOptions = "";
         }
-        Class<?> classObject;
-        try {
-            classObject = Class.forName(className);
-        } catch (Throwable t1) {
-            try {
-                // try prepending default package
-                classObject = Class.forName(requiredType.getPackage().getName()
-                        + "." + className);
-            } catch (Throwable t2) {
-                try {
-                    // try prepending task package
-                    classObject = Class.forName(Task.class.getPackage().getName()
-                            + "." + className);
-                } catch (Throwable t3) {
-                    throw new Exception("Class not found: " + className);
-                }
-            }
-        }
+        Class<?> classObject = resolveClass(className, requiredType);
         Object classInstance;
         try {
             classInstance = classObject.newInstance();
@@ -0,0 +1,106 @@
+/*
+ *    OptionHandlerFactory.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.options;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.javacliparser.Option;
+
+/**
+ * Creates new, prepared objects of the same class and with the same option
+ * values as a prototype.
+ *
+ * <p>This is an alternative to prototype.copy() followed by a reset when
+ * only an empty object with the same configuration is needed. copy()
+ * serializes the whole object, which is expensive if the prototype holds a
+ * large model (e.g. a grown tree). The option values of the prototype are
+ * resolved once, when the factory is created. newInstance() then only calls
+ * the default constructor, sets the options that differ from their default
+ * values and calls prepareForUse().</p>
+ *
+ * @param <T> the type of the objects created
+ * @version $Revision: 1 $
+ */
+public class OptionHandlerFactory<T extends OptionHandler> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final Class<? extends T> handlerClass;
+
+    // Names and CLI values of the options that differ from their defaults
+    protected final String[] optionNames;
+
+    protected final String[] optionValues;
+
+    protected transient Constructor<? extends T> constructor;
+
+    /**
+     * Creates a factory for objects configured like prototype. Later
+     * changes to the options of prototype are not seen by the factory.
+     *
+     * @param prototype the object whose class and options are used
+     */
+    @SuppressWarnings("unchecked")
+    public OptionHandlerFactory(T prototype) {
+        this.handlerClass = (Class<? extends T>) prototype.getClass();
+        List<String> names = new ArrayList<String>();
+        List<String> values = new ArrayList<String>();
+        for (Option option : prototype.getOptions().getOptionArray()) {
+            String value = option.getValueAsCLIString();
+            String defaultValue = option.getDefaultCLIString();
+            if (value == null ? defaultValue != null : !value.equals(defaultValue)) {
+                names.add(option.getName());
+                values.add(value);
+            }
+        }
+        this.optionNames = names.toArray(new String[names.size()]);
+        this.optionValues = values.toArray(new String[values.size()]);
+    }
+
+    /**
+     * Creates a new object configured like the prototype and prepares it
+     * for use.
+     *
+     * @return the new object
+     */
+    public T newInstance() {
+        T handler;
+        try {
+            if (this.constructor == null) {
+                this.constructor = this.handlerClass.getConstructor();
+            }
+            handler = this.constructor.newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Problem creating an object of class "
+                    + this.handlerClass.getName(), e);
+        }
+        for (int i = 0; i < this.optionNames.length; i++) {
+            handler.getOptions().getOption(this.optionNames[i]).setValueViaCLIString(this.optionValues[i]);
+        }
+        handler.prepareForUse();
+        return handler;
+    }
+
+    public Class<? extends T> getHandlerClass() {
+        return this.handlerClass;
+    }
+}
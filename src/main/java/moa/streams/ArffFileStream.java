@@ -21,14 +21,16 @@ package moa.streams;
 
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader; 
+import java.io.Reader;
+import moa.core.CompressedInputStream;
 import moa.core.InputStreamProgressMonitor;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
@@ -36,7 +38,8 @@ import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
 
 /**
- * Stream reader of ARFF files.
+ * Stream reader of ARFF files. The files can be compressed with gzip, zip or
+ * xz.
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
@@ -60,8 +63,22 @@ public class ArffFileStream extends AbstractOptionHandler implements
             "Class index of data. 0 for none or -1 for last attribute in file.",
             -1, -1, Integer.MAX_VALUE);
 
+    public IntOption parseThreadsOption = new IntOption(
+            "parseThreads",
+            'p',
+            "Number of threads parsing the file ahead of the stream. 0 to parse on the thread reading the stream.",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption parseChunkSizeOption = new IntOption(
+            "parseChunkSize",
+            'k',
+            "Size in KB of the chunks of the file parsed by one thread.",
+            4096, 1, Integer.MAX_VALUE / 1024);
+
     protected Instances instances;
 
+    protected transient ParallelArffReader parallelReader;
+
     protected Reader fileReader;
 
     protected boolean hitEndOfFile;
@@ -124,11 +141,16 @@ public class ArffFileStream extends AbstractOptionHandler implements
             if (this.fileReader != null) {
                 this.fileReader.close();
             }
-            InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
+            if (this.parallelReader != null) {
+                this.parallelReader.close();
+                this.parallelReader = null;
+            }
+            File file = this.arffFileOption.getFile();
+            // the progress is measured on the bytes of the file, compressed or not
             this.fileProgressMonitor = new InputStreamProgressMonitor(
-                    fileStream);
+                    new FileInputStream(file), file.length());
             this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+                    CompressedInputStream.open(this.fileProgressMonitor)));
             int classIndex = this.classIndexOption.getValue();
             this.instances = new Instances(this.fileReader, 1, classIndex);
             if (classIndex < 0) {
@@ -136,6 +158,17 @@ public class ArffFileStream extends AbstractOptionHandler implements
             } else if (this.classIndexOption.getValue() > 0) {
                 this.instances.setClassIndex(this.classIndexOption.getValue() - 1);
 				}
+            if (this.parseThreadsOption.getValue() > 0) {
+                // the header has been read, the data is read by the parallel reader
+                this.fileReader.close();
+                this.fileReader = null;
+                this.fileProgressMonitor = new InputStreamProgressMonitor(
+                        new FileInputStream(file), file.length());
+                this.parallelReader = new ParallelArffReader(
+                        CompressedInputStream.open(this.fileProgressMonitor),
+                        this.instances, this.parseThreadsOption.getValue(),
+                        this.parseChunkSizeOption.getValue() * 1024);
+            }
             this.numInstancesRead = 0;
             this.lastInstanceRead = null;
             this.hitEndOfFile = !readNextInstanceFromFile();
@@ -146,6 +179,15 @@ public class ArffFileStream extends AbstractOptionHandler implements
 
     protected boolean readNextInstanceFromFile() {
         try {
+            if (this.parallelReader != null) {
+                Instance inst = this.parallelReader.next();
+                if (inst == null) {
+                    return false;
+                }
+                this.lastInstanceRead = new InstanceExample(inst);
+                this.numInstancesRead++;
+                return true;
+            }
             if (this.instances.readInstance(this.fileReader)) {
                 this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
                 this.instances.delete(); // keep instances clean
@@ -0,0 +1,238 @@
+/*
+ *    BinaryFileStream.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.FileOption;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.MappedDenseInstanceData;
+import com.yahoo.labs.samoa.instances.MappedSparseInstanceData;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import moa.core.InstanceExample;
+import moa.core.MappedBuffer;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream read from a binary stream file, as written by
+ * {@link moa.tasks.WriteStreamToBinaryFile}.
+ *
+ * <p>The file is mapped in memory and the instances read their values in
+ * place, so replaying the stream does not parse anything and restarting it
+ * is immediate.</p>
+ *
+ * <p>All numbers are little-endian. The file starts with:</p>
+ * <pre>
+ * long   MAGIC
+ * int    VERSION
+ * int    layout (DENSE or SPARSE)
+ * long   number of instances
+ * long   number of stored values (sparse layout only)
+ * int    number of attributes
+ * int    size of the header
+ * byte[] header, the serialized InstancesHeader, padded to 8 bytes
+ * </pre>
+ * <p>It is followed by the rows of the dense layout, each of them the weight
+ * then the value of every attribute as doubles. In the sparse layout, it is
+ * followed by the arrays of a compressed sparse row matrix: the start of each
+ * row (numInstances + 1 longs), the weights (doubles), the values (doubles)
+ * and the attribute indices (ints).</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class BinaryFileStream extends AbstractOptionHandler implements
+        InstanceStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read from a binary stream file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public static final long MAGIC = 0x4D4F4153_5452454DL; // "MOASTREM"
+
+    public static final int VERSION = 1;
+
+    public static final int DENSE = 0;
+
+    public static final int SPARSE = 1;
+
+    /**
+     * The size of the fixed part of the file, before the header.
+     */
+    public static final int PREFIX_SIZE = 40;
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Binary stream file to load.", null, "bin", false);
+
+    protected InstancesHeader header;
+
+    protected transient MappedBuffer buffer;
+
+    protected File mappedFile;
+
+    protected int layout;
+
+    protected long numInstances;
+
+    protected int numAttributes;
+
+    // offsets of the sections in the mapped buffer
+    protected long rowStartOffset;
+
+    protected long weightOffset;
+
+    protected long valueOffset;
+
+    protected long indexOffset;
+
+    protected long nextInstance;
+
+    public BinaryFileStream() {
+    }
+
+    public BinaryFileStream(String binaryFileName) {
+        this.binaryFileOption.setValue(binaryFileName);
+        restart();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        restart();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numInstances - this.nextInstance;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.nextInstance < this.numInstances;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        long row = this.nextInstance++;
+        Instance inst;
+        if (this.layout == DENSE) {
+            long offset = row * 8L * (this.numAttributes + 1);
+            inst = new DenseInstance(this.buffer.getDouble(offset),
+                    new MappedDenseInstanceData(this.buffer, offset + 8, this.numAttributes));
+        } else {
+            long start = this.buffer.getLong(this.rowStartOffset + 8 * row);
+            long end = this.buffer.getLong(this.rowStartOffset + 8 * (row + 1));
+            inst = new SparseInstance(this.buffer.getDouble(this.weightOffset + 8 * row),
+                    new MappedSparseInstanceData(this.buffer, this.indexOffset + 4 * start,
+                    this.valueOffset + 8 * start, (int) (end - start), this.numAttributes));
+        }
+        inst.setDataset(this.header);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        File file = this.binaryFileOption.getFile();
+        if (this.buffer == null || !file.equals(this.mappedFile)) {
+            try {
+                map(file);
+            } catch (IOException ioe) {
+                throw new RuntimeException("BinaryFileStream restart failed.", ioe);
+            } catch (ClassNotFoundException cnfe) {
+                throw new RuntimeException("BinaryFileStream restart failed.", cnfe);
+            }
+        }
+        this.nextInstance = 0;
+    }
+
+    protected void map(File file) throws IOException, ClassNotFoundException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (prefix.hasRemaining() && channel.read(prefix) >= 0) {
+            }
+            prefix.flip();
+            if (prefix.remaining() < PREFIX_SIZE || prefix.getLong() != MAGIC) {
+                throw new IOException(file + " is not a binary stream file");
+            }
+            int version = prefix.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary stream file version " + version);
+            }
+            this.layout = prefix.getInt();
+            this.numInstances = prefix.getLong();
+            long numValues = prefix.getLong();
+            this.numAttributes = prefix.getInt();
+            int headerSize = prefix.getInt();
+            ByteBuffer headerBytes = ByteBuffer.allocate(headerSize);
+            while (headerBytes.hasRemaining() && channel.read(headerBytes) >= 0) {
+            }
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(headerBytes.array()));
+            this.header = (InstancesHeader) in.readObject();
+            in.close();
+            long dataStart = dataStart(headerSize);
+            this.buffer = new MappedBuffer(channel, dataStart, channel.size() - dataStart);
+            if (this.layout == SPARSE) {
+                this.rowStartOffset = 0;
+                this.weightOffset = this.rowStartOffset + 8 * (this.numInstances + 1);
+                this.valueOffset = this.weightOffset + 8 * this.numInstances;
+                this.indexOffset = this.valueOffset + 8 * numValues;
+            }
+            this.mappedFile = file;
+        } finally {
+            // the mapping stays valid after the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Gets the position of the data in a file, after the header padded to 8
+     * bytes.
+     */
+    public static long dataStart(int headerSize) {
+        return (PREFIX_SIZE + headerSize + 7) & ~7L;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+    }
+}
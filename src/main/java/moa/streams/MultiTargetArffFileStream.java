@@ -23,12 +23,13 @@ import com.github.javacliparser.FileOption;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader; 
 import com.github.javacliparser.RangeOption;  // jesse
+import moa.core.CompressedInputStream;
 import moa.core.InputStreamProgressMonitor;
 import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
@@ -36,7 +37,8 @@ import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
 
 /**
- * Stream reader of ARFF files.
+ * Stream reader of ARFF files. The files can be compressed with gzip, zip or
+ * xz.
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
@@ -133,11 +135,11 @@ public class MultiTargetArffFileStream extends AbstractOptionHandler implements
             if (this.fileReader != null) {
                 this.fileReader.close();
             }
-            InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
+            File file = this.arffFileOption.getFile();
             this.fileProgressMonitor = new InputStreamProgressMonitor(
-                    fileStream);
+                    new FileInputStream(file), file.length());
             this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+                    CompressedInputStream.open(this.fileProgressMonitor)));
 			// jesse -----
 			/*int cs[] = this.outputAttributesOption.getRange(); 
 			if (cs.length == 1) {
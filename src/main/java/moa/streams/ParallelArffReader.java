@@ -0,0 +1,287 @@
+/*
+ *    ParallelArffReader.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.ArffChunkParser;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import moa.core.ThreadCPUTimer;
+
+/**
+ * Reads the data section of an ARFF file ahead of its consumer.
+ *
+ * <p>A reader thread reads large chunks of the file, cut on line boundaries,
+ * and hands each chunk to a pool of threads that parse it with an
+ * {@link ArffChunkParser}. The parsed chunks are queued in file order, and the
+ * queue is bounded so that the reader does not get too far ahead of
+ * {@link #next()}. The threads join the {@link ThreadCPUTimer} group of the
+ * thread that creates the reader.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class ParallelArffReader {
+
+    /**
+     * A parsed chunk of the file.
+     */
+    protected static class Chunk {
+
+        protected final List<Instance> instances;
+
+        protected Chunk(List<Instance> instances) {
+            this.instances = instances;
+        }
+    }
+
+    // Marks the end of the file in the queue
+    protected static final Future<Chunk> END = new FutureTask<Chunk>(new Callable<Chunk>() {
+
+        @Override
+        public Chunk call() {
+            return null;
+        }
+    });
+
+    protected final ArffChunkParser parser;
+
+    protected final Charset charset = Charset.defaultCharset();
+
+    protected final int chunkSize;
+
+    protected final BlockingQueue<Future<Chunk>> queue;
+
+    protected final ExecutorService parsers;
+
+    protected final Thread reader;
+
+    protected Chunk current;
+
+    protected int nextInCurrent;
+
+    protected boolean ended;
+
+    /**
+     * Starts reading an ARFF file. The reader takes ownership of the input
+     * and closes it once the data has been read.
+     *
+     * @param in the ARFF file, from its start
+     * @param dataset the dataset read from the header of the file
+     * @param numThreads the number of parsing threads
+     * @param chunkSize the number of bytes read at a time
+     * @throws IOException if the file has no data section
+     */
+    public ParallelArffReader(InputStream in, Instances dataset, int numThreads,
+            int chunkSize) throws IOException {
+        this.parser = new ArffChunkParser(dataset);
+        this.chunkSize = chunkSize;
+        InputStream buffered = new BufferedInputStream(in);
+        try {
+            skipHeader(buffered);
+        } catch (IOException e) {
+            buffered.close();
+            throw e;
+        }
+        this.queue = new ArrayBlockingQueue<Future<Chunk>>(2 * numThreads + 2);
+        this.parsers = Executors.newFixedThreadPool(numThreads,
+                ThreadCPUTimer.threadFactory("ARFF-parser", true));
+        final ReadableByteChannel channel = Channels.newChannel(buffered);
+        this.reader = ThreadCPUTimer.threadFactory("ARFF-reader", true).newThread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    readChunks(channel);
+                } finally {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        // the file was only read
+                    }
+                }
+            }
+        });
+        this.reader.start();
+    }
+
+    /**
+     * Gets the next instance of the file.
+     *
+     * @return the instance, or null at the end of the file
+     * @throws IOException if the file could not be read or parsed
+     */
+    public Instance next() throws IOException {
+        while (this.current == null || this.nextInCurrent == this.current.instances.size()) {
+            if (this.ended) {
+                return null;
+            }
+            Future<Chunk> future;
+            try {
+                future = this.queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading ARFF file", e);
+            }
+            if (future == END) {
+                this.ended = true;
+                this.current = null;
+                close();
+                return null;
+            }
+            try {
+                this.current = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading ARFF file", e);
+            } catch (ExecutionException e) {
+                close();
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to parse ARFF file", e.getCause());
+            }
+            this.nextInCurrent = 0;
+        }
+        return this.current.instances.get(this.nextInCurrent++);
+    }
+
+    /**
+     * Stops reading the file. Can be called before the end of the file.
+     */
+    public void close() {
+        this.reader.interrupt();
+        this.parsers.shutdownNow();
+    }
+
+    protected void readChunks(ReadableByteChannel channel) {
+        byte[] carry = new byte[0];
+        try {
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                byte[] bytes = new byte[Math.max(this.chunkSize, 2 * carry.length)];
+                System.arraycopy(carry, 0, bytes, 0, carry.length);
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                buffer.position(carry.length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        endOfFile = true;
+                        break;
+                    }
+                }
+                int length = buffer.position();
+                int end = length;
+                if (!endOfFile) {
+                    // cut after the last complete line
+                    end = lastIndexOf(bytes, (byte) '\n', length) + 1;
+                }
+                carry = new byte[length - end];
+                System.arraycopy(bytes, end, carry, 0, carry.length);
+                if (end > 0) {
+                    this.queue.put(this.parsers.submit(parseTask(bytes, end)));
+                }
+            }
+            this.queue.put(END);
+        } catch (InterruptedException e) {
+            // closed
+        } catch (RejectedExecutionException e) {
+            // closed
+        } catch (final IOException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                FutureTask<Chunk> failed = new FutureTask<Chunk>(new Callable<Chunk>() {
+
+                    @Override
+                    public Chunk call() throws IOException {
+                        throw e;
+                    }
+                });
+                failed.run();
+                try {
+                    this.queue.put(failed);
+                } catch (InterruptedException ie) {
+                    // closed
+                }
+            }
+        }
+    }
+
+    protected Callable<Chunk> parseTask(final byte[] bytes, final int length) {
+        return new Callable<Chunk>() {
+
+            @Override
+            public Chunk call() {
+                CharBuffer chars = ParallelArffReader.this.charset.decode(
+                        ByteBuffer.wrap(bytes, 0, length));
+                List<Instance> instances = ParallelArffReader.this.parser.parse(
+                        chars.array(), chars.arrayOffset() + chars.position(),
+                        chars.arrayOffset() + chars.limit());
+                return new Chunk(instances);
+            }
+        };
+    }
+
+    protected static int lastIndexOf(byte[] bytes, byte b, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips the header of an ARFF file, up to the line after the @data line.
+     *
+     * @param in the ARFF file
+     * @throws IOException if the file has no data section
+     */
+    protected static void skipHeader(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b != '\n') {
+                if (line.length() < 6 && (line.length() > 0 || b > ' ')) {
+                    line.append((char) b);
+                }
+            } else {
+                if (line.toString().trim().equalsIgnoreCase("@data")) {
+                    return;
+                }
+                line.setLength(0);
+            }
+        }
+        throw new IOException("No @data section in ARFF file");
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ *    StreamFanOut.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import moa.AbstractMOAObject;
+import moa.core.Example;
+import moa.core.ThreadCPUTimer;
+
+/**
+ * Reads a stream once and gives its examples to several consumers, each
+ * one an {@link ExampleStream} read by its own thread.
+ *
+ * <p>A reader thread, started when a consumer first asks for an example,
+ * reads the stream in batches and puts each batch in a bounded queue per
+ * consumer, so it stays at most a few batches ahead of the slowest open
+ * consumer. Consumers share the examples, which must not be modified: as
+ * with any stream, a learner that changes an example copies it first. A
+ * consumer that stops reading must be closed, otherwise the reader
+ * waits for it; the reader stops once every consumer is closed.</p>
+ *
+ * @version $Revision: 1 $
+ */
+public class StreamFanOut {
+
+    protected static final int BATCH_SIZE = 256;
+
+    protected static final int QUEUE_BATCHES = 16;
+
+    // Marks the end of the stream in the queues
+    protected static final List<Example> END = new ArrayList<Example>();
+
+    protected final ExampleStream source;
+
+    protected final Consumer[] consumers;
+
+    protected Thread reader;
+
+    protected volatile RuntimeException failure;
+
+    /**
+     * A consumer of the stream.
+     */
+    public class Consumer extends AbstractMOAObject implements ExampleStream<Example> {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final BlockingQueue<List<Example>> queue =
+                new ArrayBlockingQueue<List<Example>>(QUEUE_BATCHES);
+
+        protected volatile boolean closed;
+
+        protected List<Example> current;
+
+        protected int nextInCurrent;
+
+        @Override
+        public InstancesHeader getHeader() {
+            return StreamFanOut.this.source.getHeader();
+        }
+
+        @Override
+        public long estimatedRemainingInstances() {
+            return -1;
+        }
+
+        @Override
+        public boolean hasMoreInstances() {
+            while (this.current == null || this.nextInCurrent == this.current.size()) {
+                if (this.current == END) {
+                    return false;
+                }
+                start();
+                try {
+                    this.current = this.queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while reading stream", e);
+                }
+                this.nextInCurrent = 0;
+                if (this.current == END && StreamFanOut.this.failure != null) {
+                    throw new RuntimeException("Failed to read stream",
+                            StreamFanOut.this.failure);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Example nextInstance() {
+            if (!hasMoreInstances()) {
+                return null;
+            }
+            return this.current.get(this.nextInCurrent++);
+        }
+
+        @Override
+        public boolean isRestartable() {
+            return false;
+        }
+
+        @Override
+        public void restart() {
+            throw new UnsupportedOperationException("Fan-out streams cannot be restarted");
+        }
+
+        /**
+         * Stops reading the stream. The reader no longer waits for this
+         * consumer.
+         */
+        public void close() {
+            this.closed = true;
+            this.queue.clear();
+        }
+
+        @Override
+        public void getDescription(StringBuilder sb, int indent) {
+            sb.append("Fan-out of ");
+            StreamFanOut.this.source.getDescription(sb, indent);
+        }
+    }
+
+    /**
+     * Creates the consumers of a stream. The stream is read from the thread
+     * of the fan-out only.
+     *
+     * @param source the stream, prepared for use
+     * @param numConsumers the number of consumers
+     */
+    public StreamFanOut(ExampleStream source, int numConsumers) {
+        this.source = source;
+        this.consumers = new Consumer[numConsumers];
+        for (int i = 0; i < numConsumers; i++) {
+            this.consumers[i] = new Consumer();
+        }
+    }
+
+    /**
+     * Gets a consumer of the stream.
+     *
+     * @param index the consumer
+     * @return the consumer
+     */
+    public Consumer getConsumer(int index) {
+        return this.consumers[index];
+    }
+
+    /**
+     * Starts the reader thread, if it is not started yet.
+     */
+    protected synchronized void start() {
+        if (this.reader == null) {
+            this.reader = ThreadCPUTimer.threadFactory("stream-fan-out", true).newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    read();
+                }
+            });
+            this.reader.start();
+        }
+    }
+
+    /**
+     * Stops the reader and closes every consumer.
+     */
+    public synchronized void close() {
+        for (Consumer consumer : this.consumers) {
+            consumer.close();
+        }
+        if (this.reader != null) {
+            this.reader.interrupt();
+        }
+    }
+
+    protected void read() {
+        try {
+            try {
+                boolean open = true;
+                while (open && this.source.hasMoreInstances()) {
+                    List<Example> batch = new ArrayList<Example>(BATCH_SIZE);
+                    while (batch.size() < BATCH_SIZE && this.source.hasMoreInstances()) {
+                        batch.add(this.source.nextInstance());
+                    }
+                    open = put(batch);
+                }
+            } catch (RuntimeException e) {
+                this.failure = e;
+            }
+            put(END);
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * Puts a batch in the queue of every open consumer.
+     *
+     * @return whether a consumer is still open
+     */
+    protected boolean put(List<Example> batch) throws InterruptedException {
+        boolean open = false;
+        for (Consumer consumer : this.consumers) {
+            if (!consumer.closed) {
+                // close() empties the queue, so this does not wait for a
+                // consumer closed meanwhile
+                consumer.queue.put(batch);
+                open = true;
+            }
+        }
+        return open;
+    }
+}
@@ -29,6 +29,7 @@ import java.io.PrintStream;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ThreadCPUTimer;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningCurve;
 import moa.evaluation.LearningEvaluation;
@@ -150,7 +151,8 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
         }*/
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -174,7 +176,7 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = timer.getCPUNanos();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
@@ -224,7 +226,7 @@ public class EvaluateConceptDrift extends ConceptDriftMainTask{
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                         - evaluateStartTime);
             }
         }
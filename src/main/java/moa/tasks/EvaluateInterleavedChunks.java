@@ -27,6 +27,7 @@ import moa.core.Example;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ThreadCPUTimer;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningCurve;
 import moa.evaluation.LearningEvaluation;
@@ -84,6 +85,13 @@ public class EvaluateInterleavedChunks extends MainTask {
 			"Number of instances in a data chunk.",
 			1000, 1, Integer.MAX_VALUE);
 	
+	/**
+	 * Allows to test and train with batches of instances inside each chunk.
+	 */
+	public IntOption batchSizeOption = new IntOption("batchSize", 'n',
+			"Number of instances of a chunk given together to getVotesForInstances and trainOnInstances.",
+			1, 1, Integer.MAX_VALUE);
+	
 	/**
 	 * Allows to define the maximum number of seconds to test/train for (-1 = no limit).
 	 */
@@ -135,6 +143,10 @@ public class EvaluateInterleavedChunks extends MainTask {
 		learner.setModelContext(stream.getHeader());
 		int maxInstances = this.instanceLimitOption.getValue();
 		int chunkSize = this.chunkSizeOption.getValue();
+		int batchSize = this.batchSizeOption.getValue();
+		if (batchSize > 1 && !(learner instanceof Classifier)) {
+			throw new IllegalArgumentException("Only classifiers can be evaluated with batchSize > 1.");
+		}
 		long instancesProcessed = 0;
 		int maxSeconds = this.timeLimitOption.getValue();
 		int secondsElapsed = 0;
@@ -161,7 +173,8 @@ public class EvaluateInterleavedChunks extends MainTask {
 		boolean firstDump = true;
 		boolean firstChunk = true;
 		boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-		long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+		ThreadCPUTimer timer = new ThreadCPUTimer();
+		long evaluateStartTime = timer.getCPUNanos();
 		long sampleTestTime =0, sampleTrainTime = 0;
 		double RAMHours = 0.0;
 		
@@ -193,32 +206,50 @@ public class EvaluateInterleavedChunks extends MainTask {
 			}		
 			
 			////Testing
-			long testStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+			long testStartTime = timer.getCPUNanos();
 			if(!firstChunk)
 			{
-				for (int i=0; i< chunkInstances.numInstances(); i++) {
-					Example testInst = new InstanceExample((Instance) chunkInstances.instance(i));
-					//testInst.setClassMissing();
-					double[] prediction = learner.getVotesForInstance(testInst);
-					evaluator.addResult(testInst, prediction);
-			    }
+				if (batchSize == 1) {
+					for (int i=0; i< chunkInstances.numInstances(); i++) {
+						Example testInst = new InstanceExample((Instance) chunkInstances.instance(i));
+						//testInst.setClassMissing();
+						double[] prediction = learner.getVotesForInstance(testInst);
+						evaluator.addResult(testInst, prediction);
+				    }
+				} else {
+					for (int first=0; first< chunkInstances.numInstances(); first += batchSize) {
+						Instance[] batch = getBatch(chunkInstances, first, batchSize);
+						double[][] predictions = ((Classifier) learner).getVotesForInstances(batch);
+						for (int i=0; i< batch.length; i++) {
+							evaluator.addResult(new InstanceExample(batch[i]), predictions[i]);
+						}
+				    }
+				}
 			}
 			else
 			{
 				firstChunk = false;
 			}
 			
-			sampleTestTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - testStartTime;
+			sampleTestTime += timer.getCPUNanos() - testStartTime;
 			
 			////Training
-			long trainStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+			long trainStartTime = timer.getCPUNanos();
 			
-			for (int i=0; i< chunkInstances.numInstances(); i++) {
-				learner.trainOnInstance(new InstanceExample(chunkInstances.instance(i)));
-				instancesProcessed++;
-		    }
+			if (batchSize == 1) {
+				for (int i=0; i< chunkInstances.numInstances(); i++) {
+					learner.trainOnInstance(new InstanceExample(chunkInstances.instance(i)));
+					instancesProcessed++;
+			    }
+			} else {
+				for (int first=0; first< chunkInstances.numInstances(); first += batchSize) {
+					Instance[] batch = getBatch(chunkInstances, first, batchSize);
+					((Classifier) learner).trainOnInstances(batch);
+					instancesProcessed += batch.length;
+			    }
+			}
 			
-			sampleTrainTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - trainStartTime;
+			sampleTrainTime += timer.getCPUNanos() - trainStartTime;
 			
 			////Result output
 			if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0) {
@@ -236,7 +267,7 @@ public class EvaluateInterleavedChunks extends MainTask {
 				learningCurve.insertEntry(new LearningEvaluation(
 					new Measurement[] {
 						new Measurement("learning evaluation instances", instancesProcessed),
-						new Measurement(("evaluation time ("+ (preciseCPUTiming ? "cpu " : "") + "seconds)"),TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread() - evaluateStartTime)),
+						new Measurement(("evaluation time ("+ (preciseCPUTiming ? "cpu " : "") + "seconds)"),TimingUtils.nanoTimeToSeconds(timer.getCPUNanos() - evaluateStartTime)),
 						new Measurement("average chunk train time", avgTrainTime),
 						new Measurement("average chunk train speed", chunkInstances.numInstances() / avgTrainTime),
 						new Measurement("average chunk test time", avgTestTime),
@@ -279,8 +310,7 @@ public class EvaluateInterleavedChunks extends MainTask {
 					monitor.setLatestResultPreview(learningCurve.copy());
 				}
 				secondsElapsed = (int) TimingUtils
-						.nanoTimeToSeconds(TimingUtils
-								.getNanoCPUTimeOfCurrentThread()
+						.nanoTimeToSeconds(timer.getCPUNanos()
 								- evaluateStartTime);
 			}
 		}
@@ -289,5 +319,17 @@ public class EvaluateInterleavedChunks extends MainTask {
 		}
 		return learningCurve;
 	}
+	
+	/**
+	 * Returns the instances of a chunk from first to first + batchSize - 1
+	 * (or to the end of the chunk).
+	 */
+	protected static Instance[] getBatch(Instances chunkInstances, int first, int batchSize) {
+		Instance[] batch = new Instance[Math.min(batchSize, chunkInstances.numInstances() - first)];
+		for (int i=0; i< batch.length; i++) {
+			batch[i] = chunkInstances.instance(first + i);
+		}
+		return batch;
+	}
 
 }
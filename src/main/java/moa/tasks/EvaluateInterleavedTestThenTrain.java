@@ -27,6 +27,7 @@ import moa.classifiers.Classifier;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ThreadCPUTimer;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningCurve;
 import moa.evaluation.LearningEvaluation;
@@ -138,7 +139,8 @@ public class EvaluateInterleavedTestThenTrain extends MainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -156,7 +158,7 @@ public class EvaluateInterleavedTestThenTrain extends MainTask {
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                   ||  stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = timer.getCPUNanos();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
@@ -175,7 +177,15 @@ public class EvaluateInterleavedTestThenTrain extends MainTask {
                             time),
                             new Measurement(
                             "model cost (RAM-Hours)",
-                            RAMHours)
+                            RAMHours),
+                            new Measurement(
+                            "evaluation time (wall seconds)",
+                            TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                            new Measurement(
+                            "evaluation thread time ("
+                            + (preciseCPUTiming ? "cpu "
+                            : "") + "seconds)",
+                            TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
                         },
                         evaluator, learner));
                 if (immediateResultStream != null) {
@@ -207,7 +217,7 @@ public class EvaluateInterleavedTestThenTrain extends MainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                         - evaluateStartTime);
             }
         }
@@ -33,6 +33,7 @@ import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.core.StringUtils;
+import moa.core.ThreadCPUTimer;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningCurve;
 import moa.evaluation.LearningEvaluation;
@@ -146,6 +147,7 @@ public class EvaluatePeriodicHeldOutTest extends MainTask {
         }
         instancesProcessed = 0;
         TimingUtils.enablePreciseTiming();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
         double totalTrainTime = 0.0;
         while ((this.trainSizeOption.getValue() < 1
                 || instancesProcessed < this.trainSizeOption.getValue())
@@ -153,7 +155,7 @@ public class EvaluatePeriodicHeldOutTest extends MainTask {
             monitor.setCurrentActivityDescription("Training...");
             long instancesTarget = instancesProcessed
                     + this.sampleFrequencyOption.getValue();
-            long trainStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            long trainStartTime = timer.getCPUNanos();
             while (instancesProcessed < instancesTarget && stream.hasMoreInstances() == true) {
                 learner.trainOnInstance(stream.nextInstance());
                 instancesProcessed++;
@@ -165,7 +167,7 @@ public class EvaluatePeriodicHeldOutTest extends MainTask {
                             / (double) (this.trainSizeOption.getValue()));
                 }
             }
-            double lastTrainTime = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+            double lastTrainTime = TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                     - trainStartTime);
             totalTrainTime += lastTrainTime;
             if (totalTrainTime > this.trainTimeOption.getValue()) {
@@ -181,7 +183,7 @@ public class EvaluatePeriodicHeldOutTest extends MainTask {
                     ((double) (instancesProcessed)
                     / (double) (this.trainSizeOption.getValue()) * 100.0), 2)
                     + "% training)...");
-            long testStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+            long testStartTime = timer.getCPUNanos();
             int instCount = 0 ;
             for (instCount = 0; instCount < testSize; instCount++) {
 				if (stream.hasMoreInstances() == false) {
@@ -205,7 +207,7 @@ public class EvaluatePeriodicHeldOutTest extends MainTask {
         	if ( instCount != testSize) {
 				break;
 			}
-            double testTime = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+            double testTime = TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                     - testStartTime);
             List<Measurement> measurements = new ArrayList<Measurement>();
             measurements.add(new Measurement("evaluation instances",            		
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 
+import moa.AbstractMOAObject;
 import moa.classifiers.Classifier;
 import moa.core.Example;
 import moa.core.Measurement;
@@ -39,12 +40,14 @@ import moa.learners.Learner;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import moa.streams.InstanceStream;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.core.InstanceExample;
+import moa.core.ThreadCPUTimer;
 import moa.core.Utils;
 
 /**
@@ -88,6 +91,10 @@ public class EvaluatePrequential extends MainTask {
             "How many instances between samples of the learning performance.",
             100000, 0, Integer.MAX_VALUE);
 
+    public IntOption batchSizeOption = new IntOption("batchSize", 'n',
+            "Number of instances tested (and then trained on) together, through getVotesForInstances and trainOnInstances.",
+            1, 1, Integer.MAX_VALUE);
+
     public IntOption memCheckFrequencyOption = new IntOption(
             "memCheckFrequency", 'q',
             "How many instances between memory bound checks.", 100000, 0,
@@ -96,6 +103,9 @@ public class EvaluatePrequential extends MainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public FlagOption exactModelSizeOption = new FlagOption("exactModelSize", 'x',
+            "Measure the size of the model by traversing it at every sample instead of using its size estimate (if any), for RAM-Hours and the model size.");
+
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
@@ -107,6 +117,18 @@ public class EvaluatePrequential extends MainTask {
             'a', "Fading factor or exponential smoothing factor", .01);
     //End New for prequential methods
 
+    /**
+     * Size of the learner used for RAM-Hours and reported as its model size:
+     * an estimate maintained by the learner unless exactModelSizeOption is 
+     * set. 
+     */
+    protected int modelByteSize(Learner learner) {
+        if (this.exactModelSizeOption.isSet()) {
+            return learner.measureByteSize();
+        }
+        return AbstractMOAObject.estimateByteSize(learner);
+    }
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -186,102 +208,114 @@ public class EvaluatePrequential extends MainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
+        int batchSize = this.batchSizeOption.getValue();
+        if (batchSize > 1 && !(learner instanceof Classifier)) {
+            throw new IllegalArgumentException("Only classifiers can be evaluated with batchSize > 1.");
+        }
+        Example[] batch = new Example[batchSize];
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst; //.copy(); original code
-
-            // First debug attempt
-            //testInst.setClassMissing();
-//            Example testInst = (Example) trainInst.copy();
-//            Instance testInstance = (Instance) testInst.getData();
-//            testInstance.setMissing(testInstance.classAttribute());
-//            testInstance.setClassValue(0.0);
-
-            // Second debug attempt -> This works
-//            Instance testInstance = ((Instance) trainInst.getData()).copy();
-//            Example testInst = new InstanceExample(testInstance);
-//            testInstance.setMissing(testInstance.classAttribute());
-//            testInstance.setClassValue(0.0);
-//            
-            double[] prediction = learner.getVotesForInstance(testInst);
-//              reinstate the testInstance as it is used in evaluator.addResult
-//            testInstance = ((Instance) trainInst.getData()).copy();
-//            testInst = new InstanceExample(testInstance);
-            
-            // Output prediction
-            if (outputPredictionFile != null) {
-                int trueClass = (int) ((Instance) trainInst.getData()).classValue();
-                outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
-                 ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
+            int numInBatch = 0;
+            while (numInBatch < batchSize && stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed + numInBatch < maxInstances))) {
+                batch[numInBatch++] = stream.nextInstance();
             }
-
-            //evaluator.addClassificationAttempt(trueClass, prediction, testInst.weight());
-            evaluator.addResult(testInst, prediction);
-//            System.out.print(",acc: "+evaluator.getPerformanceMeasurements()[1].getValue());
-            learner.trainOnInstance(trainInst);
-            instancesProcessed++;
-            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-//                System.out.println("Start evaluating!");
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
-                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
-                RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
-                RAMHours += RAMHoursIncrement;
-                lastEvaluateStartTime = evaluateTime;
-//                System.out.println("After time and ramHours!");
-                learningCurve.insertEntry(new LearningEvaluation(
-                        new Measurement[]{
-                            new Measurement(
-                            "learning evaluation instances",
-                            instancesProcessed),
-                            new Measurement(
-                            "evaluation time ("
-                            + (preciseCPUTiming ? "cpu "
-                            : "") + "seconds)",
-                            time),
-                            new Measurement(
-                            "model cost (RAM-Hours)",
-                            RAMHours)
-                        },
-                        evaluator, learner));
-//                System.out.println("After inserting entry");
-                if (immediateResultStream != null) {
-                    if (firstDump) {
-                        immediateResultStream.println(learningCurve.headerToString());
-                        firstDump = false;
-                    }
-                    immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
-                    immediateResultStream.flush();
-                }
-//                System.out.println("Finished evaluating");
+            double[][] predictions;
+            if (batchSize == 1) {
+                predictions = new double[][]{learner.getVotesForInstance(batch[0])};
+            } else {
+                predictions = ((Classifier) learner).getVotesForInstances(getInstances(batch, numInBatch));
             }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
-                if (monitor.taskShouldAbort()) {
-                    return null;
+            
+            for (int i = 0; i < numInBatch; i++) {
+                Example testInst = batch[i];
+                double[] prediction = predictions[i];
+                // Output prediction
+                if (outputPredictionFile != null) {
+                    int trueClass = (int) ((Instance) testInst.getData()).classValue();
+                    outputPredictionResultStream.println(Utils.maxIndex(prediction) + "," + (
+                     ((Instance) testInst.getData()).classIsMissing() == true ? " ? " : trueClass));
                 }
-                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
-                if (maxInstances > 0) {
-                    long maxRemaining = maxInstances - instancesProcessed;
-                    if ((estimatedRemainingInstances < 0)
-                            || (maxRemaining < estimatedRemainingInstances)) {
-                        estimatedRemainingInstances = maxRemaining;
+
+                //evaluator.addClassificationAttempt(trueClass, prediction, testInst.weight());
+                evaluator.addResult(testInst, prediction);
+            }
+            if (batchSize == 1) {
+                learner.trainOnInstance(batch[0]);
+            } else {
+                ((Classifier) learner).trainOnInstances(getInstances(batch, numInBatch));
+            }
+            
+            for (int i = 0; i < numInBatch; i++) {
+                instancesProcessed++;
+                if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                        || (stream.hasMoreInstances() == false && i == numInBatch - 1)) {
+                    long evaluateTime = timer.getCPUNanos();
+                    double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                    double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+                    int modelByteSize = modelByteSize(learner);
+                    double RAMHoursIncrement = modelByteSize / (1024.0 * 1024.0 * 1024.0); //GBs
+                    RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                    RAMHours += RAMHoursIncrement;
+                    lastEvaluateStartTime = evaluateTime;
+                    learningCurve.insertEntry(new LearningEvaluation(
+                            new Measurement[]{
+                                new Measurement(
+                                "learning evaluation instances",
+                                instancesProcessed),
+                                new Measurement(
+                                "evaluation time ("
+                                + (preciseCPUTiming ? "cpu "
+                                : "") + "seconds)",
+                                time),
+                                new Measurement(
+                                "model cost (RAM-Hours)",
+                                RAMHours),
+                                new Measurement(
+                                "evaluation time (wall seconds)",
+                                TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                                new Measurement(
+                                "evaluation thread time ("
+                                + (preciseCPUTiming ? "cpu "
+                                : "") + "seconds)",
+                                TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
+                            },
+                            evaluator, learner, modelByteSize));
+                    if (immediateResultStream != null) {
+                        if (firstDump) {
+                            immediateResultStream.println(learningCurve.headerToString());
+                            firstDump = false;
+                        }
+                        immediateResultStream.println(learningCurve.entryToString(learningCurve.numEntries() - 1));
+                        immediateResultStream.flush();
                     }
                 }
-                monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
-                        : (double) instancesProcessed
-                        / (double) (instancesProcessed + estimatedRemainingInstances));
-                if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesProcessed;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesProcessed
+                            / (double) (instancesProcessed + estimatedRemainingInstances));
+                    if (monitor.resultPreviewRequested()) {
+                        monitor.setLatestResultPreview(learningCurve.copy());
+                    }
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
+                            - evaluateStartTime);
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
             }
         }
         if (immediateResultStream != null) {
@@ -292,4 +326,15 @@ public class EvaluatePrequential extends MainTask {
         }
         return learningCurve;
     }
+
+    /**
+     * Extracts the instances of the first numInBatch examples of a batch.
+     */
+    protected static Instance[] getInstances(Example[] batch, int numInBatch) {
+        Instance[] instances = new Instance[numInBatch];
+        for (int i = 0; i < numInBatch; i++) {
+            instances[i] = (Instance) batch[i].getData();
+        }
+        return instances;
+    }
 }
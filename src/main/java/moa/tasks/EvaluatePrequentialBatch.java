@@ -45,6 +45,7 @@ import moa.streams.ExampleStream;
 import com.yahoo.labs.samoa.instances.Instance;
 import java.util.LinkedList;
 import moa.core.InstanceExample;
+import moa.core.ThreadCPUTimer;
 import moa.core.Utils;
 import static moa.tasks.MainTask.INSTANCES_BETWEEN_MONITOR_UPDATES;
 
@@ -214,7 +215,8 @@ public class EvaluatePrequentialBatch extends MainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         
@@ -315,7 +317,7 @@ public class EvaluatePrequentialBatch extends MainTask {
 
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = timer.getCPUNanos();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
@@ -334,7 +336,15 @@ public class EvaluatePrequentialBatch extends MainTask {
                             time),
                             new Measurement(
                             "model cost (RAM-Hours)",
-                            RAMHours)
+                            RAMHours),
+                            new Measurement(
+                            "evaluation time (wall seconds)",
+                            TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                            new Measurement(
+                            "evaluation thread time ("
+                            + (preciseCPUTiming ? "cpu "
+                            : "") + "seconds)",
+                            TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
                         },
                         evaluator, learner));
 
@@ -365,7 +375,7 @@ public class EvaluatePrequentialBatch extends MainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                         - evaluateStartTime);
             }
         }
@@ -159,7 +159,8 @@ public class EvaluatePrequentialCV extends MainTask {
 
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -196,7 +197,7 @@ public class EvaluatePrequentialCV extends MainTask {
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = timer.getCPUNanos();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
@@ -220,7 +221,15 @@ public class EvaluatePrequentialCV extends MainTask {
                                         time),
                                 new Measurement(
                                         "model cost (RAM-Hours)",
-                                        RAMHours)
+                                        RAMHours),
+                                new Measurement(
+                                        "evaluation time (wall seconds)",
+                                        TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                                new Measurement(
+                                        "evaluation thread time ("
+                                        + (preciseCPUTiming ? "cpu "
+                                        : "") + "seconds)",
+                                        TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
                         }, evaluators)));
 
                 if (immediateResultStream != null) {
@@ -250,7 +259,7 @@ public class EvaluatePrequentialCV extends MainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                         - evaluateStartTime);
             }
         }
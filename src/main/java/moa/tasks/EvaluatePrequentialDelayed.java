@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 
+import moa.AbstractMOAObject;
 import moa.classifiers.Classifier;
 import moa.core.Example;
 import moa.core.Measurement;
@@ -45,8 +46,10 @@ import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
 import com.yahoo.labs.samoa.instances.Instance;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import moa.core.InstanceExample;
+import moa.core.ThreadCPUTimer;
 import moa.core.Utils;
 
 /**
@@ -98,6 +101,11 @@ public class EvaluatePrequentialDelayed extends MainTask {
     public FlagOption trainInBatches = new FlagOption("trainInBatches", 'b', 
         "If set training will not be interleaved with testing. ");
     
+    public IntOption batchSizeOption = new IntOption("batchSize", 'n',
+        "Number of instances whose delay has elapsed that are trained on together, through trainOnInstances. "
+        + "Values > 1 delay training by up to batchSize - 1 extra instances.",
+        1, 1, Integer.MAX_VALUE);
+    
     public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
             "Maximum number of instances to test/train on  (-1 = no limit).",
             100000000, -1, Integer.MAX_VALUE);
@@ -119,6 +127,9 @@ public class EvaluatePrequentialDelayed extends MainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public FlagOption exactModelSizeOption = new FlagOption("exactModelSize", 'x',
+            "Measure the size of the model by traversing it at every sample instead of using its size estimate (if any), for RAM-Hours and the model size.");
+
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
@@ -132,6 +143,21 @@ public class EvaluatePrequentialDelayed extends MainTask {
     // Buffer of instances to use for training. 
     protected LinkedList<Example> trainInstances;
     
+    // Instances ready for training, waiting for a full batch (batchSize > 1)
+    protected ArrayList<Instance> trainBatch;
+    
+    /**
+     * Size of the learner used for RAM-Hours and reported as its model size:
+     * an estimate maintained by the learner unless exactModelSizeOption is 
+     * set. 
+     */
+    protected int modelByteSize(Learner learner) {
+        if (this.exactModelSizeOption.isSet()) {
+            return learner.measureByteSize();
+        }
+        return AbstractMOAObject.estimateByteSize(learner);
+    }
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -146,6 +172,10 @@ public class EvaluatePrequentialDelayed extends MainTask {
                 "learning evaluation instances");
 
         this.trainInstances = new LinkedList<Example>();
+        this.trainBatch = new ArrayList<Instance>();
+        if (this.batchSizeOption.getValue() > 1 && !(learner instanceof Classifier)) {
+            throw new IllegalArgumentException("Only classifiers can be evaluated with batchSize > 1.");
+        }
         
         //New for prequential methods
         if (evaluator instanceof WindowClassificationPerformanceEvaluator) {
@@ -212,7 +242,8 @@ public class EvaluatePrequentialDelayed extends MainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         
@@ -225,7 +256,7 @@ public class EvaluatePrequentialDelayed extends MainTask {
             
             if(instancesProcessed <= this.initialWindowSizeOption.getValue()) {
                 if(this.trainOnInitialWindowOption.isSet()) {
-                    learner.trainOnInstance(currentInst);
+                    train(learner, currentInst);
                 }
                 else if((this.initialWindowSizeOption.getValue() - instancesProcessed) < this.delayLengthOption.getValue()) {
                     this.trainInstances.addLast(currentInst);
@@ -240,12 +271,12 @@ public class EvaluatePrequentialDelayed extends MainTask {
                         // it would train on k+1 instances
                         while(this.trainInstances.size() > 1) {
                             Example trainInst = this.trainInstances.removeFirst();
-                            learner.trainOnInstance(trainInst);
+                            train(learner, trainInst);
                         }
                     }
                     else {
                         Example trainInst = this.trainInstances.removeFirst();
-                        learner.trainOnInstance(trainInst);
+                        train(learner, trainInst);
                     }
                 }
 
@@ -270,10 +301,13 @@ public class EvaluatePrequentialDelayed extends MainTask {
                 
                 if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                         || stream.hasMoreInstances() == false) {
-                    long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    // The sampled model is the one trained on every instance whose delay has elapsed
+                    flushTrainBatch(learner);
+                    long evaluateTime = timer.getCPUNanos();
                     double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                     double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                    double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    int modelByteSize = modelByteSize(learner);
+                    double RAMHoursIncrement = modelByteSize / (1024.0 * 1024.0 * 1024.0); //GBs
                     RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                     RAMHours += RAMHoursIncrement;
                     lastEvaluateStartTime = evaluateTime;
@@ -289,9 +323,17 @@ public class EvaluatePrequentialDelayed extends MainTask {
                                 time),
                                 new Measurement(
                                 "model cost (RAM-Hours)",
-                                RAMHours)
+                                RAMHours),
+                                new Measurement(
+                                "evaluation time (wall seconds)",
+                                TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                                new Measurement(
+                                "evaluation thread time ("
+                                + (preciseCPUTiming ? "cpu "
+                                : "") + "seconds)",
+                                TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
                             },
-                            evaluator, learner));
+                            evaluator, learner, modelByteSize));
                     if (immediateResultStream != null) {
                         if (firstDump) {
                             immediateResultStream.println(learningCurve.headerToString());
@@ -319,11 +361,12 @@ public class EvaluatePrequentialDelayed extends MainTask {
                     if (monitor.resultPreviewRequested()) {
                         monitor.setLatestResultPreview(learningCurve.copy());
                     }
-                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                    secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                             - evaluateStartTime);
                 }
             }
         }
+        flushTrainBatch(learner);
         if (immediateResultStream != null) {
             immediateResultStream.close();
         }
@@ -332,4 +375,34 @@ public class EvaluatePrequentialDelayed extends MainTask {
         }
         return learningCurve;
     }
+    
+    /**
+     * Trains the learner on an instance whose delay has elapsed. If batchSize
+     * is greater than 1, the instance is buffered until the batch is full. 
+     */
+    protected void train(Learner learner, Example trainInst) {
+        if (this.batchSizeOption.getValue() == 1) {
+            learner.trainOnInstance(trainInst);
+            return;
+        }
+        this.trainBatch.add((Instance) trainInst.getData());
+        if (this.trainBatch.size() >= this.batchSizeOption.getValue()) {
+            flushTrainBatch(learner);
+        }
+    }
+
+    /**
+     * Trains the learner on the instances buffered by train, even if the 
+     * batch is not full. Called before each sample of the learning 
+     * performance and at the end of the stream, so that no instance whose 
+     * delay has elapsed is left out of the model.
+     */
+    protected void flushTrainBatch(Learner learner) {
+        if (this.trainBatch.isEmpty()) {
+            return;
+        }
+        ((Classifier) learner).trainOnInstances(
+            this.trainBatch.toArray(new Instance[this.trainBatch.size()]));
+        this.trainBatch.clear();
+    }
 }
@@ -22,8 +22,10 @@
 package moa.tasks;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
+import moa.AbstractMOAObject;
 import moa.classifiers.Classifier;
 import moa.core.*;
 import moa.evaluation.*;
@@ -104,6 +106,9 @@ public class EvaluatePrequentialDelayedCV extends MainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", null, "csv", true);
 
+    public FlagOption exactModelSizeOption = new FlagOption("exactModelSize", 'x',
+            "Measure the size of the model by traversing it at every sample instead of using its size estimate (if any).");
+
     public IntOption ensembleSizeOption = new IntOption("ensembleSize", 'w',
             "The number of distributed models.", 10, 1, Integer.MAX_VALUE);
 
@@ -123,6 +128,17 @@ public class EvaluatePrequentialDelayedCV extends MainTask {
     // CV of 10, would be 10 lists of buffered instances for delayed training. 
     protected LinkedList<LinkedList<Example>> trainInstances;
     
+    /**
+     * Size of the learner used for RAM-Hours: an estimate maintained by the
+     * learner unless exactModelSizeOption is set. 
+     */
+    protected int modelByteSize(Learner learner) {
+        if (this.exactModelSizeOption.isSet()) {
+            return learner.measureByteSize();
+        }
+        return AbstractMOAObject.estimateByteSize(learner);
+    }
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -178,7 +194,8 @@ public class EvaluatePrequentialDelayedCV extends MainTask {
 
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         
@@ -219,12 +236,12 @@ public class EvaluatePrequentialDelayedCV extends MainTask {
             
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = timer.getCPUNanos();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
                 for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    double RAMHoursIncrement = modelByteSize(learners[i]) / (1024.0 * 1024.0 * 1024.0); //GBs
                     RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                     RAMHours += RAMHoursIncrement;
                 }
@@ -243,7 +260,15 @@ public class EvaluatePrequentialDelayedCV extends MainTask {
                                         time),
                                 new Measurement(
                                         "model cost (RAM-Hours)",
-                                        RAMHours)
+                                        RAMHours),
+                                new Measurement(
+                                        "evaluation time (wall seconds)",
+                                        TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                                new Measurement(
+                                        "evaluation thread time ("
+                                        + (preciseCPUTiming ? "cpu "
+                                        : "") + "seconds)",
+                                        TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
                         }, evaluators)));
 
                 if (immediateResultStream != null) {
@@ -273,7 +298,7 @@ public class EvaluatePrequentialDelayedCV extends MainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                         - evaluateStartTime);
             }
         }
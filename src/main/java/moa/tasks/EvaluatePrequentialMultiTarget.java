@@ -36,6 +36,7 @@ import moa.classifiers.Regressor;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.ThreadCPUTimer;
 import moa.core.TimingUtils;
 import moa.evaluation.EWMAClassificationPerformanceEvaluator;
 import moa.evaluation.FadingFactorClassificationPerformanceEvaluator;
@@ -189,7 +190,8 @@ public class EvaluatePrequentialMultiTarget extends MultiTargetMainTask {
         }
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
-        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        ThreadCPUTimer timer = new ThreadCPUTimer();
+        long evaluateStartTime = timer.getCPUNanos();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
         while (stream.hasMoreInstances()
@@ -212,7 +214,7 @@ public class EvaluatePrequentialMultiTarget extends MultiTargetMainTask {
             instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
                     || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                long evaluateTime = timer.getCPUNanos();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
@@ -231,7 +233,15 @@ public class EvaluatePrequentialMultiTarget extends MultiTargetMainTask {
                             time),
                             new Measurement(
                             "model cost (RAM-Hours)",
-                            RAMHours)
+                            RAMHours),
+                            new Measurement(
+                            "evaluation time (wall seconds)",
+                            TimingUtils.nanoTimeToSeconds(timer.getWallNanos())),
+                            new Measurement(
+                            "evaluation thread time ("
+                            + (preciseCPUTiming ? "cpu "
+                            : "") + "seconds)",
+                            TimingUtils.nanoTimeToSeconds(timer.getThreadCPUNanos()))
                         },
                         evaluator, learner));
 
@@ -262,7 +272,7 @@ public class EvaluatePrequentialMultiTarget extends MultiTargetMainTask {
                 if (monitor.resultPreviewRequested()) {
                     monitor.setLatestResultPreview(learningCurve.copy());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(timer.getCPUNanos()
                         - evaluateStartTime);
             }
         }
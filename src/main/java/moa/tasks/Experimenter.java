@@ -5,26 +5,45 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import moa.core.ObjectRepository;
+import moa.core.ThreadCPUTimer;
 import moa.evaluation.LearningCurve;
 import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.ExampleStream;
+import moa.streams.StreamFanOut;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.Option;
 
 // TODO: Add rank matrix + average rank per metric
 // TODO: Add Latex output
 // TODO: Add option to choose between streams as rows (learners as columns) or streams as columns (learners as rows).  
 // TODO: Allow multiple runs changing random seeds of learners/streams. 
 // TODO: Add statistical test
-// TODO: Allow user to select which measures to extract, currently these are hardcoded (see int[] metricsIndexes = {1,2,4,5,6,7};)
+// TODO: Allow user to select which measures to extract, currently these are hardcoded (see int[] metricsIndexes = {1,2,6,7,8,9};)
 /**
  * Task for executing multiple runs of the same task using different learners
  * and datasets.
  *
+ * <p>The runs can be executed by a pool of threads, each run in a single
+ * thread. The result lines are still written in order, each one as soon as
+ * its runs are complete. With the fan-out option, each stream is read once,
+ * by a {@link StreamFanOut} that gives its examples to the runs of all the
+ * learners on the stream, which then run at the same time.</p>
+ *
  * @author Heitor Murilo Gomes (hmgomes at ppgia dot pucpr dot br)
  * @version $Revision: 7 $
  */
@@ -55,6 +74,13 @@ public class Experimenter extends MainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv results to.", "/Users/heitor/git/moa/moa/results.csv", "csv", true);
 
+    public IntOption numThreadsOption = new IntOption("numThreads", 'p',
+            "Number of runs executed at the same time.", 1, 1, Integer.MAX_VALUE);
+
+    public FlagOption fanOutOption = new FlagOption("fanOut", 'f',
+            "Read each stream once for all the learners. The runs of the learners on a stream "
+            + "run at the same time, so numThreads must be at least the number of learners.");
+
     protected ArrayList<String> classifiers = new ArrayList<String>();
     protected ArrayList<String> classifiersAlias = new ArrayList<String>();
     protected ArrayList<String> streams = new ArrayList<String>();
@@ -165,6 +191,12 @@ public class Experimenter extends MainTask {
     protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
         // Read input file to attributes task, classifiers and streams
         readConfigFile();
+        if (this.fanOutOption.isSet() && this.numThreadsOption.getValue() < this.classifiers.size()) {
+            // the consumers of a stream wait for each other
+            throw new IllegalArgumentException("Fan-out runs the " + this.classifiers.size()
+                    + " learners at the same time, but only " + this.numThreadsOption.getValue()
+                    + " threads are allowed: set numThreads (-p) to at least " + this.classifiers.size());
+        }
         createOutputFile();
         if (this.outputLearnersAsRows.isSet()) {
             this.result = new Result(this.streamsAlias);
@@ -175,63 +207,99 @@ public class Experimenter extends MainTask {
 //    	String task = this.evaluationMethodOption.getChosenLabel();
         String taskStr = this.evaluationMethods[this.evaluationMethodOption.getChosenIndex()];
 
-        int[] metricsIndexes = {1, 2, 4, 5, 6, 7};
+        // The tasks measure the instances, CPU time, RAM-Hours, wall time and
+        // evaluation thread time before the measurements of the evaluator
+        int[] metricsIndexes = {1, 2, 6, 7, 8, 9};
         switch (this.evaluationMethodOption.getChosenIndex()) {
             case 0:
                 taskStr += " -e BasicClassificationPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 4, 5, 6, 7};
+                metricsIndexes = new int[]{1, 2, 6, 7, 8, 9};
                 break;
             case 1:
                 taskStr += " -e BasicClassificationPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 4, 5, 6, 7};
+                metricsIndexes = new int[]{1, 2, 6, 7, 8, 9};
                 break;
             case 2:
                 taskStr += " -e BasicClassificationPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 4, 5, 6, 7};
+                metricsIndexes = new int[]{1, 2, 6, 7, 8, 9};
                 break;
             case 3:
                 taskStr += " -e BasicClassificationPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+                metricsIndexes = new int[]{1, 2, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14};
                 break;
             case 4:
                 taskStr += " -e BasicClassificationPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+                metricsIndexes = new int[]{1, 2, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14};
                 break;
             case 5:
                 taskStr += " -e BasicRegressionPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 4, 5, 6, 7};
+                metricsIndexes = new int[]{1, 2, 6, 7, 8, 9};
                 break;
             case 6:
                 taskStr += " -e BasicMultiTargetPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 4, 5};
+                metricsIndexes = new int[]{1, 2, 6, 7};
                 break;
             case 7:
                 taskStr += " -e BasicMultiLabelPerformanceEvaluator";
-                metricsIndexes = new int[]{1, 2, 3, 4};
+                metricsIndexes = new int[]{1, 2, 5, 6};
                 break;
             default:
                 break;
         }
 
-        if (this.outputLearnersAsRows.isSet()) {
-            for (int c = 0; c < this.classifiers.size(); ++c) {
-                learningCurves = new ArrayList<LearningCurve>();
-                for (int s = 0; s < this.streams.size(); ++s) {
-                    this.taskOption.setValueViaCLIString(taskStr + " " + this.classifiers.get(c) + " " + this.streams.get(s));
-                    MainTask task = (MainTask) taskOption.materializeObject(monitor, repository);
-                    learningCurves.add((LearningCurve) task.doTask(monitor, repository));
+        int numClassifiers = this.classifiers.size();
+        int numStreams = this.streams.size();
+        int numThreads = this.numThreadsOption.getValue();
+        boolean fanOut = this.fanOutOption.isSet();
+        // The run of classifier c on stream s is at s * numClassifiers + c
+        List<Future<LearningCurve>> runs = new ArrayList<Future<LearningCurve>>();
+        List<StreamFanOut> streamFanOuts = new ArrayList<StreamFanOut>();
+        ExecutorService pool = null;
+        if (numThreads == 1) {
+            // each run is executed when its result line is written
+            for (int s = 0; s < numStreams; ++s) {
+                for (int c = 0; c < numClassifiers; ++c) {
+                    runs.add(new FutureTask<LearningCurve>(newRun(taskStr, c, s, monitor, repository)));
                 }
-                this.result.addResultLine(this.classifiersAlias.get(c), learningCurves, metricsIndexes, this.immediateResultStream);
             }
         } else {
-            for (int s = 0; s < this.streams.size(); ++s) {
-                learningCurves = new ArrayList<LearningCurve>();
-                for (int c = 0; c < this.classifiers.size(); ++c) {
-                    this.taskOption.setValueViaCLIString(taskStr + " " + this.classifiers.get(c) + " " + this.streams.get(s));
-                    MainTask task = (MainTask) taskOption.materializeObject(monitor, repository);
-                    learningCurves.add((LearningCurve) task.doTask(monitor, repository));
+            pool = Executors.newFixedThreadPool(numThreads,
+                    ThreadCPUTimer.threadFactory("experimenter", true));
+            for (int s = 0; s < numStreams; ++s) {
+                StreamFanOut streamFanOut = fanOut ? newStreamFanOut(taskStr, s, monitor, repository) : null;
+                if (streamFanOut != null) {
+                    streamFanOuts.add(streamFanOut);
+                }
+                for (int c = 0; c < numClassifiers; ++c) {
+                    runs.add(pool.submit(newParallelRun(taskStr, c, s, streamFanOut, monitor, repository)));
                 }
-                this.result.addResultLine(this.streamsAlias.get(s), learningCurves, metricsIndexes, this.immediateResultStream);
+            }
+        }
+
+        try {
+            if (this.outputLearnersAsRows.isSet()) {
+                for (int c = 0; c < numClassifiers; ++c) {
+                    learningCurves = new ArrayList<LearningCurve>();
+                    for (int s = 0; s < numStreams; ++s) {
+                        learningCurves.add(getResult(runs.get(s * numClassifiers + c), pool == null));
+                    }
+                    this.result.addResultLine(this.classifiersAlias.get(c), learningCurves, metricsIndexes, this.immediateResultStream);
+                }
+            } else {
+                for (int s = 0; s < numStreams; ++s) {
+                    learningCurves = new ArrayList<LearningCurve>();
+                    for (int c = 0; c < numClassifiers; ++c) {
+                        learningCurves.add(getResult(runs.get(s * numClassifiers + c), pool == null));
+                    }
+                    this.result.addResultLine(this.streamsAlias.get(s), learningCurves, metricsIndexes, this.immediateResultStream);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            for (StreamFanOut streamFanOut : streamFanOuts) {
+                streamFanOut.close();
             }
         }
 
@@ -239,6 +307,104 @@ public class Experimenter extends MainTask {
         return learningCurves.get(0);
     }
 
+    /**
+     * Creates the task of a run, from the main thread.
+     */
+    protected MainTask newTask(String taskStr, int c, int s, TaskMonitor monitor,
+            ObjectRepository repository) {
+        this.taskOption.setValueViaCLIString(taskStr + " " + this.classifiers.get(c) + " " + this.streams.get(s));
+        return (MainTask) this.taskOption.materializeObject(monitor, repository);
+    }
+
+    /**
+     * Creates a run executed by the main thread, as part of this task.
+     */
+    protected Callable<LearningCurve> newRun(final String taskStr, final int c, final int s,
+            final TaskMonitor monitor, final ObjectRepository repository) {
+        return new Callable<LearningCurve>() {
+
+            @Override
+            public LearningCurve call() {
+                MainTask task = newTask(taskStr, c, s, monitor, repository);
+                return (LearningCurve) task.doTask(monitor, repository);
+            }
+        };
+    }
+
+    /**
+     * Creates a run executed by a thread of the pool, which has its own
+     * monitor. The task is created now, from the main thread.
+     */
+    protected Callable<LearningCurve> newParallelRun(String taskStr, int c, int s,
+            StreamFanOut streamFanOut, TaskMonitor monitor, final ObjectRepository repository) {
+        final MainTask task = newTask(taskStr, c, s, monitor, repository);
+        final StreamFanOut.Consumer consumer = streamFanOut != null ? streamFanOut.getConsumer(c) : null;
+        if (consumer != null) {
+            getStreamOption(task).setCurrentObject(consumer);
+        }
+        return new Callable<LearningCurve>() {
+
+            @Override
+            public LearningCurve call() {
+                try {
+                    return (LearningCurve) task.doTask(new NullMonitor(), repository);
+                } finally {
+                    if (consumer != null) {
+                        consumer.close();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates the fan-out of a stream, or returns null if the evaluation
+     * method does not read an ExampleStream.
+     */
+    protected StreamFanOut newStreamFanOut(String taskStr, int s, TaskMonitor monitor,
+            ObjectRepository repository) {
+        ClassOption streamOption = getStreamOption(newTask(taskStr, 0, s, monitor, repository));
+        if (streamOption == null
+                || !streamOption.getRequiredType().isAssignableFrom(StreamFanOut.Consumer.class)) {
+            return null;
+        }
+        Object stream = streamOption.materializeObject(monitor, repository);
+        if (stream instanceof OptionHandler) {
+            ((OptionHandler) stream).prepareForUse(monitor, repository);
+        }
+        return new StreamFanOut((ExampleStream) stream, this.classifiers.size());
+    }
+
+    protected static ClassOption getStreamOption(MainTask task) {
+        for (Option option : task.getOptions().getOptionArray()) {
+            if (option instanceof ClassOption && option.getName().equals("stream")) {
+                return (ClassOption) option;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the result of a run, or executes it if it is executed by the
+     * main thread.
+     */
+    protected static LearningCurve getResult(Future<LearningCurve> run, boolean inMainThread) {
+        if (inMainThread) {
+            ((FutureTask<LearningCurve>) run).run();
+        }
+        try {
+            return run.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a run", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Run failed", e.getCause());
+        }
+    }
+
     protected void readConfigFile() {
         File configFile = this.configFileOption.getFile();
         if (configFile != null) {
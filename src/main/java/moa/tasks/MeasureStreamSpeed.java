@@ -19,6 +19,9 @@
  */
 package moa.tasks;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
 import moa.core.TimingUtils;
@@ -55,6 +58,7 @@ public class MeasureStreamSpeed extends MainTask {
         TimingUtils.enablePreciseTiming();
         int numInstances = 0;
         ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        long genStartBytes = allocatedBytesOfCurrentThread();
         long genStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         while (numInstances < this.generateSizeOption.getValue()) {
             stream.nextInstance();
@@ -62,13 +66,31 @@ public class MeasureStreamSpeed extends MainTask {
         }
         double genTime = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
                 - genStartTime);
+        long genBytes = allocatedBytesOfCurrentThread() - genStartBytes;
         return new LearningEvaluation(
                 new Measurement[]{
                     new Measurement("Number of instances generated",
                     numInstances),
                     new Measurement("Time elapsed", genTime),
                     new Measurement("Instances per second", numInstances
-                    / genTime)});
+                    / genTime),
+                    new Measurement("Bytes allocated per instance",
+                    genStartBytes < 0 ? -1.0 : (double) genBytes / numInstances)});
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread, or -1 if the
+     * JVM does not measure it.
+     */
+    protected static long allocatedBytesOfCurrentThread() {
+        ThreadMXBean tmxb = ManagementFactory.getThreadMXBean();
+        if (tmxb instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) tmxb;
+            if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
     }
 
     @Override
@@ -22,6 +22,7 @@ package moa.tasks;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import moa.core.ObjectRepository;
+import moa.core.ThreadCPUTimer;
 import moa.core.TimingUtils;
 
 /**
@@ -47,9 +48,10 @@ public class TaskThread extends Thread {
 
     protected Object finalResult;
 
-    protected long taskStartTime;
+    // Measures the CPU time of this thread and of the threads it starts
+    protected volatile ThreadCPUTimer timer;
 
-    protected long taskEndTime;
+    protected long taskCPUTime;
 
     protected double latestPreviewGrabTime = 0.0;
 
@@ -70,7 +72,7 @@ public class TaskThread extends Thread {
     @Override
     public void run() {
         TimingUtils.enablePreciseTiming();
-        this.taskStartTime = TimingUtils.getNanoCPUTimeOfThread(getId());
+        this.timer = new ThreadCPUTimer();
         try {
             this.currentStatus = Status.RUNNING;
             this.finalResult = this.runningTask.doTask(this.taskMonitor,
@@ -81,7 +83,7 @@ public class TaskThread extends Thread {
             this.currentStatus = Status.FAILED;
             this.finalResult = new FailedTaskReport(ex);
         }
-        this.taskEndTime = TimingUtils.getNanoCPUTimeOfThread(getId());
+        this.taskCPUTime = this.timer.getCPUNanos();
         fireTaskCompleted();
         this.taskMonitor.setLatestResultPreview(null); // free preview memory
     }
@@ -113,11 +115,9 @@ public class TaskThread extends Thread {
         if (this.currentStatus == Status.NOT_STARTED) {
             secondsElapsed = 0.0;
         } else if (isComplete()) {
-            secondsElapsed = TimingUtils.nanoTimeToSeconds(this.taskEndTime
-                    - this.taskStartTime);
-        } else {
-            secondsElapsed = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfThread(getId())
-                    - this.taskStartTime);
+            secondsElapsed = TimingUtils.nanoTimeToSeconds(this.taskCPUTime);
+        } else if (this.timer != null) {
+            secondsElapsed = TimingUtils.nanoTimeToSeconds(this.timer.getCPUNanos());
         }
         return secondsElapsed > 0.0 ? secondsElapsed : 0.0;
     }
@@ -0,0 +1,260 @@
+/*
+ *    WriteStreamToBinaryFile.java
+ *    Copyright (C) 2017 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.BinaryFileStream;
+import moa.streams.InstanceStream;
+
+/**
+ * Task to output a stream to a binary stream file, to be replayed with
+ * {@link BinaryFileStream}. The sparse layout is used if the first instance
+ * of the stream stores fewer values than it has attributes.
+ *
+ * @version $Revision: 1 $
+ */
+public class WriteStreamToBinaryFile extends MainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Outputs a stream to a binary stream file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to write.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Destination binary stream file.", null, "bin", true);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Maximum number of instances to write to file.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    /**
+     * Writes little-endian numbers to a file through a buffer.
+     */
+    protected static class ChannelWriter {
+
+        protected final File path;
+
+        protected final RandomAccessFile file;
+
+        protected final FileChannel channel;
+
+        protected final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        protected ChannelWriter(File file) throws IOException {
+            this.path = file;
+            this.file = new RandomAccessFile(file, "rw");
+            this.file.setLength(0);
+            this.channel = this.file.getChannel();
+        }
+
+        protected ChannelWriter(String prefix) throws IOException {
+            this(File.createTempFile(prefix, ".tmp"));
+        }
+
+        protected void reserve(int size) throws IOException {
+            if (this.buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        protected void putByte(byte value) throws IOException {
+            reserve(1);
+            this.buffer.put(value);
+        }
+
+        protected void putInt(int value) throws IOException {
+            reserve(4);
+            this.buffer.putInt(value);
+        }
+
+        protected void putLong(long value) throws IOException {
+            reserve(8);
+            this.buffer.putLong(value);
+        }
+
+        protected void putDouble(double value) throws IOException {
+            reserve(8);
+            this.buffer.putDouble(value);
+        }
+
+        protected void putBytes(byte[] bytes) throws IOException {
+            flush();
+            this.channel.write(ByteBuffer.wrap(bytes));
+        }
+
+        protected void flush() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        /**
+         * Appends the content of another writer.
+         */
+        protected void append(ChannelWriter other) throws IOException {
+            flush();
+            other.flush();
+            long size = other.channel.size();
+            long position = 0;
+            while (position < size) {
+                position += other.channel.transferTo(position, size - position, this.channel);
+            }
+        }
+
+        protected void close() throws IOException {
+            flush();
+            this.file.close();
+        }
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        File destFile = this.binaryFileOption.getFile();
+        if (destFile != null) {
+            try {
+                monitor.setCurrentActivityDescription("Writing stream to binary file");
+                ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(headerBytes);
+                out.writeObject(stream.getHeader());
+                out.close();
+                byte[] header = headerBytes.toByteArray();
+                int numAttributes = stream.getHeader().numAttributes();
+
+                Instance first = nextInstance(stream, 0, monitor);
+                int layout = first != null && first.numValues() < first.numAttributes()
+                        ? BinaryFileStream.SPARSE : BinaryFileStream.DENSE;
+
+                ChannelWriter w = new ChannelWriter(destFile);
+                w.putLong(BinaryFileStream.MAGIC);
+                w.putInt(BinaryFileStream.VERSION);
+                w.putInt(layout);
+                w.putLong(0); // number of instances, written at the end
+                w.putLong(0); // number of values, written at the end
+                w.putInt(numAttributes);
+                w.putInt(header.length);
+                w.putBytes(header);
+                long dataStart = BinaryFileStream.dataStart(header.length);
+                for (long i = BinaryFileStream.PREFIX_SIZE + header.length; i < dataStart; i++) {
+                    w.putByte((byte) 0);
+                }
+
+                long numWritten = 0;
+                long numValues = 0;
+                if (layout == BinaryFileStream.DENSE) {
+                    Instance inst = first;
+                    while (inst != null) {
+                        if (inst.numAttributes() != numAttributes) {
+                            throw new IllegalArgumentException("Instance " + numWritten
+                                    + " has " + inst.numAttributes() + " attributes instead of " + numAttributes);
+                        }
+                        w.putDouble(inst.weight());
+                        for (int i = 0; i < numAttributes; i++) {
+                            w.putDouble(inst.value(i));
+                        }
+                        numWritten++;
+                        numValues += numAttributes;
+                        inst = nextInstance(stream, numWritten, monitor);
+                    }
+                } else {
+                    ChannelWriter weights = new ChannelWriter("weights");
+                    ChannelWriter values = new ChannelWriter("values");
+                    ChannelWriter indices = new ChannelWriter("indices");
+                    try {
+                        w.putLong(0);
+                        Instance inst = first;
+                        while (inst != null) {
+                            int previous = -1;
+                            for (int i = 0; i < inst.numValues(); i++) {
+                                int index = inst.index(i);
+                                if (index <= previous || index >= numAttributes) {
+                                    throw new IllegalArgumentException("Instance " + numWritten
+                                            + " has unsorted or invalid attribute indices");
+                                }
+                                previous = index;
+                                indices.putInt(index);
+                                values.putDouble(inst.valueSparse(i));
+                            }
+                            numValues += inst.numValues();
+                            w.putLong(numValues);
+                            weights.putDouble(inst.weight());
+                            numWritten++;
+                            inst = nextInstance(stream, numWritten, monitor);
+                        }
+                        w.append(weights);
+                        w.append(values);
+                        w.append(indices);
+                    } finally {
+                        for (ChannelWriter tmp : new ChannelWriter[]{weights, values, indices}) {
+                            tmp.close();
+                            tmp.path.delete();
+                        }
+                    }
+                }
+                w.flush();
+                ByteBuffer counts = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                counts.putLong(numWritten).putLong(layout == BinaryFileStream.SPARSE ? numValues : 0).flip();
+                w.channel.write(counts, 16);
+                w.close();
+            } catch (Exception ex) {
+                throw new RuntimeException(
+                        "Failed writing to file " + destFile, ex);
+            }
+            return "Stream written to binary file " + destFile;
+        }
+        throw new IllegalArgumentException("No destination file to write to.");
+    }
+
+    protected Instance nextInstance(InstanceStream stream, long numWritten, TaskMonitor monitor) {
+        if (numWritten >= this.maxInstancesOption.getValue() || !stream.hasMoreInstances()) {
+            return null;
+        }
+        if (numWritten % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+            monitor.setCurrentActivityFractionComplete((double) numWritten
+                    / this.maxInstancesOption.getValue());
+        }
+        return stream.nextInstance().getData();
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+}
@@ -0,0 +1,66 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstancesSchemaTest {
+	private Instances dataset;
+
+	@Before
+	public void setUp() {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("a1"));
+		attributes.add(new Attribute("a2"));
+		List<String> labels = new ArrayList<String>();
+		labels.add("yes");
+		labels.add("no");
+		attributes.add(new Attribute("class", labels));
+		dataset = new Instances("test", attributes, 0);
+		dataset.setClassIndex(2);
+	}
+
+	@Test
+	public void testInstancesShareSchema(){
+		Instance first = new DenseInstance(1.0, new double[]{1, 2, 0});
+		Instance second = new DenseInstance(1.0, new double[]{3, 4, 1});
+		first.setDataset(dataset);
+		second.setDataset(dataset);
+		assertSame(first.dataset(), second.dataset());
+		assertSame(first.dataset(), first.copy().dataset());
+		second.setDataset(first.dataset());
+		assertSame(first.dataset(), second.dataset());
+		assertEquals(0, first.dataset().numInstances());
+		assertEquals(2, first.classIndex());
+		assertEquals("no", first.dataset().classAttribute().value((int) second.classValue()));
+	}
+
+	@Test
+	public void testSchemaSeesClassIndexChanges(){
+		Instance inst = new DenseInstance(1.0, new double[]{1, 2, 0});
+		inst.setDataset(dataset);
+		dataset.setClassIndex(0);
+		assertEquals(0, inst.classIndex());
+	}
+
+	@Test
+	public void testSchemaRenewedAfterAttributeChange(){
+		InstancesSchema schema = dataset.schema();
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("a0"));
+		dataset.setAttributes(attributes);
+		assertNotSame(schema, dataset.schema());
+		assertEquals(1, dataset.schema().numAttributes());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSchemaIsImmutable(){
+		Instance inst = new DenseInstance(1.0, new double[]{1, 2, 0});
+		inst.setDataset(dataset);
+		inst.dataset().add(inst);
+	}
+}
@@ -0,0 +1,250 @@
+package moa.classifiers.core.attributeclassobservers;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.GiniSplitCriterion;
+import moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.DoubleVector;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+import org.junit.Test;
+
+/**
+ * Compares the splits found in shared scratch buffers by the nominal, binary
+ * tree, VFML and Greenwald-Khanna observers with the splits found by
+ * evaluating every candidate with its own distributions, for batch criteria
+ * and for a criterion that only evaluates one split at a time.
+ */
+public class BufferedAttributeClassObserverTest {
+
+	/**
+	 * Information gain without the batch API.
+	 */
+	private static class SingleSplitCriterion extends AbstractOptionHandler implements SplitCriterion {
+
+		private static final long serialVersionUID = 1L;
+
+		private final InfoGainSplitCriterion infoGain = new InfoGainSplitCriterion();
+
+		@Override
+		public double getMeritOfSplit(double[] preSplitDist, double[][] postSplitDists) {
+			return this.infoGain.getMeritOfSplit(preSplitDist, postSplitDists);
+		}
+
+		@Override
+		public double getRangeOfMerit(double[] preSplitDist) {
+			return this.infoGain.getRangeOfMerit(preSplitDist);
+		}
+
+		@Override
+		public void getDescription(StringBuilder sb, int indent) {
+		}
+
+		@Override
+		protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+		}
+	}
+
+	private static final SplitCriterion[] CRITERIA = {new InfoGainSplitCriterion(),
+		new GiniSplitCriterion(), new SingleSplitCriterion()};
+
+	private static void assertSameDist(double[] expected, double[] actual) {
+		for (int i = 0; i < Math.max(expected.length, actual.length); i++) {
+			assertEquals(i < expected.length ? expected[i] : 0.0, i < actual.length ? actual[i] : 0.0, 0.0);
+		}
+	}
+
+	private static void assertSameSuggestion(AttributeSplitSuggestion expected, AttributeSplitSuggestion actual) {
+		assertEquals(Double.doubleToLongBits(expected.merit), Double.doubleToLongBits(actual.merit));
+		assertEquals(expected.splitTest.getClass(), actual.splitTest.getClass());
+		if (expected.splitTest instanceof NumericAttributeBinaryTest) {
+			assertEquals(((NumericAttributeBinaryTest) expected.splitTest).getSplitValue(),
+					((NumericAttributeBinaryTest) actual.splitTest).getSplitValue(), 0.0);
+		}
+		assertEquals(expected.numSplits(), actual.numSplits());
+		for (int i = 0; i < expected.numSplits(); i++) {
+			assertSameDist(expected.resultingClassDistributionFromSplit(i), actual.resultingClassDistributionFromSplit(i));
+		}
+	}
+
+	private static AttributeSplitSuggestion expectedNominalSuggestion(NominalAttributeClassObserver observer,
+			SplitCriterion criterion, double[] preSplitDist, boolean binaryOnly) {
+		AttributeSplitSuggestion best = null;
+		int maxAttValsObserved = observer.getMaxAttValsObserved();
+		if (!binaryOnly) {
+			double[][] postSplitDists = observer.getClassDistsResultingFromMultiwaySplit(maxAttValsObserved);
+			best = new AttributeSplitSuggestion(
+					new NominalAttributeMultiwayTest(0),
+					postSplitDists, criterion.getMeritOfSplit(preSplitDist, postSplitDists));
+		}
+		for (int valIndex = 0; valIndex < maxAttValsObserved; valIndex++) {
+			double[][] postSplitDists = observer.getClassDistsResultingFromBinarySplit(valIndex);
+			double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+			if (best == null || merit > best.merit) {
+				best = new AttributeSplitSuggestion(new NominalAttributeBinaryTest(0, valIndex), postSplitDists, merit);
+			}
+		}
+		return best;
+	}
+
+	private static AttributeSplitSuggestion expectedVFMLSuggestion(VFMLNumericAttributeClassObserver observer,
+			SplitCriterion criterion, double[] preSplitDist) {
+		AttributeSplitSuggestion best = null;
+		DoubleVector rightDist = new DoubleVector();
+		for (VFMLNumericAttributeClassObserver.Bin bin : observer.binList) {
+			rightDist.addValues(bin.classWeights);
+		}
+		DoubleVector leftDist = new DoubleVector();
+		for (VFMLNumericAttributeClassObserver.Bin bin : observer.binList) {
+			leftDist.addValues(bin.classWeights);
+			rightDist.subtractValues(bin.classWeights);
+			double[][] postSplitDists = new double[][]{leftDist.getArrayCopy(), rightDist.getArrayCopy()};
+			double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+			if (best == null || merit > best.merit) {
+				best = new AttributeSplitSuggestion(new NumericAttributeBinaryTest(0, bin.upperBound, false),
+						postSplitDists, merit);
+			}
+		}
+		return best;
+	}
+
+	private static AttributeSplitSuggestion expectedGreenwaldKhannaSuggestion(
+			GreenwaldKhannaNumericAttributeClassObserver observer, SplitCriterion criterion, double[] preSplitDist) {
+		AttributeSplitSuggestion best = null;
+		for (int i = 0; i < observer.attValDistPerClass.size(); i++) {
+			if (observer.attValDistPerClass.get(i) != null) {
+				for (double cutpoint : observer.attValDistPerClass.get(i).getSuggestedCutpoints()) {
+					double[][] postSplitDists = observer.getClassDistsResultingFromBinarySplit(cutpoint);
+					double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+					if (best == null || merit > best.merit) {
+						best = new AttributeSplitSuggestion(new NumericAttributeBinaryTest(0, cutpoint, true),
+								postSplitDists, merit);
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	@Test
+	public void testNominal() {
+		Random random = new Random(1);
+		SplitEvaluationBuffers buffers = new SplitEvaluationBuffers();
+		for (int numClasses = 2; numClasses <= 4; numClasses++) {
+			NominalAttributeClassObserver observer = new NominalAttributeClassObserver();
+			double[] preSplitDist = new double[numClasses];
+			for (int i = 0; i < 1000; i++) {
+				int classValue = random.nextInt(numClasses);
+				double weight = random.nextInt(3);
+				// the values depend on the class, and the last value is rare
+				int value = random.nextInt(10) == 0 ? random.nextInt(5) : Math.min(classValue + random.nextInt(2), 3);
+				observer.observeAttributeClass(value, classValue, weight);
+				preSplitDist[classValue] += weight;
+				if (i % 50 == 49) {
+					for (SplitCriterion criterion : CRITERIA) {
+						for (boolean binaryOnly : new boolean[]{false, true}) {
+							AttributeSplitSuggestion expected = expectedNominalSuggestion(observer, criterion,
+									preSplitDist, binaryOnly);
+							assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+									preSplitDist, 0, binaryOnly, buffers));
+							assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+									preSplitDist, 0, binaryOnly));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBinaryTree() {
+		Random random = new Random(2);
+		SplitEvaluationBuffers buffers = new SplitEvaluationBuffers();
+		for (int numClasses = 2; numClasses <= 4; numClasses++) {
+			BinaryTreeNumericAttributeClassObserver observer = new BinaryTreeNumericAttributeClassObserver();
+			double[] preSplitDist = new double[numClasses];
+			assertNull(observer.getBestEvaluatedSplitSuggestion(CRITERIA[0], preSplitDist, 0, true, buffers));
+			for (int i = 0; i < 2000; i++) {
+				int classValue = random.nextInt(numClasses);
+				double weight = random.nextInt(3);
+				// repeated values, and a drift so that the tree is deep
+				double value = Math.round((classValue + random.nextGaussian() + i / 200.0) * 10) / 10.0;
+				observer.observeAttributeClass(value, classValue, weight);
+				preSplitDist[classValue] += weight;
+				if (i % 100 == 99) {
+					for (SplitCriterion criterion : CRITERIA) {
+						AttributeSplitSuggestion expected = observer.searchForBestSplitOption(observer.root,
+								null, null, null, null, false, criterion, preSplitDist, 0);
+						assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+								preSplitDist, 0, true, buffers));
+						assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+								preSplitDist, 0, true));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testVFML() {
+		Random random = new Random(3);
+		SplitEvaluationBuffers buffers = new SplitEvaluationBuffers();
+		for (int numClasses = 2; numClasses <= 4; numClasses++) {
+			VFMLNumericAttributeClassObserver observer = new VFMLNumericAttributeClassObserver();
+			observer.numBinsOption.setValue(20);
+			double[] preSplitDist = new double[numClasses];
+			assertNull(observer.getBestEvaluatedSplitSuggestion(CRITERIA[0], preSplitDist, 0, true, buffers));
+			for (int i = 0; i < 2000; i++) {
+				int classValue = random.nextInt(numClasses);
+				double weight = 1 + random.nextInt(3);
+				observer.observeAttributeClass(classValue + random.nextGaussian(), classValue, weight);
+				preSplitDist[classValue] += weight;
+				if (i % 100 == 99) {
+					for (SplitCriterion criterion : CRITERIA) {
+						AttributeSplitSuggestion expected = expectedVFMLSuggestion(observer, criterion, preSplitDist);
+						assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+								preSplitDist, 0, true, buffers));
+						assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+								preSplitDist, 0, true));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGreenwaldKhanna() {
+		Random random = new Random(4);
+		SplitEvaluationBuffers buffers = new SplitEvaluationBuffers();
+		for (int numClasses = 2; numClasses <= 4; numClasses++) {
+			GreenwaldKhannaNumericAttributeClassObserver observer = new GreenwaldKhannaNumericAttributeClassObserver();
+			double[] preSplitDist = new double[numClasses];
+			assertNull(observer.getBestEvaluatedSplitSuggestion(CRITERIA[0], preSplitDist, 0, true, buffers));
+			for (int i = 0; i < 2000; i++) {
+				// the first class is never observed
+				int classValue = 1 + random.nextInt(numClasses - 1);
+				observer.observeAttributeClass(classValue + random.nextGaussian(), classValue, 1.0);
+				preSplitDist[classValue]++;
+				if (i % 100 == 99) {
+					for (SplitCriterion criterion : CRITERIA) {
+						AttributeSplitSuggestion expected = expectedGreenwaldKhannaSuggestion(observer, criterion,
+								preSplitDist);
+						assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+								preSplitDist, 0, true, buffers));
+						assertSameSuggestion(expected, observer.getBestEvaluatedSplitSuggestion(criterion,
+								preSplitDist, 0, true));
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package moa.classifiers.core.attributeclassobservers;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.GiniSplitCriterion;
+import moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+
+import org.junit.Test;
+
+public class GaussianNumericAttributeClassObserverTest {
+
+	/**
+	 * Evaluates every split suggestion with its own distributions, as the
+	 * observer did before it used scratch buffers.
+	 */
+	private static AttributeSplitSuggestion expectedSuggestion(GaussianNumericAttributeClassObserver observer,
+			SplitCriterion criterion, double[] preSplitDist) {
+		AttributeSplitSuggestion best = null;
+		for (double splitValue : observer.getSplitPointSuggestions()) {
+			double[][] postSplitDists = observer.getClassDistsResultingFromBinarySplit(splitValue);
+			double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+			if (best == null || merit > best.merit) {
+				best = new AttributeSplitSuggestion(new NumericAttributeBinaryTest(0, splitValue, true),
+						postSplitDists, merit);
+			}
+		}
+		return best;
+	}
+
+	private static void assertSameSuggestion(AttributeSplitSuggestion expected, AttributeSplitSuggestion actual) {
+		assertEquals(Double.doubleToLongBits(expected.merit), Double.doubleToLongBits(actual.merit));
+		assertEquals(((NumericAttributeBinaryTest) expected.splitTest).getSplitValue(),
+				((NumericAttributeBinaryTest) actual.splitTest).getSplitValue(), 0.0);
+		assertEquals(expected.numSplits(), actual.numSplits());
+		for (int i = 0; i < expected.numSplits(); i++) {
+			assertArrayEquals(expected.resultingClassDistributionFromSplit(i),
+					actual.resultingClassDistributionFromSplit(i), 0.0);
+		}
+	}
+
+	@Test
+	public void testBestSplitMatchesEvaluationOfEverySplit() {
+		Random random = new Random(1);
+		SplitCriterion[] criteria = {new InfoGainSplitCriterion(), new GiniSplitCriterion()};
+		// shared by observers with different numbers of classes, as in a tree
+		SplitEvaluationBuffers buffers = new SplitEvaluationBuffers();
+		for (int numClasses = 5; numClasses >= 2; numClasses--) {
+			GaussianNumericAttributeClassObserver observer = new GaussianNumericAttributeClassObserver();
+			double[] preSplitDist = new double[numClasses];
+			for (int i = 0; i < 2000; i++) {
+				// the first class is never observed
+				int classValue = 1 + random.nextInt(numClasses - 1);
+				double weight = 1 + random.nextInt(3);
+				observer.observeAttributeClass(classValue * 0.5 + random.nextGaussian(), classValue, weight);
+				preSplitDist[classValue] += weight;
+				if (i % 50 == 49) {
+					for (SplitCriterion criterion : criteria) {
+						AttributeSplitSuggestion expected = expectedSuggestion(observer, criterion, preSplitDist);
+						assertSameSuggestion(expected,
+								observer.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true));
+						assertSameSuggestion(expected,
+								observer.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true, buffers));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNoSplitWithSingleValue() {
+		GaussianNumericAttributeClassObserver observer = new GaussianNumericAttributeClassObserver();
+		observer.observeAttributeClass(1.0, 0, 1.0);
+		observer.observeAttributeClass(1.0, 1, 1.0);
+		assertEquals(0, observer.getSplitPointSuggestions().length);
+		assertNull(observer.getBestEvaluatedSplitSuggestion(new InfoGainSplitCriterion(),
+				new double[]{1.0, 1.0}, 0, true));
+	}
+}
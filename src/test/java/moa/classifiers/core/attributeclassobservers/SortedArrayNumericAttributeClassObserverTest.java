@@ -0,0 +1,249 @@
+package moa.classifiers.core.attributeclassobservers;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.GiniSplitCriterion;
+import moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+
+import org.junit.Test;
+
+public class SortedArrayNumericAttributeClassObserverTest {
+
+	private static double splitValue(AttributeSplitSuggestion suggestion) {
+		return ((NumericAttributeBinaryTest) suggestion.splitTest).getSplitValue();
+	}
+
+	private static void assertSameDist(double[] expected, double[] actual) {
+		for (int i = 0; i < Math.max(expected.length, actual.length); i++) {
+			assertEquals(i < expected.length ? expected[i] : 0.0, i < actual.length ? actual[i] : 0.0, 0.0);
+		}
+	}
+
+	private static void assertSameSuggestion(AttributeSplitSuggestion expected, AttributeSplitSuggestion actual) {
+		assertEquals(Double.doubleToLongBits(expected.merit), Double.doubleToLongBits(actual.merit));
+		assertEquals(splitValue(expected), splitValue(actual), 0.0);
+		for (int i = 0; i < 2; i++) {
+			assertSameDist(expected.resultingClassDistributionFromSplit(i), actual.resultingClassDistributionFromSplit(i));
+		}
+	}
+
+	@Test
+	public void testSameSplitsAsBinaryTree() {
+		Random random = new Random(1);
+		SplitCriterion[] criteria = {new InfoGainSplitCriterion(), new GiniSplitCriterion()};
+		for (int numClasses = 2; numClasses <= 4; numClasses++) {
+			BinaryTreeNumericAttributeClassObserver tree = new BinaryTreeNumericAttributeClassObserver();
+			SortedArrayNumericAttributeClassObserver array = new SortedArrayNumericAttributeClassObserver();
+			double[] preSplitDist = new double[numClasses];
+			for (int i = 0; i < 3000; i++) {
+				int classValue = random.nextInt(numClasses);
+				// few distinct values, which are observed several times
+				double value = Math.round((classValue + random.nextGaussian()) * 20) / 20.0;
+				double weight = random.nextInt(3);
+				tree.observeAttributeClass(value, classValue, weight);
+				array.observeAttributeClass(value, classValue, weight);
+				preSplitDist[classValue] += weight;
+				if (i % 100 == 99) {
+					for (SplitCriterion criterion : criteria) {
+						assertSameSuggestion(tree.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true),
+								array.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTiesGoToTheSplitVisitedFirstByBinaryTree() {
+		// the splits at 3 and at 7 have the same merit, and the binary tree,
+		// with 5 at its root, visits 3 before 7
+		double[] values = {5, 7, 3, 9};
+		int[] classes = {1, 1, 0, 0};
+		BinaryTreeNumericAttributeClassObserver tree = new BinaryTreeNumericAttributeClassObserver();
+		SortedArrayNumericAttributeClassObserver array = new SortedArrayNumericAttributeClassObserver();
+		double[] preSplitDist = new double[2];
+		for (int i = 0; i < values.length; i++) {
+			tree.observeAttributeClass(values[i], classes[i], 1.0);
+			array.observeAttributeClass(values[i], classes[i], 1.0);
+			preSplitDist[classes[i]]++;
+		}
+		AttributeSplitSuggestion suggestion = array.getBestEvaluatedSplitSuggestion(
+				new InfoGainSplitCriterion(), preSplitDist, 0, true);
+		assertEquals(3.0, splitValue(suggestion), 0.0);
+		assertSameSuggestion(tree.getBestEvaluatedSplitSuggestion(new InfoGainSplitCriterion(), preSplitDist, 0, true),
+				suggestion);
+	}
+
+	@Test
+	public void testTiesInRandomOrders() {
+		Random random = new Random(3);
+		SplitCriterion[] criteria = {new InfoGainSplitCriterion(), new GiniSplitCriterion()};
+		for (int run = 0; run < 200; run++) {
+			// a periodic class pattern, so that many splits have the same merit
+			int numValues = 8 + random.nextInt(24);
+			int[] values = new int[numValues];
+			for (int i = 0; i < numValues; i++) {
+				values[i] = i;
+			}
+			for (int i = numValues - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int value = values[i];
+				values[i] = values[j];
+				values[j] = value;
+			}
+			BinaryTreeNumericAttributeClassObserver tree = new BinaryTreeNumericAttributeClassObserver();
+			SortedArrayNumericAttributeClassObserver array = new SortedArrayNumericAttributeClassObserver();
+			double[] preSplitDist = new double[2];
+			for (int value : values) {
+				int classValue = (value / 2) % 2;
+				tree.observeAttributeClass(value, classValue, 1.0);
+				array.observeAttributeClass(value, classValue, 1.0);
+				preSplitDist[classValue]++;
+			}
+			for (SplitCriterion criterion : criteria) {
+				assertSameSuggestion(tree.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true),
+						array.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true));
+			}
+		}
+	}
+
+	@Test
+	public void testProbabilityOfAttributeValueGivenClass() {
+		SortedArrayNumericAttributeClassObserver array = new SortedArrayNumericAttributeClassObserver();
+		GaussianNumericAttributeClassObserver gaussian = new GaussianNumericAttributeClassObserver();
+		Random random = new Random(4);
+		for (int i = 0; i < 1000; i++) {
+			int classValue = random.nextInt(3);
+			double value = classValue * 2 + random.nextGaussian();
+			array.observeAttributeClass(value, classValue, 1.0);
+			gaussian.observeAttributeClass(value, classValue, 1.0);
+		}
+		for (int classValue = 0; classValue < 4; classValue++) {
+			for (double value = -2; value < 7; value += 0.5) {
+				assertEquals(gaussian.probabilityOfAttributeValueGivenClass(value, classValue),
+						array.probabilityOfAttributeValueGivenClass(value, classValue), 0.0);
+			}
+		}
+		assertTrue(array.probabilityOfAttributeValueGivenClass(2.0, 1) > array.probabilityOfAttributeValueGivenClass(2.0, 0));
+	}
+
+	@Test
+	public void testSortedValues() {
+		SortedArrayNumericAttributeClassObserver observer = new SortedArrayNumericAttributeClassObserver();
+		double[] preSplitDist = new double[2];
+		for (int i = 0; i < 100000; i++) {
+			int classValue = i < 60000 ? 0 : 1;
+			observer.observeAttributeClass(i, classValue, 1.0);
+			preSplitDist[classValue]++;
+		}
+		assertEquals(100000, observer.getNumCutPoints());
+		AttributeSplitSuggestion suggestion = observer.getBestEvaluatedSplitSuggestion(
+				new InfoGainSplitCriterion(), preSplitDist, 0, true);
+		assertEquals(59999.0, splitValue(suggestion), 0.0);
+		assertSameDist(new double[]{60000, 0}, suggestion.resultingClassDistributionFromSplit(0));
+		assertSameDist(new double[]{0, 40000}, suggestion.resultingClassDistributionFromSplit(1));
+	}
+
+	@Test
+	public void testMaxCutPoints() {
+		SortedArrayNumericAttributeClassObserver bounded = new SortedArrayNumericAttributeClassObserver();
+		bounded.maxCutPointsOption.setValue(50);
+		SortedArrayNumericAttributeClassObserver unbounded = new SortedArrayNumericAttributeClassObserver();
+		Random random = new Random(2);
+		double[] preSplitDist = new double[2];
+		for (int i = 0; i < 5000; i++) {
+			int classValue = random.nextInt(2);
+			double value = i < 40 ? i : classValue * 10 + random.nextGaussian();
+			bounded.observeAttributeClass(value, classValue, 1.0);
+			unbounded.observeAttributeClass(value, classValue, 1.0);
+			preSplitDist[classValue]++;
+			if (i < 50) {
+				// no merge within the budget
+				assertSameSuggestion(unbounded.getBestEvaluatedSplitSuggestion(new InfoGainSplitCriterion(), preSplitDist, 0, true),
+						bounded.getBestEvaluatedSplitSuggestion(new InfoGainSplitCriterion(), preSplitDist, 0, true));
+			}
+		}
+		assertEquals(50, bounded.getNumCutPoints());
+		AttributeSplitSuggestion suggestion = bounded.getBestEvaluatedSplitSuggestion(
+				new InfoGainSplitCriterion(), preSplitDist, 0, true);
+		// the classes are still separated, and no weight is lost
+		assertTrue(splitValue(suggestion) > 2 && splitValue(suggestion) < 8);
+		assertEquals(5000, suggestion.resultingClassDistributionFromSplit(0)[0] + suggestion.resultingClassDistributionFromSplit(0)[1]
+				+ suggestion.resultingClassDistributionFromSplit(1)[0] + suggestion.resultingClassDistributionFromSplit(1)[1], 0.0);
+	}
+
+	/**
+	 * Merges the closest cut points found by scanning all of them.
+	 */
+	private static class ScanningObserver extends SortedArrayNumericAttributeClassObserver {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void mergeClosestCutPoints() {
+			int merged = 0;
+			double smallestGap = Double.POSITIVE_INFINITY;
+			for (int i = 0; i + 1 < this.numCutPoints; i++) {
+				double gap = this.cutPoints[i + 1] - this.cutPoints[i];
+				if (gap < smallestGap) {
+					smallestGap = gap;
+					merged = i;
+				}
+			}
+			int stride = this.classCountsStride;
+			for (int c = 0; c < stride; c++) {
+				this.classCounts[(merged + 1) * stride + c] += this.classCounts[merged * stride + c];
+			}
+			this.observationOrder[merged + 1] = Math.min(this.observationOrder[merged],
+					this.observationOrder[merged + 1]);
+			int numMoved = this.numCutPoints - merged - 1;
+			System.arraycopy(this.cutPoints, merged + 1, this.cutPoints, merged, numMoved);
+			System.arraycopy(this.observationOrder, merged + 1, this.observationOrder, merged, numMoved);
+			System.arraycopy(this.classCounts, (merged + 1) * stride, this.classCounts,
+					merged * stride, numMoved * stride);
+			this.numCutPoints--;
+		}
+	}
+
+	@Test
+	public void testMergesTheClosestCutPoints() {
+		for (int seed = 0; seed < 5; seed++) {
+			SortedArrayNumericAttributeClassObserver observer = new SortedArrayNumericAttributeClassObserver();
+			SortedArrayNumericAttributeClassObserver scanning = new ScanningObserver();
+			observer.maxCutPointsOption.setValue(20 + seed);
+			scanning.maxCutPointsOption.setValue(20 + seed);
+			Random random = new Random(seed);
+			for (int i = 0; i < 5000; i++) {
+				// integer values half of the time, with many equal gaps
+				double value = random.nextBoolean() ? random.nextInt(200)
+						: random.nextGaussian() * 50;
+				int classValue = random.nextInt(3);
+				observer.observeAttributeClass(value, classValue, 1.0);
+				scanning.observeAttributeClass(value, classValue, 1.0);
+				assertEquals(scanning.numCutPoints, observer.numCutPoints);
+				for (int j = 0; j < observer.numCutPoints; j++) {
+					assertEquals(scanning.cutPoints[j], observer.cutPoints[j], 0.0);
+					assertEquals(scanning.observationOrder[j], observer.observationOrder[j]);
+				}
+				for (int j = 0; j < observer.numCutPoints * observer.classCountsStride; j++) {
+					assertEquals(scanning.classCounts[j], observer.classCounts[j], 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDescription() {
+		SortedArrayNumericAttributeClassObserver observer = new SortedArrayNumericAttributeClassObserver();
+		observer.observeAttributeClass(1.0, 0, 1.0);
+		observer.observeAttributeClass(3.0, 1, 1.0);
+		StringBuilder sb = new StringBuilder();
+		observer.getDescription(sb, 0);
+		assertEquals("Sorted array of 2 cut points from 1 to 3, 2 classes", sb.toString());
+	}
+}
@@ -0,0 +1,149 @@
+package moa.classifiers.core.driftdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import moa.core.StructuralCopier;
+
+import org.junit.Test;
+
+/**
+ * Replays 0/1 error streams and real-valued streams, and compares the
+ * detections and the final state of the window with the ones obtained with
+ * the previous implementation, which stored the buckets in a linked list.
+ */
+public class ADWINTest {
+
+	private static final double[] ERROR_RATES = {0.1, 0.3, 0.05, 0.5, 0.2};
+
+	private static double[] errorStream(long seed, int length, int segment) {
+		Random random = new Random(seed);
+		double[] stream = new double[length];
+		for (int i = 0; i < length; i++) {
+			stream[i] = random.nextDouble() < ERROR_RATES[(i / segment) % ERROR_RATES.length] ? 1 : 0;
+		}
+		return stream;
+	}
+
+	private static double[] gaussianStream(long seed, int length, int segment) {
+		Random random = new Random(seed);
+		double[] stream = new double[length];
+		for (int i = 0; i < length; i++) {
+			stream[i] = ((i / segment) % 3) * 0.5 + random.nextGaussian();
+		}
+		return stream;
+	}
+
+	private static List<Integer> replay(ADWIN adwin, double[] stream, int from, int to) {
+		List<Integer> detections = new ArrayList<Integer>();
+		for (int i = from; i < to; i++) {
+			if (adwin.setInput(stream[i])) {
+				detections.add(i);
+			}
+		}
+		return detections;
+	}
+
+	private static void assertReplay(ADWIN adwin, double[] stream, int[] expectedDetections,
+			int width, int bucketsUsed, long estimation, long variance) {
+		List<Integer> detections = replay(adwin, stream, 0, stream.length);
+		assertEquals(expectedDetections.length, detections.size());
+		for (int i = 0; i < expectedDetections.length; i++) {
+			assertEquals(expectedDetections[i], detections.get(i).intValue());
+		}
+		assertEquals(expectedDetections.length, adwin.getNumberDetections());
+		assertEquals(width, adwin.getWidth());
+		assertEquals(bucketsUsed, adwin.getBucketsUsed());
+		assertEquals(estimation, Double.doubleToLongBits(adwin.getEstimation()));
+		assertEquals(variance, Double.doubleToLongBits(adwin.getVariance()));
+	}
+
+	@Test
+	public void testDefaultDelta() {
+		assertReplay(new ADWIN(0.002), errorStream(1, 20000, 2500), new int[]{
+				2623, 2655, 2687, 2719, 2751, 3039, 5119, 5151, 5183, 5215, 7551, 7583, 10111, 10207,
+				10239, 10335, 12863, 12927, 13023, 13631, 15103, 15135, 15231, 17599, 17631, 17663,
+				17759, 17823},
+				2496, 39748, 4587724558871506419L, 4587327583848878914L);
+	}
+
+	@Test
+	public void testDriftAndWarningDeltas() {
+		assertReplay(new ADWIN(1e-5), errorStream(2, 20000, 2500), new int[]{
+				2623, 2655, 2719, 2911, 5183, 5215, 5535, 7551, 7583, 7615, 7711, 10175, 10207, 10239,
+				10271, 10335, 12959, 13087, 13119, 13375, 15263, 15295, 15423, 15615, 17695, 17727,
+				17759, 17791, 18079},
+				2496, 39780, 4587666820414745259L, 4587275882947091623L);
+		assertReplay(new ADWIN(1e-4), errorStream(3, 20000, 2500), new int[]{
+				2623, 2655, 2687, 2719, 3007, 5151, 5183, 5247, 5375, 5663, 7551, 7583, 7647, 10111,
+				10143, 10175, 10943, 12863, 12959, 12991, 13471, 15103, 15135, 15199, 15423, 17695,
+				17727, 17759, 17887, 18303},
+				2464, 39764, 4587588836005613302L, 4587205979714555405L);
+	}
+
+	@Test
+	public void testRealValues() {
+		assertReplay(new ADWIN(0.002), gaussianStream(4, 20000, 3000), new int[]{
+				3167, 3199, 3423, 6111, 6143, 6175, 6207, 6303, 6399, 9055, 9119, 12095, 12159, 15071,
+				15103, 15135, 15167, 15263, 18047, 18079},
+				2016, 39743, 4577895412921956895L, 4607259308022462485L);
+	}
+
+	@Test
+	public void testClock() {
+		ADWIN adwin = new ADWIN(0.1);
+		adwin.setClock(1);
+		assertReplay(adwin, errorStream(5, 5000, 700), new int[]{
+				753, 755, 757, 791, 802, 905, 1447, 1458, 2117, 2122, 2123, 2129, 2132, 2136, 2847,
+				2863, 3751, 3790, 4295, 4299, 4375, 4951, 4993},
+				176, 9803, 4593876328991877306L, 4592850457382543220L);
+	}
+
+	@Test
+	public void testInputsBeforeCheck() {
+		double[] stream = errorStream(7, 20000, 2500);
+		for (int clock : new int[]{32, 5, 1}) {
+			ADWIN single = new ADWIN(0.002);
+			ADWIN batched = new ADWIN(0.002);
+			single.setClock(clock);
+			batched.setClock(clock);
+			List<Integer> detections = replay(single, stream, 0, stream.length);
+			List<Integer> batchDetections = new ArrayList<Integer>();
+			Random random = new Random(clock);
+			int next = 0;
+			while (next < stream.length) {
+				int count = Math.min(1 + random.nextInt(64), stream.length - next);
+				long bits = 0;
+				for (int i = 0; i < count; i++) {
+					bits |= (long) stream[next + i] << i;
+				}
+				next += batched.setInputsBeforeCheck(bits, count);
+				if (next < stream.length && batched.setInput(stream[next])) {
+					batchDetections.add(next);
+				}
+				next++;
+			}
+			assertEquals(detections, batchDetections);
+			assertEquals(single.getWidth(), batched.getWidth());
+			assertEquals(single.getBucketsUsed(), batched.getBucketsUsed());
+			assertEquals(Double.doubleToLongBits(single.getEstimation()),
+					Double.doubleToLongBits(batched.getEstimation()));
+			assertEquals(Double.doubleToLongBits(single.getVariance()),
+					Double.doubleToLongBits(batched.getVariance()));
+		}
+	}
+
+	@Test
+	public void testCopy() {
+		double[] stream = errorStream(6, 20000, 2500);
+		ADWIN adwin = new ADWIN(0.002);
+		replay(adwin, stream, 0, 10000);
+		ADWIN copy = new StructuralCopier().copy(adwin);
+		assertEquals(replay(adwin, stream, 10000, 20000), replay(copy, stream, 10000, 20000));
+		assertEquals(adwin.getWidth(), copy.getWidth());
+		assertEquals(adwin.getEstimation(), copy.getEstimation(), 0.0);
+	}
+}
@@ -0,0 +1,198 @@
+package moa.classifiers.core.driftdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Gives the same error streams to a bank and to separate detectors, and
+ * checks that they detect the same changes and warnings and have the same
+ * estimations, including when detectors are reset.
+ */
+public class ChangeDetectorBankTest {
+
+	private static final int SIZE = 25;
+
+	private static final int LENGTH = 20000;
+
+	/**
+	 * Error streams whose error rate changes at a different time for each
+	 * detector.
+	 */
+	private static double[][] errorStreams(long seed) {
+		Random random = new Random(seed);
+		double[][] streams = new double[LENGTH][SIZE];
+		for (int d = 0; d < SIZE; d++) {
+			int segment = 1000 + 150 * d;
+			for (int i = 0; i < LENGTH; i++) {
+				double rate = (i / segment) % 2 == 0 ? 0.1 + 0.01 * d : 0.4;
+				streams[i][d] = random.nextDouble() < rate ? 1 : 0;
+			}
+		}
+		return streams;
+	}
+
+	/**
+	 * Returns the number of changes detected.
+	 */
+	private static int assertSameAsDetectors(ChangeDetector prototype, double[][] streams) {
+		ChangeDetectorBank bank = ChangeDetectorBank.newBank(prototype, SIZE);
+		ChangeDetectorBank single = ChangeDetectorBank.newBank(prototype, SIZE);
+		ChangeDetector[] detectors = new ChangeDetector[SIZE];
+		for (int d = 0; d < SIZE; d++) {
+			detectors[d] = prototype.copy();
+		}
+		BitSet changes = new BitSet();
+		BitSet warnings = new BitSet();
+		int numChanges = 0;
+		for (int i = 0; i < streams.length; i++) {
+			boolean change = bank.input(streams[i], changes, warnings);
+			assertEquals(!changes.isEmpty(), change);
+			for (int d = 0; d < SIZE; d++) {
+				detectors[d].input(streams[i][d]);
+				int state = single.input(d, streams[i][d]);
+				assertEquals("change " + d + " at " + i, detectors[d].getChange(), changes.get(d));
+				assertEquals(detectors[d].getChange(), (state & ChangeDetectorBank.DETECTED_CHANGE) != 0);
+				assertEquals(detectors[d].getWarningZone(), (state & ChangeDetectorBank.WARNING_ZONE) != 0);
+				assertEquals("warning " + d + " at " + i, detectors[d].getWarningZone(), warnings.get(d));
+				assertEquals("estimation " + d + " at " + i,
+						Double.doubleToLongBits(detectors[d].getEstimation()),
+						Double.doubleToLongBits(bank.getEstimation(d)));
+				if (changes.get(d)) {
+					numChanges++;
+				}
+			}
+			// detectors of ensembles are reset when their member is replaced
+			if (i % 3001 == 3000) {
+				int d = (i / 3001) % SIZE;
+				detectors[d].resetLearning();
+				bank.resetLearning(d);
+				single.resetLearning(d);
+			}
+		}
+		return numChanges;
+	}
+
+	@Test
+	public void testDDM() {
+		assertTrue(assertSameAsDetectors(new DDM(), errorStreams(1)) > 0);
+	}
+
+	@Test
+	public void testPageHinkleyDM() {
+		PageHinkleyDM ph = new PageHinkleyDM();
+		ph.lambdaOption.setValue(20);
+		ph.resetLearning();
+		assertTrue(assertSameAsDetectors(ph, errorStreams(2)) > 0);
+	}
+
+	@Test
+	public void testHDDM_A_Test() {
+		assertTrue(assertSameAsDetectors(new HDDM_A_Test(), errorStreams(3)) > 0);
+		HDDM_A_Test oneSided = new HDDM_A_Test();
+		oneSided.oneSidedTestOption.setChosenIndex(0);
+		assertTrue(assertSameAsDetectors(oneSided, errorStreams(4)) > 0);
+	}
+
+	@Test
+	public void testGeneric() {
+		ChangeDetector eddm = new EDDM();
+		assertTrue(ChangeDetectorBank.newBank(eddm, SIZE) instanceof GenericChangeDetectorBank);
+		assertTrue(assertSameAsDetectors(eddm, errorStreams(5)) > 0);
+	}
+
+	@Test
+	public void testDescription() {
+		ChangeDetectorBank bank = ChangeDetectorBank.newBank(new DDM(), 2);
+		bank.input(0, 1.0);
+		StringBuilder sb = new StringBuilder();
+		bank.getDescription(sb, 0);
+		assertTrue(sb.toString().startsWith("DDMBank of 2 detectors"));
+		assertTrue(sb.toString().contains("detector 1 estimation"));
+	}
+
+	@Test
+	public void testInputOfSomeDetectors() {
+		PageHinkleyDM ph = new PageHinkleyDM();
+		ph.lambdaOption.setValue(20);
+		ph.resetLearning();
+		ChangeDetector[] prototypes = {new DDM(), ph, new HDDM_A_Test(),
+			new EDDM(), new ADWINChangeDetector()};
+		for (ChangeDetector prototype : prototypes) {
+			assertTrue(prototype.getClass().getSimpleName(),
+					assertSomeSameAsOne(prototype, errorStreams(7)) > 0);
+		}
+	}
+
+	/**
+	 * Gives their inputs to some detectors of a bank at once, and one at a
+	 * time to the detectors of another bank. Returns the number of changes
+	 * detected.
+	 */
+	private static int assertSomeSameAsOne(ChangeDetector prototype, double[][] streams) {
+		ChangeDetectorBank some = ChangeDetectorBank.newBank(prototype, SIZE);
+		ChangeDetectorBank one = ChangeDetectorBank.newBank(prototype, SIZE);
+		BitSet active = new BitSet();
+		BitSet changes = new BitSet();
+		BitSet warnings = new BitSet();
+		int numChanges = 0;
+		for (int i = 0; i < streams.length; i++) {
+			active.clear();
+			for (int d = 0; d < SIZE; d++) {
+				if ((i + d) % 3 != 0) {
+					active.set(d);
+				}
+			}
+			some.input(streams[i], active, changes, warnings);
+			for (int d = 0; d < SIZE; d++) {
+				int state = active.get(d) ? one.input(d, streams[i][d]) : 0;
+				boolean change = (state & ChangeDetectorBank.DETECTED_CHANGE) != 0;
+				assertEquals("change " + d + " at " + i, change, changes.get(d));
+				assertEquals("warning " + d + " at " + i,
+						(state & ChangeDetectorBank.WARNING_ZONE) != 0, warnings.get(d));
+				assertEquals(Double.doubleToLongBits(one.getEstimation(d)),
+						Double.doubleToLongBits(some.getEstimation(d)));
+				if (change) {
+					numChanges++;
+				}
+			}
+		}
+		return numChanges;
+	}
+
+	@Test
+	public void testADWIN() {
+		ADWINChangeDetector detector = new ADWINChangeDetector();
+		detector.deltaAdwinOption.setValue(0.01);
+		ChangeDetectorBank bank = ChangeDetectorBank.newBank(detector, SIZE);
+		assertTrue(bank instanceof ADWINBank);
+		// same as the ADWIN windows of OzaBagAdwin and LeveragingBag
+		ADWIN[] windows = new ADWIN[SIZE];
+		for (int d = 0; d < SIZE; d++) {
+			windows[d] = new ADWIN(0.01);
+		}
+		double[][] streams = errorStreams(6);
+		BitSet changes = new BitSet();
+		int numChanges = 0;
+		for (int i = 0; i < streams.length; i++) {
+			bank.input(streams[i], changes, null);
+			for (int d = 0; d < SIZE; d++) {
+				double estimation = windows[d].getEstimation();
+				boolean change = windows[d].setInput(streams[i][d])
+						&& windows[d].getEstimation() > estimation;
+				assertEquals("change " + d + " at " + i, change, changes.get(d));
+				assertEquals(Double.doubleToLongBits(windows[d].getEstimation()),
+						Double.doubleToLongBits(bank.getEstimation(d)));
+				if (change) {
+					numChanges++;
+					windows[d] = new ADWIN(0.01);
+					bank.resetLearning(d);
+				}
+			}
+		}
+		assertTrue(numChanges > 0);
+	}
+}
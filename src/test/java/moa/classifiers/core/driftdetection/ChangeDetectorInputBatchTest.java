@@ -0,0 +1,108 @@
+package moa.classifiers.core.driftdetection;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Gives the same 0/1 streams to a detector one value at a time and to a copy
+ * in batches of random sizes, and checks that the batches stop at the values
+ * after which a change or a warning is signalled, with the same estimations.
+ */
+public class ChangeDetectorInputBatchTest {
+
+	private static final double[] ERROR_RATES = {0.02, 0.3, 0.1, 0.5, 0.05};
+
+	private static int[] errorStream(long seed, int length, int segment) {
+		Random random = new Random(seed);
+		int[] stream = new int[length];
+		for (int i = 0; i < length; i++) {
+			stream[i] = random.nextDouble() < ERROR_RATES[(i / segment) % ERROR_RATES.length] ? 1 : 0;
+		}
+		return stream;
+	}
+
+	/**
+	 * Returns the number of values after which a change was detected.
+	 */
+	private static int assertSameAsInput(ChangeDetector prototype, long seed) {
+		int[] stream = errorStream(seed, 50000, 4000);
+		Random random = new Random(seed);
+		ChangeDetector single = prototype.copy();
+		ChangeDetector batched = prototype.copy();
+		List<Integer> expected = new ArrayList<Integer>();
+		List<Integer> stops = new ArrayList<Integer>();
+		int numChanges = 0;
+		int next = 0;
+		while (next < stream.length) {
+			int count = Math.min(1 + random.nextInt(64), stream.length - next);
+			long bits = 0;
+			for (int i = 0; i < count; i++) {
+				bits |= (long) stream[next + i] << i;
+			}
+			int stop = batched.inputBatch(bits, count);
+			int added = stop < 0 ? count : stop + 1;
+			for (int i = 0; i < added; i++) {
+				single.input(stream[next + i]);
+				if (single.getChange() || single.getWarningZone()) {
+					expected.add(next + i);
+				}
+			}
+			if (stop >= 0) {
+				stops.add(next + stop);
+			}
+			next += added;
+			assertEquals("stops before " + next, expected, stops);
+			assertEquals(single.getChange(), batched.getChange());
+			assertEquals(single.getWarningZone(), batched.getWarningZone());
+			assertEquals("estimation at " + next, Double.doubleToLongBits(single.getEstimation()),
+					Double.doubleToLongBits(batched.getEstimation()));
+			if (single.getChange()) {
+				numChanges++;
+				// as the ensembles do, replace the detector after a change
+				single = prototype.copy();
+				batched = prototype.copy();
+			}
+		}
+		return numChanges;
+	}
+
+	@Test
+	public void testEmptyBatch() {
+		DDM ddm = new DDM();
+		assertEquals(-1, ddm.inputBatch(0, 0));
+		assertEquals(0.0, ddm.getEstimation(), 0.0);
+	}
+
+	@Test
+	public void testDDM() {
+		assertTrue(assertSameAsInput(new DDM(), 1) > 0);
+	}
+
+	@Test
+	public void testEDDM() {
+		assertTrue(assertSameAsInput(new EDDM(), 2) > 0);
+	}
+
+	@Test
+	public void testHDDM_A_Test() {
+		assertTrue(assertSameAsInput(new HDDM_A_Test(), 3) > 0);
+		HDDM_A_Test oneSided = new HDDM_A_Test();
+		oneSided.oneSidedTestOption.setChosenIndex(0);
+		assertTrue(assertSameAsInput(oneSided, 4) > 0);
+	}
+
+	@Test
+	public void testADWIN() {
+		assertTrue(assertSameAsInput(new ADWINChangeDetector(), 5) > 0);
+	}
+
+	@Test
+	public void testSEED() {
+		assertTrue(assertSameAsInput(new SEEDChangeDetector(), 6) > 0);
+	}
+}
@@ -0,0 +1,55 @@
+package moa.classifiers.core.splitcriteria;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BatchSplitCriterionTest {
+
+	private static void assertSameMerits(BatchSplitCriterion criterion, int numBranches, int numClasses) {
+		Random random = new Random(numBranches * 31 + numClasses);
+		int numSplits = 20;
+		double[] preSplitDist = new double[numClasses];
+		double[] postSplitDists = new double[numSplits * numBranches * numClasses];
+		for (int i = 0; i < postSplitDists.length; i++) {
+			// empty classes and nearly empty branches
+			postSplitDists[i] = random.nextInt(4) == 0 ? 0.0 : random.nextDouble() * (i % 7 == 0 ? 0.01 : 100);
+			if (i < numClasses * numBranches) {
+				preSplitDist[i % numClasses] += postSplitDists[i];
+			}
+		}
+		double[] merits = new double[numSplits];
+		criterion.getMeritsOfSplits(preSplitDist, postSplitDists, numSplits, numBranches, numClasses, merits);
+		for (int split = 0; split < numSplits; split++) {
+			double[][] dists = new double[numBranches][numClasses];
+			for (int b = 0; b < numBranches; b++) {
+				System.arraycopy(postSplitDists, (split * numBranches + b) * numClasses, dists[b], 0, numClasses);
+			}
+			assertEquals(Double.doubleToLongBits(criterion.getMeritOfSplit(preSplitDist, dists)),
+					Double.doubleToLongBits(merits[split]));
+		}
+	}
+
+	@Test
+	public void testInfoGainBatchMatchesSingleSplits() {
+		InfoGainSplitCriterion criterion = new InfoGainSplitCriterion();
+		criterion.minBranchFracOption.setValue(0.1);
+		for (int numBranches = 2; numBranches <= 3; numBranches++) {
+			for (int numClasses = 1; numClasses <= 6; numClasses++) {
+				assertSameMerits(criterion, numBranches, numClasses);
+			}
+		}
+	}
+
+	@Test
+	public void testGiniBatchMatchesSingleSplits() {
+		GiniSplitCriterion criterion = new GiniSplitCriterion();
+		for (int numBranches = 2; numBranches <= 3; numBranches++) {
+			for (int numClasses = 1; numClasses <= 6; numClasses++) {
+				assertSameMerits(criterion, numBranches, numClasses);
+			}
+		}
+	}
+}
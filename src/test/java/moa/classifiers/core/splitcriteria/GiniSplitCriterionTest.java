@@ -0,0 +1,29 @@
+package moa.classifiers.core.splitcriteria;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class GiniSplitCriterionTest {
+
+	@Test
+	public void testEmptyBranchAddsNothing() {
+		GiniSplitCriterion criterion = new GiniSplitCriterion();
+		double[] preSplitDist = {3, 1};
+		double merit = criterion.getMeritOfSplit(preSplitDist,
+				new double[][]{{3, 1}, {}});
+		// 1 - (4/4)(1 - 9/16 - 1/16)
+		assertEquals(1.0 - 0.375, merit, 1e-12);
+		// an empty branch stored as zeros gave NaN
+		assertEquals(merit, criterion.getMeritOfSplit(preSplitDist,
+				new double[][]{{3, 1}, {0, 0}}), 0.0);
+		assertEquals(merit, criterion.getMeritOfSplit(preSplitDist,
+				new double[][]{{0, 0}, {3, 1}}), 0.0);
+
+		double[] merits = new double[2];
+		criterion.getMeritsOfSplits(preSplitDist, new double[]{3, 1, 0, 0, 0, 0, 3, 1},
+				2, 2, 2, merits);
+		assertEquals(merit, merits[0], 0.0);
+		assertEquals(merit, merits[1], 0.0);
+	}
+}
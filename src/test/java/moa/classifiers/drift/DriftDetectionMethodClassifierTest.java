@@ -19,10 +19,16 @@
  */
 package moa.classifiers.drift;
 
+import java.util.Arrays;
+import java.util.Random;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import moa.classifiers.AbstractMultipleClassifierTestCase;
 import moa.classifiers.Classifier;
+import moa.streams.ConceptDriftStream;
 
 /**
  * Tests the DriftDetectionMethodClassifier classifier.
@@ -55,6 +61,49 @@ public class DriftDetectionMethodClassifierTest
     };
   }
   
+  /**
+   * Trains a classifier one instance at a time and another one in batches
+   * of random sizes, and checks that they detect the same changes and
+   * warnings and end with the same model.
+   */
+  public void testBatchTrainingMatchesSingleInstances() {
+    String[] detectors = {"DDM", "EDDM", "HDDM_A_Test", "ADWINChangeDetector"};
+    for (String detector : detectors) {
+      DriftDetectionMethodClassifier single = new DriftDetectionMethodClassifier();
+      DriftDetectionMethodClassifier batched = new DriftDetectionMethodClassifier();
+      ConceptDriftStream stream = new ConceptDriftStream();
+      stream.streamOption.setValueViaCLIString("generators.AgrawalGenerator -f 1");
+      stream.driftstreamOption.setValueViaCLIString("generators.AgrawalGenerator -f 5");
+      stream.positionOption.setValue(5000);
+      stream.widthOption.setValue(100);
+      stream.prepareForUse();
+      for (DriftDetectionMethodClassifier classifier : new DriftDetectionMethodClassifier[]{single, batched}) {
+        classifier.driftDetectionMethodOption.setValueViaCLIString(detector);
+        classifier.prepareForUse();
+        classifier.setModelContext(stream.getHeader());
+      }
+      Random random = new Random(1);
+      for (int n = 0; n < 10000; ) {
+        Instance[] batch = new Instance[1 + random.nextInt(300)];
+        for (int i = 0; i < batch.length; i++) {
+          batch[i] = (Instance) stream.nextInstance().getData();
+          single.trainOnInstance(batch[i]);
+        }
+        batched.trainOnInstances(batch);
+        n += batch.length;
+      }
+      assertTrue(detector, single.changeDetected > 0);
+      assertEquals(detector, single.changeDetected, batched.changeDetected);
+      assertEquals(detector, single.warningDetected, batched.warningDetected);
+      assertEquals(detector, single.trainingWeightSeenByModel(), batched.trainingWeightSeenByModel());
+      for (int i = 0; i < 500; i++) {
+        Instance inst = (Instance) stream.nextInstance().getData();
+        assertTrue(detector, Arrays.equals(single.getVotesForInstance(inst),
+            batched.getVotesForInstance(inst)));
+      }
+    }
+  }
+
   /**
    * Returns a test suite.
    *
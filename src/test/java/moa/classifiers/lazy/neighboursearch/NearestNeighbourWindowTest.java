@@ -0,0 +1,116 @@
+package moa.classifiers.lazy.neighboursearch;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Adds and removes the same instances in a window and in the instances of a
+ * LinearNNSearch, and checks that the window finds neighbours of the same
+ * classes, with ties, missing values and nominal attributes.
+ */
+public class NearestNeighbourWindowTest {
+
+	private static final int NUM_CLASSES = 3;
+
+	private static Instances newHeader() {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("x"));
+		attributes.add(new Attribute("y"));
+		attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+		attributes.add(new Attribute("color", Arrays.asList("red", "green", "blue")));
+		attributes.add(new Attribute("z"));
+		Instances header = new Instances("test", attributes, 0);
+		header.setClassIndex(2);
+		return header;
+	}
+
+	/**
+	 * Instances around moving centres, with values rounded so that some are
+	 * at the same distance, and a few missing values.
+	 */
+	private static Instance newInstance(Instances header, Random random, int time) {
+		double[] values = new double[header.numAttributes()];
+		int c = random.nextInt(NUM_CLASSES);
+		double shift = time / 500.0;
+		values[0] = Math.round(4 * (c + shift + random.nextGaussian())) / 4.0;
+		values[1] = Math.round(4 * (2 * c - shift + random.nextGaussian())) / 4.0;
+		values[2] = c;
+		values[3] = random.nextInt(3);
+		values[4] = Math.round(2 * random.nextGaussian()) / 2.0;
+		for (int j = 0; j < values.length; j++) {
+			if (j != 2 && random.nextDouble() < 0.02) {
+				values[j] = Double.NaN;
+			}
+		}
+		Instance inst = new DenseInstance(1, values);
+		inst.setDataset(header);
+		return inst;
+	}
+
+	private static double[] linearVotes(Instances instances, Instance inst, int k) throws Exception {
+		double[] votes = new double[NUM_CLASSES];
+		Instances neighbours = new LinearNNSearch(instances).kNearestNeighbours(inst, k);
+		for (int i = 0; i < neighbours.numInstances(); i++) {
+			votes[(int) neighbours.instance(i).classValue()]++;
+		}
+		return votes;
+	}
+
+	private static void assertSameAsLinearSearch(boolean useTree, long seed) throws Exception {
+		Instances header = newHeader();
+		Random random = new Random(seed);
+		NearestNeighbourWindow window = new NearestNeighbourWindow(header, useTree);
+		Instances instances = new Instances(header, 0);
+		List<Integer> timeStamps = new ArrayList<Integer>();
+		for (int time = 0; time < 3000; time++) {
+			Instance inst = newInstance(header, random, time);
+			if (instances.numInstances() > 0) {
+				int k = Math.min(1 + random.nextInt(10), instances.numInstances());
+				double[] votes = new double[NUM_CLASSES];
+				window.addNearestNeighbourVotes(inst, k, votes);
+				assertArrayEquals("votes at " + time, linearVotes(instances, inst, k), votes, 0.0);
+			}
+			// a sliding window, and from time to time random removals
+			if (instances.numInstances() >= 400) {
+				window.delete(0);
+				instances.delete(0);
+				timeStamps.remove(0);
+			}
+			if (time % 700 > 600 && instances.numInstances() > 0) {
+				int position = random.nextInt(instances.numInstances());
+				window.delete(position);
+				instances.delete(position);
+				timeStamps.remove(position);
+			}
+			window.add(inst);
+			instances.add(inst);
+			timeStamps.add(time);
+			assertEquals(instances.numInstances(), window.size());
+		}
+		for (int i = 0; i < window.size(); i++) {
+			assertEquals((long) timeStamps.get(i), window.getTimeStamp(i));
+		}
+	}
+
+	@Test
+	public void testLinearSearch() throws Exception {
+		assertSameAsLinearSearch(false, 1);
+	}
+
+	@Test
+	public void testKDTree() throws Exception {
+		assertSameAsLinearSearch(true, 2);
+		assertSameAsLinearSearch(true, 3);
+	}
+}
@@ -0,0 +1,515 @@
+/*
+ *    AdaptiveRandomForestTest.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+package moa.classifiers.meta;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import moa.classifiers.trees.ARFHoeffdingTree;
+import moa.core.Measurement;
+import moa.core.MetricsSink;
+import moa.core.SizeOf;
+import moa.core.Utils;
+import moa.streams.ConceptDriftStream;
+import moa.streams.generators.RandomRBFGeneratorDrift;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Checks that the different execution engines of AdaptiveRandomForest
+ * produce exactly the same model for a fixed seed.
+ */
+public class AdaptiveRandomForestTest {
+
+	private static final int TRAIN_SIZE = 3000;
+
+	private static final int TEST_SIZE = 300;
+
+	protected static RandomRBFGeneratorDrift newStream() {
+		RandomRBFGeneratorDrift stream = new RandomRBFGeneratorDrift();
+		stream.numAttsOption.setValue(8);
+		stream.speedChangeOption.setValue(0.01);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	protected static AdaptiveRandomForest newForest(int jobs, String engine) {
+		AdaptiveRandomForest arf = new AdaptiveRandomForest();
+		arf.ensembleSizeOption.setValue(7);
+		arf.numberOfJobsOption.setValue(jobs);
+		arf.trainingEngineOption.setChosenLabel(engine);
+		arf.prepareForUse();
+		return arf;
+	}
+
+	protected static void train(AdaptiveRandomForest arf) {
+		RandomRBFGeneratorDrift stream = newStream();
+		arf.setModelContext(stream.getHeader());
+		for (int i = 0; i < TRAIN_SIZE; i++) {
+			Instance inst = stream.nextInstance().getData();
+			arf.trainOnInstance(inst);
+			// interleave predictions, as in a prequential evaluation
+			if (i % 97 == 0) {
+				arf.getVotesForInstance(inst);
+			}
+		}
+	}
+
+	protected static void trainInBatches(AdaptiveRandomForest arf, int batchSize) {
+		RandomRBFGeneratorDrift stream = newStream();
+		arf.setModelContext(stream.getHeader());
+		Instance[] batch = new Instance[batchSize];
+		for (int i = 0; i < TRAIN_SIZE; i += batchSize) {
+			for (int j = 0; j < batchSize; j++) {
+				batch[j] = stream.nextInstance().getData();
+			}
+			arf.trainOnInstances(batch);
+		}
+	}
+
+	protected static byte[] serialize(Serializable obj) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(obj);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	protected static void assertSameForest(AdaptiveRandomForest expected,
+			AdaptiveRandomForest actual) throws Exception {
+		expected.awaitTraining();
+		actual.awaitTraining();
+		assertEquals(expected.ensemble.length, actual.ensemble.length);
+		for (int i = 0; i < expected.ensemble.length; i++) {
+			assertArrayEquals("tree " + i, serialize(expected.ensemble[i].classifier),
+					serialize(actual.ensemble[i].classifier));
+			assertEquals("drifts of tree " + i, expected.ensemble[i].numberOfDriftsDetected,
+					actual.ensemble[i].numberOfDriftsDetected);
+		}
+		RandomRBFGeneratorDrift stream = newStream();
+		for (int i = 0; i < TEST_SIZE; i++) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals(expected.getVotesForInstance(inst),
+					actual.getVotesForInstance(inst), 0.0);
+		}
+	}
+
+	protected static ConceptDriftStream newDriftStream() {
+		ConceptDriftStream stream = new ConceptDriftStream();
+		stream.streamOption.setValueViaCLIString("generators.AgrawalGenerator -f 1");
+		stream.driftstreamOption.setValueViaCLIString("generators.AgrawalGenerator -f 5");
+		stream.positionOption.setValue(2500);
+		stream.widthOption.setValue(100);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	/**
+	 * Prequential run over an abrupt drift, returning the number of correct
+	 * predictions every 1000 instances followed by the total number of 
+	 * drifts and warnings detected by the trees. 
+	 */
+	protected static int[] learningCurve(String leafPrediction) {
+		ConceptDriftStream stream = newDriftStream();
+		AdaptiveRandomForest arf = new AdaptiveRandomForest();
+		arf.ensembleSizeOption.setValue(7);
+		arf.treeLearnerOption.setValueViaCLIString(
+			"ARFHoeffdingTree -e 2000000 -g 50 -c 0.01 -l " + leafPrediction);
+		arf.prepareForUse();
+		arf.setModelContext(stream.getHeader());
+		int[] curve = new int[7];
+		int correct = 0;
+		for (int i = 1; i <= 5000; i++) {
+			Instance inst = (Instance) stream.nextInstance().getData();
+			if (Utils.maxIndex(arf.getVotesForInstance(inst)) == (int) inst.classValue())
+				correct++;
+			arf.trainOnInstance(inst);
+			if (i % 1000 == 0)
+				curve[i / 1000 - 1] = correct;
+		}
+		for (AdaptiveRandomForest.ARFBaseLearner learner : arf.ensemble) {
+			curve[5] += learner.numberOfDriftsDetected;
+			curve[6] += learner.numberOfWarningsDetected;
+		}
+		return curve;
+	}
+
+	@Test
+	public void testLearningCurveMatchesReference() {
+		// Obtained with the previous implementation, which traversed each 
+		// tree separately for testing, training and drift detection
+		assertArrayEquals(new int[]{797, 1666, 2355, 3009, 3678, 7, 7}, learningCurve("MC"));
+		assertArrayEquals(new int[]{795, 1645, 2320, 2974, 3624, 7, 7}, learningCurve("NBAdaptive"));
+	}
+
+	@Test
+	public void testCompiledInferenceMatchesReference() {
+		assertArrayEquals(new int[]{797, 1666, 2355, 3009, 3678, 7, 7}, learningCurve("MC -i"));
+		assertArrayEquals(new int[]{795, 1645, 2320, 2974, 3624, 7, 7}, learningCurve("NBAdaptive -i"));
+	}
+
+	@Test
+	public void testBufferedVotesMatchAllocatingVotes() throws Exception {
+		AdaptiveRandomForest arf = newForest(1, "InvokeAll");
+		train(arf);
+		RandomRBFGeneratorDrift stream = newStream();
+		double[] votes = new double[stream.getHeader().numClasses()];
+		for (int i = 0; i < TEST_SIZE; i++) {
+			Instance inst = stream.nextInstance().getData();
+			int numVotes = arf.getVotesForInstance(inst, votes);
+			assertArrayEquals(arf.getVotesForInstance(inst),
+					Arrays.copyOf(votes, numVotes), 0.0);
+		}
+	}
+
+	@Test
+	public void testSnapshotMatchesForestWhenPublished() throws Exception {
+		AdaptiveRandomForest arf = newForest(1, "InvokeAll");
+		arf.snapshotIntervalOption.setValue(1000);
+		train(arf);
+		AdaptiveRandomForest.Snapshot snapshot = arf.getSnapshot();
+		assertEquals(TRAIN_SIZE, snapshot.getInstancesSeen());
+		RandomRBFGeneratorDrift stream = newStream();
+		Instance[] test = new Instance[TEST_SIZE];
+		double[][] expected = new double[TEST_SIZE][];
+		for (int i = 0; i < TEST_SIZE; i++) {
+			test[i] = stream.nextInstance().getData();
+			expected[i] = arf.getVotesForInstance(test[i]);
+			assertArrayEquals(expected[i], snapshot.getVotesForInstance(test[i]), 0.0);
+		}
+		// the snapshot does not follow the forest until the next one
+		for (int i = 0; i < 500; i++)
+			arf.trainOnInstance(stream.nextInstance().getData());
+		assertTrue(snapshot == arf.getSnapshot());
+		for (int i = 0; i < TEST_SIZE; i++)
+			assertArrayEquals(expected[i], snapshot.getVotesForInstance(test[i]), 0.0);
+	}
+
+	@Test
+	public void testSnapshotReusesTreesThatDidNotLearn() throws Exception {
+		AdaptiveRandomForest arf = newForest(1, "InvokeAll");
+		train(arf);
+		AdaptiveRandomForest.Snapshot first = arf.publishSnapshot();
+		AdaptiveRandomForest.Snapshot second = arf.publishSnapshot();
+		assertTrue(first != second);
+		for (int j = 0; j < arf.ensemble.length; j++)
+			assertTrue(first.trees[j] == second.trees[j]);
+		double[] weightsSeen = new double[arf.ensemble.length];
+		for (int j = 0; j < arf.ensemble.length; j++)
+			weightsSeen[j] = arf.ensemble[j].classifier.trainingWeightSeenByModel();
+		RandomRBFGeneratorDrift stream = newStream();
+		arf.trainOnInstance(stream.nextInstance().getData());
+		AdaptiveRandomForest.Snapshot third = arf.publishSnapshot();
+		int reused = 0;
+		for (int j = 0; j < arf.ensemble.length; j++) {
+			boolean learned = arf.ensemble[j].classifier.trainingWeightSeenByModel() != weightsSeen[j];
+			assertEquals(learned, second.trees[j] != third.trees[j]);
+			if (!learned)
+				reused++;
+		}
+		// with Poisson(6) weights, a tree skips an instance with probability e^-6
+		assertTrue(reused < arf.ensemble.length);
+		for (int i = 0; i < TEST_SIZE; i++) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals(arf.getVotesForInstance(inst), third.getVotesForInstance(inst), 0.0);
+		}
+	}
+
+	@Test
+	public void testSnapshotsAreReadWhileTraining() throws Exception {
+		final AdaptiveRandomForest arf = newForest(3, "ShardedWorkers");
+		arf.snapshotIntervalOption.setValue(100);
+		final RandomRBFGeneratorDrift stream = newStream();
+		arf.setModelContext(stream.getHeader());
+		final Instance[] test = new Instance[TEST_SIZE];
+		for (int i = 0; i < TEST_SIZE; i++)
+			test[i] = stream.nextInstance().getData();
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		final long[] predictions = new long[3];
+		final boolean[] done = new boolean[1];
+		Thread[] readers = new Thread[predictions.length];
+		for (int r = 0; r < readers.length; r++) {
+			final int reader = r;
+			readers[r] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					int numClasses = stream.getHeader().numClasses();
+					double[] votes = new double[numClasses];
+					double[] treeVotes = new double[numClasses];
+					try {
+						while (true) {
+							synchronized (done) {
+								if (done[0])
+									return;
+							}
+							AdaptiveRandomForest.Snapshot snapshot = arf.getSnapshot();
+							if (snapshot != null) {
+								snapshot.getVotesForInstance(test[(int) (predictions[reader] % TEST_SIZE)], votes, treeVotes);
+								predictions[reader]++;
+							}
+						}
+					} catch (Throwable t) {
+						synchronized (failures) {
+							failures.add(t);
+						}
+					}
+				}
+			});
+			readers[r].start();
+		}
+		for (int i = 0; i < TRAIN_SIZE; i++)
+			arf.trainOnInstance(stream.nextInstance().getData());
+		synchronized (done) {
+			done[0] = true;
+		}
+		for (Thread reader : readers)
+			reader.join();
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(TRAIN_SIZE, arf.getSnapshot().getInstancesSeen());
+		for (long count : predictions)
+			assertTrue(count > 0);
+	}
+
+	@Test
+	public void testShardedWorkersMatchSingleThread() throws Exception {
+		AdaptiveRandomForest single = newForest(1, "InvokeAll");
+		AdaptiveRandomForest sharded = newForest(3, "ShardedWorkers");
+		// the training tasks are reused after 4 instances
+		AdaptiveRandomForest shortQueues = newForest(3, "ShardedWorkers");
+		shortQueues.workerQueueSizeOption.setValue(2);
+		shortQueues.prepareForUse();
+		train(single);
+		train(sharded);
+		train(shortQueues);
+		assertSameForest(single, sharded);
+		assertSameForest(single, shortQueues);
+	}
+
+	/**
+	 * Gets the live threads whose name starts with a prefix.
+	 */
+	private static Set<Thread> threadsNamed(String prefix) {
+		Set<Thread> threads = new HashSet<Thread>();
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith(prefix) && thread.isAlive()) {
+				threads.add(thread);
+			}
+		}
+		return threads;
+	}
+
+	@Test
+	public void testWorkersStopWhenTheForestIsCollected() throws Exception {
+		for (String engine : new String[]{"InvokeAll", "ShardedWorkers"}) {
+			String prefix = engine.equals("InvokeAll") ? "ARF-executor" : "ARF-worker";
+			Set<Thread> before = threadsNamed(prefix);
+			AdaptiveRandomForest arf = newForest(3, engine);
+			train(arf);
+			Set<Thread> threads = threadsNamed(prefix);
+			threads.removeAll(before);
+			assertFalse(engine, threads.isEmpty());
+			for (Thread thread : threads) {
+				assertTrue(thread.getName(), thread.isDaemon());
+			}
+			arf = null;
+			for (int i = 0; i < 100 && !threads.isEmpty(); i++) {
+				System.gc();
+				System.runFinalization();
+				for (Thread thread : threads) {
+					thread.join(100);
+				}
+				threads.retainAll(threadsNamed(prefix));
+			}
+			assertTrue(engine + " " + threads, threads.isEmpty());
+		}
+	}
+
+	@Test
+	public void testDetectorBanksMatchDetectorsOfEachLearner() throws Exception {
+		// The single thread and InvokeAll engines update the detectors of
+		// all the learners at once, the ShardedWorkers one learner at a time
+		for (String detector : new String[]{"DDM", "HDDM_A_Test", "EDDM"}) {
+			AdaptiveRandomForest[] forests = {newForest(1, "InvokeAll"),
+				newForest(3, "InvokeAll"), newForest(3, "ShardedWorkers")};
+			for (AdaptiveRandomForest arf : forests) {
+				arf.driftDetectionMethodOption.setValueViaCLIString(detector);
+				arf.warningDetectionMethodOption.setValueViaCLIString(detector);
+				arf.prepareForUse();
+				ConceptDriftStream stream = newDriftStream();
+				arf.setModelContext(stream.getHeader());
+				for (int i = 0; i < 5000; i++) {
+					arf.trainOnInstance((Instance) stream.nextInstance().getData());
+				}
+				arf.awaitTraining();
+			}
+			int drifts = 0;
+			for (int i = 0; i < forests[0].ensemble.length; i++) {
+				AdaptiveRandomForest.ARFBaseLearner expected = forests[0].ensemble[i];
+				drifts += expected.numberOfDriftsDetected;
+				for (int j = 1; j < forests.length; j++) {
+					AdaptiveRandomForest.ARFBaseLearner actual = forests[j].ensemble[i];
+					assertArrayEquals(detector + " tree " + i, serialize(expected.classifier),
+							serialize(actual.classifier));
+					assertEquals(detector + " drifts of tree " + i, expected.numberOfDriftsDetected,
+							actual.numberOfDriftsDetected);
+					assertEquals(detector + " warnings of tree " + i, expected.numberOfWarningsDetected,
+							actual.numberOfWarningsDetected);
+				}
+			}
+			assertTrue(detector, drifts > 0);
+		}
+	}
+
+	@Test
+	public void testCopyStartsItsOwnWorkers() throws Exception {
+		for (String engine : new String[]{"InvokeAll", "ShardedWorkers"}) {
+			AdaptiveRandomForest arf = newForest(3, engine);
+			train(arf);
+			AdaptiveRandomForest copy = (AdaptiveRandomForest) arf.copy();
+			assertNull(copy.executor);
+			assertNull(copy.workerPool);
+			RandomRBFGeneratorDrift stream = newStream();
+			for (int i = 0; i < TEST_SIZE; i++) {
+				Instance inst = stream.nextInstance().getData();
+				arf.trainOnInstance(inst);
+				copy.trainOnInstance(inst);
+			}
+			assertTrue(engine, copy.executor != null || copy.workerPool != null);
+			assertTrue(engine, copy.executor != arf.executor || copy.workerPool != arf.workerPool);
+			assertSameForest(arf, copy);
+		}
+	}
+
+	@Test
+	public void testParallelPredictionMatchesSequential() throws Exception {
+		AdaptiveRandomForest sequential = newForest(3, "ShardedWorkers");
+		AdaptiveRandomForest parallel = newForest(3, "ShardedWorkers");
+		parallel.parallelPredictionOption.set();
+		train(sequential);
+		train(parallel);
+		RandomRBFGeneratorDrift stream = newStream();
+		for (int i = 0; i < TEST_SIZE; i++) {
+			Instance inst = stream.nextInstance().getData();
+			// partial votes are summed in a different order
+			assertArrayEquals(sequential.getVotesForInstance(inst),
+					parallel.getVotesForInstance(inst), 1e-9);
+		}
+	}
+
+	@Test
+	public void testBatchTrainingMatchesSingleThread() throws Exception {
+		AdaptiveRandomForest single = newForest(1, "InvokeAll");
+		single.setModelContext(newStream().getHeader());
+		RandomRBFGeneratorDrift stream = newStream();
+		for (int i = 0; i < TRAIN_SIZE; i++) {
+			single.trainOnInstance(stream.nextInstance().getData());
+		}
+		AdaptiveRandomForest invokeAll = newForest(3, "InvokeAll");
+		AdaptiveRandomForest sharded = newForest(3, "ShardedWorkers");
+		trainInBatches(invokeAll, 50);
+		trainInBatches(sharded, 50);
+		assertSameForest(single, invokeAll);
+		assertSameForest(single, sharded);
+	}
+
+	@Test
+	public void testMetricsDoNotChangeTheModel() throws Exception {
+		final List<Long> published = new ArrayList<Long>();
+		AdaptiveRandomForest plain = newForest(1, "InvokeAll");
+		plain.metricsSampleIntervalOption.setValue(0);
+		plain.prepareForUse();
+		AdaptiveRandomForest instrumented = newForest(3, "ShardedWorkers");
+		instrumented.metricsSampleIntervalOption.setValue(1);
+		instrumented.metricsReportIntervalOption.setValue(1000);
+		instrumented.prepareForUse();
+		instrumented.setMetricsSink(new MetricsSink() {
+			@Override
+			public void publish(Object source, long instancesSeen, Measurement[] measurements) {
+				published.add(instancesSeen);
+			}
+		});
+		train(plain);
+		train(instrumented);
+		assertSameForest(plain, instrumented);
+		assertEquals(Arrays.asList(1000L, 2000L, 3000L), published);
+
+		Measurement[] metrics = instrumented.getModelMeasurements();
+		int nodes = 0;
+		for (int i = 0; i < instrumented.ensemble.length; i++) {
+			int treeNodes = instrumented.ensemble[i].classifier.getNodeCount();
+			assertEquals(treeNodes, Measurement.getMeasurementNamed("tree " + i + " size (nodes)", metrics).getValue(), 0.0);
+			nodes += treeNodes;
+		}
+		assertEquals(nodes, Measurement.getMeasurementNamed("forest size (nodes)", metrics).getValue(), 0.0);
+		assertTrue(Measurement.getMeasurementNamed("leaf update time per instance (microseconds)", metrics).getValue() > 0.0);
+		assertTrue(Measurement.getMeasurementNamed("queue wait time (microseconds)", metrics).getValue() > 0.0);
+		// the same number of measurements before training
+		assertEquals(metrics.length, plain.copy().getModelMeasurements().length);
+	}
+
+	@Test
+	public void testByteSizeEstimateIsCloseToMeasuredSize() throws Exception {
+		// Sizes can only be measured if the sizeofag agent is present
+		assumeTrue(SizeOf.sizeOf(this) > 0);
+		AdaptiveRandomForest arf = newForest(1, "InvokeAll");
+		RandomRBFGeneratorDrift stream = newStream();
+		arf.setModelContext(stream.getHeader());
+		for (int i = 1; i <= 20000; i++) {
+			arf.trainOnInstance(stream.nextInstance().getData());
+			if (i % 5000 == 0) {
+				assertEquals(arf.measureByteSize(), arf.estimateByteSize(), 0.05 * arf.measureByteSize());
+				for (AdaptiveRandomForest.ARFBaseLearner learner : arf.ensemble) {
+					assertEquals(learner.classifier.measureByteSize(), learner.classifier.estimateByteSize(),
+							0.01 * learner.classifier.measureByteSize());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTreeByteSizeEstimateFollowsEachObserver() throws Exception {
+		assumeTrue(SizeOf.sizeOf(this) > 0);
+		String[] observers = {"GaussianNumericAttributeClassObserver",
+			"BinaryTreeNumericAttributeClassObserver", "VFMLNumericAttributeClassObserver",
+			"GreenwaldKhannaNumericAttributeClassObserver", "SortedArrayNumericAttributeClassObserver"};
+		for (String observer : observers) {
+			RandomRBFGeneratorDrift stream = newStream();
+			ARFHoeffdingTree tree = new ARFHoeffdingTree();
+			tree.getOptions().setViaCLIString("-n " + observer + " -g 50");
+			tree.setModelContext(stream.getHeader());
+			tree.prepareForUse();
+			// start tracking the size while the tree is empty
+			tree.estimateByteSize();
+			for (int i = 1; i <= TRAIN_SIZE; i++) {
+				tree.trainOnInstance(stream.nextInstance().getData());
+				if (i % 1000 == 0)
+					assertEquals(observer, tree.measureByteSize(), tree.estimateByteSize());
+			}
+		}
+	}
+}
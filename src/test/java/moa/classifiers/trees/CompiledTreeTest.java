@@ -0,0 +1,190 @@
+package moa.classifiers.trees;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import moa.classifiers.trees.HoeffdingTree.FoundNode;
+import moa.classifiers.trees.HoeffdingTree.Node;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+public class CompiledTreeTest {
+
+	private static RandomTreeGenerator newStream(HoeffdingTree tree) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.prepareForUse();
+		tree.setModelContext(stream.getHeader());
+		tree.prepareForUse();
+		return stream;
+	}
+
+	/**
+	 * Trains the tree, and checks after each instance that the compiled
+	 * tree, compiled again when the structure of the tree changed, filters
+	 * and predicts the next instance as the tree does.
+	 */
+	private static CompiledTree assertSameAsTree(HoeffdingTree tree) {
+		RandomTreeGenerator stream = newStream(tree);
+		tree.trainOnInstance(stream.nextInstance().getData());
+		CompiledTree compiled = new CompiledTree(tree);
+		int compilations = 1;
+		FoundNode actual = new FoundNode(null, null, -1);
+		for (int i = 0; i < 20000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			if (!compiled.matchesTree()) {
+				compiled = new CompiledTree(tree);
+				compilations++;
+			}
+			FoundNode expected = tree.treeRoot.filterInstanceToLeaf(inst, null, -1);
+			compiled.filterInstanceToLeaf(inst, actual);
+			assertSame(expected.node, actual.node);
+			assertSame(expected.parent, actual.parent);
+			assertEquals(expected.parentBranch, actual.parentBranch);
+			assertArrayEquals(tree.getVotesForInstance(inst), compiled.getVotesForInstance(inst), 0.0);
+			tree.trainOnInstance(inst);
+		}
+		assertTrue(compilations > 1);
+		return compiled;
+	}
+
+	@Test
+	public void testMultiwaySplits() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		CompiledTree compiled = assertSameAsTree(tree);
+		assertTrue(compiled.getNumSlots() > 10);
+	}
+
+	@Test
+	public void testBinarySplits() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		tree.binarySplitsOption.set();
+		tree.leafpredictionOption.setChosenIndex(0);
+		assertSameAsTree(tree);
+	}
+
+	@Test
+	public void testOtherSplitNodes() {
+		HoeffdingAdaptiveTree tree = new HoeffdingAdaptiveTree();
+		tree.gracePeriodOption.setValue(50);
+		assertSameAsTree(tree);
+	}
+
+	@Test
+	public void testLayoutIsNotChangedBySplits() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		RandomTreeGenerator stream = newStream(tree);
+		tree.trainOnInstance(stream.nextInstance().getData());
+		CompiledTree compiled = new CompiledTree(tree);
+		Instance inst = stream.nextInstance().getData();
+		Node leaf = compiled.filterInstanceToLeaf(inst).node;
+		while (compiled.matchesTree()) {
+			tree.trainOnInstance(stream.nextInstance().getData());
+		}
+		// the replaced leaf is still the one of the layout
+		assertSame(leaf, compiled.filterInstanceToLeaf(inst).node);
+		assertEquals(1, compiled.getNumSlots());
+	}
+
+	/**
+	 * Checks that snapshots keep the votes of the tree when they were
+	 * compiled while the tree learns.
+	 */
+	private static void assertSnapshotsKeepVotes(HoeffdingTree tree) {
+		RandomTreeGenerator stream = newStream(tree);
+		List<Instance> test = new ArrayList<Instance>();
+		for (int i = 0; i < 500; i++) {
+			test.add(stream.nextInstance().getData());
+		}
+		tree.trainOnInstance(stream.nextInstance().getData());
+		CompiledTree previous = null;
+		List<CompiledTree> snapshots = new ArrayList<CompiledTree>();
+		List<double[][]> votes = new ArrayList<double[][]>();
+		for (int s = 0; s < 10; s++) {
+			CompiledTree snapshot = CompiledTree.snapshot(tree, previous);
+			double[][] snapshotVotes = new double[test.size()][];
+			for (int i = 0; i < test.size(); i++) {
+				snapshotVotes[i] = tree.getVotesForInstance(test.get(i));
+				assertArrayEquals(snapshotVotes[i], snapshot.getVotesForInstance(test.get(i)), 0.0);
+			}
+			snapshots.add(snapshot);
+			votes.add(snapshotVotes);
+			previous = snapshot;
+			for (int i = 0; i < 1000; i++) {
+				tree.trainOnInstance(stream.nextInstance().getData());
+			}
+		}
+		for (int s = 0; s < snapshots.size(); s++) {
+			for (int i = 0; i < test.size(); i++) {
+				assertArrayEquals(votes.get(s)[i], snapshots.get(s).getVotesForInstance(test.get(i)), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotsOfMajorityClassLeaves() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		tree.leafpredictionOption.setChosenIndex(0);
+		assertSnapshotsKeepVotes(tree);
+	}
+
+	@Test
+	public void testSnapshotsOfNaiveBayesLeaves() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		tree.leafpredictionOption.setChosenIndex(1);
+		assertSnapshotsKeepVotes(tree);
+		tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		assertSnapshotsKeepVotes(tree);
+	}
+
+	@Test
+	public void testSnapshotsOfOtherSplitNodes() {
+		HoeffdingAdaptiveTree tree = new HoeffdingAdaptiveTree();
+		tree.gracePeriodOption.setValue(50);
+		assertSnapshotsKeepVotes(tree);
+	}
+
+	@Test
+	public void testSnapshotsShareTheLeavesThatDidNotLearn() {
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		tree.leafpredictionOption.setChosenIndex(1);
+		RandomTreeGenerator stream = newStream(tree);
+		for (int i = 0; i < 5000; i++) {
+			tree.trainOnInstance(stream.nextInstance().getData());
+		}
+		CompiledTree first = CompiledTree.snapshot(tree, null);
+		Instance inst = stream.nextInstance().getData();
+		tree.trainOnInstance(inst);
+		CompiledTree second = CompiledTree.snapshot(tree, first);
+		Node learned = tree.treeRoot.filterInstanceToLeaf(inst, null, -1).node;
+		int shared = 0;
+		for (int slot = 0; slot < second.getNumSlots(); slot++) {
+			if (second.frozen[slot] != null) {
+				int firstSlot = Arrays.asList(first.nodes).indexOf(second.nodes[slot]);
+				if (firstSlot < 0) {
+					// a new leaf
+					continue;
+				}
+				if (second.nodes[slot] == learned) {
+					assertNotSame(first.frozen[firstSlot], second.frozen[slot]);
+				} else {
+					assertSame(first.frozen[firstSlot], second.frozen[slot]);
+					shared++;
+				}
+			}
+		}
+		assertTrue(shared > 0);
+	}
+}
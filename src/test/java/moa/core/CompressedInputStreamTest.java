@@ -0,0 +1,102 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Reads gzip data through a CompressedInputStream, and closes it while its
+ * thread is still decompressing.
+ */
+public class CompressedInputStreamTest {
+
+	/**
+	 * Slow input that records reads made after it was closed.
+	 */
+	private static class TrackingStream extends FilterInputStream {
+
+		private volatile boolean closed;
+
+		private volatile boolean readAfterClose;
+
+		private TrackingStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.closed) {
+				this.readAfterClose = true;
+			}
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.read(b, off, Math.min(len, 512));
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.closed = true;
+			super.close();
+		}
+	}
+
+	private static byte[] newData(int length) {
+		byte[] data = new byte[length];
+		Random random = new Random(1);
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) ('a' + random.nextInt(4));
+		}
+		return data;
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(data);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		byte[] data = newData(3 * CompressedInputStream.BLOCK_SIZE + 12345);
+		InputStream in = CompressedInputStream.open(new ByteArrayInputStream(gzip(data)));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[10000];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		byte[] result = out.toByteArray();
+		assertEquals(data.length, result.length);
+		for (int i = 0; i < data.length; i++) {
+			assertEquals(data[i], result[i]);
+		}
+	}
+
+	@Test
+	public void testCloseStopsThreadBeforeClosingDecoder() throws IOException {
+		byte[] compressed = gzip(newData(2 * CompressedInputStream.BLOCK_SIZE));
+		for (int i = 0; i < 5; i++) {
+			TrackingStream tracking = new TrackingStream(new ByteArrayInputStream(compressed));
+			CompressedInputStream in = new CompressedInputStream(new GZIPInputStream(tracking));
+			in.read();
+			in.close();
+			assertFalse(in.thread.isAlive());
+			assertFalse(tracking.readAfterClose);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+public class InputStreamProgressMonitorTest {
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testBytesOfLargeStream() throws Exception {
+		long size = 3L * Integer.MAX_VALUE;
+		InputStreamProgressMonitor monitor = new InputStreamProgressMonitor(
+				new ByteArrayInputStream(new byte[100]), size);
+		assertEquals(30, monitor.read(new byte[30]));
+		assertEquals(30L, monitor.getBytesReadLong());
+		assertEquals(size - 30, monitor.getBytesRemainingLong());
+		assertEquals(30, monitor.getBytesRead());
+		assertEquals(Integer.MAX_VALUE, monitor.getBytesRemaining());
+	}
+}
@@ -0,0 +1,171 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import moa.classifiers.Classifier;
+import moa.classifiers.core.driftdetection.ADWIN;
+import moa.classifiers.meta.OzaBag;
+import moa.classifiers.trees.HoeffdingAdaptiveTree;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.evaluation.BasicClassificationPerformanceEvaluator;
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Checks that StructuralCopier produces the same copies as a serialization
+ * round trip.
+ */
+public class StructuralCopierTest {
+
+	protected static class Item implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final int id;
+
+		protected double[] values;
+
+		protected Item next;
+
+		protected List<Item> others = new ArrayList<Item>();
+
+		protected Map<String, Item> byName = new HashMap<String, Item>();
+
+		protected transient Object cache = new Object();
+
+		public Item(int id) {
+			this.id = id;
+		}
+	}
+
+	protected static class CustomItem implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		protected int writes;
+
+		private void writeObject(ObjectOutputStream out) throws IOException {
+			this.writes++;
+			out.defaultWriteObject();
+		}
+	}
+
+	protected static byte[] serialize(Object obj) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(obj);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	protected static void train(Classifier learner, RandomRBFGenerator stream, int numInstances) {
+		for (int i = 0; i < numInstances; i++) {
+			learner.trainOnInstance(stream.nextInstance().getData());
+		}
+	}
+
+	/**
+	 * Trains both copies on the same instances and checks that their
+	 * predictions are the same.
+	 */
+	protected static void assertSameBehaviour(Classifier expected, Classifier actual,
+			RandomRBFGenerator stream) {
+		for (int i = 0; i < 2000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals(expected.getVotesForInstance(inst), actual.getVotesForInstance(inst), 0.0);
+			expected.trainOnInstance(inst);
+			actual.trainOnInstance(inst);
+		}
+	}
+
+	@Test
+	public void testSharedReferencesAndCycles() throws Exception {
+		Item a = new Item(1);
+		Item b = new Item(2);
+		a.values = new double[]{1, 2, 3};
+		b.values = a.values;
+		a.next = b;
+		b.next = a;
+		a.others.add(b);
+		a.others.add(a);
+		a.byName.put("b", b);
+		Item copy = (Item) StructuralCopier.deepCopy(a);
+		assertNotSame(a, copy);
+		assertEquals(1, copy.id);
+		assertNotSame(a.values, copy.values);
+		assertArrayEquals(a.values, copy.values, 0.0);
+		assertSame(copy.values, copy.next.values);
+		assertSame(copy, copy.next.next);
+		assertSame(copy.next, copy.others.get(0));
+		assertSame(copy, copy.others.get(1));
+		assertSame(copy.next, copy.byName.get("b"));
+		// transient fields are not copied, as in serialization
+		assertNull(copy.cache);
+		assertNull(copy.next.cache);
+	}
+
+	@Test
+	public void testCustomSerializationUsesSerialization() throws Exception {
+		CustomItem item = new CustomItem();
+		CustomItem copy = (CustomItem) StructuralCopier.deepCopy(item);
+		// writeObject ran on the original before its fields were written
+		assertEquals(1, item.writes);
+		assertEquals(1, copy.writes);
+	}
+
+	@Test
+	public void testADWINAndEvaluatorMatchSerialization() throws Exception {
+		ADWIN adwin = new ADWIN();
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			adwin.setInput(random.nextDouble() < 0.3 ? 1 : 0);
+		}
+		assertArrayEquals(serialize(SerializeUtils.copyObject(adwin)),
+				serialize(adwin.copy()));
+
+		RandomRBFGenerator stream = new RandomRBFGenerator();
+		stream.prepareForUse();
+		BasicClassificationPerformanceEvaluator evaluator = new BasicClassificationPerformanceEvaluator();
+		evaluator.prepareForUse();
+		for (int i = 0; i < 100; i++) {
+			evaluator.addResult(stream.nextInstance().getData(), new double[]{0.4, 0.6});
+		}
+		assertArrayEquals(serialize(SerializeUtils.copyObject(evaluator)),
+				serialize(evaluator.copy()));
+	}
+
+	@Test
+	public void testGrownModelsMatchSerialization() throws Exception {
+		RandomRBFGenerator stream = new RandomRBFGenerator();
+		stream.prepareForUse();
+		HoeffdingTree tree = new HoeffdingTree();
+		tree.gracePeriodOption.setValue(50);
+		OzaBag bag = new OzaBag();
+		HoeffdingAdaptiveTree hat = new HoeffdingAdaptiveTree();
+		for (Classifier learner : new Classifier[]{tree, bag, hat}) {
+			learner.prepareForUse();
+			learner.setModelContext(stream.getHeader());
+			train(learner, stream, 5000);
+			Classifier expected = (Classifier) SerializeUtils.copyObject(learner);
+			Classifier actual = learner.copy();
+			assertFalse(StructuralCopier.SERIALIZED_ROOTS.containsKey(learner.getClass()));
+			assertEquals(expected.getClass(), actual.getClass());
+			// the copy does not share state with the original
+			train(learner, stream, 2000);
+			assertSameBehaviour(expected, actual, stream);
+		}
+	}
+}
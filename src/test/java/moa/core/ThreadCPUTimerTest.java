@@ -0,0 +1,78 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks that ThreadCPUTimer includes the CPU time of helper threads, also
+ * after they terminate.
+ */
+public class ThreadCPUTimerTest {
+
+	protected static final long BUSY_NANOS = 200000000L;
+
+	protected static volatile double sink;
+
+	protected static void burnCPU() {
+		long start = TimingUtils.getNanoCPUTimeOfCurrentThread();
+		double x = 0;
+		while (TimingUtils.getNanoCPUTimeOfCurrentThread() - start < BUSY_NANOS) {
+			for (int i = 0; i < 10000; i++) {
+				x += Math.sqrt(i);
+			}
+		}
+		sink = x;
+	}
+
+	@Test
+	public void testHelperThreadsAreIncluded() throws Exception {
+		assumeTrue(TimingUtils.enablePreciseTiming());
+		ThreadCPUTimer timer = new ThreadCPUTimer();
+		ExecutorService executor = Executors.newFixedThreadPool(2,
+				ThreadCPUTimer.threadFactory("test"));
+		for (int i = 0; i < 2; i++) {
+			executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					burnCPU();
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		// the pool threads have terminated, their CPU time is kept
+		assertTrue(timer.getHelpersCPUNanos() >= 2 * BUSY_NANOS);
+		assertTrue(timer.getThreadCPUNanos() < BUSY_NANOS);
+		assertTrue(timer.getCPUNanos() >= timer.getHelpersCPUNanos());
+
+		// a new timer only counts what happens after it is started
+		ThreadCPUTimer next = new ThreadCPUTimer();
+		assertEquals(0, next.getHelpersCPUNanos());
+		burnCPU();
+		assertTrue(next.getThreadCPUNanos() >= BUSY_NANOS);
+	}
+
+	@Test
+	public void testWorkerPoolThreadsAreIncluded() {
+		assumeTrue(TimingUtils.enablePreciseTiming());
+		ThreadCPUTimer timer = new ThreadCPUTimer();
+		WorkerPool pool = new WorkerPool(2, 4, "test");
+		pool.submit(new WorkerPool.ShardTask() {
+
+			@Override
+			public void runShard(int worker, int numWorkers) {
+				burnCPU();
+			}
+		});
+		pool.barrier();
+		assertTrue(timer.getHelpersCPUNanos() >= 2 * BUSY_NANOS);
+		pool.shutdown();
+	}
+}
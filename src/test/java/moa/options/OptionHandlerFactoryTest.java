@@ -0,0 +1,62 @@
+package moa.options;
+
+import static org.junit.Assert.*;
+
+import moa.classifiers.core.driftdetection.ADWINChangeDetector;
+import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.classifiers.trees.ARFHoeffdingTree;
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Checks that objects created by OptionHandlerFactory behave as a reset
+ * copy of the prototype.
+ */
+public class OptionHandlerFactoryTest {
+
+	@Test
+	public void testNewTreeMatchesResetCopy() {
+		RandomRBFGenerator stream = new RandomRBFGenerator();
+		stream.prepareForUse();
+		ARFHoeffdingTree prototype = new ARFHoeffdingTree();
+		prototype.getOptions().setViaCLIString("-k 3 -g 50 -c 0.01 -l NB -b");
+		prototype.prepareForUse();
+		prototype.setModelContext(stream.getHeader());
+		for (int i = 0; i < 2000; i++) {
+			prototype.trainOnInstance(stream.nextInstance().getData());
+		}
+
+		OptionHandlerFactory<ARFHoeffdingTree> factory = new OptionHandlerFactory<ARFHoeffdingTree>(prototype);
+		ARFHoeffdingTree copy = (ARFHoeffdingTree) prototype.copy();
+		copy.resetLearning();
+		ARFHoeffdingTree tree = factory.newInstance();
+		assertEquals(prototype.getCLICreationString(ARFHoeffdingTree.class),
+				tree.getCLICreationString(ARFHoeffdingTree.class));
+		assertFalse(tree.trainingHasStarted());
+		assertNotSame(tree, factory.newInstance());
+
+		for (int i = 0; i < 2000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals(copy.getVotesForInstance(inst), tree.getVotesForInstance(inst), 0.0);
+			copy.trainOnInstance(inst);
+			tree.trainOnInstance(inst);
+		}
+		assertEquals(copy.measureTreeDepth(), tree.measureTreeDepth());
+	}
+
+	@Test
+	public void testNewDetectorKeepsOptions() {
+		ADWINChangeDetector prototype = new ADWINChangeDetector();
+		prototype.deltaAdwinOption.setValue(0.5);
+		prototype.prepareForUse();
+		OptionHandlerFactory<ChangeDetector> factory = new OptionHandlerFactory<ChangeDetector>(prototype);
+		ADWINChangeDetector detector = (ADWINChangeDetector) factory.newInstance();
+		assertEquals(0.5, detector.deltaAdwinOption.getValue(), 0.0);
+		// later changes to the prototype are not seen by the factory
+		prototype.deltaAdwinOption.setValue(0.1);
+		assertEquals(0.5, ((ADWINChangeDetector) factory.newInstance()).deltaAdwinOption.getValue(), 0.0);
+	}
+}
@@ -0,0 +1,151 @@
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.ArffChunkParser;
+import com.yahoo.labs.samoa.instances.Instance;
+
+public class ArffFileStreamTest {
+	private static File arffFile;
+	private static File gzipFile;
+	private static File zipFile;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws IOException {
+		arffFile = File.createTempFile("ArffFileStreamTest", ".arff");
+		Writer writer = new FileWriter(arffFile);
+		writer.write("% a comment\n@relation test\n\n@attribute x numeric\n@attribute y numeric\n"
+				+ "@attribute 'colour' {red,'light blue',green}\n@attribute class {yes,no}\n\n@data\n");
+		Random random = new Random(1);
+		String[] colours = {"red", "'light blue'", "\"green\"", "?"};
+		for (int i = 0; i < 5000; i++) {
+			if (i % 100 == 7) {
+				writer.write("% comment between rows\n\n");
+			}
+			if (i % 50 == 3) {
+				writer.write("{0 " + random.nextGaussian() + ", 3 no}\n");
+				continue;
+			}
+			double x = i % 10 == 0 ? random.nextDouble() * 1e-300 : random.nextGaussian() * 1000;
+			String y = i % 17 == 0 ? "?" : (i % 13 == 0 ? "0.12345678901234567890123" : Integer.toString(random.nextInt()));
+			writer.write(x + " , " + y + "," + colours[random.nextInt(colours.length)]
+					+ "," + (random.nextBoolean() ? "yes" : "no") + (i % 2 == 0 ? "\r\n" : "\n"));
+		}
+		writer.close();
+		gzipFile = File.createTempFile("ArffFileStreamTest", ".arff.gz");
+		compress(new GZIPOutputStream(new FileOutputStream(gzipFile)));
+		zipFile = File.createTempFile("ArffFileStreamTest", ".zip");
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipFile));
+		zip.putNextEntry(new ZipEntry("data/"));
+		zip.putNextEntry(new ZipEntry("data/test.arff"));
+		compress(zip);
+	}
+
+	private static void compress(OutputStream out) throws IOException {
+		InputStream in = new FileInputStream(arffFile);
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		out.close();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		arffFile.delete();
+		gzipFile.delete();
+		zipFile.delete();
+	}
+
+	private static ArffFileStream open(int parseThreads) {
+		return open(arffFile, parseThreads);
+	}
+
+	private static ArffFileStream open(File file, int parseThreads) {
+		ArffFileStream stream = new ArffFileStream();
+		stream.arffFileOption.setValue(file.getPath());
+		stream.parseThreadsOption.setValue(parseThreads);
+		// small chunks, so that rows are cut between chunks
+		stream.parseChunkSizeOption.setValue(1);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static void assertSameStream(ArffFileStream sequential, ArffFileStream parallel) {
+		int numInstances = 0;
+		while (sequential.hasMoreInstances()) {
+			assertTrue(parallel.hasMoreInstances());
+			Instance expected = sequential.nextInstance().getData();
+			Instance actual = parallel.nextInstance().getData();
+			assertEquals(expected.numAttributes(), actual.numAttributes());
+			assertEquals(expected.classIndex(), actual.classIndex());
+			for (int i = 0; i < expected.numAttributes(); i++) {
+				assertEquals(Double.doubleToLongBits(expected.value(i)), Double.doubleToLongBits(actual.value(i)));
+			}
+			numInstances++;
+		}
+		assertFalse(parallel.hasMoreInstances());
+		assertEquals(5000, numInstances);
+	}
+
+	@Test
+	public void testParallelReadMatchesSequentialRead() {
+		assertSameStream(open(0), open(3));
+	}
+
+	@Test
+	public void testCompressedRead() {
+		for (File file : new File[]{gzipFile, zipFile}) {
+			assertSameStream(open(0), open(file, 0));
+			assertSameStream(open(0), open(file, 2));
+			// the progress is measured on the compressed bytes
+			ArffFileStream stream = open(file, 0);
+			stream.nextInstance();
+			assertTrue(stream.estimatedRemainingInstances() >= 0);
+			while (stream.hasMoreInstances()) {
+				stream.nextInstance();
+			}
+			assertEquals(1.0, stream.fileProgressMonitor.getProgressFraction(), 0.0);
+		}
+	}
+
+	@Test
+	public void testRestartParallelRead() {
+		ArffFileStream parallel = open(2);
+		Instance first = parallel.nextInstance().getData();
+		parallel.nextInstance();
+		parallel.restart();
+		assertEquals(first.value(0), parallel.nextInstance().getData().value(0), 0.0);
+	}
+
+	@Test
+	public void testParseDouble() {
+		String[] numbers = {"0", "-0", "1", "-1.5", "3.14159", "1e10", "1.5E-7", "-2.5e+3",
+				"123456789012345678", "0.1234567890123456789", "9007199254740993", "4.9e-324",
+				"1.7976931348623157E308", "0.000001", ".5", "5.", "1e400", "NaN", "-Infinity"};
+		for (String number : numbers) {
+			char[] chars = number.toCharArray();
+			assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+					Double.doubleToLongBits(ArffChunkParser.parseDouble(chars, 0, chars.length)));
+		}
+	}
+}
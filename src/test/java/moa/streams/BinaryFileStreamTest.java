@@ -0,0 +1,120 @@
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+import moa.core.SerializeUtils;
+import moa.streams.generators.RandomRBFGenerator;
+import moa.tasks.NullMonitor;
+import moa.tasks.WriteStreamToBinaryFile;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+public class BinaryFileStreamTest {
+	private static File sparseArffFile;
+	private static File denseFile;
+	private static File sparseFile;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws IOException {
+		sparseArffFile = File.createTempFile("BinaryFileStreamTest", ".arff");
+		Writer writer = new FileWriter(sparseArffFile);
+		writer.write("@relation sparse\n");
+		for (int i = 0; i < 20; i++) {
+			writer.write("@attribute a" + i + " numeric\n");
+		}
+		writer.write("@attribute class {yes,no}\n@data\n");
+		Random random = new Random(1);
+		for (int i = 0; i < 300; i++) {
+			StringBuilder row = new StringBuilder("{");
+			for (int j = 0; j < 20; j++) {
+				if (random.nextInt(4) == 0) {
+					row.append(j).append(' ').append(random.nextGaussian()).append(',');
+				}
+			}
+			row.append("20 ").append(random.nextBoolean() ? "yes" : "no").append("}\n");
+			writer.write(row.toString());
+		}
+		writer.close();
+		denseFile = write("generators.RandomRBFGenerator");
+		sparseFile = write("ArffFileStream -f " + sparseArffFile.getPath());
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		sparseArffFile.delete();
+		denseFile.delete();
+		sparseFile.delete();
+	}
+
+	private static File write(String stream) throws IOException {
+		File file = File.createTempFile("BinaryFileStreamTest", ".bin");
+		WriteStreamToBinaryFile task = new WriteStreamToBinaryFile();
+		task.streamOption.setValueViaCLIString(stream);
+		task.binaryFileOption.setValue(file.getPath());
+		task.maxInstancesOption.setValue(1000);
+		task.prepareForUse();
+		task.doTask(new NullMonitor(), null);
+		return file;
+	}
+
+	private static void assertSameStream(InstanceStream expected, BinaryFileStream actual) {
+		assertEquals(expected.getHeader().numAttributes(), actual.getHeader().numAttributes());
+		assertEquals(expected.getHeader().classIndex(), actual.getHeader().classIndex());
+		int numInstances = 0;
+		while (actual.hasMoreInstances()) {
+			Instance e = expected.nextInstance().getData();
+			Instance a = actual.nextInstance().getData();
+			assertEquals(e.weight(), a.weight(), 0.0);
+			assertEquals(e.numValues(), a.numValues());
+			for (int i = 0; i < e.numAttributes(); i++) {
+				assertEquals(e.value(i), a.value(i), 0.0);
+			}
+			assertEquals(e.classValue(), a.classValue(), 0.0);
+			numInstances++;
+		}
+		assertEquals(numInstances, actual.estimatedRemainingInstances() + numInstances);
+	}
+
+	@Test
+	public void testDenseStream() {
+		RandomRBFGenerator generator = new RandomRBFGenerator();
+		generator.prepareForUse();
+		BinaryFileStream stream = new BinaryFileStream(denseFile.getPath());
+		assertSameStream(generator, stream);
+		generator.restart();
+		stream.restart();
+		assertSameStream(generator, stream);
+	}
+
+	@Test
+	public void testSparseStream() {
+		ArffFileStream arff = new ArffFileStream(sparseArffFile.getPath(), -1);
+		BinaryFileStream stream = new BinaryFileStream(sparseFile.getPath());
+		assertSameStream(arff, stream);
+	}
+
+	@Test
+	public void testChangedAndSerializedInstances() throws Exception {
+		BinaryFileStream stream = new BinaryFileStream(denseFile.getPath());
+		Instance inst = stream.nextInstance().getData();
+		Instance copy = inst.copy();
+		double value = inst.value(0);
+		inst.setValue(0, value + 1);
+		assertEquals(value + 1, inst.value(0), 0.0);
+		assertEquals(value, copy.value(0), 0.0);
+		Instance deserialized = (Instance) SerializeUtils.copyObject(copy);
+		assertEquals(value, deserialized.value(0), 0.0);
+		stream.restart();
+		assertEquals(value, stream.nextInstance().getData().value(0), 0.0);
+	}
+}
@@ -0,0 +1,87 @@
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import moa.streams.generators.RandomRBFGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+public class StreamFanOutTest {
+
+	private static RandomRBFGenerator newGenerator() {
+		RandomRBFGenerator generator = new RandomRBFGenerator();
+		generator.prepareForUse();
+		return generator;
+	}
+
+	/**
+	 * Reads up to limit instances of a stream, and closes it if it is a
+	 * consumer.
+	 */
+	private static Callable<List<Instance>> reader(final ExampleStream stream, final int limit) {
+		return new Callable<List<Instance>>() {
+
+			@Override
+			public List<Instance> call() {
+				List<Instance> instances = new ArrayList<Instance>();
+				while (instances.size() < limit && stream.hasMoreInstances()) {
+					instances.add((Instance) stream.nextInstance().getData());
+				}
+				if (stream instanceof StreamFanOut.Consumer) {
+					((StreamFanOut.Consumer) stream).close();
+				}
+				return instances;
+			}
+		};
+	}
+
+	@Test
+	public void testConsumersReadTheStream() throws Exception {
+		int[] limits = {10000, 300, 10000, 0};
+		List<Instance> expected = reader(newGenerator(), 10000).call();
+		StreamFanOut fanOut = new StreamFanOut(newGenerator(), limits.length);
+		ExecutorService pool = Executors.newFixedThreadPool(limits.length);
+		List<Future<List<Instance>>> results = new ArrayList<Future<List<Instance>>>();
+		for (int i = 0; i < limits.length; i++) {
+			results.add(pool.submit(reader(fanOut.getConsumer(i), limits[i])));
+		}
+		for (int i = 0; i < limits.length; i++) {
+			List<Instance> instances = results.get(i).get();
+			assertEquals(limits[i], instances.size());
+			for (int j = 0; j < instances.size(); j++) {
+				assertArrayEquals(expected.get(j).toDoubleArray(), instances.get(j).toDoubleArray(), 0.0);
+				if (i > 0) {
+					// the consumers share the examples
+					assertSame(results.get(0).get().get(j), instances.get(j));
+				}
+			}
+		}
+		pool.shutdown();
+		fanOut.close();
+	}
+
+	@Test
+	public void testEndOfStream() {
+		RandomRBFGenerator generator = newGenerator();
+		Instances data = new Instances(generator.getHeader(), 1);
+		data.add((Instance) generator.nextInstance().getData());
+		StreamFanOut fanOut = new StreamFanOut(new CachedInstancesStream(data), 2);
+		for (int i = 0; i < 2; i++) {
+			StreamFanOut.Consumer consumer = fanOut.getConsumer(i);
+			assertTrue(consumer.hasMoreInstances());
+			assertNotNull(consumer.nextInstance());
+			assertFalse(consumer.hasMoreInstances());
+			assertNull(consumer.nextInstance());
+		}
+	}
+}
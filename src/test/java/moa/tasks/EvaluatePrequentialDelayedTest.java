@@ -0,0 +1,70 @@
+package moa.tasks;
+
+import static org.junit.Assert.*;
+
+import moa.classifiers.bayes.NaiveBayes;
+import moa.evaluation.LearningCurve;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+public class EvaluatePrequentialDelayedTest {
+
+	/** Naive Bayes counting the instances it is trained on. */
+	public static class CountingNaiveBayes extends NaiveBayes {
+		private static final long serialVersionUID = 1L;
+
+		public int instancesTrained;
+
+		@Override
+		public void trainOnInstanceImpl(Instance inst) {
+			this.instancesTrained++;
+			super.trainOnInstanceImpl(inst);
+		}
+
+		@Override
+		public void resetLearningImpl() {
+			this.instancesTrained = 0;
+			super.resetLearningImpl();
+		}
+	}
+
+	private LearningCurve evaluate(CountingNaiveBayes learner, int batchSize) {
+		EvaluatePrequentialDelayed task = new EvaluatePrequentialDelayed();
+		task.learnerOption.setCurrentObject(learner);
+		task.streamOption.setCurrentObject(new RandomTreeGenerator());
+		task.delayLengthOption.setValue(10);
+		task.initialWindowSizeOption.setValue(0);
+		task.instanceLimitOption.setValue(1000);
+		task.sampleFrequencyOption.setValue(99);
+		task.batchSizeOption.setValue(batchSize);
+		task.prepareForUse();
+		return (LearningCurve) task.doTask();
+	}
+
+	private double modelTrainingInstances(LearningCurve curve, int entry) {
+		for (int i = 0; ; i++) {
+			if (curve.getMeasurementName(i).equals("model training instances")) {
+				return curve.getMeasurement(entry, i);
+			}
+		}
+	}
+
+	@Test
+	public void testPartialBatchesAreTrained() {
+		CountingNaiveBayes learner = new CountingNaiveBayes();
+		LearningCurve curve = evaluate(learner, 64);
+		// Every instance but the last 10, whose delay has not elapsed
+		assertEquals(990, learner.instancesTrained);
+
+		CountingNaiveBayes single = new CountingNaiveBayes();
+		LearningCurve singleCurve = evaluate(single, 1);
+		assertEquals(990, single.instancesTrained);
+		assertEquals(singleCurve.numEntries(), curve.numEntries());
+		for (int i = 0; i < curve.numEntries(); i++) {
+			assertEquals(modelTrainingInstances(singleCurve, i), modelTrainingInstances(curve, i), 0.0);
+		}
+	}
+}
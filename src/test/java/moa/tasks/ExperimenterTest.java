@@ -0,0 +1,103 @@
+package moa.tasks;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExperimenterTest {
+
+	private static final String[] LEARNERS = {
+		"-l bayes.NaiveBayes#NB",
+		"-l trees.HoeffdingTree#HT",
+		"-l functions.MajorityClass#MC"};
+
+	private static final String[] STREAMS = {
+		"-s (generators.RandomRBFGenerator -i 3) -i 3000 -f 500#RBF",
+		"-s (generators.RandomTreeGenerator -i 5) -i 3000 -f 500#Tree"};
+
+	// accuracy, kappa, kappa temp and kappa M; the others are times and sizes
+	private static final int[] COMPARED_METRICS = {2, 3, 4, 5};
+
+	private File configFile;
+
+	private File dumpFile;
+
+	@Before
+	public void setUp() throws IOException {
+		this.configFile = File.createTempFile("experimenter", ".txt");
+		PrintWriter writer = new PrintWriter(this.configFile);
+		for (String learner : LEARNERS) {
+			writer.println(learner);
+		}
+		writer.println();
+		for (String stream : STREAMS) {
+			writer.println(stream);
+		}
+		writer.close();
+		this.dumpFile = File.createTempFile("experimenter", ".csv");
+	}
+
+	@After
+	public void tearDown() {
+		this.configFile.delete();
+		this.dumpFile.delete();
+	}
+
+	private Experimenter newExperimenter(int numThreads, boolean fanOut) {
+		Experimenter experimenter = new Experimenter();
+		experimenter.configFileOption.setValue(this.configFile.getPath());
+		experimenter.dumpFileOption.setValue(this.dumpFile.getPath());
+		experimenter.numThreadsOption.setValue(numThreads);
+		experimenter.fanOutOption.setValue(fanOut);
+		experimenter.prepareForUse();
+		return experimenter;
+	}
+
+	/** The results of the runs, by stream, metric and learner. */
+	private ArrayList<ArrayList<ArrayList<Double>>> run(int numThreads, boolean fanOut) {
+		Experimenter experimenter = newExperimenter(numThreads, fanOut);
+		experimenter.doTask(new NullMonitor(), null);
+		assertEquals("classifications correct (percent)", experimenter.result.metrics[2]);
+		return experimenter.result.results;
+	}
+
+	private void assertSameResults(ArrayList<ArrayList<ArrayList<Double>>> expected,
+			ArrayList<ArrayList<ArrayList<Double>>> actual) {
+		assertEquals(STREAMS.length, actual.size());
+		for (int s = 0; s < STREAMS.length; s++) {
+			for (int m : COMPARED_METRICS) {
+				for (int c = 0; c < LEARNERS.length; c++) {
+					assertEquals("stream " + s + ", metric " + m + ", learner " + c,
+							expected.get(s).get(m).get(c), actual.get(s).get(m).get(c), 0.0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallelRunsMatchSequentialRuns() {
+		ArrayList<ArrayList<ArrayList<Double>>> sequential = run(1, false);
+		// the learners do not learn the same
+		assertTrue(sequential.get(0).get(2).get(0) != sequential.get(0).get(2).get(2));
+		assertSameResults(sequential, run(2, false));
+		assertSameResults(sequential, run(LEARNERS.length, true));
+		assertSameResults(sequential, run(2 * LEARNERS.length, true));
+	}
+
+	@Test
+	public void testFanOutNeedsAThreadPerLearner() {
+		try {
+			run(LEARNERS.length - 1, true);
+			fail("fan-out with too few threads");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("-p"));
+		}
+	}
+}